@@ -0,0 +1,94 @@
+package com.minecraftai.airulermod.integration;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link ChatRequestBody} with the body it replaced, a JSON tree turned into a string
+ * and then into bytes: a batch message written into a buffer, as OkHttp writes it to the
+ * connection. Run with {@code -prof gc} to compare the allocations, which are what the body saves.
+ * The batch message itself is built beforehand in both cases.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatRequestBodyBenchmark {
+    private static final String MODEL = "gpt-4o-mini";
+    private static final String PREVIOUS_RESPONSE_ID = "resp_0123456789abcdef";
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    // Number of events in the batch message
+    @Param({"50", "500"})
+    private int events;
+
+    private List<AIClient.ChatMessage> input;
+    private final Buffer sink = new Buffer();
+
+    @Setup
+    public void setUp() {
+        final StringBuilder batch = new StringBuilder("{\"events\":[");
+        for (int i = 0; i < events; i++) {
+            if (i > 0) batch.append(',');
+            batch.append("{\"event\":\"ChatMessagePosted\",\"pid\":\"p").append(i % 50)
+                    .append("\",\"pos\":{\"x\":").append(i).append(",\"y\":64,\"z\":").append(-i)
+                    .append("},\"ts\":").append(1_700_000_000_000L + i * 50L)
+                    .append(",\"message\":\"message number ").append(i).append("\"}");
+        }
+        batch.append("]}");
+
+        input = List.of(new AIClient.ChatMessage("user", batch.toString()));
+    }
+
+    @Benchmark
+    public long streamed() throws IOException {
+        new ChatRequestBody(MODEL, input, PREVIOUS_RESPONSE_ID, true).writeTo(sink);
+        return drain();
+    }
+
+    @Benchmark
+    public long throughTree() throws IOException {
+        final JsonObject body = new JsonObject();
+        body.addProperty("model", MODEL);
+
+        final JsonArray messages = new JsonArray();
+        for (AIClient.ChatMessage chatMessage : input) {
+            final JsonObject message = new JsonObject();
+            message.addProperty("role", chatMessage.role());
+            message.addProperty("content", chatMessage.input());
+            messages.add(message);
+        }
+        body.add("input", messages);
+        body.addProperty("previous_response_id", PREVIOUS_RESPONSE_ID);
+        body.addProperty("stream", true);
+
+        RequestBody.create(body.toString(), JSON).writeTo(sink);
+        return drain();
+    }
+
+    private long drain() {
+        final long size = sink.size();
+        sink.clear();
+        return size;
+    }
+}
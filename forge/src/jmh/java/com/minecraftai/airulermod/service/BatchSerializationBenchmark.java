@@ -0,0 +1,117 @@
+package com.minecraftai.airulermod.service;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.events.ChatMessagePosted;
+import com.minecraftai.airulermod.events.PlayerDamaged;
+import com.minecraftai.airulermod.events.PlayerDied;
+import com.minecraftai.airulermod.events.PlayerKilledEntity;
+import com.minecraftai.airulermod.serialization.PositionTypeAdapterFactory;
+import com.minecraftai.airulermod.stats.PlayerBuildingRate;
+import com.minecraftai.airulermod.stats.PlayerMiningRate;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.phys.Vec3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes a batch of 500 events with the stats and positions of 50 players, through the JSON
+ * tree the {@link EventsActionProcessor} filters, delta-encodes and aliases, with and without the
+ * position adapters, and straight to a string, the bound on what skipping the tree could save.
+ * Run with {@code -prof gc} to compare the allocations too.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchSerializationBenchmark {
+    private static final int EVENTS = 500;
+    private static final int PLAYERS = 50;
+
+    private final Gson serializer = new GsonBuilder()
+            .registerTypeAdapterFactory(new PositionTypeAdapterFactory())
+            .create();
+    private final Gson reflective = new Gson();
+
+    private List<AbstractGameEvent> events;
+    private Map<String, Map<String, ?>> stats;
+    private Map<String, Vec3> positions;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(42);
+
+        events = new ArrayList<>(EVENTS);
+        for (int i = 0; i < EVENTS; i++) {
+            final String playerId = playerId(random.nextInt(PLAYERS));
+            final BlockPos pos = new BlockPos(random.nextInt(2000) - 1000, random.nextInt(128) - 64, random.nextInt(2000) - 1000);
+            final long timestamp = 1_700_000_000_000L + i * 50L;
+            events.add(switch (i % 4) {
+                case 0 -> new ChatMessagePosted(playerId, "message number " + i, pos, timestamp);
+                case 1 -> new PlayerDamaged(playerId, pos, random.nextFloat() * 10, "minecraft:zombie", timestamp);
+                case 2 -> new PlayerKilledEntity(playerId, pos, "minecraft:cow", "e" + i, "minecraft:iron_sword", timestamp);
+                default -> new PlayerDied(playerId, pos, "fell from a high place", timestamp);
+            });
+        }
+
+        final Map<String, PlayerMiningRate> miningRates = new HashMap<>();
+        final Map<String, PlayerBuildingRate> buildingRates = new HashMap<>();
+        positions = new LinkedHashMap<>();
+        for (int i = 0; i < PLAYERS; i++) {
+            final String playerId = playerId(i);
+            final PlayerMiningRate miningRate = new PlayerMiningRate(playerId, random.nextInt(100));
+            miningRate.setBlockCounts(Map.of("stone", random.nextInt(50), "diamond_ore", random.nextInt(5)));
+            miningRates.put(playerId, miningRate);
+            buildingRates.put(playerId, new PlayerBuildingRate(playerId, random.nextInt(100)));
+            positions.put(playerId, new Vec3(random.nextInt(2000) + 0.5, 64, random.nextInt(2000) + 0.3));
+        }
+        stats = Map.of("miningRates", miningRates, "buildingRate", buildingRates);
+    }
+
+    @Benchmark
+    public String throughTree() {
+        final JsonObject batch = new JsonObject();
+        batch.add("events", serializer.toJsonTree(events));
+        batch.add("stats", serializer.toJsonTree(stats));
+        batch.add("playerPositions", serializer.toJsonTree(positions));
+        return serializer.toJson(batch);
+    }
+
+    @Benchmark
+    public String throughTreeReflective() {
+        final JsonObject batch = new JsonObject();
+        batch.add("events", reflective.toJsonTree(events));
+        batch.add("stats", reflective.toJsonTree(stats));
+        batch.add("playerPositions", reflective.toJsonTree(positions));
+        return reflective.toJson(batch);
+    }
+
+    @Benchmark
+    public String direct() {
+        return serializer.toJson(events) + serializer.toJson(stats) + serializer.toJson(positions);
+    }
+
+    private static String playerId(int index) {
+        return "00000000-0000-0000-0000-" + String.format("%012d", index);
+    }
+}
@@ -0,0 +1,158 @@
+package com.minecraftai.airulermod.service;
+
+import com.minecraftai.airulermod.config.EnvConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Counts the tokens of a 50 KB batch, as the batch planner does before sending it, with the
+ * {@link BpeTokenizer} and with the straightforward implementation it replaces: the tiktoken regex
+ * to split the text, then a byte-pair merge of each piece over a map of the token bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BpeTokenizerBenchmark {
+    private static final int BATCH_BYTES = 50 * 1024;
+
+    private static final Pattern PIECES = Pattern.compile(String.join("|",
+            "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]*[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]+(?i:'s|'t|'re|'ve|'m|'ll|'d)?",
+            "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]+[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]*(?i:'s|'t|'re|'ve|'m|'ll|'d)?",
+            "\\p{N}{1,3}",
+            " ?[^\\s\\p{L}\\p{N}]+[\\r\\n/]*",
+            "\\s*[\\r\\n]+",
+            "\\s+(?!\\S)",
+            "\\s+"
+    ), Pattern.UNICODE_CHARACTER_CLASS);
+
+    private static final String[] MESSAGES = {
+            "anyone want to trade diamonds for iron?", "who took my chest at spawn", "lol", "gg",
+            "can someone tp me to the nether portal", "stop griefing my house!!!", "ça va les gars ?",
+            "wie komme ich zum Dorf?", "где все?", "お疲れ様です", "brb 5 min", "selling 64 oak logs"
+    };
+
+    private BpeTokenizer tokenizer;
+    private Map<ByteBuffer, Integer> ranks;
+    private String batch;
+
+    @Setup
+    public void setUp() throws IOException {
+        tokenizer = new BpeTokenizer(new EnvConfig());
+        if (!tokenizer.isAvailable()) throw new IllegalStateException("o200k_base.tiktoken is missing from the resources");
+
+        ranks = new HashMap<>();
+        try (InputStream input = BpeTokenizerBenchmark.class.getResourceAsStream("/o200k_base.tiktoken")) {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.US_ASCII));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split(" ");
+                ranks.put(ByteBuffer.wrap(Base64.getDecoder().decode(fields[0])), Integer.parseInt(fields[1]));
+            }
+        }
+
+        batch = batch(new Random(42));
+    }
+
+    @Benchmark
+    public int bpeTokenizer() {
+        return tokenizer.countTokens(batch);
+    }
+
+    @Benchmark
+    public int regexAndMapMerge() {
+        int count = 0;
+        final Matcher matcher = PIECES.matcher(batch);
+        while (matcher.find()) {
+            count += merge(matcher.group().getBytes(StandardCharsets.UTF_8));
+        }
+        return count;
+    }
+
+    private int merge(byte[] piece) {
+        if (ranks.containsKey(ByteBuffer.wrap(piece))) return 1;
+
+        final List<byte[]> parts = new ArrayList<>();
+        for (byte b : piece) {
+            parts.add(new byte[]{b});
+        }
+
+        while (parts.size() > 1) {
+            int best = -1;
+            int bestRank = Integer.MAX_VALUE;
+            for (int i = 0; i < parts.size() - 1; i++) {
+                final byte[] pair = new byte[parts.get(i).length + parts.get(i + 1).length];
+                System.arraycopy(parts.get(i), 0, pair, 0, parts.get(i).length);
+                System.arraycopy(parts.get(i + 1), 0, pair, parts.get(i).length, parts.get(i + 1).length);
+
+                final Integer rank = ranks.get(ByteBuffer.wrap(pair));
+                if (rank != null && rank < bestRank) {
+                    bestRank = rank;
+                    best = i;
+                }
+            }
+            if (best < 0) break;
+
+            final byte[] merged = new byte[parts.get(best).length + parts.get(best + 1).length];
+            System.arraycopy(parts.get(best), 0, merged, 0, parts.get(best).length);
+            System.arraycopy(parts.get(best + 1), 0, merged, parts.get(best).length, parts.get(best + 1).length);
+            parts.set(best, merged);
+            parts.remove(best + 1);
+        }
+
+        return parts.size();
+    }
+
+    /**
+     * Builds a batch of chat messages and block events of a few players, shaped like the JSON the
+     * AI receives.
+     */
+    private static String batch(Random random) {
+        final StringBuilder json = new StringBuilder("{\"events\":[");
+        long timestamp = 1_700_000_000_000L;
+        while (json.length() < BATCH_BYTES) {
+            timestamp += random.nextInt(2000);
+            final String player = "p" + random.nextInt(20);
+            if (random.nextInt(3) == 0) {
+                json.append("{\"event\":\"ChatMessagePosted\",\"pid\":\"").append(player)
+                        .append("\",\"ts\":").append(timestamp)
+                        .append(",\"message\":\"").append(MESSAGES[random.nextInt(MESSAGES.length)]).append("\"},");
+            } else {
+                json.append("{\"event\":\"BlockDestroyed\",\"pid\":\"").append(player)
+                        .append("\",\"ts\":").append(timestamp)
+                        .append(",\"pos\":[").append(random.nextInt(2000) - 1000).append(',')
+                        .append(random.nextInt(128) - 64).append(',').append(random.nextInt(2000) - 1000)
+                        .append("],\"block\":\"minecraft:stone\"},");
+            }
+        }
+        json.setLength(json.length() - 1);
+
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,123 @@
+package com.minecraftai.airulermod.stats;
+
+import com.minecraftai.airulermod.replay.VirtualClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link SlidingWindowCounter} with the per-player deques of timestamps it replaced:
+ * one block mined and the mining rate read, as the block handler and the rules do for every block.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlidingWindowCounterBenchmark {
+    // Blocks mined per player per second, a player mining as fast as possible mines about 20
+    private static final int BLOCKS_PER_SECOND = 20;
+
+    @Param({"10", "100"})
+    private int players;
+
+    private VirtualClock clock;
+    private SlidingWindowCounter counter;
+    private DequeCounter dequeCounter;
+    private String[] playerIds;
+    private long now;
+    private int player;
+
+    @Setup
+    public void setUp() {
+        clock = new VirtualClock();
+        counter = new SlidingWindowCounter(clock);
+        dequeCounter = new DequeCounter(clock);
+        playerIds = new String[players];
+        for (int i = 0; i < players; i++) {
+            playerIds[i] = "00000000-0000-0000-0000-" + String.format("%012d", i);
+        }
+
+        // A minute of mining by every player
+        now = 1_700_000_000_000L;
+        for (int second = 0; second < 60; second++) {
+            for (int block = 0; block < BLOCKS_PER_SECOND * players; block++) {
+                nextBlock();
+                counter.increment(player, now);
+                dequeCounter.increment(playerIds[player], now);
+            }
+        }
+    }
+
+    @Benchmark
+    public int slidingWindowCounter() {
+        nextBlock();
+        counter.increment(player, now);
+        return counter.count(player, RateWindow.ONE_MINUTE);
+    }
+
+    @Benchmark
+    public int dequeOfTimestamps() {
+        nextBlock();
+        dequeCounter.increment(playerIds[player], now);
+        return dequeCounter.count(playerIds[player]);
+    }
+
+    private void nextBlock() {
+        player = (player + 1) % players;
+        now += 1000 / (BLOCKS_PER_SECOND * players) + 1;
+        clock.setMillis(now);
+    }
+
+    /**
+     * The counting of StatsTracker before the sliding windows: a deque of the last 200 timestamps
+     * per player, streamed to count those of the last minute.
+     */
+    private static final class DequeCounter {
+        private static final int MAX_EVENTS_PER_PLAYER = 200;
+        private static final long MINUTE_IN_MS = 60 * 1000;
+
+        private final Map<String, Deque<BlockEvent>> events = new ConcurrentHashMap<>();
+        private final VirtualClock clock;
+
+        DequeCounter(VirtualClock clock) {
+            this.clock = clock;
+        }
+
+        void increment(String playerId, long timestamp) {
+            final Deque<BlockEvent> playerEvents = events.computeIfAbsent(playerId, id -> new ConcurrentLinkedDeque<>());
+            playerEvents.addLast(new BlockEvent(timestamp));
+            while (playerEvents.size() > MAX_EVENTS_PER_PLAYER) {
+                playerEvents.removeFirst();
+            }
+        }
+
+        int count(String playerId) {
+            final Deque<BlockEvent> playerEvents = events.get(playerId);
+            if (playerEvents == null) return 0;
+
+            final long currentTime = clock.millis();
+            return (int) playerEvents.stream()
+                    .filter(event -> currentTime - event.timestamp() <= MINUTE_IN_MS)
+                    .count();
+        }
+
+        private record BlockEvent(long timestamp) {
+        }
+    }
+}
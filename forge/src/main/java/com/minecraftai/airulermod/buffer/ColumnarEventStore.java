@@ -0,0 +1,300 @@
+package com.minecraftai.airulermod.buffer;
+
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.events.EventPriority;
+import com.minecraftai.airulermod.events.PlayerDamaged;
+import com.minecraftai.airulermod.events.PlayerKilledEntity;
+import net.minecraft.core.BlockPos;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntFunction;
+
+/**
+ * Allocation-free store for the high-frequency combat events (damage and kills).
+ * <p>
+ * Instead of one object per event, every event occupies a row in a set of preallocated parallel
+ * primitive columns: event type, player index, packed block position, timestamp and a few payload
+ * slots. Strings such as damage sources and weapon names are stored as ids of a shared
+ * {@link StringTable}. Event objects are only materialized when the store is drained, on the AI
+ * communication thread.
+ * <p>
+ * The store is a single-producer ring: capture methods must be called from the server thread.
+ * On overflow the producer may evict the oldest row; the consumer only commits a row it has read
+ * if the row was not evicted meanwhile, so a concurrently overwritten row is never materialized.
+ */
+public class ColumnarEventStore {
+    public static final byte TYPE_DAMAGE = 0;
+    public static final byte TYPE_KILL = 1;
+
+    private static final String[] TYPE_NAMES = {"PlayerDamaged", "PlayerKilledEntity"};
+    private static final EventPriority[] TYPE_PRIORITIES = {EventPriority.LOW, EventPriority.NORMAL};
+
+    private final int capacity;
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+    private final StringTable strings = new StringTable();
+
+    // Columns, one row per event
+    private final byte[] types;
+    private final int[] players;
+    private final long[] positions;
+    private final long[] timestamps;
+    private final float[] sampleRates;
+    private final float[] floatValues;
+    private final int[] intValues;
+    private final int[] secondIntValues;
+    private final String[] refValues;
+
+    // Position of the oldest unconsumed row and of the next row to write
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLongArray dropped = new AtomicLongArray(TYPE_NAMES.length);
+
+    /**
+     * Creates a new store.
+     *
+     * @param capacity       The maximum number of buffered events, rounded up to a power of two
+     * @param overflowPolicy The strategy applied when an event is captured into a full store
+     */
+    public ColumnarEventStore(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Event store capacity must be positive: " + capacity);
+        }
+
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.overflowPolicy = overflowPolicy;
+
+        this.types = new byte[this.capacity];
+        this.players = new int[this.capacity];
+        this.positions = new long[this.capacity];
+        this.timestamps = new long[this.capacity];
+        this.sampleRates = new float[this.capacity];
+        this.floatValues = new float[this.capacity];
+        this.intValues = new int[this.capacity];
+        this.secondIntValues = new int[this.capacity];
+        this.refValues = new String[this.capacity];
+    }
+
+    /**
+     * @return The table resolving the string ids stored in the columns
+     */
+    public StringTable getStrings() {
+        return strings;
+    }
+
+    /**
+     * Captures a player damage event.
+     *
+     * @param playerIndex The dense index of the damaged player
+     * @param position    The packed block position of the player
+     * @param timestamp   The time of the event in milliseconds
+     * @param sampleRate  The sample rate the event was admitted with
+     * @param amount      The amount of damage taken
+     * @param sourceId    The string id of the damage source
+     * @return Whether the event was stored, false if it was dropped on overflow
+     */
+    public boolean captureDamage(int playerIndex, long position, long timestamp, float sampleRate, float amount, int sourceId) {
+        final long row = claim(TYPE_DAMAGE);
+        if (row < 0) return false;
+
+        final int index = (int) (row & mask);
+        types[index] = TYPE_DAMAGE;
+        players[index] = playerIndex;
+        positions[index] = position;
+        timestamps[index] = timestamp;
+        sampleRates[index] = sampleRate;
+        floatValues[index] = amount;
+        intValues[index] = sourceId;
+        refValues[index] = null;
+
+        tail.lazySet(row + 1);
+        return true;
+    }
+
+    /**
+     * Captures a kill made by a player.
+     *
+     * @param playerIndex  The dense index of the killer
+     * @param position     The packed block position of the killer
+     * @param timestamp    The time of the event in milliseconds
+     * @param sampleRate   The sample rate the event was admitted with
+     * @param targetTypeId The string id of the killed entity type
+     * @param targetId     The UUID of the killed entity
+     * @param weaponId     The string id of the weapon used
+     * @return Whether the event was stored, false if it was dropped on overflow
+     */
+    public boolean captureKill(
+            int playerIndex,
+            long position,
+            long timestamp,
+            float sampleRate,
+            int targetTypeId,
+            String targetId,
+            int weaponId
+    ) {
+        final long row = claim(TYPE_KILL);
+        if (row < 0) return false;
+
+        final int index = (int) (row & mask);
+        types[index] = TYPE_KILL;
+        players[index] = playerIndex;
+        positions[index] = position;
+        timestamps[index] = timestamp;
+        sampleRates[index] = sampleRate;
+        intValues[index] = targetTypeId;
+        secondIntValues[index] = weaponId;
+        refValues[index] = targetId;
+
+        tail.lazySet(row + 1);
+        return true;
+    }
+
+    /**
+     * Materializes every buffered event into the given list, oldest first.
+     *
+     * @param target    The list receiving the events
+     * @param playerIds Resolves a player index to the player's UUID
+     * @return The number of events moved
+     */
+    public int drainTo(List<AbstractGameEvent> target, IntFunction<String> playerIds) {
+        int drained = 0;
+        long row = head.get();
+
+        while (row < tail.get()) {
+            final AbstractGameEvent event = materialize((int) (row & mask), playerIds);
+
+            // Only keep the row if the producer did not evict and overwrite it while it was read
+            if (head.compareAndSet(row, row + 1)) {
+                target.add(event);
+                drained++;
+            }
+
+            row = head.get();
+        }
+
+        return drained;
+    }
+
+    /**
+     * Checks whether a buffered event refers to a player, whose index must then not be given to
+     * another player before the event is drained. Scans the buffered rows, so it is meant for
+     * rare calls such as evictions.
+     *
+     * @param playerIndex The dense index of the player
+     * @return Whether a row not yet drained holds the player's index
+     */
+    public boolean holdsPlayer(int playerIndex) {
+        for (long row = head.get(); row < tail.get(); row++) {
+            if (players[(int) (row & mask)] == playerIndex) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return The number of events currently buffered
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    /**
+     * Retrieves a snapshot of the number of events dropped so far, per event class.
+     *
+     * @return A map of event names to the number of dropped events
+     */
+    public Map<String, Long> getDroppedCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        for (int type = 0; type < TYPE_NAMES.length; type++) {
+            final long count = dropped.get(type);
+            if (count > 0) counts.put(TYPE_NAMES[type], count);
+        }
+
+        return counts;
+    }
+
+    /**
+     * @return The total number of events dropped so far
+     */
+    public long getDroppedTotal() {
+        long total = 0;
+        for (int type = 0; type < TYPE_NAMES.length; type++) {
+            total += dropped.get(type);
+        }
+
+        return total;
+    }
+
+    /**
+     * Finds the row to write the next event to, making room according to the overflow policy.
+     *
+     * @return The row position, or -1 if the event has to be dropped
+     */
+    private long claim(byte type) {
+        final long row = tail.get();
+
+        while (row - head.get() >= capacity) {
+            if (!evictOldest(type)) {
+                dropped.incrementAndGet(type);
+                return -1;
+            }
+        }
+
+        return row;
+    }
+
+    private boolean evictOldest(byte incomingType) {
+        if (overflowPolicy == OverflowPolicy.DROP_NEWEST) return false;
+
+        final long oldest = head.get();
+        final byte victimType = types[(int) (oldest & mask)];
+
+        if (overflowPolicy == OverflowPolicy.DROP_LOWEST_PRIORITY
+                && TYPE_PRIORITIES[victimType].compareTo(TYPE_PRIORITIES[incomingType]) > 0) {
+            return false;
+        }
+
+        // A failed CAS means the consumer took the row, which frees room as well
+        if (head.compareAndSet(oldest, oldest + 1)) {
+            dropped.incrementAndGet(victimType);
+        }
+
+        return true;
+    }
+
+    private AbstractGameEvent materialize(int index, IntFunction<String> playerIds) {
+        final AbstractGameEvent event = createEvent(index, playerIds);
+        event.setSampleRate(sampleRates[index]);
+
+        return event;
+    }
+
+    private AbstractGameEvent createEvent(int index, IntFunction<String> playerIds) {
+        final String playerId = playerIds.apply(players[index]);
+        final BlockPos pos = BlockPos.of(positions[index]);
+
+        if (types[index] == TYPE_KILL) {
+            return new PlayerKilledEntity(
+                    playerId,
+                    pos,
+                    strings.get(intValues[index]),
+                    refValues[index],
+                    strings.get(secondIntValues[index]),
+                    timestamps[index]
+            );
+        }
+
+        return new PlayerDamaged(
+                playerId,
+                pos,
+                floatValues[index],
+                strings.get(intValues[index]),
+                timestamps[index]
+        );
+    }
+}
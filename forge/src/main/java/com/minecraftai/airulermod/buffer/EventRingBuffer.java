@@ -0,0 +1,338 @@
+package com.minecraftai.airulermod.buffer;
+
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.events.EventPriority;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, preallocated buffer of game events shared between the server thread (producer)
+ * and the AI communication thread (consumer).
+ * <p>
+ * Events are kept in one lock-free ring per {@link EventPriority}; all rings share a single
+ * capacity so the total number of buffered events never exceeds it. Offering an event never
+ * allocates: the ring slots are allocated once, up front. When the buffer is full, the
+ * configured {@link OverflowPolicy} decides which event is sacrificed, and every dropped event
+ * is counted per event class.
+ * <p>
+ * The rings follow the bounded MPMC array queue design (a sequence number per slot), which lets
+ * producers evict the oldest element of a ring on overflow while the regular consumer drains it.
+ */
+public class EventRingBuffer {
+    // How many times a producer tries to evict and re-reserve before giving up on its event
+    private static final int MAX_EVICTION_ATTEMPTS = 4;
+
+    private static final EventPriority[] PRIORITIES = EventPriority.values();
+
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final Lane[] lanes;
+    private final AtomicInteger size = new AtomicInteger();
+    private final Map<String, LongAdder> droppedEvents = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new buffer.
+     *
+     * @param capacity       The maximum number of events held across all priorities
+     * @param overflowPolicy The strategy applied when an event is offered to a full buffer
+     */
+    public EventRingBuffer(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Event buffer capacity must be positive: " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.lanes = new Lane[PRIORITIES.length];
+
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(capacity);
+        }
+    }
+
+    /**
+     * Adds an event to the buffer, applying the overflow policy if the buffer is full.
+     *
+     * @param event The event to buffer
+     * @return true if the event was buffered, false if it was dropped
+     */
+    public boolean offer(AbstractGameEvent event) {
+        for (int attempt = 0; attempt < MAX_EVICTION_ATTEMPTS; attempt++) {
+            if (reserve()) {
+                lanes[event.getPriority().ordinal()].put(event);
+                return true;
+            }
+
+            if (!evictFor(event)) {
+                break;
+            }
+        }
+
+        recordDrop(event);
+        return false;
+    }
+
+    /**
+     * Moves every buffered event into the given list, oldest first.
+     *
+     * @param target The list receiving the events
+     * @return The number of events moved
+     */
+    public int drainTo(List<AbstractGameEvent> target) {
+        return drainTo(target, PRIORITIES[0]);
+    }
+
+    /**
+     * Moves every buffered event of at least the given priority into the given list, oldest first.
+     * Events of a lower priority stay in the buffer.
+     *
+     * @param target      The list receiving the events
+     * @param minPriority The lowest priority to drain
+     * @return The number of events moved
+     */
+    public int drainTo(List<AbstractGameEvent> target, EventPriority minPriority) {
+        final int start = target.size();
+        int drainedLanes = 0;
+
+        for (int i = lanes.length - 1; i >= minPriority.ordinal(); i--) {
+            int drained = 0;
+            AbstractGameEvent event;
+
+            while ((event = lanes[i].poll()) != null) {
+                target.add(event);
+                drained++;
+            }
+
+            if (drained > 0) {
+                size.addAndGet(-drained);
+                drainedLanes++;
+            }
+        }
+
+        // Each lane is already ordered, merge them back into a single timeline
+        if (drainedLanes > 1) {
+            target.subList(start, target.size()).sort(Comparator.comparingLong(AbstractGameEvent::getTimestamp));
+        }
+
+        return target.size() - start;
+    }
+
+    /**
+     * @return The number of events currently buffered
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Retrieves a snapshot of the number of events dropped so far, per event class.
+     *
+     * @return A map of event names to the number of dropped events
+     */
+    public Map<String, Long> getDroppedCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        droppedEvents.forEach((eventName, counter) -> counts.put(eventName, counter.sum()));
+
+        return counts;
+    }
+
+    /**
+     * @return The total number of events dropped so far
+     */
+    public long getDroppedTotal() {
+        long total = 0;
+        for (LongAdder counter : droppedEvents.values()) {
+            total += counter.sum();
+        }
+
+        return total;
+    }
+
+    /**
+     * Claims a place for one event in the shared capacity.
+     */
+    private boolean reserve() {
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+
+        return true;
+    }
+
+    /**
+     * Evicts one buffered event according to the overflow policy.
+     *
+     * @param incoming The event that could not be buffered
+     * @return true if an event was evicted and the offer should be retried
+     */
+    private boolean evictFor(AbstractGameEvent incoming) {
+        final Lane victimLane = switch (overflowPolicy) {
+            case DROP_NEWEST -> null;
+            case DROP_OLDEST -> findOldestLane();
+            case DROP_LOWEST_PRIORITY -> findLowestLane(incoming.getPriority());
+        };
+
+        if (victimLane == null) {
+            return false;
+        }
+
+        final AbstractGameEvent victim = victimLane.poll();
+        if (victim == null) {
+            // Drained concurrently, there is room again
+            return true;
+        }
+
+        size.decrementAndGet();
+        recordDrop(victim);
+
+        return true;
+    }
+
+    private Lane findOldestLane() {
+        Lane oldest = null;
+        long oldestTimestamp = Long.MAX_VALUE;
+
+        for (int i = 0; i < lanes.length; i++) {
+            long timestamp = lanes[i].peekTimestamp();
+            if (timestamp < oldestTimestamp) {
+                oldestTimestamp = timestamp;
+                oldest = lanes[i];
+            }
+        }
+
+        return oldest;
+    }
+
+    private Lane findLowestLane(EventPriority maxPriority) {
+        for (int i = 0; i <= maxPriority.ordinal(); i++) {
+            if (!lanes[i].isEmpty()) {
+                return lanes[i];
+            }
+        }
+
+        return null;
+    }
+
+    private void recordDrop(AbstractGameEvent event) {
+        droppedEvents.computeIfAbsent(event.getEventName(), k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Bounded lock-free ring of events. Each slot carries a sequence number telling whether it is
+     * ready to be written (sequence == position) or read (sequence == position + 1).
+     */
+    private static final class Lane {
+        private final AbstractGameEvent[] slots;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+
+        Lane(int capacity) {
+            final int length = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+
+            this.slots = new AbstractGameEvent[length];
+            this.sequences = new AtomicLongArray(length);
+            this.mask = length - 1;
+
+            for (int i = 0; i < length; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        /**
+         * Writes an event. The caller has reserved room in the shared capacity, which never
+         * exceeds the ring length, so a free slot is guaranteed; spinning only covers a consumer
+         * that has claimed the slot but not yet released it.
+         */
+        void put(AbstractGameEvent event) {
+            while (!offer(event)) {
+                Thread.onSpinWait();
+            }
+        }
+
+        boolean offer(AbstractGameEvent event) {
+            long position = tail.get();
+
+            while (true) {
+                final int index = (int) (position & mask);
+                final long difference = sequences.get(index) - position;
+
+                if (difference == 0) {
+                    if (tail.compareAndSet(position, position + 1)) {
+                        slots[index] = event;
+                        sequences.set(index, position + 1);
+                        return true;
+                    }
+                    position = tail.get();
+                } else if (difference < 0) {
+                    return false;
+                } else {
+                    position = tail.get();
+                }
+            }
+        }
+
+        AbstractGameEvent poll() {
+            long position = head.get();
+
+            while (true) {
+                final int index = (int) (position & mask);
+                final long difference = sequences.get(index) - (position + 1);
+
+                if (difference == 0) {
+                    if (head.compareAndSet(position, position + 1)) {
+                        final AbstractGameEvent event = slots[index];
+                        slots[index] = null;
+                        sequences.set(index, position + mask + 1);
+                        return event;
+                    }
+                    position = head.get();
+                } else if (difference < 0) {
+                    return null;
+                } else {
+                    position = head.get();
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return head.get() >= tail.get();
+        }
+
+        /**
+         * @return The timestamp of the oldest event in the ring, or {@link Long#MAX_VALUE} if empty
+         */
+        long peekTimestamp() {
+            final long position = head.get();
+            final int index = (int) (position & mask);
+
+            if (sequences.get(index) != position + 1) {
+                return Long.MAX_VALUE;
+            }
+
+            final AbstractGameEvent event = slots[index];
+            return event != null ? event.getTimestamp() : Long.MAX_VALUE;
+        }
+    }
+}
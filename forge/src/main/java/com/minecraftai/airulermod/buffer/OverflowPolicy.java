@@ -0,0 +1,22 @@
+package com.minecraftai.airulermod.buffer;
+
+/**
+ * Strategy applied by {@link EventRingBuffer} when an event is offered to a full buffer.
+ */
+public enum OverflowPolicy {
+    /**
+     * Evicts the oldest buffered event to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Rejects the new event and keeps the buffered ones untouched.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Evicts the oldest buffered event of the lowest priority that does not outrank the new one.
+     * If every buffered event outranks the new one, the new event is rejected instead.
+     */
+    DROP_LOWEST_PRIORITY
+}
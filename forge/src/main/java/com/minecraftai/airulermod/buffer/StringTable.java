@@ -0,0 +1,77 @@
+package com.minecraftai.airulermod.buffer;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interned table of strings referenced by integer ids, so that event columns can store
+ * damage sources, weapon names and entity types as plain {@code int}s.
+ * <p>
+ * Values are keyed either by the string itself or by an arbitrary key object (e.g. an item or
+ * an entity type), which lets callers skip building the string altogether once the key is known.
+ * Lookups never allocate; only registering a new value does. Registration is meant to happen on
+ * the server thread, while ids can be resolved from any thread.
+ */
+public class StringTable {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Map<Object, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Retrieves the id registered for the given key.
+     *
+     * @param key The string or key object to look up
+     * @return The id of the value, or -1 if the key is unknown
+     */
+    public int idOf(Object key) {
+        final Integer id = ids.get(key);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Retrieves the id of a string, registering it on first use.
+     *
+     * @param value The string to intern
+     * @return The id of the string
+     */
+    public int intern(String value) {
+        final int id = idOf(value);
+        return id >= 0 ? id : register(value, value);
+    }
+
+    /**
+     * Registers a value under the given key unless the key is already known.
+     *
+     * @param key   The string or key object identifying the value
+     * @param value The string to store
+     * @return The id of the value registered for the key
+     */
+    public synchronized int register(Object key, String value) {
+        final Integer existing = ids.get(key);
+        if (existing != null) return existing;
+
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+
+        current[size] = value;
+        values = current;
+        ids.put(key, size);
+
+        return size++;
+    }
+
+    /**
+     * Resolves an id back to its string.
+     *
+     * @param id The id returned by {@link #intern} or {@link #register}
+     * @return The interned string
+     */
+    public String get(int id) {
+        return values[id];
+    }
+}
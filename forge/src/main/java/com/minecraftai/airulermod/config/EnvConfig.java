@@ -37,5 +37,62 @@ public class EnvConfig {
     public String getOrDefault(String key, String defaultValue) {
         return dotenv.get(key, defaultValue);
     }
+
+    /**
+     * Fetch an integer environment variable by key, with a default fallback.
+     *
+     * @param key          The key to fetch from .env file.
+     * @param defaultValue The default value to use if key is not found or empty.
+     * @return The value of the variable, or default if not found.
+     * @throws IllegalArgumentException If the value is not a valid integer.
+     */
+    public int getInt(String key, int defaultValue) {
+        final String value = dotenv.get(key);
+        if (value == null || value.isBlank()) return defaultValue;
+
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid integer value for " + key + ": " + value, e);
+        }
+    }
+
+    /**
+     * Fetch a decimal environment variable by key, with a default fallback.
+     *
+     * @param key          The key to fetch from .env file.
+     * @param defaultValue The default value to use if key is not found or empty.
+     * @return The value of the variable, or default if not found.
+     * @throws IllegalArgumentException If the value is not a valid number.
+     */
+    public double getDouble(String key, double defaultValue) {
+        final String value = dotenv.get(key);
+        if (value == null || value.isBlank()) return defaultValue;
+
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number value for " + key + ": " + value, e);
+        }
+    }
+
+    /**
+     * Fetch an enum environment variable by key, with a default fallback.
+     *
+     * @param key          The key to fetch from .env file.
+     * @param defaultValue The default value to use if key is not found or empty.
+     * @return The constant named by the variable, or default if not found.
+     * @throws IllegalArgumentException If the value does not name a constant of the enum.
+     */
+    public <E extends Enum<E>> E getEnum(String key, E defaultValue) {
+        final String value = dotenv.get(key);
+        if (value == null || value.isBlank()) return defaultValue;
+
+        try {
+            return Enum.valueOf(defaultValue.getDeclaringClass(), value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": " + value, e);
+        }
+    }
 }
 
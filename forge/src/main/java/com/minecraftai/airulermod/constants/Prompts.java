@@ -8,11 +8,21 @@ public class Prompts {
 
         Input Format:
         {
+            "ids": {...},
             "events": [...],
             "stats": [...],
             "playerPositions": {...}
         }
 
+        Input notes:
+        - Players are referred to by short aliases (p1, p2, ...). A new alias is announced once in ids with its full id and player name; keep using the alias, also as playerId in actions
+        - PlayerDamageSummary aggregates repeated damage of one player from one source: n hits, dmg total, from ts to lastTs
+        - sr, when present, is the fraction of events of that kind that was kept by sampling; each such event stands for 1/sr events
+        - stats.anomalies lists per player only the activity flagged as unusual by the server: mining or building with value in blocks per minute and z its z-score against the player's and the server's usual rates, or ores with value the share of ores among the blocks mined; mining and ores anomalies carry in blocks the block types the player mined the most with their counts; stats.summary holds server-wide totals
+        - stats.hotspots lists per dimension the chunks (block x/z of the center) with the most blocks recently mined and placed
+        - stats.rateLimited counts per kind of event (chat, damage, death, kill) the events not sent since the server started because players exceeded the rate limits
+        - delta, when present, lists the sections (playerPositions, stats) that only hold what changed since they were last sent: players who joined or moved, stats that changed, and null for what is gone; anything not mentioned is unchanged. Sections not listed are complete
+
         Output Format:
         {
             "actions": [...]
@@ -46,10 +56,27 @@ public class Prompts {
         - Act as both game enhancer and community moderator
     """;
 
+    private static final String REQUEST_SUMMARY = """
+        The conversation is about to continue in a new one that will not see this one.
+        Summarize in at most 150 words what you need to remember to keep ruling consistently:
+        warnings given, players muted or kicked and why, ongoing situations and promises made.
+        Refer to players by name, aliases will not carry over. Answer with the summary only, without actions.
+    """;
+
+    private static final String CARRIED_OVER_SUMMARY = "Summary of the previous conversation: %s";
+
     public static String getInstructions() {
         return (DESCRIBE_AI_RULER_ROLE.formatted(ActionTypesGenerator.generateActionsDescription()))
                 .replaceAll("\\r\\n|\\r|\\n", " ")  // Replace all newlines with space
                 .replaceAll("\\s+", " ")
                 .trim();
     }
+
+    public static String getSummaryRequest() {
+        return REQUEST_SUMMARY.replaceAll("\\s+", " ").trim();
+    }
+
+    public static String withSummary(String instructions, String summary) {
+        return instructions + " " + CARRIED_OVER_SUMMARY.formatted(summary.trim());
+    }
 }
@@ -1,7 +1,9 @@
 package com.minecraftai.airulermod.di;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 import com.minecraftai.airulermod.integration.*;
+import com.minecraftai.airulermod.serialization.PositionTypeAdapterFactory;
 import dagger.Binds;
 import dagger.Module;
 import dagger.Provides;
@@ -9,12 +11,33 @@ import dagger.multibindings.IntoMap;
 import dagger.multibindings.StringKey;
 import jakarta.inject.Singleton;
 
+import java.time.Clock;
+
 @Module
 public class AppModule {
+    /**
+     * Provides the Gson instance shared by the services. Positions, the most frequent objects of
+     * the AI payload, are written without reflection.
+     */
     @Provides
     @Singleton
     Gson provideGson() {
-        return new Gson();
+        return new GsonBuilder()
+                .registerTypeAdapterFactory(new PositionTypeAdapterFactory())
+                .create();
+    }
+
+    /**
+     * Provides the wall clock. Kept apart from the other bindings so that an offline replay
+     * can run the services on a virtual clock instead.
+     */
+    @Module
+    public static class SystemTime {
+        @Provides
+        @Singleton
+        Clock provideClock() {
+            return Clock.systemUTC();
+        }
     }
 
     @Module
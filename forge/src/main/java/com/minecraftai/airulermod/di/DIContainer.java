@@ -7,7 +7,7 @@ import dagger.Component;
 import jakarta.inject.Singleton;
 
 @Singleton
-@Component(modules = {AppModule.class, AppModule.Bind.class})
+@Component(modules = {AppModule.class, AppModule.Bind.class, AppModule.SystemTime.class})
 public interface DIContainer {
     BlockEventsHandler getBlockEventsHandler();
     ServerEventsHandler getServerEventsHandler();
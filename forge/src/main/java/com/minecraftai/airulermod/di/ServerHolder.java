@@ -28,6 +28,13 @@ public class ServerHolder {
         return server;
     }
 
+    /**
+     * @return Whether a server instance is set, which is not the case e.g. during an offline replay
+     */
+    public boolean isAvailable() {
+        return server != null;
+    }
+
     public void setServer(MinecraftServer server) {
         this.server = server;
     }
@@ -38,9 +38,32 @@ public abstract class AbstractGameEvent {
     @SerializedName("event")
     private final String eventName;
 
+    /**
+     * The probability with which events of this kind were kept by sampling when this event was
+     * recorded. Each recorded event then stands for 1/sampleRate actual events, which lets the AI
+     * scale counts. Null, and omitted from the payload, when no sampling took place.
+     */
+    @SerializedName("sr")
+    @Nullable
+    private Float sampleRate;
+
+    /**
+     * Whether a rule of the {@code RuleEngine} fully handled the event, so that it is left out of
+     * the batches sent to the AI. Never serialized.
+     */
+    private transient boolean handledByRule;
+
     public AbstractGameEvent(String playerId, @Nullable Vec3i pos) {
+        this(playerId, pos, System.currentTimeMillis());
+    }
+
+    /**
+     * Constructor for events whose moment of occurrence is already known,
+     * e.g. events derived from or aggregating earlier events.
+     */
+    protected AbstractGameEvent(String playerId, @Nullable Vec3i pos, long timestamp) {
         this.playerId = playerId;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = timestamp;
         this.pos = pos;
         eventName = this.getClass().getSimpleName();
     }
@@ -68,4 +91,39 @@ public abstract class AbstractGameEvent {
     public String getEventName() {
         return eventName;
     }
+
+    @Nullable
+    public Float getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Records the sample rate the event was admitted with.
+     *
+     * @param sampleRate The probability the event was kept with; 1 means no sampling
+     */
+    public void setSampleRate(float sampleRate) {
+        this.sampleRate = sampleRate < 1 ? sampleRate : null;
+    }
+
+    public boolean isHandledByRule() {
+        return handledByRule;
+    }
+
+    /**
+     * Marks the event as fully handled by a rule, so that the AI does not need to see it.
+     */
+    public void markHandledByRule() {
+        this.handledByRule = true;
+    }
+
+    /**
+     * Retrieves the priority of the event, used to decide which events are dropped first
+     * when the event buffer overflows. Subclasses override this to rank themselves.
+     *
+     * @return the priority of the event, {@link EventPriority#NORMAL} by default
+     */
+    public EventPriority getPriority() {
+        return EventPriority.NORMAL;
+    }
 }
@@ -6,11 +6,20 @@ public class ChatMessagePosted extends AbstractGameEvent {
     private final String message;
 
     public ChatMessagePosted(String playerId, String message, Vec3i pos) {
-        super(playerId, pos);
+        this(playerId, message, pos, System.currentTimeMillis());
+    }
+
+    public ChatMessagePosted(String playerId, String message, Vec3i pos, long timestamp) {
+        super(playerId, pos, timestamp);
         this.message = message;
     }
 
     public String getMessage() {
         return message;
     }
+
+    @Override
+    public EventPriority getPriority() {
+        return EventPriority.HIGH;
+    }
 }
@@ -0,0 +1,11 @@
+package com.minecraftai.airulermod.events;
+
+/**
+ * Relative importance of a game event. When the event buffer is full, events of a lower
+ * priority are sacrificed before events of a higher one.
+ */
+public enum EventPriority {
+    LOW,
+    NORMAL,
+    HIGH
+}
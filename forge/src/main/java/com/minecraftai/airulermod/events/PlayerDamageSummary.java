@@ -0,0 +1,61 @@
+package com.minecraftai.airulermod.events;
+
+import com.google.gson.annotations.SerializedName;
+import net.minecraft.core.Vec3i;
+
+/**
+ * Aggregate of repeated {@link PlayerDamaged} events of one player from the same damage source
+ * within a short time window, e.g. a player standing in lava or fire.
+ * The inherited timestamp is the moment of the first hit.
+ */
+public class PlayerDamageSummary extends AbstractGameEvent {
+
+    @SerializedName("n")
+    private final int hitCount;
+
+    @SerializedName("dmg")
+    private final float totalDamage;
+
+    @SerializedName("src")
+    private final String damageSource;
+
+    @SerializedName("lastTs")
+    private final long lastTimestamp;
+
+    public PlayerDamageSummary(
+            String playerId,
+            Vec3i pos,
+            String damageSource,
+            int hitCount,
+            float totalDamage,
+            long firstTimestamp,
+            long lastTimestamp
+    ) {
+        super(playerId, pos, firstTimestamp);
+        this.damageSource = damageSource;
+        this.hitCount = hitCount;
+        this.totalDamage = totalDamage;
+        this.lastTimestamp = lastTimestamp;
+    }
+
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    public float getTotalDamage() {
+        return totalDamage;
+    }
+
+    public String getDamageSource() {
+        return damageSource;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    @Override
+    public EventPriority getPriority() {
+        return EventPriority.LOW;
+    }
+}
@@ -15,7 +15,11 @@ public class PlayerDamaged extends AbstractGameEvent {
     private final String damageSource;
     
     public PlayerDamaged(String playerId, Vec3i pos, float damageAmount, String damageSource) {
-        super(playerId, pos);
+        this(playerId, pos, damageAmount, damageSource, System.currentTimeMillis());
+    }
+
+    public PlayerDamaged(String playerId, Vec3i pos, float damageAmount, String damageSource, long timestamp) {
+        super(playerId, pos, timestamp);
         this.damageAmount = damageAmount;
         this.damageSource = damageSource;
     }
@@ -27,4 +31,9 @@ public class PlayerDamaged extends AbstractGameEvent {
     public String getDamageSource() {
         return damageSource;
     }
+
+    @Override
+    public EventPriority getPriority() {
+        return EventPriority.LOW;
+    }
 }
\ No newline at end of file
@@ -12,11 +12,20 @@ public class PlayerDied extends AbstractGameEvent {
     private final String deathCause;
     
     public PlayerDied(String playerId, Vec3i pos, String deathCause) {
-        super(playerId, pos);
+        this(playerId, pos, deathCause, System.currentTimeMillis());
+    }
+
+    public PlayerDied(String playerId, Vec3i pos, String deathCause, long timestamp) {
+        super(playerId, pos, timestamp);
         this.deathCause = deathCause;
     }
     
     public String getDeathCause() {
         return deathCause;
     }
+
+    @Override
+    public EventPriority getPriority() {
+        return EventPriority.HIGH;
+    }
 }
\ No newline at end of file
@@ -18,7 +18,18 @@ public class PlayerKilledEntity extends AbstractGameEvent {
     private final String weaponUsed;
     
     public PlayerKilledEntity(String playerId, Vec3i pos, String targetEntityType, String targetEntityId, String weaponUsed) {
-        super(playerId, pos);
+        this(playerId, pos, targetEntityType, targetEntityId, weaponUsed, System.currentTimeMillis());
+    }
+
+    public PlayerKilledEntity(
+            String playerId,
+            Vec3i pos,
+            String targetEntityType,
+            String targetEntityId,
+            String weaponUsed,
+            long timestamp
+    ) {
+        super(playerId, pos, timestamp);
         this.targetEntityType = targetEntityType;
         this.targetEntityId = targetEntityId;
         this.weaponUsed = weaponUsed;
@@ -1,7 +1,13 @@
 package com.minecraftai.airulermod.handler;
 
+import com.minecraftai.airulermod.rules.RuleEngine;
+import com.minecraftai.airulermod.service.PlayerRegistry;
 import com.minecraftai.airulermod.service.StatsTracker;
+import com.minecraftai.airulermod.stats.ChunkHeatmap;
 import jakarta.inject.Inject;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
 import net.minecraftforge.event.level.BlockEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 
@@ -11,10 +17,14 @@ public class BlockEventsHandler {
     private static final Logger LOGGER = Logger.getLogger(BlockEventsHandler.class.getName());
     
     private final StatsTracker statsService;
+    private final PlayerRegistry playerRegistry;
+    private final RuleEngine ruleEngine;
 
     @Inject
-    public BlockEventsHandler(StatsTracker statsService) {
+    public BlockEventsHandler(StatsTracker statsService, PlayerRegistry playerRegistry, RuleEngine ruleEngine) {
         this.statsService = statsService;
+        this.playerRegistry = playerRegistry;
+        this.ruleEngine = ruleEngine;
     }
 
     @SubscribeEvent
@@ -22,11 +32,19 @@ public class BlockEventsHandler {
         // Ignore client events
         if (event.getLevel().isClientSide()) return;
 
-        if (event.getEntity() != null) {
+        if (event.getEntity() instanceof Player player && !PlayerEventsHandler.isFake(player)) {
             // Track block placement for building stats
-            String playerId = event.getEntity().getStringUUID();
             long timestamp = System.currentTimeMillis();
-            statsService.trackBuildingEvent(playerId, timestamp);
+            final int playerIndex = indexOf(player);
+            if (event.getLevel() instanceof Level level) {
+                statsService.trackBuildingEvent(playerIndex, level.dimension(), event.getPos(), timestamp);
+            } else {
+                statsService.trackBuildingEvent(playerIndex, timestamp);
+            }
+            ruleEngine.onActivity(ChunkHeatmap.Activity.PLACED, playerIndex, event.getPos(), timestamp);
+        } else if (event.getEntity() != null) {
+            // Blocks placed by mobs, e.g. endermen, or by machines are not player activity
+            LOGGER.fine(String.format("Added BlockEvent {%s} by {%s}", event.getPos().toString(), event.getEntity().getStringUUID()));
         } else {
             // Handle cases where the block was not placed by a known entity
             LOGGER.info(String.format("Added BlockEvent {%s} by {unknown entity}", event.getPos().toString()));
@@ -36,11 +54,21 @@ public class BlockEventsHandler {
     @SubscribeEvent
     public void onBlockDestroyed(BlockEvent.BreakEvent event) {
         // Ignore client events
-        if (event.getLevel().isClientSide()) return;
+        if (event.getLevel().isClientSide() || PlayerEventsHandler.isFake(event.getPlayer())) return;
 
         // Track mining stats directly without creating an event object
-        String playerId = event.getPlayer().getStringUUID();
         long timestamp = System.currentTimeMillis();
-        statsService.trackMiningEvent(playerId, timestamp);
+        final int playerIndex = indexOf(event.getPlayer());
+        if (event.getLevel() instanceof Level level) {
+            final int blockTypeId = BuiltInRegistries.BLOCK.getId(event.getState().getBlock());
+            statsService.trackMiningEvent(playerIndex, level.dimension(), event.getPos(), blockTypeId, timestamp);
+        } else {
+            statsService.trackMiningEvent(playerIndex, timestamp);
+        }
+        ruleEngine.onActivity(ChunkHeatmap.Activity.MINED, playerIndex, event.getPos(), timestamp);
+    }
+
+    private int indexOf(Player player) {
+        return playerRegistry.indexOf(player.getStringUUID(), player.getGameProfile().getName());
     }
 }
@@ -1,27 +1,75 @@
 package com.minecraftai.airulermod.handler;
 
-import com.minecraftai.airulermod.events.PlayerDamaged;
+import com.minecraftai.airulermod.buffer.StringTable;
 import com.minecraftai.airulermod.events.PlayerDied;
-import com.minecraftai.airulermod.events.PlayerKilledEntity;
+import com.minecraftai.airulermod.service.EventAdmission;
 import com.minecraftai.airulermod.service.EventTracker;
+import com.minecraftai.airulermod.service.PlayerRegistry;
+import com.minecraftai.airulermod.service.StatsTracker;
 import jakarta.inject.Inject;
+import net.minecraft.core.component.DataComponents;
 import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.EntityType;
 import net.minecraft.world.entity.LivingEntity;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
+import net.minecraftforge.common.util.FakePlayer;
 import net.minecraftforge.event.entity.living.LivingDamageEvent;
 import net.minecraftforge.event.entity.living.LivingDeathEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
 
 /**
- * Handler for player-related events such as taking damage, death, and kills
+ * Handler for player-related events such as taking damage, death, and kills.
+ * Damage and kills are frequent in combat, so they are captured into columnar storage without
+ * allocating: players are referred to by registry index, positions are packed into a long and
+ * strings are interned. Every event first passes {@link EventAdmission}, so floods of events
+ * from a single player are rejected before anything is captured.
  */
 public class PlayerEventsHandler {
+    private static final String BARE_HAND = "hand";
+
     private final EventTracker eventTracker;
+    private final PlayerRegistry playerRegistry;
+    private final EventAdmission eventAdmission;
+    private final StatsTracker statsTracker;
     
     @Inject
-    public PlayerEventsHandler(EventTracker eventTracker) {
+    public PlayerEventsHandler(
+            EventTracker eventTracker,
+            PlayerRegistry playerRegistry,
+            EventAdmission eventAdmission,
+            StatsTracker statsTracker
+    ) {
         this.eventTracker = eventTracker;
+        this.playerRegistry = playerRegistry;
+        this.eventAdmission = eventAdmission;
+        this.statsTracker = statsTracker;
+    }
+
+    /**
+     * Handles when a player joins the server
+     */
+    @SubscribeEvent
+    public void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        if (event.getEntity().level().isClientSide()) {
+            return;
+        }
+
+        statsTracker.onPlayerLogin(indexOf(event.getEntity()));
+    }
+
+    /**
+     * Handles when a player leaves the server
+     */
+    @SubscribeEvent
+    public void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        if (event.getEntity().level().isClientSide()) {
+            return;
+        }
+
+        statsTracker.onPlayerLogout(indexOf(event.getEntity()));
     }
     
     /**
@@ -30,19 +78,27 @@ public class PlayerEventsHandler {
     @SubscribeEvent
     public void onPlayerDamage(LivingDamageEvent event) {
         // Only track if the entity is a player and on the server side
-        if (event.getEntity().level().isClientSide() || !(event.getEntity() instanceof Player player)) {
+        if (event.getEntity().level().isClientSide() || !(event.getEntity() instanceof Player player) || isFake(player)) {
             return;
         }
 
-        String damageSourceName = event.getSource().getMsgId();
+        final int playerIndex = indexOf(player);
+        final float sampleRate = eventAdmission.admit(EventAdmission.Kind.DAMAGE, playerIndex, event.getAmount());
+        if (sampleRate == 0) {
+            return;
+        }
+
+        // Damage source names are constants of the damage type, interning them is a lookup
+        final int damageSourceId = eventTracker.getStrings().intern(event.getSource().getMsgId());
         
         // Track the damage event
-        eventTracker.track(new PlayerDamaged(
-            player.getStringUUID(),
-            player.blockPosition(),
+        eventTracker.trackDamage(
+            playerIndex,
+            player.blockPosition().asLong(),
+            sampleRate,
             event.getAmount(),
-            damageSourceName
-        ));
+            damageSourceId
+        );
     }
     
     /**
@@ -51,18 +107,25 @@ public class PlayerEventsHandler {
     @SubscribeEvent
     public void onPlayerDeath(LivingDeathEvent event) {
         // Only track if the entity is a player and on the server side
-        if (event.getEntity().level().isClientSide() || !(event.getEntity() instanceof Player player)) {
+        if (event.getEntity().level().isClientSide() || !(event.getEntity() instanceof Player player) || isFake(player)) {
+            return;
+        }
+
+        final float sampleRate = eventAdmission.admit(EventAdmission.Kind.DEATH, indexOf(player), 0);
+        if (sampleRate == 0) {
             return;
         }
 
         String deathCause = event.getSource().getMsgId();
         
         // Track the death event
-        eventTracker.track(new PlayerDied(
+        PlayerDied playerDied = new PlayerDied(
             player.getStringUUID(),
             player.blockPosition(),
             deathCause
-        ));
+        );
+        playerDied.setSampleRate(sampleRate);
+        eventTracker.track(playerDied);
     }
     
     /**
@@ -77,26 +140,68 @@ public class PlayerEventsHandler {
         
         // Check if the source is a player
         Entity killer = event.getSource().getEntity();
-        if (!(killer instanceof Player player)) {
+        if (!(killer instanceof Player player) || isFake(player)) {
             return;
         }
 
-        LivingEntity victim = event.getEntity();
-        
-        // Get the weapon used
-        String weaponUsed = "hand";
-        ItemStack itemInHand = player.getMainHandItem();
-        if (!itemInHand.isEmpty()) {
-            weaponUsed = itemInHand.getHoverName().getString();
+        final int playerIndex = indexOf(player);
+        final float sampleRate = eventAdmission.admit(EventAdmission.Kind.KILL, playerIndex, 0);
+        if (sampleRate == 0) {
+            return;
         }
+
+        LivingEntity victim = event.getEntity();
         
         // Track the kill event
-        eventTracker.track(new PlayerKilledEntity(
-            player.getStringUUID(),
-            player.blockPosition(),
-            victim.getType().toString(),
+        eventTracker.trackKill(
+            playerIndex,
+            player.blockPosition().asLong(),
+            sampleRate,
+            entityTypeId(victim.getType()),
             victim.getStringUUID(),
-            weaponUsed
-        ));
+            weaponId(player.getMainHandItem())
+        );
+    }
+
+    /**
+     * Fake players stand for machines of other mods. They never log in or out, so the index of
+     * one would never be released, and what they do is not player behavior for the AI to judge.
+     */
+    static boolean isFake(Player player) {
+        return player instanceof FakePlayer;
+    }
+
+    private int indexOf(Player player) {
+        return playerRegistry.indexOf(player.getStringUUID(), player.getGameProfile().getName());
+    }
+
+    /**
+     * Resolves the interned name of an entity type, building the name only on its first sighting.
+     */
+    private int entityTypeId(EntityType<?> entityType) {
+        final StringTable strings = eventTracker.getStrings();
+        final int id = strings.idOf(entityType);
+
+        return id >= 0 ? id : strings.register(entityType, entityType.toString());
+    }
+
+    /**
+     * Resolves the interned name of the weapon used. Default names are interned per item type,
+     * so the hover name is only built the first time an item type is seen, while renamed stacks
+     * are interned by their own name.
+     */
+    private int weaponId(ItemStack itemInHand) {
+        final StringTable strings = eventTracker.getStrings();
+        if (itemInHand.isEmpty()) {
+            return strings.intern(BARE_HAND);
+        }
+        if (itemInHand.has(DataComponents.CUSTOM_NAME)) {
+            return strings.intern(itemInHand.getHoverName().getString());
+        }
+
+        final Item weapon = itemInHand.getItem();
+        final int id = strings.idOf(weapon);
+
+        return id >= 0 ? id : strings.register(weapon, itemInHand.getHoverName().getString());
     }
 }
\ No newline at end of file
@@ -40,6 +40,8 @@ public class ServerEventsHandler {
     private final ServerHolder serverHolder;
     private final AIClient aiClient;
     private final AICommunicationScheduler aiCommunicationScheduler;
+    private final EventAdmission eventAdmission;
+    private final PlayerRegistry playerRegistry;
 
     @Inject
     public ServerEventsHandler(
@@ -48,7 +50,9 @@ public class ServerEventsHandler {
             EventTracker eventTracker,
             StatsTracker statsService,
             AIClientManager aiClientManager,
-            AICommunicationScheduler aiCommunicationScheduler
+            AICommunicationScheduler aiCommunicationScheduler,
+            EventAdmission eventAdmission,
+            PlayerRegistry playerRegistry
     ) {
         this.serverHolder = serverHolder;
         this.actionsProcessor = actionsProcessor;
@@ -56,17 +60,23 @@ public class ServerEventsHandler {
         this.statsService = statsService;
         this.aiClient = aiClientManager.getAiClient();
         this.aiCommunicationScheduler = aiCommunicationScheduler;
+        this.eventAdmission = eventAdmission;
+        this.playerRegistry = playerRegistry;
     }
 
     @SubscribeEvent
     public void onServerStarting(ServerStartingEvent event) {
-        // Start tracking players stats
-        statsService.initializeTimers();
         serverHolder.setServer(event.getServer());
 
-        // Initialize communication with AI
+        // Recover the events left unreleased by the last run
+        eventTracker.openJournal();
+
+        // Initialize communication with AI, without holding up the server start
         aiClient.setInstructions(Prompts.getInstructions());
-        aiClient.sendInstructions();
+        aiClient.sendInstructionsAsync().exceptionally(error -> {
+            LOGGER.warning("Failed to send instructions to AI: " + error);
+            return null;
+        });
 
         // Schedule communication with AI
         aiCommunicationScheduler.start();
@@ -75,7 +85,10 @@ public class ServerEventsHandler {
     @SubscribeEvent
     public void onServerStopped(ServerStoppedEvent event) {
         aiCommunicationScheduler.stop();
-        statsService.shutdown();
+
+        // Abandon the requests still waiting for the AI
+        aiClient.cancelPending();
+        eventTracker.closeJournal();
     }
 
     @SubscribeEvent
@@ -83,6 +96,12 @@ public class ServerEventsHandler {
         if (event.phase == TickEvent.Phase.END) {
             // Process all pending actions on the server thread
             actionsProcessor.processActions();
+
+            // Release the stats of players who left long enough ago
+            statsService.evictIdlePlayers(eventTracker::holdsPlayer);
+
+            // Flag unusual player activity as soon as it shows in the rates
+            statsService.detectAnomalies();
         }
     }
 
@@ -100,12 +119,20 @@ public class ServerEventsHandler {
             return;
         }
 
+        // Chat spam beyond the admission limits is not forwarded to the AI, the message itself still goes through
+        final int playerIndex = playerRegistry.indexOf(playerId, player.getGameProfile().getName());
+        final float sampleRate = eventAdmission.admit(EventAdmission.Kind.CHAT, playerIndex, 0);
+        if (sampleRate == 0) {
+            return;
+        }
+
         // Track the chat message event
-        eventTracker.track(new ChatMessagePosted(
-                        playerId,
-                        event.getRawText(),
-                        player.getOnPos()
-                )
+        ChatMessagePosted chatMessage = new ChatMessagePosted(
+                playerId,
+                event.getRawText(),
+                player.getOnPos()
         );
+        chatMessage.setSampleRate(sampleRate);
+        eventTracker.track(chatMessage);
     }
 }
@@ -1,5 +1,8 @@
 package com.minecraftai.airulermod.integration;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
 public interface AIClient {
     record ChatResponse(String message) {}
     record ChatMessage(String role, String input) {}
@@ -7,4 +10,73 @@ public interface AIClient {
     void setInstructions(String instructions);
     ChatResponse chat(String userMessage);
     void sendInstructions();
+
+    /**
+     * Sends a message without blocking the calling thread. Messages are still delivered to the model
+     * in the order of the calls, so the conversation stays consistent.
+     *
+     * @param userMessage The user input to send to the model
+     * @return A future completed with the response, or completed exceptionally if the request failed,
+     *         exceeded its deadline or was cancelled. Cancelling the future aborts the request.
+     */
+    CompletableFuture<ChatResponse> chatAsync(String userMessage);
+
+    /**
+     * Sends a message without blocking, handing over the text of the response as it is generated.
+     * Clients that cannot stream hand over the whole text at once when the response arrives.
+     *
+     * @param userMessage The user input to send to the model
+     * @param onText      Receives the successive parts of the response text, on a client thread
+     * @return A future completed with the whole response, as with {@link #chatAsync(String)}
+     */
+    default CompletableFuture<ChatResponse> chatAsync(String userMessage, Consumer<String> onText) {
+        final CompletableFuture<ChatResponse> response = chatAsync(userMessage);
+
+        final CompletableFuture<ChatResponse> delivered = response.thenApply(chatResponse -> {
+            onText.accept(chatResponse.message());
+            return chatResponse;
+        });
+        delivered.whenComplete((chatResponse, error) -> {
+            if (delivered.isCancelled()) response.cancel(true);
+        });
+
+        return delivered;
+    }
+
+    /**
+     * Sends a message outside the conversation, in a request of its own that starts with the
+     * instructions, e.g. for part of a batch sent alongside others. The model does not see the
+     * conversation, which does not see the message either, and such requests may run concurrently.
+     * Clients without standalone requests send the message within the conversation.
+     *
+     * @param userMessage The user input to send to the model
+     * @param onText      Receives the successive parts of the response text, on a client thread
+     * @return A future completed with the whole response, as with {@link #chatAsync(String)}
+     */
+    default CompletableFuture<ChatResponse> chatStandaloneAsync(String userMessage, Consumer<String> onText) {
+        return chatAsync(userMessage, onText);
+    }
+
+    /**
+     * Sends the instructions without blocking the calling thread.
+     *
+     * @return A future completed once the model acknowledged the instructions
+     */
+    CompletableFuture<Void> sendInstructionsAsync();
+
+    /**
+     * Aborts every request in flight, e.g. when the server stops. Their futures complete exceptionally.
+     */
+    void cancelPending();
+
+    /**
+     * Retrieves the number of the current conversation. The number changes whenever the model
+     * may have lost earlier context, e.g. when instructions are sent again, so that state shared
+     * with the model (such as identifier aliases) can be announced anew.
+     *
+     * @return The current conversation number
+     */
+    default long getConversationEpoch() {
+        return 0;
+    }
 }
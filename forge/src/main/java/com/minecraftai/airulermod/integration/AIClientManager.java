@@ -1,45 +1,116 @@
 package com.minecraftai.airulermod.integration;
 
 import com.minecraftai.airulermod.config.EnvConfig;
+import com.minecraftai.airulermod.service.TokenCounter;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Singleton
 public class AIClientManager {
+    private static final Logger logger = LoggerFactory.getLogger(AIClientManager.class);
+
+    private static final String MOCK = "MOCK";
+    private static final String DEFAULT_BACKEND_MODEL = "gpt-4o";
+
     private final Map<String, AIClient> aiClientMap;
     private final EnvConfig envConfig;
+    private final TokenCounter tokenCounter;
+
+    private AIClient aiClient;
 
     @Inject
-    public AIClientManager(Map<String, AIClient> aiClientMap, EnvConfig envConfig) {
+    public AIClientManager(Map<String, AIClient> aiClientMap, EnvConfig envConfig, TokenCounter tokenCounter) {
         this.aiClientMap = aiClientMap;
         this.envConfig = envConfig;
+        this.tokenCounter = tokenCounter;
     }
 
     /**
      * Retrieves an AIClient instance based on the configuration in the environment variables.
      * If no specific AI client type is defined, defaults to the "MOCK" client implementation.
+     * Besides the built-in types, a type may name a backend configured with
+     * {@code AI_BACKEND_<NAME>_URL}, {@code _MODEL} and {@code _API_KEY}, an endpoint implementing
+     * the OpenAI Responses API. Several comma-separated types route the requests over these
+     * clients with a {@link RoutingAIClient}, created once; the mock client, which makes up its
+     * actions, is never routed to along with real backends. Every client retries its failed
+     * requests with a {@link ResilientAIClient}.
      *
      * @return The AIClient instance determined by the environment configuration.
      *         Defaults to a mock implementation if no configuration is provided.
      */
-    public AIClient getAiClient() {
-        final var aiClientImplementation = envConfig.getOrDefault("AI_CLIENT", "MOCK");
-        return getAiClientInternal(aiClientImplementation);
+    public synchronized AIClient getAiClient() {
+        if (aiClient == null) {
+            aiClient = createAiClient();
+        }
+        return aiClient;
+    }
+
+    /**
+     * Retrieves the latency statistics of the backends the requests are routed over.
+     *
+     * @return The histograms by backend name, empty unless several backends are configured
+     */
+    public synchronized Map<String, LatencyHistogram> getBackendLatencies() {
+        return aiClient instanceof RoutingAIClient routingClient ? routingClient.getLatencyHistograms() : Map.of();
+    }
+
+    private AIClient createAiClient() {
+        final var aiClientImplementations = envConfig.getOrDefault("AI_CLIENT", MOCK).split(",");
+        if (aiClientImplementations.length == 1) {
+            return getResilientAiClient(aiClientImplementations[0].trim());
+        }
+
+        final Map<String, AIClient> backends = new LinkedHashMap<>();
+        for (String aiClientImplementation : aiClientImplementations) {
+            final String clientType = aiClientImplementation.trim();
+            if (clientType.equals(MOCK)) {
+                logger.warn("The {} client is not routed to along with real backends, skipping it", MOCK);
+                continue;
+            }
+            backends.put(clientType, getResilientAiClient(clientType));
+        }
+
+        if (backends.isEmpty()) return getResilientAiClient(MOCK);
+        if (backends.size() == 1) return backends.values().iterator().next();
+        return new RoutingAIClient(backends, envConfig);
+    }
+
+    /**
+     * Wraps a client so that its transient failures are retried, behind a circuit breaker of its own.
+     */
+    private AIClient getResilientAiClient(String clientType) {
+        return new ResilientAIClient(clientType, getAiClientInternal(clientType), envConfig);
     }
 
     /**
      * Retrieves an instance of an AIClient based on the provided client type.
      *
      * @param clientType The type of AI client to be retrieved (e.g., "OPENAI", "MOCK").
-     *                   This must correspond to a key present in the internal client map.
+     *                   This must correspond to a key present in the internal client map, or to
+     *                   a backend configured with {@code AI_BACKEND_<NAME>_URL}.
      * @return The corresponding AIClient instance for the specified client type.
      * @throws IllegalArgumentException If the provided client type is not recognized or not present in the map.
      */
     private AIClient getAiClientInternal(String clientType) {
         if (aiClientMap.containsKey(clientType)) return aiClientMap.get(clientType);
 
+        final String prefix = "AI_BACKEND_" + clientType + "_";
+        final String url = envConfig.get(prefix + "URL");
+        if (url != null && !url.isBlank()) {
+            return new OpenAIClient(
+                    envConfig,
+                    tokenCounter,
+                    url,
+                    envConfig.getOrDefault(prefix + "MODEL", DEFAULT_BACKEND_MODEL),
+                    envConfig.get(prefix + "API_KEY")
+            );
+        }
+
         throw new IllegalArgumentException("Unknown client type: " + clientType);
     }
 }
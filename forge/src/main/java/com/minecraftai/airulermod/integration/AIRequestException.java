@@ -0,0 +1,42 @@
+package com.minecraftai.airulermod.integration;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Error response of an AI backend, with what it tells about retrying the request.
+ */
+public class AIRequestException extends IOException {
+    private static final int REQUEST_TIMEOUT = 408;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int SERVER_ERROR = 500;
+
+    private final int statusCode;
+    private final @Nullable Long retryAfterMillis;
+
+    /**
+     * @param statusCode       The HTTP status of the response
+     * @param retryAfterMillis The delay the backend asked to wait before retrying, null if none
+     */
+    public AIRequestException(int statusCode, @Nullable Long retryAfterMillis) {
+        super("Unexpected code " + statusCode);
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public @Nullable Long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    /**
+     * @return Whether the same request may succeed later: timeouts, rate limits and server errors,
+     *         unlike rejected requests such as an invalid key
+     */
+    public boolean isRetryable() {
+        return statusCode == REQUEST_TIMEOUT || statusCode == TOO_MANY_REQUESTS || statusCode >= SERVER_ERROR;
+    }
+}
@@ -0,0 +1,111 @@
+package com.minecraftai.airulermod.integration;
+
+import com.google.gson.stream.JsonWriter;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Body of a request to the OpenAI Responses API, written as JSON straight into the connection.
+ * <p>
+ * The messages, typically a large batch payload, are escaped by the {@link JsonWriter} while it is
+ * written to the sink, and encoded to UTF-8 straight into the sink's segments, so no JSON tree,
+ * string or byte array of the whole body is built. The body has no known length and is sent
+ * chunked.
+ * <p>
+ * The messages themselves are strings built beforehand by the caller: that is what the
+ * {@link AIClient} API carries, and what is journaled and counted in tokens. Only the copies of
+ * the envelope are saved, see {@code ChatRequestBodyBenchmark}.
+ */
+final class ChatRequestBody extends RequestBody {
+    private static final MediaType JSON = MediaType.parse("application/json");
+
+    private final String model;
+    private final List<AIClient.ChatMessage> input;
+    private final @Nullable String previousResponseId;
+    private final boolean stream;
+
+    ChatRequestBody(String model, List<AIClient.ChatMessage> input, @Nullable String previousResponseId, boolean stream) {
+        this.model = model;
+        this.input = input;
+        this.previousResponseId = previousResponseId;
+        this.stream = stream;
+    }
+
+    @Override
+    public @Nullable MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public void writeTo(@NotNull BufferedSink sink) throws IOException {
+        final JsonWriter json = new JsonWriter(new SinkWriter(sink));
+
+        json.beginObject();
+        json.name("model").value(model);
+
+        json.name("input").beginArray();
+        for (AIClient.ChatMessage chatMessage : input) {
+            json.beginObject();
+            json.name("role").value(chatMessage.role());
+            json.name("content").value(chatMessage.input());
+            json.endObject();
+        }
+        json.endArray();
+
+        if (previousResponseId != null) {
+            json.name("previous_response_id").value(previousResponseId);
+        }
+
+        if (stream) {
+            json.name("stream").value(true);
+        }
+
+        json.endObject();
+        json.flush();
+    }
+
+    /**
+     * Writer encoding into a sink. Unlike an {@link java.io.OutputStreamWriter}, it does not copy
+     * every string it is given into a new array before encoding it, the {@link JsonWriter} writing
+     * one string per run of characters between two escapes.
+     */
+    private static final class SinkWriter extends Writer {
+        private final BufferedSink sink;
+
+        SinkWriter(BufferedSink sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            sink.writeUtf8CodePoint(c);
+        }
+
+        @Override
+        public void write(@NotNull String str, int off, int len) throws IOException {
+            sink.writeUtf8(str, off, off + len);
+        }
+
+        @Override
+        public void write(char @NotNull [] cbuf, int off, int len) throws IOException {
+            sink.writeUtf8(new String(cbuf, off, len));
+        }
+
+        @Override
+        public void flush() throws IOException {
+            sink.emit();
+        }
+
+        @Override
+        public void close() {
+            // The sink is owned by OkHttp
+        }
+    }
+}
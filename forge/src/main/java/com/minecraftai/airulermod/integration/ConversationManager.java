@@ -0,0 +1,146 @@
+package com.minecraftai.airulermod.integration;
+
+import com.minecraftai.airulermod.config.EnvConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Double-buffered conversations with the AI, so that no request waits for instructions to be resent.
+ * <p>
+ * Requests continue the active conversation until it grows past the token limit. Once it reaches a
+ * lower watermark, a standby conversation is primed in the background: a fresh chain started with
+ * the instructions, optionally seeded with a summary of the active one. When the active conversation
+ * reaches the limit, the manager switches to the standby one as soon as it is ready, between two
+ * requests. Requests keep the conversation they were queued for, so batches built for the previous
+ * conversation (with its identifier aliases) still reach it.
+ * <p>
+ * Not meant to be shared: {@link OpenAIClient} owns it and provides the priming requests.
+ */
+final class ConversationManager {
+    private static final Logger logger = LoggerFactory.getLogger(ConversationManager.class);
+
+    private static final int DEFAULT_TOKEN_LIMIT = 80000;
+    private static final double DEFAULT_WATERMARK = 0.75;
+    private static final long PRIMING_RETRY_MILLIS = 60000;
+
+    /**
+     * One chain of responses with the model.
+     */
+    static final class Conversation {
+        final long epoch;
+        final AtomicLong tokens = new AtomicLong();
+
+        // Last response of the chain, null until the first one
+        volatile @Nullable String responseId;
+
+        // Last request queued, the next one waits for it; guarded by the conversation
+        CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+
+        private Conversation(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    /**
+     * Sends the requests starting a standby conversation.
+     */
+    @FunctionalInterface
+    interface Primer {
+        /**
+         * @param standby  The new conversation to start
+         * @param previous The active conversation, whose context is to be carried over
+         * @return A future completed once the standby conversation can take over
+         */
+        CompletableFuture<?> prime(Conversation standby, Conversation previous);
+    }
+
+    private final Primer primer;
+    private final long tokenLimit;
+    private final long watermark;
+
+    private long lastEpoch = 0;
+    private Conversation active = new Conversation(0);
+    private @Nullable Conversation standby;
+    private boolean standbyReady;
+    private long primingRetryAt;
+    private boolean limitLogged;
+
+    ConversationManager(EnvConfig envConfig, Primer primer) {
+        this.primer = primer;
+        this.tokenLimit = envConfig.getInt("AI_CONVERSATION_TOKEN_LIMIT", DEFAULT_TOKEN_LIMIT);
+        this.watermark = Math.round(tokenLimit * envConfig.getDouble("AI_ROTATION_WATERMARK", DEFAULT_WATERMARK));
+    }
+
+    /**
+     * @return The conversation new requests are queued for
+     */
+    synchronized Conversation active() {
+        return active;
+    }
+
+    /**
+     * Abandons the conversations and starts a new active one, e.g. to send the instructions anew.
+     * A standby conversation being primed is dropped.
+     *
+     * @return The new active conversation
+     */
+    synchronized Conversation restart() {
+        active = new Conversation(++lastEpoch);
+        standby = null;
+        standbyReady = false;
+        limitLogged = false;
+
+        return active;
+    }
+
+    /**
+     * Checks the size of the active conversation after a request was queued, priming a standby
+     * conversation past the watermark and switching to it past the limit once ready.
+     */
+    synchronized void afterRequest() {
+        final long used = active.tokens.get();
+
+        if (used >= tokenLimit && standbyReady) {
+            logger.info("Conversation {} reached {} tokens, switching to conversation {}", active.epoch, used, standby.epoch);
+            active = standby;
+            standby = null;
+            standbyReady = false;
+            limitLogged = false;
+            return;
+        }
+
+        if (used >= watermark && standby == null && System.currentTimeMillis() >= primingRetryAt) {
+            startPriming();
+        }
+
+        if (used >= tokenLimit && !limitLogged) {
+            logger.warn("Conversation {} reached {} tokens before the next one is ready, continuing it meanwhile", active.epoch, used);
+            limitLogged = true;
+        }
+    }
+
+    private void startPriming() {
+        final Conversation candidate = new Conversation(++lastEpoch);
+        standby = candidate;
+        logger.info("Conversation {} reached the watermark, priming conversation {}", active.epoch, candidate.epoch);
+
+        primer.prime(candidate, active).whenComplete((result, error) -> {
+            synchronized (this) {
+                // Dropped by a restart meanwhile
+                if (standby != candidate) return;
+
+                if (error != null) {
+                    logger.warn("Failed to prime conversation {}, retrying later", candidate.epoch, error);
+                    standby = null;
+                    primingRetryAt = System.currentTimeMillis() + PRIMING_RETRY_MILLIS;
+                } else {
+                    standbyReady = true;
+                }
+            }
+        });
+    }
+}
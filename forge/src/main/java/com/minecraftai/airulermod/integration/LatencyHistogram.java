@@ -0,0 +1,114 @@
+package com.minecraftai.airulermod.integration;
+
+import java.util.Arrays;
+
+/**
+ * Thread-safe latency statistics of one AI backend: a histogram of every response time since
+ * startup, the percentiles of the most recent ones and a smoothed error rate.
+ */
+public class LatencyHistogram {
+    // Upper bounds (ms) of the histogram buckets, the last bucket holding anything slower
+    private static final long[] BUCKET_BOUNDS_MILLIS = {100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+    // Number of recent samples the percentiles are computed over
+    private static final int WINDOW = 128;
+
+    // Weight of a new outcome in the smoothed error rate
+    private static final double ERROR_SMOOTHING = 0.2;
+
+    private final long[] bucketCounts = new long[BUCKET_BOUNDS_MILLIS.length + 1];
+    private final long[] recentMillis = new long[WINDOW];
+    private int recentCount;
+    private int nextRecent;
+
+    private long failures;
+    private double errorRate;
+    private long lastFailureMillis;
+
+    /**
+     * Records the response time of a successful request.
+     */
+    public synchronized void record(long latencyMillis) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length && latencyMillis > BUCKET_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        bucketCounts[bucket]++;
+
+        recentMillis[nextRecent] = latencyMillis;
+        nextRecent = (nextRecent + 1) % WINDOW;
+        recentCount = Math.min(recentCount + 1, WINDOW);
+
+        errorRate *= 1 - ERROR_SMOOTHING;
+    }
+
+    /**
+     * Records a failed request, e.g. an error response or a request past its deadline.
+     */
+    public synchronized void recordFailure(long nowMillis) {
+        failures++;
+        errorRate = errorRate * (1 - ERROR_SMOOTHING) + ERROR_SMOOTHING;
+        lastFailureMillis = nowMillis;
+    }
+
+    /**
+     * @return The number of successful requests among the recent ones the percentiles use
+     */
+    public synchronized int getRecentCount() {
+        return recentCount;
+    }
+
+    /**
+     * Computes a percentile of the recent response times.
+     *
+     * @param fraction The percentile, between 0 and 1
+     * @return The response time in milliseconds, or -1 without samples
+     */
+    public synchronized long getPercentileMillis(double fraction) {
+        if (recentCount == 0) return -1;
+
+        final long[] sorted = Arrays.copyOf(recentMillis, recentCount);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(recentCount - 1, Math.floor(fraction * recentCount))];
+    }
+
+    /**
+     * @return The smoothed share of recent requests that failed, between 0 and 1
+     */
+    public synchronized double getErrorRate() {
+        return errorRate;
+    }
+
+    public synchronized long getLastFailureMillis() {
+        return lastFailureMillis;
+    }
+
+    /**
+     * @return A copy of the number of responses per bucket, see {@link #getBucketBoundsMillis()}
+     */
+    public synchronized long[] getBucketCounts() {
+        return bucketCounts.clone();
+    }
+
+    /**
+     * @return The upper bounds of the buckets in milliseconds, the last bucket having none
+     */
+    public static long[] getBucketBoundsMillis() {
+        return BUCKET_BOUNDS_MILLIS.clone();
+    }
+
+    @Override
+    public synchronized String toString() {
+        final StringBuilder text = new StringBuilder();
+        text.append("p50=").append(getPercentileMillis(0.5)).append("ms")
+                .append(", p95=").append(getPercentileMillis(0.95)).append("ms")
+                .append(String.format(", errors=%d (%.0f%%), buckets:", failures, errorRate * 100));
+
+        for (int bucket = 0; bucket < bucketCounts.length; bucket++) {
+            text.append(bucket < BUCKET_BOUNDS_MILLIS.length ? " <=" + BUCKET_BOUNDS_MILLIS[bucket] : " >" + BUCKET_BOUNDS_MILLIS[bucket - 1])
+                    .append("ms:").append(bucketCounts[bucket]);
+        }
+
+        return text.toString();
+    }
+}
@@ -3,21 +3,70 @@ package com.minecraftai.airulermod.integration;
 import com.google.gson.Gson;
 import com.minecraftai.airulermod.actions.SendMessage;
 import com.minecraftai.airulermod.actions.SpawnBlock;
+import com.minecraftai.airulermod.config.EnvConfig;
 import jakarta.inject.Singleton;
 
 import jakarta.inject.Inject;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI client answering with canned actions, without any network access. An artificial response
+ * latency can be configured with {@code MOCK_AI_LATENCY_MS} to stand in for a real model, e.g.
+ * when load testing the pipeline with a replay. Like a real client, asynchronous requests are
+ * answered off the calling thread and fail once past {@code AI_REQUEST_TIMEOUT_MS}.
+ */
 @Singleton
 public class MockAIClient implements AIClient {
     private final Gson serializer = new Gson();
+    private final long latencyMillis;
+    private final long requestTimeoutMillis;
+    private final Executor responder;
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
 
     @Inject
-    public MockAIClient() {}
+    public MockAIClient(EnvConfig envConfig) {
+        this.latencyMillis = envConfig.getInt("MOCK_AI_LATENCY_MS", 0);
+        this.requestTimeoutMillis = envConfig.getInt("AI_REQUEST_TIMEOUT_MS", 60000);
+        this.responder = CompletableFuture.delayedExecutor(latencyMillis, TimeUnit.MILLISECONDS);
+    }
 
     @Override
     public ChatResponse chat(String userMessage) {
+        simulateLatency();
+
+        return respond(userMessage);
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(String userMessage) {
+        return track(CompletableFuture.supplyAsync(() -> respond(userMessage), responder));
+    }
+
+    @Override
+    public CompletableFuture<Void> sendInstructionsAsync() {
+        return track(CompletableFuture.runAsync(() -> {}, responder));
+    }
+
+    @Override
+    public void cancelPending() {
+        pending.forEach(future -> future.cancel(true));
+    }
+
+    private <T> CompletableFuture<T> track(CompletableFuture<T> future) {
+        final CompletableFuture<T> deadline = future.orTimeout(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        pending.add(deadline);
+        deadline.whenComplete((result, error) -> pending.remove(deadline));
+
+        return deadline;
+    }
+
+    private ChatResponse respond(String userMessage) {
         return switch (userMessage) {
             case "MUD" -> createMudBlock();
             case "TNT" -> createTNTBlock();
@@ -37,6 +86,16 @@ public class MockAIClient implements AIClient {
         // Do nothing
     }
 
+    private void simulateLatency() {
+        if (latencyMillis <= 0) return;
+
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private ChatResponse sendMockMessage() {
         final var responseBody = Map.of(
                 "actions", List.of(
@@ -1,14 +1,16 @@
 package com.minecraftai.airulermod.integration;
 
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 import com.minecraftai.airulermod.config.EnvConfig;
 import com.minecraftai.airulermod.constants.Prompts;
+import com.minecraftai.airulermod.integration.ConversationManager.Conversation;
 import com.minecraftai.airulermod.service.TokenCounter;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import okhttp3.*;
+import okio.BufferedSource;
 
 import javax.annotation.Nullable;
 import org.jetbrains.annotations.NotNull;
@@ -16,24 +18,70 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+/**
+ * Client of the OpenAI Responses API, or of another endpoint implementing it. Requests are sent asynchronously through the OkHttp
+ * dispatcher, one at a time per conversation, since each one continues the conversation of the
+ * previous response. Every request has a deadline of {@code AI_REQUEST_TIMEOUT_MS}, after which
+ * it is aborted. Responses whose text is consumed as it arrives are streamed as server-sent events.
+ * <p>
+ * Conversations are renewed by a {@link ConversationManager} before they overflow the context of
+ * the model: the next one is started in the background, so no request waits for the instructions.
+ */
 @Singleton
 public class OpenAIClient implements AIClient {
     private static final Logger logger = LoggerFactory.getLogger(OpenAIClient.class);
     private static final String OPENAI_API_URL = "https://api.openai.com/v1/responses";
     private static final String MODEL_TYPE = "gpt-4o";
+    private static final int DEFAULT_REQUEST_TIMEOUT_MS = 60000;
 
+    private final String apiUrl;
+    private final String model;
     private final String apiKey;
     private final OkHttpClient httpClient = new OkHttpClient();
     private final TokenCounter tokenCounter;
+    private final long requestTimeoutMillis;
+    private final boolean streaming;
+    private final boolean rotationSummary;
+    private final ConversationManager conversations;
 
-    private String instructions;
-    private String prevResponseId;
+    // Requests not completed yet
+    private final Set<CompletableFuture<AIClient.ChatResponse>> pending = ConcurrentHashMap.newKeySet();
+
+    private volatile String instructions;
 
     @Inject
     public OpenAIClient(EnvConfig envConfig, TokenCounter tokenCounter) {
-        this.apiKey = envConfig.get("OPENAI_API_KEY");
+        this(envConfig, tokenCounter, OPENAI_API_URL, MODEL_TYPE, envConfig.get("OPENAI_API_KEY"));
+    }
+
+    /**
+     * Creates a client of another endpoint implementing the Responses API.
+     *
+     * @param apiUrl The URL of the responses endpoint
+     * @param model  The model requested
+     * @param apiKey The key sent as bearer token
+     */
+    OpenAIClient(EnvConfig envConfig, TokenCounter tokenCounter, String apiUrl, String model, String apiKey) {
+        this.apiUrl = apiUrl;
+        this.model = model;
+        this.apiKey = apiKey;
         this.tokenCounter = tokenCounter;
+        this.requestTimeoutMillis = envConfig.getInt("AI_REQUEST_TIMEOUT_MS", DEFAULT_REQUEST_TIMEOUT_MS);
+        this.streaming = envConfig.getInt("AI_STREAMING", 1) != 0;
+        this.rotationSummary = envConfig.getInt("AI_ROTATION_SUMMARY", 1) != 0;
+        this.conversations = new ConversationManager(envConfig, this::prime);
     }
 
     /**
@@ -48,111 +96,405 @@ public class OpenAIClient implements AIClient {
     }
 
     /**
-     * Sends predefined instructions to the OpenAI API via a chat request.
+     * Sends predefined instructions to the OpenAI API via a chat request, waiting for the response.
      **/
     @Override
     public void sendInstructions() {
+        await(sendInstructionsAsync());
+    }
+
+    /**
+     * Sends predefined instructions to the OpenAI API via a chat request, without blocking.
+     * They start a new conversation, which the following messages continue.
+     **/
+    @Override
+    public CompletableFuture<Void> sendInstructionsAsync() {
         final var chatMessage = new AIClient.ChatMessage("developer", instructions);
-        callChat(chatMessage);
-        
-        // Reset the token counter after sending instructions
-        tokenCounter.resetCounter();
+
+        return enqueue(conversations.restart(), chatMessage, null).thenApply(response -> null);
+    }
+
+    @Override
+    public long getConversationEpoch() {
+        return conversations.active().epoch;
     }
 
     /**
-     * Sends a message to OpenAI API for the current chat.
+     * Sends a message to OpenAI API for the current chat, waiting for the response.
      *
      * @param userMessage The user input to send to the model.
-     * @return The assistant's response as a string.
+     * @return The assistant's response, or null if the request failed.
      */
     @Override
     public @Nullable AIClient.ChatResponse chat(String userMessage) {
-        // Check if we need to refresh instructions based on token count
-        if (tokenCounter.addMessage(userMessage.length())) {
-            logger.info("Token threshold reached, resending instructions...");
-            setInstructions(Prompts.getInstructions());
-            sendInstructions();
-        }
-        
-        final var chatMessage = new AIClient.ChatMessage("user", userMessage);
-        AIClient.ChatResponse response = callChat(chatMessage);
-        
-        // Track response tokens
-        if (response != null) {
-            tokenCounter.addMessage(response.message().length());
+        return await(chatAsync(userMessage));
+    }
+
+    /**
+     * Sends a message to OpenAI API for the current chat, without blocking.
+     *
+     * @param userMessage The user input to send to the model.
+     * @return A future completed with the assistant's response.
+     */
+    @Override
+    public CompletableFuture<AIClient.ChatResponse> chatAsync(String userMessage) {
+        return chatAsync(userMessage, null);
+    }
+
+    /**
+     * Sends a message to OpenAI API for the current chat, without blocking. Unless disabled with
+     * {@code AI_STREAMING=0}, the response is streamed and its text handed over delta by delta.
+     *
+     * @param userMessage The user input to send to the model.
+     * @param onText Receives the successive parts of the response text, on the OkHttp dispatcher.
+     * @return A future completed with the assistant's whole response.
+     */
+    @Override
+    public CompletableFuture<AIClient.ChatResponse> chatAsync(String userMessage, @Nullable Consumer<String> onText) {
+        final var result = enqueue(conversations.active(), new AIClient.ChatMessage("user", userMessage), onText);
+
+        // The message stays with the conversation it was written for, a switch only affects the next ones
+        conversations.afterRequest();
+
+        return result;
+    }
+
+    /**
+     * Cancels the requests waiting for their turn and aborts the one in flight.
+     */
+    @Override
+    public void cancelPending() {
+        pending.forEach(future -> future.cancel(true));
+    }
+
+    /**
+     * Starts a standby conversation: asks the current one for a summary of what it needs to
+     * remember, if enabled, then sends the instructions followed by the summary as the first
+     * message of the new one.
+     *
+     * @param standby The conversation to start.
+     * @param previous The conversation to summarize.
+     * @return A future completed once the new conversation acknowledged the instructions.
+     */
+    private CompletableFuture<?> prime(Conversation standby, Conversation previous) {
+        final CompletableFuture<String> summary = rotationSummary && previous.responseId != null
+                ? fork(previous, new AIClient.ChatMessage("user", Prompts.getSummaryRequest()))
+                        .thenApply(AIClient.ChatResponse::message)
+                        .exceptionally(error -> null)
+                : CompletableFuture.completedFuture(null);
+
+        return summary.thenCompose(text -> enqueue(
+                standby,
+                new AIClient.ChatMessage("developer", text == null ? instructions : Prompts.withSummary(instructions, text)),
+                null
+        ));
+    }
+
+    /**
+     * Queues a chat message behind the previous ones of its conversation. Every request refers to
+     * the response to the previous one, so a request is only sent once the previous one completed,
+     * whatever its outcome.
+     *
+     * @param conversation The conversation the message continues.
+     * @param chatMessage The chat message to be sent, containing the role and input.
+     * @param onText Receives the text of the response as it arrives, null when not needed.
+     * @return A future completed with the response, or exceptionally if the request failed.
+     */
+    private CompletableFuture<AIClient.ChatResponse> enqueue(
+            Conversation conversation,
+            AIClient.ChatMessage chatMessage,
+            @Nullable Consumer<String> onText
+    ) {
+        final CompletableFuture<AIClient.ChatResponse> result = track(new CompletableFuture<>());
+        conversation.tokens.addAndGet(tokenCounter.count(chatMessage.input()));
+
+        synchronized (conversation) {
+            conversation.tail.whenComplete((response, error) ->
+                    callChat(List.of(chatMessage), conversation.responseId, conversation, onText, result));
+            conversation.tail = result;
         }
-        
-        return response;
+
+        return result;
     }
 
     /**
-     * Sends a chat message to the OpenAI API and processes the response.
+     * Sends a chat message continuing the last response of a conversation, without waiting for the
+     * requests queued and without the conversation continuing the response.
      *
+     * @param conversation The conversation the message branches from.
      * @param chatMessage The chat message to be sent, containing the role and input.
-     * @return A ChatResponse object containing the response ID and message from the OpenAI API.
-     *         Returns null if the request fails or the response cannot be parsed.
+     * @return A future completed with the response, or exceptionally if the request failed.
+     */
+    private CompletableFuture<AIClient.ChatResponse> fork(Conversation conversation, AIClient.ChatMessage chatMessage) {
+        final CompletableFuture<AIClient.ChatResponse> result = track(new CompletableFuture<>());
+        callChat(List.of(chatMessage), conversation.responseId, null, null, result);
+        return result;
+    }
+
+    /**
+     * Sends a message outside the conversations, as a request of its own starting with the
+     * instructions. The request is not queued behind the conversation, so such requests run
+     * concurrently.
+     *
+     * @param userMessage The user input to send to the model.
+     * @param onText Receives the text of the response as it arrives, on the OkHttp dispatcher.
+     * @return A future completed with the assistant's whole response.
+     */
+    @Override
+    public CompletableFuture<AIClient.ChatResponse> chatStandaloneAsync(String userMessage, @Nullable Consumer<String> onText) {
+        final CompletableFuture<AIClient.ChatResponse> result = track(new CompletableFuture<>());
+        final List<AIClient.ChatMessage> input = List.of(
+                new AIClient.ChatMessage("developer", instructions),
+                new AIClient.ChatMessage("user", userMessage)
+        );
+
+        callChat(input, null, null, onText, result);
+        return result;
+    }
+
+    private CompletableFuture<AIClient.ChatResponse> track(CompletableFuture<AIClient.ChatResponse> result) {
+        pending.add(result);
+        result.whenComplete((response, error) -> pending.remove(result));
+        return result;
+    }
+
+    /**
+     * Sends a chat message to the OpenAI API and processes the response on the OkHttp dispatcher.
+     * The request is aborted if it exceeds the deadline or if the result is cancelled.
+     *
+     * @param input The chat messages to be sent, containing the role and input.
+     * @param previousResponseId The response the request continues, null to start anew.
+     * @param conversation The conversation whose last response becomes the response, null for none.
+     * @param onText Receives the text of the response as it arrives, null when not needed.
+     * @param result The future to complete with the response.
      */
-    private @Nullable AIClient.ChatResponse callChat(AIClient.ChatMessage chatMessage) {
-        JsonObject requestBody = getRequestBody(chatMessage);
+    private void callChat(
+            List<AIClient.ChatMessage> input,
+            @Nullable String previousResponseId,
+            @Nullable Conversation conversation,
+            @Nullable Consumer<String> onText,
+            CompletableFuture<AIClient.ChatResponse> result
+    ) {
+        // Cancelled while waiting for its turn
+        if (result.isDone()) return;
+
+        final boolean stream = streaming && onText != null;
+        final RequestBody requestBody = new ChatRequestBody(model, input, previousResponseId, stream);
 
         Request request = new Request.Builder()
-                .url(OPENAI_API_URL)
+                .url(apiUrl)
                 .addHeader("Authorization", "Bearer " + apiKey)
                 .addHeader("Content-Type", "application/json")
-                .post(RequestBody.create(requestBody.toString(), MediaType.parse("application/json")))
+                .post(requestBody)
                 .build();
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                logger.error("Unexpected code {}", response);
-                if (response.body() != null) logger.debug(response.body().string());
+        final Call call = httpClient.newCall(request);
+        call.timeout().timeout(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        result.whenComplete((response, error) -> {
+            if (result.isCancelled()) call.cancel();
+        });
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NotNull Call call, @NotNull IOException e) {
+                // Cancelled requests were abandoned on purpose
+                if (!result.isDone()) logger.error("Failed to send chat request: {}", request, e);
+                result.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(@NotNull Call call, @NotNull Response response) {
+                try (response) {
+                    checkSuccessful(response);
+                    final Consumer<String> onResponseId = conversation != null
+                            ? responseId -> conversation.responseId = responseId
+                            : responseId -> {};
+
+                    final AIClient.ChatResponse chatResponse;
+                    if (stream) {
+                        chatResponse = readStream(response, onText, onResponseId, result);
+                    } else {
+                        chatResponse = parseResponse(response, onResponseId);
+                        if (onText != null) onText.accept(chatResponse.message());
+                    }
+
+                    // Track response tokens
+                    if (conversation != null) conversation.tokens.addAndGet(tokenCounter.count(chatResponse.message()));
+
+                    result.complete(chatResponse);
+                } catch (IOException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Extracts the assistant's message from a response of the OpenAI API. The body is read as a
+     * stream of JSON tokens, keeping only the id and {@code output[0].content[0].text}, without
+     * building a string of the whole body or a JSON tree.
+     *
+     * @param onResponseId Receives the id of the response.
+     * @throws IOException If the response cannot be parsed.
+     */
+    private AIClient.ChatResponse parseResponse(Response response, Consumer<String> onResponseId) throws IOException {
+        if (response.body() == null) throw new IOException("Empty response");
+
+        try (JsonReader reader = new JsonReader(response.body().charStream())) {
+            String responseId = null;
+            String responseMessage = null;
 
-                return null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "id" -> responseId = reader.nextString();
+                    case "output" -> responseMessage = readFirst(reader, "content", () -> readFirst(reader, "text", reader::nextString));
+                    default -> reader.skipValue();
+                }
             }
+            reader.endObject();
 
-            try {
-                // Parse the response
-                String responseBody = response.body() != null ? response.body().string() : "";
-                JsonObject jsonResponse = JsonParser.parseString(responseBody).getAsJsonObject();
-
-                String responseMessage = jsonResponse.getAsJsonObject()
-                        .getAsJsonArray("output")
-                        .get(0)
-                        .getAsJsonObject()
-                        .getAsJsonArray("content")
-                        .get(0)
-                        .getAsJsonObject()
-                        .get("text")
-                        .getAsString();
-
-                prevResponseId = jsonResponse.get("id").getAsString();
-
-                return new AIClient.ChatResponse(responseMessage);
-            } catch (Exception e) {
-                logger.error("Failed to parse response: {}", response);
+            if (responseId == null || responseMessage == null) {
+                throw new IOException("Response without " + (responseId == null ? "id" : "output text"));
             }
-        } catch (IOException e) {
-            logger.error("Failed to send chat request: {}", request);
+
+            onResponseId.accept(responseId);
+
+            return new AIClient.ChatResponse(responseMessage);
+        } catch (IOException | IllegalStateException e) {
+            logger.error("Failed to parse response: {}", response);
+            throw e instanceof IOException ioException ? ioException : new IOException("Failed to parse response", e);
         }
+    }
 
-        return null;
+    /**
+     * Reads an array of objects, extracting one field of its first element and skipping the rest.
+     *
+     * @param reader The reader, positioned before the array
+     * @param field The field of the first element to read
+     * @param readField Reads the value of the field
+     * @return The value, or null if the array is empty or its first element lacks the field
+     */
+    private static <T> @Nullable T readFirst(JsonReader reader, String field, JsonValueReader<T> readField) throws IOException {
+        T value = null;
+
+        reader.beginArray();
+        if (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String name = reader.nextName();
+                if (value == null && name.equals(field)) {
+                    value = readField.read();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        while (reader.hasNext()) {
+            reader.skipValue();
+        }
+        reader.endArray();
+
+        return value;
+    }
+
+    @FunctionalInterface
+    private interface JsonValueReader<T> {
+        T read() throws IOException;
     }
 
-    private @NotNull JsonObject getRequestBody(ChatMessage chatMessage) {
-        JsonObject inputJson = new JsonObject();
-        JsonArray inputArray = new JsonArray();
-        inputJson.addProperty("role", chatMessage.role());
-        inputJson.addProperty("content", chatMessage.input());
-        inputArray.add(inputJson);
+    /**
+     * Reads a response streamed as server-sent events, handing over the text deltas as they arrive.
+     * Only the events carrying text, the end of the response and errors matter here.
+     *
+     * @param onResponseId Receives the id of the response, once completed.
+     * @throws IOException If the stream breaks, reports a failure or ends without completing.
+     */
+    private AIClient.ChatResponse readStream(
+            Response response,
+            Consumer<String> onText,
+            Consumer<String> onResponseId,
+            CompletableFuture<AIClient.ChatResponse> result
+    ) throws IOException {
+        if (response.body() == null) throw new IOException("Empty streamed response");
+
+        final BufferedSource source = response.body().source();
+        final StringBuilder text = new StringBuilder();
 
-        JsonObject requestBody = new JsonObject();
-        requestBody.addProperty("model", MODEL_TYPE);
-        requestBody.add("input", inputArray);
+        String line;
+        while (!result.isDone() && (line = source.readUtf8Line()) != null) {
+            if (!line.startsWith("data:")) continue;
 
-        if (prevResponseId != null) {
-            requestBody.addProperty("previous_response_id", prevResponseId);
+            final JsonObject event = JsonParser.parseString(line.substring("data:".length())).getAsJsonObject();
+            switch (event.get("type").getAsString()) {
+                case "response.output_text.delta" -> {
+                    final String delta = event.get("delta").getAsString();
+                    text.append(delta);
+                    onText.accept(delta);
+                }
+                case "response.completed" -> {
+                    onResponseId.accept(event.getAsJsonObject("response").get("id").getAsString());
+
+                    return new AIClient.ChatResponse(text.toString());
+                }
+                case "response.failed", "response.incomplete", "error" -> {
+                    logger.error("Streamed response failed: {}", event);
+                    throw new IOException("Streamed response failed: " + event.get("type").getAsString());
+                }
+                default -> {
+                    // Lifecycle events without text
+                }
+            }
         }
 
-        return requestBody;
+        throw new IOException("Streamed response ended before completion");
+    }
+
+    private void checkSuccessful(Response response) throws IOException {
+        if (response.isSuccessful()) return;
+
+        logger.error("Unexpected code {}", response);
+        if (response.body() != null) logger.debug(response.body().string());
+
+        throw new AIRequestException(response.code(), retryAfterMillis(response));
+    }
+
+    /**
+     * Reads the delay a response asks to wait before retrying, from the {@code retry-after-ms}
+     * header OpenAI sends with rate limits, or from {@code Retry-After} in seconds or as a date.
+     *
+     * @return The delay in milliseconds, or null if the response has none or it cannot be parsed
+     */
+    private static @Nullable Long retryAfterMillis(Response response) {
+        final String millis = response.header("retry-after-ms");
+        final String retryAfter = response.header("Retry-After");
+
+        try {
+            if (millis != null) return Math.max(0, Math.round(Double.parseDouble(millis.trim())));
+            if (retryAfter == null) return null;
+            if (retryAfter.trim().chars().allMatch(Character::isDigit)) {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim()));
+            }
+
+            final long at = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return Math.max(0, at - System.currentTimeMillis());
+        } catch (NumberFormatException | DateTimeParseException e) {
+            logger.debug("Ignoring unreadable retry delay {} / {}", millis, retryAfter);
+            return null;
+        }
+    }
+
+    /**
+     * Waits for a request, failures being logged where they occur.
+     *
+     * @return The result, or null if the request failed or was cancelled.
+     */
+    private static <T> @Nullable T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
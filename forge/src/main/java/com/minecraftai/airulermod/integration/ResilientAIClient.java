@@ -0,0 +1,337 @@
+package com.minecraftai.airulermod.integration;
+
+import com.minecraftai.airulermod.config.EnvConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * AI client retrying the failed requests of another one, behind a circuit breaker.
+ * <p>
+ * A request failing transiently (network error, timeout, unreadable response, rate limit or server
+ * error) is sent again, up to {@code AI_RETRY_MAX_ATTEMPTS} attempts in all, after a random delay
+ * below an exponential bound: {@code AI_RETRY_BASE_DELAY_MS} doubled at every attempt, capped at
+ * {@code AI_RETRY_MAX_DELAY_MS}. A delay the backend asks for with {@code Retry-After} is waited at
+ * least; one beyond the cap is not waited for, the request failing at once. A request whose response
+ * text was already handed over is not retried, since its caller acted on part of it.
+ * <p>
+ * Conversation messages are sent once. Sent again, a message would queue behind the messages sent
+ * since, or land in a new conversation if the delegate renewed it meanwhile. Their failure is
+ * left to the caller, who sends the content again with its next message, e.g. by requeuing the
+ * events of a batch. Their failures still count towards the circuit breaker.
+ * <p>
+ * After {@code AI_BREAKER_FAILURES} transient failures in a row, or when the backend asks to wait
+ * longer than the cap, the breaker opens: requests fail at once for {@code AI_BREAKER_OPEN_MS}, or
+ * until the requested delay. A single trial request then goes through, closing the breaker if it
+ * succeeds and opening it again otherwise.
+ */
+public class ResilientAIClient implements AIClient {
+    private static final Logger logger = LoggerFactory.getLogger(ResilientAIClient.class);
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final int DEFAULT_BASE_DELAY_MS = 500;
+    private static final int DEFAULT_MAX_DELAY_MS = 10000;
+    private static final int DEFAULT_BREAKER_FAILURES = 5;
+    private static final int DEFAULT_BREAKER_OPEN_MS = 30000;
+
+    private enum BreakerState { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final AIClient delegate;
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final int breakerFailures;
+    private final long breakerOpenMillis;
+
+    // Requests not completed yet, possibly waiting to be retried
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+
+    // Guarded by this
+    private BreakerState state = BreakerState.CLOSED;
+    private int consecutiveFailures;
+    private long openUntilMillis;
+    private boolean trialInFlight;
+
+    /**
+     * @param name     The name of the backend, for the logs
+     * @param delegate The client sending the requests
+     */
+    ResilientAIClient(String name, AIClient delegate, EnvConfig envConfig) {
+        this.name = name;
+        this.delegate = delegate;
+        this.maxAttempts = Math.max(1, envConfig.getInt("AI_RETRY_MAX_ATTEMPTS", DEFAULT_MAX_ATTEMPTS));
+        this.baseDelayMillis = envConfig.getInt("AI_RETRY_BASE_DELAY_MS", DEFAULT_BASE_DELAY_MS);
+        this.maxDelayMillis = envConfig.getInt("AI_RETRY_MAX_DELAY_MS", DEFAULT_MAX_DELAY_MS);
+        this.breakerFailures = envConfig.getInt("AI_BREAKER_FAILURES", DEFAULT_BREAKER_FAILURES);
+        this.breakerOpenMillis = envConfig.getInt("AI_BREAKER_OPEN_MS", DEFAULT_BREAKER_OPEN_MS);
+    }
+
+    @Override
+    public void setInstructions(String instructions) {
+        delegate.setInstructions(instructions);
+    }
+
+    @Override
+    public void sendInstructions() {
+        await(sendInstructionsAsync());
+    }
+
+    @Override
+    public CompletableFuture<Void> sendInstructionsAsync() {
+        return withRetries("Instructions", delegate::sendInstructionsAsync, () -> true);
+    }
+
+    @Override
+    public long getConversationEpoch() {
+        return delegate.getConversationEpoch();
+    }
+
+    @Override
+    public @Nullable ChatResponse chat(String userMessage) {
+        return await(chatAsync(userMessage));
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(String userMessage) {
+        return withRetries("Chat request", () -> delegate.chatAsync(userMessage), () -> false);
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(String userMessage, @Nullable Consumer<String> onText) {
+        if (onText == null) return chatAsync(userMessage);
+
+        // Not retried, see the class documentation
+        return withRetries("Chat request", () -> delegate.chatAsync(userMessage, onText), () -> false);
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatStandaloneAsync(String userMessage, Consumer<String> onText) {
+        final var delivery = new Delivery(onText);
+        return withRetries("Standalone request", () -> delegate.chatStandaloneAsync(userMessage, delivery), delivery::isEmpty);
+    }
+
+    /**
+     * Aborts the requests in flight and those waiting to be retried.
+     */
+    @Override
+    public void cancelPending() {
+        pending.forEach(future -> future.cancel(true));
+        delegate.cancelPending();
+    }
+
+    /**
+     * Sends a request, then sends it again while it fails transiently.
+     *
+     * @param operation The kind of request, for the logs
+     * @param request   Sends one attempt of the request
+     * @param retryable Whether the request may still be retried after a failed attempt
+     * @return A future completed with the first successful response, or with the last failure.
+     *         Cancelling it aborts the attempt in flight and any further one.
+     */
+    private <T> CompletableFuture<T> withRetries(String operation, Supplier<CompletableFuture<T>> request, BooleanSupplier retryable) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        pending.add(result);
+        result.whenComplete((response, error) -> pending.remove(result));
+
+        attempt(operation, request, retryable, result, 1);
+        return result;
+    }
+
+    private <T> void attempt(
+            String operation,
+            Supplier<CompletableFuture<T>> request,
+            BooleanSupplier retryable,
+            CompletableFuture<T> result,
+            int attempt
+    ) {
+        // Cancelled while waiting to be retried
+        if (result.isDone()) return;
+
+        if (!acquire()) {
+            result.completeExceptionally(new IOException(name + " circuit breaker is open"));
+            return;
+        }
+
+        final CompletableFuture<T> response;
+        try {
+            response = request.get();
+        } catch (RuntimeException e) {
+            // Failed before reaching the backend, which says nothing about its health
+            releaseTrial();
+            result.completeExceptionally(e);
+            return;
+        }
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) response.cancel(true);
+        });
+
+        response.whenComplete((value, error) -> {
+            if (error == null) {
+                recordSuccess();
+                result.complete(value);
+                return;
+            }
+
+            final Throwable cause = unwrap(error);
+            if (cause instanceof CancellationException || result.isDone()) {
+                releaseTrial();
+                result.completeExceptionally(cause);
+                return;
+            }
+            if (!isTransient(cause)) {
+                // The backend answered, the request itself was rejected
+                recordSuccess();
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            final Long retryAfterMillis = cause instanceof AIRequestException requestException
+                    ? requestException.getRetryAfterMillis()
+                    : null;
+            recordFailure(retryAfterMillis);
+
+            if (attempt >= maxAttempts || !retryable.getAsBoolean()
+                    || retryAfterMillis != null && retryAfterMillis > maxDelayMillis) {
+                result.completeExceptionally(cause);
+                return;
+            }
+
+            final long delay = backoffMillis(attempt, retryAfterMillis);
+            logger.warn("{} to {} failed ({}), retrying in {} ms (attempt {} of {})",
+                    operation, name, cause.toString(), delay, attempt + 1, maxAttempts);
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                    .execute(() -> attempt(operation, request, retryable, result, attempt + 1));
+        });
+    }
+
+    /**
+     * Computes the delay before a retry, with full jitter: a uniform draw below the exponential
+     * bound, so that clients failing together do not retry together.
+     *
+     * @param attempt          The number of the attempt that failed, from 1
+     * @param retryAfterMillis The delay asked for by the backend, null if none
+     */
+    private long backoffMillis(int attempt, @Nullable Long retryAfterMillis) {
+        final long bound = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 30));
+        final long jittered = bound > 0 ? ThreadLocalRandom.current().nextLong(bound + 1) : 0;
+
+        return retryAfterMillis == null ? jittered : Math.max(jittered, retryAfterMillis);
+    }
+
+    /**
+     * @return Whether a request may be sent, i.e. the breaker is closed or lets a trial through
+     */
+    private synchronized boolean acquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() < openUntilMillis) return false;
+                state = BreakerState.HALF_OPEN;
+                trialInFlight = true;
+                logger.info("Sending a trial request to {}", name);
+                return true;
+            default:
+                if (trialInFlight) return false;
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    private synchronized void recordSuccess() {
+        if (state != BreakerState.CLOSED) logger.info("Circuit breaker of {} closed", name);
+
+        state = BreakerState.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    private synchronized void recordFailure(@Nullable Long retryAfterMillis) {
+        consecutiveFailures++;
+        trialInFlight = false;
+
+        final boolean longWait = retryAfterMillis != null && retryAfterMillis > maxDelayMillis;
+        final boolean tripped = breakerFailures > 0 && consecutiveFailures >= breakerFailures;
+        if (state != BreakerState.HALF_OPEN && !tripped && !longWait) return;
+
+        final long openMillis = Math.max(breakerOpenMillis, retryAfterMillis == null ? 0 : retryAfterMillis);
+        openUntilMillis = Math.max(openUntilMillis, System.currentTimeMillis() + openMillis);
+        if (state != BreakerState.OPEN) {
+            logger.warn("Circuit breaker of {} open for {} ms after {} failures in a row", name, openMillis, consecutiveFailures);
+        }
+        state = BreakerState.OPEN;
+    }
+
+    private synchronized void releaseTrial() {
+        trialInFlight = false;
+    }
+
+    /**
+     * @return Whether a failure may not happen again: network and parsing errors, timeouts and
+     *         error responses the backend flags as such
+     */
+    private static boolean isTransient(Throwable error) {
+        if (error instanceof AIRequestException requestException) return requestException.isRetryable();
+
+        return error instanceof IOException || error instanceof TimeoutException;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Hands the response text over to the caller, remembering whether any was, since a response
+     * partly acted on is not sent again.
+     */
+    private static final class Delivery implements Consumer<String> {
+        private final Consumer<String> onText;
+        private volatile boolean delivered;
+
+        Delivery(Consumer<String> onText) {
+            this.onText = onText;
+        }
+
+        @Override
+        public void accept(String text) {
+            delivered = true;
+            onText.accept(text);
+        }
+
+        boolean isEmpty() {
+            return !delivered;
+        }
+    }
+
+    /**
+     * Waits for a request, failures being logged by the client sending it.
+     *
+     * @return The result, or null if the request failed or was cancelled.
+     */
+    private static <T> @Nullable T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.minecraftai.airulermod.integration;
+
+import com.minecraftai.airulermod.config.EnvConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * AI client routing requests over several backends by their recent latency and error rate.
+ * <p>
+ * Every backend has a {@link LatencyHistogram} of its response times. A backend whose smoothed
+ * error rate exceeds {@code AI_ROUTING_MAX_ERROR_RATE} is avoided until {@code AI_ROUTING_RETRY_MS}
+ * after its last failure. Healthy backends are ranked by the 90th percentile of their recent
+ * response times; ties, such as backends without enough samples yet, keep the configured order.
+ * <p>
+ * Conversation messages go to one primary backend, since a backend only knows the messages it
+ * received. The primary backend is elected again after every message: it is left for a backend
+ * measured clearly faster, or when it is no longer healthy. The conversation number changes with
+ * it, so that the state shared with the model is sent again to the new backend.
+ * <p>
+ * Standalone requests go to the fastest healthy backend, or to a backend still to be measured,
+ * so that every backend gets known. With {@code AI_HEDGING=1}, the same request is sent to the
+ * next backend when the first one did not start answering within the 95th percentile of the
+ * times to the first text of its responses, kept in a histogram of their own (of the first
+ * backend, or of the next one while the first is not measured), or as soon as it failed. The first backend to answer is kept and the other request is cancelled.
+ */
+public class RoutingAIClient implements AIClient {
+    private static final Logger logger = LoggerFactory.getLogger(RoutingAIClient.class);
+
+    private static final double ROUTING_PERCENTILE = 0.9;
+    private static final double HEDGE_PERCENTILE = 0.95;
+
+    // Number of recent responses a backend needs before its latency is trusted
+    private static final int MIN_SAMPLES = 20;
+
+    // A backend takes over the conversation only when faster than the primary one by this share
+    private static final double SWITCH_MARGIN = 0.2;
+
+    private static final double DEFAULT_MAX_ERROR_RATE = 0.5;
+    private static final int DEFAULT_RETRY_MS = 30000;
+    private static final int DEFAULT_HEDGE_MIN_DELAY_MS = 500;
+
+    private final Map<String, AIClient> backends;
+    private final Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+    private final Map<String, LatencyHistogram> firstTextHistograms = new LinkedHashMap<>();
+    private final double maxErrorRate;
+    private final long retryMillis;
+    private final boolean hedging;
+    private final long hedgeMinDelayMillis;
+
+    private String primary;
+    private long switches;
+
+    /**
+     * @param backends The backends by name, in the order of preference while their latency is unknown
+     */
+    RoutingAIClient(Map<String, AIClient> backends, EnvConfig envConfig) {
+        if (backends.isEmpty()) throw new IllegalArgumentException("No AI backend to route to");
+
+        this.backends = new LinkedHashMap<>(backends);
+        this.backends.keySet().forEach(name -> {
+            histograms.put(name, new LatencyHistogram());
+            firstTextHistograms.put(name, new LatencyHistogram());
+        });
+        this.maxErrorRate = envConfig.getDouble("AI_ROUTING_MAX_ERROR_RATE", DEFAULT_MAX_ERROR_RATE);
+        this.retryMillis = envConfig.getInt("AI_ROUTING_RETRY_MS", DEFAULT_RETRY_MS);
+        this.hedging = envConfig.getInt("AI_HEDGING", 1) != 0;
+        this.hedgeMinDelayMillis = envConfig.getInt("AI_HEDGE_MIN_DELAY_MS", DEFAULT_HEDGE_MIN_DELAY_MS);
+        this.primary = this.backends.keySet().iterator().next();
+    }
+
+    @Override
+    public void setInstructions(String instructions) {
+        backends.values().forEach(backend -> backend.setInstructions(instructions));
+    }
+
+    /**
+     * Sends the instructions to every backend, so that any of them can take over the conversation,
+     * waiting for the responses.
+     */
+    @Override
+    public void sendInstructions() {
+        await(sendInstructionsAsync());
+    }
+
+    /**
+     * Sends the instructions to every backend, without blocking.
+     *
+     * @return A future completed once every backend acknowledged the instructions, or exceptionally
+     *         if one of them failed
+     */
+    @Override
+    public CompletableFuture<Void> sendInstructionsAsync() {
+        return CompletableFuture.allOf(backends.values().stream()
+                .map(AIClient::sendInstructionsAsync)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    @Override
+    public synchronized long getConversationEpoch() {
+        return (switches << 32) + backends.get(primary).getConversationEpoch();
+    }
+
+    @Override
+    public @Nullable ChatResponse chat(String userMessage) {
+        return await(chatAsync(userMessage));
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(String userMessage) {
+        return chatAsync(userMessage, null);
+    }
+
+    /**
+     * Sends a conversation message to the primary backend, then elects the backend of the next one.
+     */
+    @Override
+    public CompletableFuture<ChatResponse> chatAsync(String userMessage, @Nullable Consumer<String> onText) {
+        final String name;
+        synchronized (this) {
+            name = primary;
+        }
+
+        final AIClient backend = backends.get(name);
+        final CompletableFuture<ChatResponse> response = measure(name,
+                onText == null ? backend.chatAsync(userMessage) : backend.chatAsync(userMessage, timeFirstText(name, onText)));
+
+        // Between two messages, so that a message goes to the conversation its batch was encoded for
+        electPrimary();
+
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<ChatResponse> chatStandaloneAsync(String userMessage, Consumer<String> onText) {
+        final List<String> ranking = rank(true);
+        final String first = ranking.isEmpty() ? currentPrimary() : ranking.get(0);
+        final String second = hedging && ranking.size() > 1 ? ranking.get(1) : null;
+
+        final var request = new HedgedRequest(userMessage, onText, second);
+        request.send(first);
+
+        final long hedgeDelay = second == null ? -1 : hedgeDelayMillis(isFirstTextMeasured(first) ? first : second);
+        if (second != null && hedgeDelay >= 0) {
+            CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.MILLISECONDS).execute(request::sendHedge);
+        }
+
+        return request.result;
+    }
+
+    @Override
+    public void cancelPending() {
+        backends.values().forEach(AIClient::cancelPending);
+    }
+
+    /**
+     * Retrieves the latency statistics of every backend, e.g. to report them.
+     *
+     * @return The histograms by backend name
+     */
+    public Map<String, LatencyHistogram> getLatencyHistograms() {
+        return Collections.unmodifiableMap(histograms);
+    }
+
+    private synchronized String currentPrimary() {
+        return primary;
+    }
+
+    private synchronized void electPrimary() {
+        final List<String> ranking = rank(false);
+        if (ranking.isEmpty() || ranking.get(0).equals(primary)) return;
+
+        final String fastest = ranking.get(0);
+        if (isHealthy(primary) && routingLatency(fastest) >= routingLatency(primary) * (1 - SWITCH_MARGIN)) return;
+
+        logger.info("Routing the conversation from {} ({}) to {} ({})",
+                primary, histograms.get(primary), fastest, histograms.get(fastest));
+        primary = fastest;
+        switches++;
+    }
+
+    /**
+     * Ranks the healthy backends, the fastest first.
+     *
+     * @param unmeasuredFirst Whether backends without enough samples come first, to be measured,
+     *                        rather than last
+     */
+    private List<String> rank(boolean unmeasuredFirst) {
+        final List<String> ranking = new ArrayList<>(backends.size());
+        for (String name : backends.keySet()) {
+            if (isHealthy(name)) ranking.add(name);
+        }
+
+        // Stable, backends of unknown latency keep the configured order
+        ranking.sort(Comparator.comparingLong(name -> isMeasured(name) || !unmeasuredFirst ? routingLatency(name) : -1));
+        return ranking;
+    }
+
+    private boolean isHealthy(String name) {
+        final LatencyHistogram histogram = histograms.get(name);
+        return histogram.getErrorRate() <= maxErrorRate
+                || System.currentTimeMillis() - histogram.getLastFailureMillis() >= retryMillis;
+    }
+
+    private boolean isMeasured(String name) {
+        return histograms.get(name).getRecentCount() >= MIN_SAMPLES;
+    }
+
+    private boolean isFirstTextMeasured(String name) {
+        return firstTextHistograms.get(name).getRecentCount() >= MIN_SAMPLES;
+    }
+
+    private long routingLatency(String name) {
+        return isMeasured(name) ? histograms.get(name).getPercentileMillis(ROUTING_PERCENTILE) : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return The time after which a standalone request is hedged, from the time the given backend
+     *         takes to start answering, or -1 if it is not known yet
+     */
+    private long hedgeDelayMillis(String name) {
+        if (!isFirstTextMeasured(name)) return -1;
+
+        return Math.max(hedgeMinDelayMillis, firstTextHistograms.get(name).getPercentileMillis(HEDGE_PERCENTILE));
+    }
+
+    /**
+     * Wraps the consumer of the response text of a request to a backend, to record the time the
+     * backend took to hand over the first text.
+     */
+    private Consumer<String> timeFirstText(String name, Consumer<String> onText) {
+        final long start = System.nanoTime();
+        final AtomicBoolean answered = new AtomicBoolean();
+
+        return text -> {
+            if (answered.compareAndSet(false, true)) {
+                firstTextHistograms.get(name).record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            onText.accept(text);
+        };
+    }
+
+    /**
+     * Records the outcome of a request to a backend. Cancelled requests were abandoned on purpose
+     * and are not counted.
+     */
+    private CompletableFuture<ChatResponse> measure(String name, CompletableFuture<ChatResponse> response) {
+        final long start = System.nanoTime();
+
+        response.whenComplete((chatResponse, error) -> {
+            if (error == null) {
+                histograms.get(name).record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } else if (!(error instanceof CancellationException)) {
+                histograms.get(name).recordFailure(System.currentTimeMillis());
+            }
+        });
+
+        return response;
+    }
+
+    /**
+     * A standalone request sent to one backend, and to a second one if the first is slow to answer.
+     * The first backend to hand over text owns the response, the other request is cancelled.
+     */
+    private final class HedgedRequest {
+        private final String userMessage;
+        private final Consumer<String> onText;
+        private final CompletableFuture<ChatResponse> result = new CompletableFuture<>();
+        private final Map<String, CompletableFuture<ChatResponse>> attempts = new LinkedHashMap<>();
+
+        // Backend to hedge with, null once sent or without a second backend
+        private @Nullable String hedge;
+        private @Nullable String owner;
+        private int running;
+
+        HedgedRequest(String userMessage, Consumer<String> onText, @Nullable String hedge) {
+            this.userMessage = userMessage;
+            this.onText = onText;
+            this.hedge = hedge;
+
+            result.whenComplete((chatResponse, error) -> {
+                if (result.isCancelled()) cancelAttempts(null);
+            });
+        }
+
+        synchronized void send(String name) {
+            if (result.isDone()) return;
+
+            running++;
+            final CompletableFuture<ChatResponse> response = measure(name,
+                    backends.get(name).chatStandaloneAsync(userMessage, timeFirstText(name, text -> {
+                        if (claim(name)) onText.accept(text);
+                    })));
+            attempts.put(name, response);
+            response.whenComplete((chatResponse, error) -> completed(name, chatResponse, error));
+        }
+
+        synchronized void sendHedge() {
+            if (hedge == null || owner != null || result.isDone()) return;
+
+            final String name = hedge;
+            hedge = null;
+            logger.info("Hedging a request with {}, {} did not answer yet", name, attempts.keySet());
+            send(name);
+        }
+
+        private synchronized boolean claim(String name) {
+            if (owner == null) {
+                owner = name;
+                hedge = null;
+                cancelAttempts(name);
+            }
+            return owner.equals(name);
+        }
+
+        private synchronized void completed(String name, @Nullable ChatResponse chatResponse, @Nullable Throwable error) {
+            running--;
+
+            if (error == null) {
+                if (claim(name)) result.complete(chatResponse);
+                return;
+            }
+
+            if (result.isDone()) return;
+
+            if (name.equals(owner)) {
+                result.completeExceptionally(error);
+            } else if (owner == null && hedge != null) {
+                // Failed before answering, the hedge does not wait for its delay
+                sendHedge();
+            } else if (owner == null && running == 0) {
+                result.completeExceptionally(error);
+            }
+        }
+
+        private synchronized void cancelAttempts(@Nullable String except) {
+            attempts.forEach((name, response) -> {
+                if (!name.equals(except)) response.cancel(true);
+            });
+        }
+    }
+
+    /**
+     * Waits for a request, failures being logged by the backends.
+     *
+     * @return The result, or null if the request failed or was cancelled.
+     */
+    private static <T> @Nullable T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.minecraftai.airulermod.journal;
+
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.events.ChatMessagePosted;
+import com.minecraftai.airulermod.events.PlayerDamageSummary;
+import com.minecraftai.airulermod.events.PlayerDamaged;
+import com.minecraftai.airulermod.events.PlayerDied;
+import com.minecraftai.airulermod.events.PlayerKilledEntity;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Vec3i;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of the journaled game events.
+ * <p>
+ * Every event starts with a common header: event kind, flags, the player UUID as two longs,
+ * the packed block position (only if present), the timestamp and the sample rate. The fields
+ * specific to the event kind follow. Strings are written as UTF-8 prefixed with their length.
+ */
+final class EventCodec {
+    private static final byte KIND_DAMAGE = 0;
+    private static final byte KIND_KILL = 1;
+    private static final byte KIND_DEATH = 2;
+    private static final byte KIND_CHAT = 3;
+    private static final byte KIND_DAMAGE_SUMMARY = 4;
+
+    private static final byte FLAG_HAS_POS = 1;
+
+    private EventCodec() {
+    }
+
+    /**
+     * @return Whether the event is of a kind that can be journaled
+     */
+    static boolean supports(AbstractGameEvent event) {
+        return event instanceof PlayerDamaged
+                || event instanceof PlayerDamageSummary
+                || event instanceof PlayerKilledEntity
+                || event instanceof PlayerDied
+                || event instanceof ChatMessagePosted;
+    }
+
+    /**
+     * Writes an event of a {@link #supports(AbstractGameEvent) supported} kind.
+     *
+     * @throws IllegalArgumentException If the event is not supported or its ids are not UUIDs
+     */
+    static void write(ByteBuffer out, AbstractGameEvent event) {
+        final Vec3i pos = event.getPos();
+        final boolean hasPos = pos != null;
+        final long packedPos = hasPos ? BlockPos.asLong(pos.getX(), pos.getY(), pos.getZ()) : 0;
+        final float sampleRate = event.getSampleRate() != null ? event.getSampleRate() : 1;
+
+        if (event instanceof PlayerDamaged damaged) {
+            writeHeader(out, KIND_DAMAGE, damaged.getPlayerId(), hasPos, packedPos, damaged.getTimestamp(), sampleRate);
+            out.putFloat(damaged.getDamageAmount());
+            putString(out, damaged.getDamageSource());
+        } else if (event instanceof PlayerDamageSummary summary) {
+            // The first timestamp is the one of the header
+            writeHeader(out, KIND_DAMAGE_SUMMARY, summary.getPlayerId(), hasPos, packedPos, summary.getTimestamp(), sampleRate);
+            out.putInt(summary.getHitCount());
+            out.putFloat(summary.getTotalDamage());
+            out.putLong(summary.getLastTimestamp());
+            putString(out, summary.getDamageSource());
+        } else if (event instanceof PlayerKilledEntity kill) {
+            writeHeader(out, KIND_KILL, kill.getPlayerId(), hasPos, packedPos, kill.getTimestamp(), sampleRate);
+            putString(out, kill.getTargetEntityType());
+            putUuid(out, kill.getTargetEntityId());
+            putString(out, kill.getWeaponUsed());
+        } else if (event instanceof PlayerDied died) {
+            writeHeader(out, KIND_DEATH, died.getPlayerId(), hasPos, packedPos, died.getTimestamp(), sampleRate);
+            putString(out, died.getDeathCause());
+        } else if (event instanceof ChatMessagePosted chat) {
+            writeHeader(out, KIND_CHAT, chat.getPlayerId(), hasPos, packedPos, chat.getTimestamp(), sampleRate);
+            putString(out, chat.getMessage());
+        } else {
+            throw new IllegalArgumentException("Unsupported event: " + event.getEventName());
+        }
+    }
+
+    /**
+     * Reads an event written by {@link #write(ByteBuffer, AbstractGameEvent)}.
+     *
+     * @throws IllegalArgumentException If the data does not hold a known event kind
+     */
+    static AbstractGameEvent read(ByteBuffer in) {
+        final byte kind = in.get();
+        final byte flags = in.get();
+        final String playerId = getUuid(in);
+        final BlockPos pos = (flags & FLAG_HAS_POS) != 0 ? BlockPos.of(in.getLong()) : null;
+        final long timestamp = in.getLong();
+        final float sampleRate = in.getFloat();
+
+        final AbstractGameEvent event = switch (kind) {
+            case KIND_DAMAGE -> new PlayerDamaged(playerId, pos, in.getFloat(), getString(in), timestamp);
+            case KIND_DAMAGE_SUMMARY -> {
+                final int hitCount = in.getInt();
+                final float totalDamage = in.getFloat();
+                final long lastTimestamp = in.getLong();
+                yield new PlayerDamageSummary(playerId, pos, getString(in), hitCount, totalDamage, timestamp, lastTimestamp);
+            }
+            case KIND_KILL -> new PlayerKilledEntity(playerId, pos, getString(in), getUuid(in), getString(in), timestamp);
+            case KIND_DEATH -> new PlayerDied(playerId, pos, getString(in), timestamp);
+            case KIND_CHAT -> new ChatMessagePosted(playerId, getString(in), pos, timestamp);
+            default -> throw new IllegalArgumentException("Unknown event kind: " + kind);
+        };
+        event.setSampleRate(sampleRate);
+
+        return event;
+    }
+
+    /**
+     * Writes a string of any length, prefixed with its length as an int.
+     */
+    static void putText(ByteBuffer out, String text) {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    static String getText(ByteBuffer in) {
+        final byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeHeader(
+            ByteBuffer out,
+            byte kind,
+            String playerId,
+            boolean hasPos,
+            long position,
+            long timestamp,
+            float sampleRate
+    ) {
+        out.put(kind);
+        out.put(hasPos ? FLAG_HAS_POS : 0);
+        putUuid(out, playerId);
+        if (hasPos) {
+            out.putLong(position);
+        }
+        out.putLong(timestamp);
+        out.putFloat(sampleRate);
+    }
+
+    private static void putUuid(ByteBuffer out, String id) {
+        final UUID uuid = UUID.fromString(id);
+        out.putLong(uuid.getMostSignificantBits());
+        out.putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static String getUuid(ByteBuffer in) {
+        return new UUID(in.getLong(), in.getLong()).toString();
+    }
+
+    /**
+     * Writes a short string, prefixed with its length as a short; a length of -1 stands for null.
+     */
+    private static void putString(ByteBuffer out, @Nullable String value) {
+        if (value == null) {
+            out.putShort((short) -1);
+            return;
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("String too long to journal: " + bytes.length + " bytes");
+        }
+
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    private static @Nullable String getString(ByteBuffer in) {
+        final short length = in.getShort();
+        if (length < 0) return null;
+
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,239 @@
+package com.minecraftai.airulermod.journal;
+
+import com.minecraftai.airulermod.config.EnvConfig;
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.events.EventPriority;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Append-only write-ahead log of the tracked events and of the exchanges with the AI, so that
+ * events still buffered when the server stops or crashes are not lost, and so that every batch
+ * sent to the AI can be matched with the actions it produced.
+ * <p>
+ * The log is a sequence of segment files of a fixed size, each memory-mapped once when created.
+ * Appending a record only copies bytes into the mapped buffer, without any system call; the
+ * operating system writes the pages back, which also survives a crash of the server process.
+ * Segments are forced to disk when they are rolled and when the journal is closed. Events and
+ * commits go to the {@code .seg} segments, batches and actions to the {@code .batches} segments,
+ * each with its own lock and sequence numbers, so tracking an event on the server thread never
+ * waits for a batch being journaled. Segments are created, forced and deleted on a background
+ * thread, see {@link SegmentLog}. Only the newest {@code JOURNAL_MAX_SEGMENTS} segments of each
+ * kind are retained, event segments being kept beyond that as long as they hold unreleased events.
+ * <p>
+ * Every record is framed as: body length (int), CRC32 of the body (int), then the body: record
+ * type (byte), sequence number (long) and the payload. The length is written last, so a record
+ * torn by a crash reads as the end of the segment. Record types:
+ * - EVENT: a tracked game event, see {@link EventCodec}. Combat events are captured on the server
+ *   thread without allocating, so they are only journaled when released: those captured since the
+ *   last release are lost on a crash.
+ * - COMMIT: every event up to a sequence number, of at least a priority, was released
+ * - BATCH: the payload sent to the AI
+ * - ACTIONS: the actions parsed from the response to a batch, referring to the batch
+ * <p>
+ * On start, the events without a covering COMMIT are recovered, to be tracked again. Events that
+ * were requeued are journaled again, so an event found twice is only recovered once.
+ */
+@Singleton
+public class EventJournal {
+    private static final Logger LOGGER = Logger.getLogger(EventJournal.class.getName());
+
+    private static final String DEFAULT_DIRECTORY = "airuler-journal";
+    private static final int DEFAULT_SEGMENT_MB = 16;
+    private static final int DEFAULT_MAX_SEGMENTS = 8;
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String BATCH_SEGMENT_SUFFIX = ".batches";
+    static final int HEADER_BYTES = Integer.BYTES * 2;
+
+    static final byte RECORD_EVENT = 1;
+    static final byte RECORD_COMMIT = 2;
+    static final byte RECORD_BATCH = 3;
+    static final byte RECORD_ACTIONS = 4;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+
+    private @Nullable ExecutorService background;
+    private volatile @Nullable SegmentLog events;
+    private volatile @Nullable SegmentLog batches;
+
+    @Inject
+    public EventJournal(EnvConfig envConfig) {
+        this.directory = Path.of(envConfig.getOrDefault("JOURNAL_DIR", DEFAULT_DIRECTORY));
+        // A segment is mapped as a single buffer, which cannot exceed 2 GB
+        final long segmentBytes = envConfig.getInt("JOURNAL_SEGMENT_MB", DEFAULT_SEGMENT_MB) * 1024L * 1024L;
+        this.segmentBytes = (int) Math.min(segmentBytes, Integer.MAX_VALUE);
+        this.maxSegments = Math.max(1, envConfig.getInt("JOURNAL_MAX_SEGMENTS", DEFAULT_MAX_SEGMENTS));
+    }
+
+    /**
+     * Opens the journal for appending, unless it is disabled with a segment size of 0.
+     * Reads the existing segments first and settles the events found in them.
+     *
+     * @return The events that were tracked but never released, oldest first
+     */
+    public synchronized List<AbstractGameEvent> open() {
+        if (segmentBytes <= 0 || events != null) return List.of();
+
+        background = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "airuler-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final SegmentLog eventLog = new SegmentLog(directory, SEGMENT_SUFFIX, segmentBytes, maxSegments, false, background);
+        final SegmentLog batchLog = new SegmentLog(directory, BATCH_SEGMENT_SUFFIX, segmentBytes, maxSegments, true, background);
+
+        try {
+            final Map<Long, PendingEvent> pending = new LinkedHashMap<>();
+            eventLog.open((type, sequence, payload) -> recoverRecord(type, sequence, payload, pending));
+            batchLog.open((type, sequence, payload) -> {});
+            events = eventLog;
+            batches = batchLog;
+
+            // A requeued event is journaled again, the copies of an event are recovered once
+            final Set<ByteBuffer> recoveredPayloads = new HashSet<>();
+            final List<AbstractGameEvent> recovered = new ArrayList<>();
+            for (PendingEvent event : pending.values()) {
+                if (recoveredPayloads.add(event.payload())) recovered.add(event.event());
+            }
+
+            // The recovered events are tracked again and journaled under new sequence numbers
+            if (!recovered.isEmpty()) {
+                commit(eventLog.lastSequence(), EventPriority.LOW);
+            } else {
+                eventLog.releaseUpTo(eventLog.lastSequence());
+            }
+
+            LOGGER.info("Event journal opened in " + directory.toAbsolutePath() + ", "
+                    + recovered.size() + " unreleased events recovered");
+
+            return recovered;
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to open event journal, events will not be journaled", e);
+            close();
+            return List.of();
+        }
+    }
+
+    /**
+     * Forces the current segments to disk and stops journaling.
+     */
+    public synchronized void close() {
+        if (events != null) events.close();
+        if (batches != null) batches.close();
+        events = null;
+        batches = null;
+
+        if (background != null) {
+            // Lets the segments being rolled be forced and closed
+            background.shutdown();
+            try {
+                background.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            background = null;
+        }
+    }
+
+    /**
+     * Appends a tracked event. Events of kinds without a binary encoding are not journaled.
+     */
+    public void appendEvent(AbstractGameEvent event) {
+        final SegmentLog log = events;
+        if (log != null && EventCodec.supports(event)) {
+            log.append(RECORD_EVENT, out -> EventCodec.write(out, event));
+        }
+    }
+
+    /**
+     * Retrieves the sequence number of the last appended event. Taken before releasing events,
+     * every event journaled up to the mark is part of the release.
+     */
+    public long mark() {
+        final SegmentLog log = events;
+        return log != null ? log.lastSequence() : 0;
+    }
+
+    /**
+     * Records that the events journaled up to the mark, of at least the given priority, were released.
+     * Once every event up to a mark was released, the segments holding them may be deleted.
+     *
+     * @param mark        The result of {@link #mark()} taken before the release
+     * @param minPriority The lowest priority of the released events
+     */
+    public void commit(long mark, EventPriority minPriority) {
+        final SegmentLog log = events;
+        if (log == null) return;
+
+        if (log.append(RECORD_COMMIT, out -> out.putLong(mark).put((byte) minPriority.ordinal())) >= 0
+                && minPriority == EventPriority.LOW) {
+            log.releaseUpTo(mark);
+        }
+    }
+
+    /**
+     * Appends a batch sent to the AI.
+     *
+     * @return The sequence number of the batch record, or -1 if it was not journaled
+     */
+    public long appendBatch(String batch) {
+        final SegmentLog log = batches;
+        return log != null ? log.append(RECORD_BATCH, out -> EventCodec.putText(out, batch)) : -1;
+    }
+
+    /**
+     * Appends the actions parsed from the response to a batch.
+     *
+     * @param batchSequence The sequence number returned by {@link #appendBatch(String)}
+     * @param actions       The parsed actions as JSON
+     */
+    public void appendActions(long batchSequence, String actions) {
+        final SegmentLog log = batches;
+        if (log == null) return;
+
+        log.append(RECORD_ACTIONS, out -> {
+            out.putLong(batchSequence);
+            EventCodec.putText(out, actions);
+        });
+    }
+
+    /**
+     * Collects the journaled events, removing those covered by a commit.
+     */
+    private void recoverRecord(byte type, long sequence, ByteBuffer body, Map<Long, PendingEvent> pending) {
+        if (type == RECORD_EVENT) {
+            final ByteBuffer payload = ByteBuffer.allocate(body.remaining()).put(body.duplicate()).flip();
+            pending.put(sequence, new PendingEvent(EventCodec.read(body), payload));
+        } else if (type == RECORD_COMMIT) {
+            final long mark = body.getLong();
+            final EventPriority minPriority = EventPriority.values()[body.get()];
+
+            pending.entrySet().removeIf(entry -> entry.getKey() <= mark
+                    && entry.getValue().event().getPriority().compareTo(minPriority) >= 0);
+        }
+    }
+
+    /**
+     * A journaled event not released yet, with its encoded form telling copies apart.
+     */
+    private record PendingEvent(AbstractGameEvent event, ByteBuffer payload) {
+    }
+}
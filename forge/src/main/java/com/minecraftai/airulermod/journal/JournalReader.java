@@ -0,0 +1,109 @@
+package com.minecraftai.airulermod.journal;
+
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the segment files written by the {@link EventJournal}.
+ */
+public final class JournalReader {
+    private static final Logger LOGGER = Logger.getLogger(JournalReader.class.getName());
+
+    /**
+     * Receives the records of a segment, in the order they were written.
+     */
+    interface RecordVisitor {
+        void visit(byte type, long sequence, ByteBuffer payload);
+    }
+
+    private JournalReader() {
+    }
+
+    /**
+     * Reads every journaled event, regardless of whether it was released, e.g. to replay a recording.
+     *
+     * @param path A journal directory or a single segment file
+     * @return The events, in the order they were journaled
+     */
+    public static List<AbstractGameEvent> readEvents(Path path) throws IOException {
+        final List<Path> segments = Files.isDirectory(path) ? listSegments(path) : List.of(path);
+        final List<AbstractGameEvent> events = new ArrayList<>();
+
+        for (Path segment : segments) {
+            read(segment, (type, sequence, payload) -> {
+                if (type == EventJournal.RECORD_EVENT) {
+                    events.add(EventCodec.read(payload));
+                }
+            });
+        }
+
+        return events;
+    }
+
+    /**
+     * Lists the event segment files of a journal directory, oldest first.
+     */
+    static List<Path> listSegments(Path directory) throws IOException {
+        return listSegments(directory, EventJournal.SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Lists the segment files of a journal directory with the given suffix, oldest first.
+     */
+    static List<Path> listSegments(Path directory, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(suffix))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Reads the records of a segment. Stops at the end of the written records, or at the first
+     * torn or corrupt record. Records the visitor fails to decode are skipped.
+     */
+    static void read(Path segment, RecordVisitor visitor) throws IOException {
+        final CRC32 crc = new CRC32();
+
+        try (FileChannel segmentChannel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            final ByteBuffer in = segmentChannel.map(FileChannel.MapMode.READ_ONLY, 0, segmentChannel.size());
+
+            while (in.remaining() >= EventJournal.HEADER_BYTES) {
+                final int start = in.position();
+                final int length = in.getInt();
+                final int checksum = in.getInt();
+                if (length <= 0 || length > in.remaining()) break;
+
+                final ByteBuffer body = in.slice();
+                body.limit(length);
+                crc.reset();
+                crc.update(body.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    LOGGER.warning("Corrupt record at " + start + " in journal segment " + segment + ", skipping the rest");
+                    break;
+                }
+
+                try {
+                    visitor.visit(body.get(), body.getLong(), body);
+                } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                    LOGGER.log(Level.WARNING, "Unreadable record at " + start + " in journal segment " + segment, e);
+                }
+
+                in.position(start + EventJournal.HEADER_BYTES + length);
+            }
+        }
+    }
+}
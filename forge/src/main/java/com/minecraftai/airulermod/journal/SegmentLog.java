@@ -0,0 +1,285 @@
+package com.minecraftai.airulermod.journal;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * One series of segment files of the {@link EventJournal}, with its own lock and sequence numbers,
+ * so that appending to one series never waits for another.
+ * <p>
+ * The next segment is created and mapped ahead of time on the background executor, where the full
+ * segment is also forced and closed, so rolling over under the lock only swaps buffers: an append
+ * only waits for the file system if a whole segment filled up before the next one was mapped.
+ * Segments beyond the retained count are deleted on the background executor as well, oldest
+ * first, but never one holding a record after {@link #releaseUpTo the released sequence}.
+ * Segment files are named with increasing numbers, so that listing them by name gives their order.
+ */
+final class SegmentLog {
+    private static final Logger LOGGER = Logger.getLogger(SegmentLog.class.getName());
+
+    private final Path directory;
+    private final String suffix;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final Executor background;
+    private final CRC32 crc = new CRC32();
+
+    // Full segments, oldest first
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long lastSegmentNumber = 0;
+
+    private @Nullable Mapping current;
+    private @Nullable CompletableFuture<Mapping> spare;
+    private long nextSequence = 1;
+    private long releasedSequence;
+
+    /**
+     * @param releaseAll Whether every record can be deleted with its segment, otherwise only those
+     *                   up to the sequence given to {@link #releaseUpTo}
+     */
+    SegmentLog(Path directory, String suffix, int segmentBytes, int maxSegments, boolean releaseAll, Executor background) {
+        this.directory = directory;
+        this.suffix = suffix;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        this.background = background;
+        this.releasedSequence = releaseAll ? Long.MAX_VALUE : 0;
+    }
+
+    /**
+     * Reads the existing segments, then opens a new one for appending.
+     *
+     * @param visitor Receives every record of the existing segments, in order
+     */
+    synchronized void open(JournalReader.RecordVisitor visitor) throws IOException {
+        Files.createDirectories(directory);
+
+        for (Path path : JournalReader.listSegments(directory, suffix)) {
+            final long[] lastSequence = {0};
+            JournalReader.read(path, (type, sequence, payload) -> {
+                lastSequence[0] = Math.max(lastSequence[0], sequence);
+                nextSequence = Math.max(nextSequence, sequence + 1);
+                visitor.visit(type, sequence, payload);
+            });
+
+            segments.addLast(new Segment(path, lastSequence[0]));
+            lastSegmentNumber = Math.max(lastSegmentNumber, segmentNumber(path));
+        }
+
+        current = map(nextSegmentPath());
+        spare = prepareSpare();
+    }
+
+    /**
+     * Forces the current segment to disk and stops appending. The prepared segment, still empty,
+     * is deleted.
+     */
+    synchronized void close() {
+        if (current != null) {
+            current.close(true);
+            current = null;
+        }
+
+        if (spare != null) {
+            try {
+                final Mapping unused = spare.join();
+                unused.close(false);
+                Files.deleteIfExists(unused.path);
+            } catch (CompletionException | IOException e) {
+                LOGGER.log(Level.FINE, "Failed to delete the unused journal segment", e);
+            }
+            spare = null;
+        }
+    }
+
+    /**
+     * @return The sequence number of the last appended record
+     */
+    synchronized long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    /**
+     * Allows the deletion of the records up to a sequence number, once their segment is beyond the
+     * retained count.
+     */
+    synchronized void releaseUpTo(long sequence) {
+        releasedSequence = Math.max(releasedSequence, sequence);
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param type    The record type
+     * @param payload Writes the payload of the record
+     * @return The sequence number of the record, or -1 if it was not appended
+     */
+    synchronized long append(byte type, Consumer<ByteBuffer> payload) {
+        if (current == null) return -1;
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            final MappedByteBuffer buffer = current.buffer;
+            final int start = buffer.position();
+            try {
+                buffer.position(Math.min(start + EventJournal.HEADER_BYTES, buffer.limit()));
+                buffer.put(type).putLong(nextSequence);
+                payload.accept(buffer);
+                seal(buffer, start);
+
+                return nextSequence++;
+            } catch (BufferOverflowException e) {
+                // Nothing was sealed, the zero length left at the start still ends the segment
+                buffer.position(start);
+                if (attempt == 0 && !roll()) return -1;
+            } catch (IllegalArgumentException e) {
+                buffer.position(start);
+                LOGGER.log(Level.WARNING, "Record could not be journaled", e);
+                return -1;
+            }
+        }
+
+        LOGGER.warning("Record larger than a journal segment (" + segmentBytes + " bytes), not journaled");
+        return -1;
+    }
+
+    private void seal(MappedByteBuffer buffer, int start) {
+        final int end = buffer.position();
+        final ByteBuffer body = buffer.duplicate();
+        body.position(start + EventJournal.HEADER_BYTES).limit(end);
+
+        crc.reset();
+        crc.update(body);
+        buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+        buffer.putInt(start, end - start - EventJournal.HEADER_BYTES);
+    }
+
+    /**
+     * Switches to the prepared segment, leaving the full one to the background executor.
+     *
+     * @return Whether appending can go on, false if the next segment could not be created
+     */
+    private boolean roll() {
+        final Mapping full = current;
+        try {
+            current = spare.join();
+        } catch (CompletionException e) {
+            LOGGER.log(Level.SEVERE, "Failed to create event journal segment, journaling stopped", e.getCause());
+            current = null;
+            spare = null;
+            background.execute(() -> full.close(true));
+            return false;
+        }
+
+        segments.addLast(new Segment(full.path, nextSequence - 1));
+        spare = prepareSpare();
+        background.execute(() -> {
+            full.close(true);
+            deleteRetired();
+        });
+
+        return true;
+    }
+
+    private CompletableFuture<Mapping> prepareSpare() {
+        final Path path = nextSegmentPath();
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return map(path);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, background);
+    }
+
+    /**
+     * Deletes the oldest segments beyond the retained count, up to the first one still needed.
+     */
+    private void deleteRetired() {
+        final List<Path> retired = new ArrayList<>();
+        synchronized (this) {
+            // The current segment counts as retained
+            while (segments.size() >= maxSegments && segments.peekFirst().lastSequence() <= releasedSequence) {
+                retired.add(segments.removeFirst().path());
+            }
+            if (segments.size() >= maxSegments) {
+                LOGGER.fine("Retaining " + (segments.size() + 1) + " journal segments holding unreleased records");
+            }
+        }
+
+        for (Path path : retired) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to delete journal segment " + path, e);
+            }
+        }
+    }
+
+    private Path nextSegmentPath() {
+        lastSegmentNumber = Math.max(lastSegmentNumber + 1, nextSequence);
+        return directory.resolve(String.format("%020d%s", lastSegmentNumber, suffix));
+    }
+
+    private long segmentNumber(Path path) {
+        final String name = path.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private Mapping map(Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(
+                path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+        );
+        try {
+            return new Mapping(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * A full segment, with the sequence number of its last record.
+     */
+    private record Segment(Path path, long lastSequence) {
+    }
+
+    /**
+     * A segment file mapped for appending.
+     */
+    private record Mapping(Path path, FileChannel channel, MappedByteBuffer buffer) {
+        void close(boolean force) {
+            try {
+                if (force) buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to close journal segment " + path, e);
+            }
+        }
+    }
+}
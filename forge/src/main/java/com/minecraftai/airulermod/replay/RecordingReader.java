@@ -0,0 +1,109 @@
+package com.minecraftai.airulermod.replay;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.events.ChatMessagePosted;
+import com.minecraftai.airulermod.events.PlayerDamageSummary;
+import com.minecraftai.airulermod.events.PlayerDamaged;
+import com.minecraftai.airulermod.events.PlayerDied;
+import com.minecraftai.airulermod.events.PlayerKilledEntity;
+import com.minecraftai.airulermod.journal.JournalReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the recordings replayed by the {@link ReplayEngine}. Two formats are supported:
+ * - JSON lines ({@code .jsonl}): one event per line, in the format sent to the AI, e.g.
+ *   {@code {"event":"ChatMessagePosted","pid":"<uuid>","pos":{"x":1,"y":64,"z":2},"ts":1700000000000,"message":"hi"}}.
+ *   Mining and building are recorded as {@code {"event":"BlockDestroyed","pid":"<uuid>","ts":...}}
+ *   and {@code {"event":"BlockPlaced",...}}.
+ * - Binary: a directory or segment file of the event journal.
+ * <p>
+ * The entries are returned ordered by timestamp.
+ */
+public final class RecordingReader {
+    private static final String BLOCK_DESTROYED = "BlockDestroyed";
+    private static final String BLOCK_PLACED = "BlockPlaced";
+
+    private static final Map<String, Class<? extends AbstractGameEvent>> EVENT_TYPES = Map.of(
+            "ChatMessagePosted", ChatMessagePosted.class,
+            "PlayerDamaged", PlayerDamaged.class,
+            "PlayerDamageSummary", PlayerDamageSummary.class,
+            "PlayerDied", PlayerDied.class,
+            "PlayerKilledEntity", PlayerKilledEntity.class
+    );
+
+    private RecordingReader() {
+    }
+
+    /**
+     * Reads a recording.
+     *
+     * @param path       A JSON-lines file, or a journal directory or segment file
+     * @param serializer The Gson instance used to serialize events for the AI
+     * @return The entries of the recording, oldest first
+     * @throws IOException If the recording cannot be read
+     * @throws IllegalArgumentException If a JSON line does not hold a known event
+     */
+    public static List<ReplayRecord> read(Path path, Gson serializer) throws IOException {
+        final List<ReplayRecord> records = path.getFileName().toString().endsWith(".jsonl")
+                ? readJsonLines(path, serializer)
+                : new ArrayList<>(JournalReader.readEvents(path).stream().map(ReplayRecord::of).toList());
+
+        // Stable, so entries of the same millisecond keep their recorded order
+        records.sort(Comparator.comparingLong(ReplayRecord::timestamp));
+
+        return records;
+    }
+
+    private static List<ReplayRecord> readJsonLines(Path path, Gson serializer) throws IOException {
+        final List<ReplayRecord> records = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+
+                try {
+                    records.add(parseLine(JsonParser.parseString(line).getAsJsonObject(), serializer));
+                } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+                    throw new IllegalArgumentException("Invalid recording entry at line " + lineNumber + ": " + line, e);
+                }
+            }
+        }
+
+        return records;
+    }
+
+    private static ReplayRecord parseLine(JsonObject entry, Gson serializer) {
+        final String eventName = entry.get("event").getAsString();
+
+        if (BLOCK_DESTROYED.equals(eventName) || BLOCK_PLACED.equals(eventName)) {
+            return new ReplayRecord(
+                    entry.get("ts").getAsLong(),
+                    BLOCK_DESTROYED.equals(eventName) ? ReplayRecord.Kind.MINING : ReplayRecord.Kind.BUILDING,
+                    entry.get("pid").getAsString(),
+                    null
+            );
+        }
+
+        final Class<? extends AbstractGameEvent> eventType = EVENT_TYPES.get(eventName);
+        if (eventType == null) {
+            throw new JsonParseException("Unknown event: " + eventName);
+        }
+
+        return ReplayRecord.of(serializer.fromJson(entry, eventType));
+    }
+}
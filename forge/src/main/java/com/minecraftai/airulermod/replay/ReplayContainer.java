@@ -0,0 +1,17 @@
+package com.minecraftai.airulermod.replay;
+
+import com.google.gson.Gson;
+import com.minecraftai.airulermod.di.AppModule;
+import dagger.Component;
+import jakarta.inject.Singleton;
+
+/**
+ * Dependency container of an offline replay: the services of the mod, without the server
+ * event handlers, running on a virtual clock.
+ */
+@Singleton
+@Component(modules = {AppModule.class, AppModule.Bind.class, ReplayModule.class})
+public interface ReplayContainer {
+    ReplayEngine getReplayEngine();
+    Gson getGson();
+}
@@ -0,0 +1,214 @@
+package com.minecraftai.airulermod.replay;
+
+import com.minecraftai.airulermod.actions.AbstractAction;
+import com.minecraftai.airulermod.config.EnvConfig;
+import com.minecraftai.airulermod.constants.Prompts;
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.integration.AIClient;
+import com.minecraftai.airulermod.integration.AIClientManager;
+import com.minecraftai.airulermod.rules.RuleEngine;
+import com.minecraftai.airulermod.service.ActionsProcessor;
+import com.minecraftai.airulermod.service.BatchMetrics;
+import com.minecraftai.airulermod.service.EventTracker;
+import com.minecraftai.airulermod.service.EventsActionProcessor;
+import com.minecraftai.airulermod.service.PlayerRegistry;
+import com.minecraftai.airulermod.service.StatsTracker;
+import com.minecraftai.airulermod.stats.ChunkHeatmap;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Feeds a recording through the full AI pipeline without a server or players, for load testing.
+ * <p>
+ * The recorded entries are tracked by the {@link EventTracker} and {@link StatsTracker} in order,
+ * on a {@link VirtualClock} following the recorded timestamps. Every {@code REPLAY_BATCH_INTERVAL_MS}
+ * of recorded time, the tracked events are released and sent through
+ * {@link EventsActionProcessor} as the bulk lane of the scheduler does, and the resulting actions
+ * are scheduled on the {@link ActionsProcessor}, which consumes them tick by tick without executing
+ * them. The AI is the client configured with {@code AI_CLIENT}, normally the mock client, whose
+ * latency can be set with {@code MOCK_AI_LATENCY_MS}.
+ * <p>
+ * Playback runs at a multiple of the recorded speed, or as fast as possible.
+ */
+@Singleton
+public class ReplayEngine {
+    private static final Logger LOGGER = Logger.getLogger(ReplayEngine.class.getName());
+    private static final long TICK_MS = 50;
+    private static final int DEFAULT_BATCH_INTERVAL_MS = 30000;
+
+    private final VirtualClock clock;
+    private final EventTracker eventTracker;
+    private final StatsTracker statsTracker;
+    private final EventsActionProcessor eventsActionProcessor;
+    private final ActionsProcessor actionsProcessor;
+    private final PlayerRegistry playerRegistry;
+    private final RuleEngine ruleEngine;
+    private final AIClientManager aiClientManager;
+    private final AIClient aiClient;
+    private final long batchIntervalMillis;
+
+    private long nextTick;
+    private long nextBatch;
+
+    @Inject
+    public ReplayEngine(
+            VirtualClock clock,
+            EventTracker eventTracker,
+            StatsTracker statsTracker,
+            EventsActionProcessor eventsActionProcessor,
+            ActionsProcessor actionsProcessor,
+            PlayerRegistry playerRegistry,
+            RuleEngine ruleEngine,
+            AIClientManager aiClientManager,
+            EnvConfig envConfig
+    ) {
+        this.clock = clock;
+        this.eventTracker = eventTracker;
+        this.statsTracker = statsTracker;
+        this.eventsActionProcessor = eventsActionProcessor;
+        this.actionsProcessor = actionsProcessor;
+        this.playerRegistry = playerRegistry;
+        this.ruleEngine = ruleEngine;
+        this.aiClientManager = aiClientManager;
+        this.aiClient = aiClientManager.getAiClient();
+        this.batchIntervalMillis = Math.max(TICK_MS, envConfig.getInt("REPLAY_BATCH_INTERVAL_MS", DEFAULT_BATCH_INTERVAL_MS));
+    }
+
+    /**
+     * Replays a recording.
+     *
+     * @param recording The entries to replay, ordered by timestamp
+     * @param speed     The playback speed relative to the recording, e.g. 1 for real time or 10 for
+     *                  ten times faster; 0 or less to replay as fast as possible
+     * @return The measurements of the replay
+     * @throws InterruptedException If the thread is interrupted while pacing the playback
+     */
+    public synchronized ReplayReport replay(List<ReplayRecord> recording, double speed) throws InterruptedException {
+        final ReplayReport report = new ReplayReport();
+        if (recording.isEmpty()) return report;
+
+        aiClient.setInstructions(Prompts.getInstructions());
+        aiClient.sendInstructions();
+
+        final long start = recording.get(0).timestamp();
+        report.start();
+        final long wallStart = System.nanoTime();
+        final long droppedBefore = totalDropped();
+
+        clock.setMillis(start);
+        nextTick = start + TICK_MS;
+        nextBatch = start + batchIntervalMillis;
+
+        for (ReplayRecord record : recording) {
+            advanceTo(record.timestamp(), report);
+            pace(record.timestamp() - start, speed, wallStart);
+            feed(record);
+            report.recordEvent();
+        }
+
+        // Release the remaining events with the next batch, then let the ticks consume the actions
+        advanceTo(nextBatch, report);
+        while (actionsProcessor.getPendingCount() > 0) {
+            advanceTo(nextTick, report);
+        }
+
+        report.recordBackendLatencies(aiClientManager.getBackendLatencies());
+        report.finish(clock.millis() - start, System.nanoTime() - wallStart, totalDropped() - droppedBefore);
+        LOGGER.info("Replay finished: " + report.getEventsReplayed() + " events in " + report.getBatches() + " batches");
+
+        return report;
+    }
+
+    /**
+     * Moves the virtual clock forward, running the ticks and batches due on the way.
+     */
+    private void advanceTo(long timestamp, ReplayReport report) {
+        while (Math.min(nextTick, nextBatch) <= timestamp) {
+            if (nextBatch <= nextTick) {
+                clock.setMillis(nextBatch);
+                communicate(report);
+                nextBatch += batchIntervalMillis;
+            } else {
+                clock.setMillis(nextTick);
+                actionsProcessor.processActions();
+                statsTracker.detectAnomalies();
+                nextTick += TICK_MS;
+            }
+        }
+
+        clock.setMillis(Math.max(clock.millis(), timestamp));
+    }
+
+    private void communicate(ReplayReport report) {
+        final int queuedEvents = eventTracker.size();
+        final List<AbstractGameEvent> events = eventTracker.releaseEvents();
+
+        try {
+            final long batchStart = System.nanoTime();
+            final List<AbstractAction> actionList = eventsActionProcessor.process(events, statsTracker.getBatchStats());
+            final long elapsedNanos = System.nanoTime() - batchStart;
+
+            final BatchMetrics metrics = eventsActionProcessor.getLastBatchMetrics();
+            if (metrics != null) {
+                report.recordBatch(queuedEvents, metrics, elapsedNanos);
+            } else {
+                // Not sent: skipped as unchanged without events, answered from the cache with them
+                report.recordFilteredBatch(!events.isEmpty());
+            }
+
+            if (actionList != null) {
+                actionsProcessor.scheduleActions(actionList);
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Replayed batch failed", e);
+            report.recordFailedBatch();
+        }
+
+        report.recordActionQueueDepth(actionsProcessor.getPendingCount());
+    }
+
+    private void feed(ReplayRecord record) {
+        switch (record.kind()) {
+            case EVENT -> eventTracker.track(record.event());
+            case MINING -> {
+                final int playerIndex = playerIndexOf(record);
+                statsTracker.trackMiningEvent(playerIndex, record.timestamp());
+                ruleEngine.onActivity(ChunkHeatmap.Activity.MINED, playerIndex, null, record.timestamp());
+            }
+            case BUILDING -> {
+                final int playerIndex = playerIndexOf(record);
+                statsTracker.trackBuildingEvent(playerIndex, record.timestamp());
+                ruleEngine.onActivity(ChunkHeatmap.Activity.PLACED, playerIndex, null, record.timestamp());
+            }
+        }
+    }
+
+    /**
+     * Registers the recorded players without a name, recordings do not hold player names.
+     */
+    private int playerIndexOf(ReplayRecord record) {
+        return playerRegistry.indexOf(record.playerId(), null);
+    }
+
+    /**
+     * Waits until the wall time matching the recorded offset at the playback speed.
+     */
+    private void pace(long recordedOffsetMillis, double speed, long wallStart) throws InterruptedException {
+        if (speed <= 0) return;
+
+        final long dueNanos = wallStart + (long) (TimeUnit.MILLISECONDS.toNanos(recordedOffsetMillis) / speed);
+        final long waitNanos = dueNanos - System.nanoTime();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private long totalDropped() {
+        return eventTracker.getDroppedEventCounts().values().stream().mapToLong(Long::longValue).sum();
+    }
+}
@@ -0,0 +1,42 @@
+package com.minecraftai.airulermod.replay;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Command line entry point of the replay, run with the runtime classpath of the mod:
+ * {@code ReplayMain <recording> [speed]}, where the recording is a JSON-lines file or an event
+ * journal directory or segment, and the speed is a multiple of the recorded speed or {@code max}
+ * (the default) to replay as fast as possible. The configuration is read from the same .env file
+ * as the mod.
+ */
+public final class ReplayMain {
+    private static final Logger LOGGER = Logger.getLogger(ReplayMain.class.getName());
+
+    private ReplayMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: ReplayMain <recording.jsonl | journal directory | journal segment> [speed | max]");
+            System.exit(2);
+        }
+
+        final double speed = args.length > 1 && !"max".equalsIgnoreCase(args[1]) ? Double.parseDouble(args[1]) : 0;
+
+        // Actions refer to blocks, items and entity types, whose registries need the game to be bootstrapped
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+
+        final ReplayContainer container = DaggerReplayContainer.create();
+        final List<ReplayRecord> recording = RecordingReader.read(Path.of(args[0]), container.getGson());
+        LOGGER.info("Replaying " + recording.size() + " recorded entries from " + args[0]);
+
+        final ReplayReport report = container.getReplayEngine().replay(recording, speed);
+        LOGGER.info("Replay report:\n" + report);
+    }
+}
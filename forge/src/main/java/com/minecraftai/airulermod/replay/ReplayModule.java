@@ -0,0 +1,15 @@
+package com.minecraftai.airulermod.replay;
+
+import dagger.Binds;
+import dagger.Module;
+
+import java.time.Clock;
+
+/**
+ * Runs the services of a replay on the {@link VirtualClock}.
+ */
+@Module
+public abstract class ReplayModule {
+    @Binds
+    public abstract Clock bindClock(VirtualClock virtualClock);
+}
@@ -0,0 +1,26 @@
+package com.minecraftai.airulermod.replay;
+
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+
+import javax.annotation.Nullable;
+
+/**
+ * One entry of a recording: either a game event fed to the event tracker, or a block mined or
+ * placed, fed to the stats tracker.
+ *
+ * @param timestamp The time of the entry in milliseconds
+ * @param kind      The kind of the entry
+ * @param playerId  The UUID of the player
+ * @param event     The game event, only for {@link Kind#EVENT} entries
+ */
+public record ReplayRecord(long timestamp, Kind kind, String playerId, @Nullable AbstractGameEvent event) {
+    public enum Kind {
+        EVENT,
+        MINING,
+        BUILDING
+    }
+
+    public static ReplayRecord of(AbstractGameEvent event) {
+        return new ReplayRecord(event.getTimestamp(), Kind.EVENT, event.getPlayerId(), event);
+    }
+}
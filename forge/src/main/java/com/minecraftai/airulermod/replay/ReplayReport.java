@@ -0,0 +1,212 @@
+package com.minecraftai.airulermod.replay;
+
+import com.minecraftai.airulermod.integration.LatencyHistogram;
+import com.minecraftai.airulermod.service.BatchMetrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measurements of a replay: throughput, batch sizes, serialization and AI time, the depth
+ * of the event and action queues, the latencies of each AI backend when several are configured,
+ * and the garbage collections and peak heap usage of the JVM
+ * during the replay, to compare the memory footprint of large batches. Replaying the same recording before and after a change to
+ * batching or serialization makes the two reports directly comparable.
+ */
+public class ReplayReport {
+    private long eventsReplayed;
+    private long virtualMillis;
+    private long wallNanos;
+    private long failedBatches;
+    private long skippedBatches;
+    private long cachedBatches;
+    private long droppedEvents;
+    private long gcCount;
+    private long gcMillis;
+    private long peakHeapBytes;
+
+    private final Summary batchEvents = new Summary();
+    private final Summary payloadChars = new Summary();
+    private final Summary deltaSavedChars = new Summary();
+    private final Summary serializationMicros = new Summary();
+    private final Summary aiMillis = new Summary();
+    private final Summary firstActionMillis = new Summary();
+    private final Summary batchMillis = new Summary();
+    private final Summary actions = new Summary();
+    private final Summary eventQueueDepth = new Summary();
+    private final Summary actionQueueDepth = new Summary();
+
+    // Latencies of each backend at the end of the replay, when requests were routed over several
+    private final Map<String, String> backendLatencies = new LinkedHashMap<>();
+
+    /**
+     * Starts measuring the garbage collections and the heap usage.
+     */
+    void start() {
+        ManagementFactory.getMemoryPoolMXBeans().forEach(MemoryPoolMXBean::resetPeakUsage);
+        gcCount = -totalGcCount();
+        gcMillis = -totalGcMillis();
+    }
+
+    void recordEvent() {
+        eventsReplayed++;
+    }
+
+    void recordBatch(int queuedEvents, BatchMetrics metrics, long elapsedNanos) {
+        eventQueueDepth.record(queuedEvents);
+        batchEvents.record(metrics.events());
+        payloadChars.record(metrics.payloadChars());
+        deltaSavedChars.record(metrics.deltaSavedChars());
+        serializationMicros.record(TimeUnit.NANOSECONDS.toMicros(metrics.serializationNanos()));
+        aiMillis.record(TimeUnit.NANOSECONDS.toMillis(metrics.aiNanos()));
+        if (metrics.firstActionNanos() >= 0) {
+            firstActionMillis.record(TimeUnit.NANOSECONDS.toMillis(metrics.firstActionNanos()));
+        }
+        batchMillis.record(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        actions.record(metrics.actions());
+    }
+
+    void recordFilteredBatch(boolean cached) {
+        if (cached) {
+            cachedBatches++;
+        } else {
+            skippedBatches++;
+        }
+    }
+
+    void recordFailedBatch() {
+        failedBatches++;
+    }
+
+    void recordActionQueueDepth(int pendingActions) {
+        actionQueueDepth.record(pendingActions);
+    }
+
+    void recordBackendLatencies(Map<String, LatencyHistogram> histograms) {
+        histograms.forEach((backend, histogram) -> backendLatencies.put(backend, histogram.toString()));
+    }
+
+    void finish(long virtualMillis, long wallNanos, long droppedEvents) {
+        this.virtualMillis = virtualMillis;
+        this.wallNanos = wallNanos;
+        this.droppedEvents = droppedEvents;
+
+        gcCount += totalGcCount();
+        gcMillis += totalGcMillis();
+
+        // Upper bound: the pools do not necessarily peak at the same time
+        peakHeapBytes = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .mapToLong(pool -> pool.getPeakUsage().getUsed())
+                .sum();
+    }
+
+    private static long totalGcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .filter(count -> count > 0)
+                .sum();
+    }
+
+    private static long totalGcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .filter(time -> time > 0)
+                .sum();
+    }
+
+    public long getEventsReplayed() {
+        return eventsReplayed;
+    }
+
+    public long getBatches() {
+        return batchEvents.count;
+    }
+
+    /**
+     * @return The number of events replayed per second of wall time
+     */
+    public double getThroughput() {
+        return wallNanos == 0 ? 0 : eventsReplayed * 1e9 / wallNanos;
+    }
+
+    /**
+     * @return The share of the payload saved by delta encoding, between 0 and 1
+     */
+    public double getDeltaReduction() {
+        final long fullChars = payloadChars.total + deltaSavedChars.total;
+        return fullChars == 0 ? 0 : (double) deltaSavedChars.total / fullChars;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder backends = new StringBuilder();
+        backendLatencies.forEach((backend, latencies) ->
+                backends.append(String.format("%nbackend %s: %s", backend, latencies)));
+
+        return String.format(
+                "events=%d over %.1fs recorded time in %.3fs (%.0f events/s), dropped=%d%n"
+                        + "batches=%d, failed=%d, skipped unchanged=%d, answered from cache=%d%n"
+                        + "batch size (events): %s%n"
+                        + "payload (chars): %s%n"
+                        + "delta encoding saved (chars): %s, %.1f%% of the payload%n"
+                        + "serialization (us): %s%n"
+                        + "AI response (ms): %s%n"
+                        + "first action (ms): %s%n"
+                        + "batch total (ms): %s%n"
+                        + "actions per batch: %s%n"
+                        + "event queue depth: %s%n"
+                        + "action queue depth: %s%n"
+                        + "GC: %d collections, %d ms, peak heap %d MB%s",
+                eventsReplayed,
+                virtualMillis / 1000.0,
+                wallNanos / 1e9,
+                getThroughput(),
+                droppedEvents,
+                batchEvents.count,
+                failedBatches,
+                skippedBatches,
+                cachedBatches,
+                batchEvents,
+                payloadChars,
+                deltaSavedChars,
+                getDeltaReduction() * 100,
+                serializationMicros,
+                aiMillis,
+                firstActionMillis,
+                batchMillis,
+                actions,
+                eventQueueDepth,
+                actionQueueDepth,
+                gcCount,
+                gcMillis,
+                peakHeapBytes / (1024 * 1024),
+                backends
+        );
+    }
+
+    /**
+     * Count, mean and maximum of a measurement.
+     */
+    private static final class Summary {
+        private long count;
+        private long total;
+        private long max;
+
+        void record(long value) {
+            count++;
+            total += value;
+            max = Math.max(max, value);
+        }
+
+        @Override
+        public String toString() {
+            return "mean=" + (count == 0 ? 0 : total / count) + ", max=" + max;
+        }
+    }
+}
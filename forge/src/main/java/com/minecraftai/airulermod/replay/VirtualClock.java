@@ -0,0 +1,52 @@
+package com.minecraftai.airulermod.replay;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * Clock whose time only moves when it is set, so that a replay computes time-based stats
+ * from the recorded timestamps regardless of the playback speed.
+ */
+@Singleton
+public class VirtualClock extends Clock {
+    private volatile long millis;
+
+    @Inject
+    public VirtualClock() {}
+
+    /**
+     * Moves the clock to the given time.
+     *
+     * @param millis The time in milliseconds since the epoch
+     */
+    public void setMillis(long millis) {
+        this.millis = millis;
+    }
+
+    @Override
+    public long millis() {
+        return millis;
+    }
+
+    @Override
+    public Instant instant() {
+        return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        if (ZoneOffset.UTC.equals(zone)) return this;
+
+        throw new UnsupportedOperationException("Virtual clock only runs in UTC");
+    }
+}
@@ -0,0 +1,10 @@
+package com.minecraftai.airulermod.rules;
+
+/**
+ * Activity rate of a player, the subject of the rules triggered by mining or building.
+ *
+ * @param playerId The player's UUID
+ * @param rate     The blocks per minute over the window of the rule
+ */
+record RateSample(String playerId, int rate) {
+}
@@ -0,0 +1,167 @@
+package com.minecraftai.airulermod.rules;
+
+import com.google.gson.JsonObject;
+import com.minecraftai.airulermod.stats.RateWindow;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A rule compiled by the {@link RuleCompiler}: a condition over the subject of its trigger (a game
+ * event or an activity rate), and the actions to take for a player once the condition held often
+ * enough. Keeps the per-player state deciding when the rule fires.
+ * <p>
+ * That state is pruned as it expires: matches older than the window, cooldowns that ran out and,
+ * for rate triggers, players not observed for a whole rate window, whose rate has started over
+ * since. Players who left do not accumulate state.
+ *
+ * @param <T> The subject the condition is tested on
+ */
+final class Rule<T> {
+    private final String name;
+    private final String trigger;
+    private final Predicate<T> condition;
+    private final int times;
+    private final long withinMillis;
+    private final long cooldownMillis;
+    private final boolean handled;
+    private final @Nullable RateWindow window;
+    private final List<JsonObject> actionTemplates;
+
+    // Per player, guarded by this
+    private final Map<String, Deque<Long>> matches = new HashMap<>();
+    private final Map<String, Long> lastFired = new HashMap<>();
+    // Players the rate condition holds for, with the time it was last seen holding
+    private final Map<String, Long> holding = new HashMap<>();
+    private long lastPruned = Long.MIN_VALUE;
+
+    /**
+     * @param times           The number of matches within {@code withinMillis} the rule fires at
+     * @param cooldownMillis  The delay after firing before the rule fires again for the same player
+     * @param handled         Whether the events matching the condition need not be sent to the AI
+     * @param window          The window of the rate, for rate triggers only
+     * @param actionTemplates The actions to take, with {@code ${...}} placeholders
+     */
+    Rule(
+            String name,
+            String trigger,
+            Predicate<T> condition,
+            int times,
+            long withinMillis,
+            long cooldownMillis,
+            boolean handled,
+            @Nullable RateWindow window,
+            List<JsonObject> actionTemplates
+    ) {
+        this.name = name;
+        this.trigger = trigger;
+        this.condition = condition;
+        this.times = times;
+        this.withinMillis = withinMillis;
+        this.cooldownMillis = cooldownMillis;
+        this.handled = handled;
+        this.window = window;
+        this.actionTemplates = actionTemplates;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getTrigger() {
+        return trigger;
+    }
+
+    boolean isHandled() {
+        return handled;
+    }
+
+    @Nullable RateWindow getWindow() {
+        return window;
+    }
+
+    List<JsonObject> getActionTemplates() {
+        return actionTemplates;
+    }
+
+    boolean test(T subject) {
+        return condition.test(subject);
+    }
+
+    /**
+     * Records a match of the condition for an event trigger.
+     *
+     * @return Whether the rule fires: the condition matched {@code times} times within the window,
+     *         and the player is out of the cooldown
+     */
+    synchronized boolean recordMatch(String playerId, long timestamp) {
+        pruneExpired(timestamp);
+
+        final Long fired = lastFired.get(playerId);
+        if (fired != null && timestamp - fired < cooldownMillis) return false;
+
+        if (times > 1) {
+            final Deque<Long> playerMatches = matches.computeIfAbsent(playerId, id -> new ArrayDeque<>(times));
+            playerMatches.addLast(timestamp);
+            while (timestamp - playerMatches.peekFirst() > withinMillis) {
+                playerMatches.removeFirst();
+            }
+            if (playerMatches.size() < times) return false;
+
+            playerMatches.clear();
+        }
+
+        lastFired.put(playerId, timestamp);
+        return true;
+    }
+
+    /**
+     * Records the outcome of the condition for a rate trigger. The rule fires when the condition
+     * starts to hold, i.e. when the rate crosses the threshold, not for as long as it holds.
+     *
+     * @return Whether the rule fires
+     */
+    synchronized boolean recordState(String playerId, boolean matched, long timestamp) {
+        if (!matched) {
+            holding.remove(playerId);
+            pruneExpired(timestamp);
+            return false;
+        }
+        if (holding.put(playerId, timestamp) != null) return false;
+
+        return recordMatch(playerId, timestamp);
+    }
+
+    /**
+     * @return The number of players the rule keeps state for
+     */
+    synchronized int trackedPlayers() {
+        final Set<String> players = new HashSet<>(matches.keySet());
+        players.addAll(lastFired.keySet());
+        players.addAll(holding.keySet());
+
+        return players.size();
+    }
+
+    /**
+     * Drops the per-player state that no longer has any effect. Sweeps at most once per period of
+     * the longest state, so that the cost is spread over many calls.
+     */
+    private void pruneExpired(long now) {
+        final long holdMillis = window == null ? 0 : window.getSeconds() * 1000L;
+        final long period = Math.max(Math.max(withinMillis, cooldownMillis), holdMillis);
+        if (lastPruned != Long.MIN_VALUE && now - lastPruned < period) return;
+        lastPruned = now;
+
+        matches.values().removeIf(playerMatches -> playerMatches.isEmpty() || now - playerMatches.peekLast() > withinMillis);
+        lastFired.values().removeIf(fired -> now - fired >= cooldownMillis);
+        holding.values().removeIf(held -> now - held >= holdMillis);
+    }
+}
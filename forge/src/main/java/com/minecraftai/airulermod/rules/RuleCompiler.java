@@ -0,0 +1,217 @@
+package com.minecraftai.airulermod.rules;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.events.ChatMessagePosted;
+import com.minecraftai.airulermod.events.PlayerDied;
+import com.minecraftai.airulermod.stats.RateWindow;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+/**
+ * Compiles the JSON definition of a rule into a {@link Rule}, its conditions into predicates
+ * reading the fields of the subject directly, so that nothing is looked up or parsed when the rule
+ * is evaluated.
+ * <p>
+ * A definition holds:
+ * - {@code name}: the name of the rule, for the logs
+ * - {@code on}: the trigger, {@code ChatMessagePosted} or {@code PlayerDied}, or {@code MiningRate}
+ *   or {@code BuildingRate} for the rate of a player, evaluated on each block mined or placed.
+ *   Combat events are not evaluated, rules on them are rejected.
+ * - {@code when}: the conditions, all of which must hold, each a {@code field}, an {@code op} and
+ *   a {@code value}. Fields have their payload names, e.g. {@code message} or {@code rate}.
+ *   Operators: {@code == != > >= < <=}, {@code in} (a list), {@code contains} and
+ *   {@code containsAny} (case-insensitive, a phrase or a list), {@code matches} (a regex found in the field)
+ * - {@code times} and {@code withinMs}: the number of matches by a player within the delay the
+ *   rule fires at, once by default
+ * - {@code cooldownMs}: the delay before the rule fires again for the same player
+ * - {@code window}: the {@link RateWindow} of rate triggers, {@code ONE_MINUTE} by default
+ * - {@code handled}: whether matching events need not be sent to the AI, false by default
+ * - {@code actions}: the actions to take, as the AI would write them, see {@link RuleEngine}
+ */
+final class RuleCompiler {
+    static final String MINING_RATE = "MiningRate";
+    static final String BUILDING_RATE = "BuildingRate";
+
+    private static final Map<String, Map<String, Function<AbstractGameEvent, ?>>> EVENT_FIELDS = Map.of(
+            "ChatMessagePosted", Map.of(
+                    "pid", AbstractGameEvent::getPlayerId,
+                    "message", event -> ((ChatMessagePosted) event).getMessage()
+            ),
+            "PlayerDied", Map.of(
+                    "pid", AbstractGameEvent::getPlayerId,
+                    "cause", event -> ((PlayerDied) event).getDeathCause()
+            )
+    );
+
+    // Captured straight into the columnar store, without going through the rules
+    private static final Set<String> COMBAT_EVENTS = Set.of("PlayerKilledEntity", "PlayerDamaged");
+
+    private static final Map<String, Function<RateSample, ?>> RATE_FIELDS = Map.of(
+            "pid", RateSample::playerId,
+            "rate", RateSample::rate
+    );
+
+    private RuleCompiler() {
+    }
+
+    static boolean isRateTrigger(String trigger) {
+        return MINING_RATE.equals(trigger) || BUILDING_RATE.equals(trigger);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the definition is invalid or its trigger not an event
+     */
+    static Rule<AbstractGameEvent> compileEventRule(JsonObject definition) {
+        final String trigger = requireString(definition, "on");
+        final Map<String, Function<AbstractGameEvent, ?>> fields = EVENT_FIELDS.get(trigger);
+        if (COMBAT_EVENTS.contains(trigger)) {
+            throw new IllegalArgumentException("Trigger " + trigger + " is not supported, combat events "
+                    + "are not evaluated by the rules");
+        }
+        if (fields == null) {
+            throw new IllegalArgumentException("Unknown trigger " + trigger + ", expected one of "
+                    + EVENT_FIELDS.keySet() + ", " + MINING_RATE + " or " + BUILDING_RATE);
+        }
+
+        return compile(definition, trigger, fields, null);
+    }
+
+    /**
+     * @throws IllegalArgumentException If the definition is invalid or its trigger not a rate
+     */
+    static Rule<RateSample> compileRateRule(JsonObject definition) {
+        final String trigger = requireString(definition, "on");
+        if (!isRateTrigger(trigger)) throw new IllegalArgumentException("Not a rate trigger: " + trigger);
+
+        final RateWindow window = definition.has("window")
+                ? RateWindow.valueOf(requireString(definition, "window"))
+                : RateWindow.ONE_MINUTE;
+        return compile(definition, trigger, RATE_FIELDS, window);
+    }
+
+    private static <T> Rule<T> compile(
+            JsonObject definition,
+            String trigger,
+            Map<String, Function<T, ?>> fields,
+            @Nullable RateWindow window
+    ) {
+        final String name = definition.has("name") ? requireString(definition, "name") : trigger;
+
+        Predicate<T> condition = subject -> true;
+        if (definition.has("when")) {
+            for (JsonElement clause : requireArray(definition, "when")) {
+                if (!clause.isJsonObject()) throw new IllegalArgumentException("Condition is not an object: " + clause);
+                condition = condition.and(compileCondition(clause.getAsJsonObject(), fields));
+            }
+        }
+
+        final int times = definition.has("times") ? definition.get("times").getAsInt() : 1;
+        final long withinMillis = definition.has("withinMs") ? definition.get("withinMs").getAsLong() : Long.MAX_VALUE;
+        final long cooldownMillis = definition.has("cooldownMs") ? definition.get("cooldownMs").getAsLong() : 0;
+        final boolean handled = definition.has("handled") && definition.get("handled").getAsBoolean();
+        if (times < 1) throw new IllegalArgumentException("times must be at least 1");
+
+        final List<JsonObject> actions = new ArrayList<>();
+        for (JsonElement action : requireArray(definition, "actions")) {
+            if (!action.isJsonObject()) throw new IllegalArgumentException("Action is not an object: " + action);
+            actions.add(action.getAsJsonObject());
+        }
+        if (actions.isEmpty()) throw new IllegalArgumentException("Rule " + name + " has no action");
+
+        return new Rule<>(name, trigger, condition, times, withinMillis, cooldownMillis, handled, window, actions);
+    }
+
+    private static <T> Predicate<T> compileCondition(JsonObject clause, Map<String, Function<T, ?>> fields) {
+        final String field = requireString(clause, "field");
+        final String op = requireString(clause, "op");
+        final JsonElement value = clause.get("value");
+
+        final Function<T, ?> accessor = fields.get(field);
+        if (accessor == null) {
+            throw new IllegalArgumentException("Unknown field " + field + ", expected one of " + fields.keySet());
+        }
+        if (value == null || value.isJsonNull()) throw new IllegalArgumentException("Condition on " + field + " has no value");
+
+        return switch (op) {
+            case "==", "!=" -> {
+                final Predicate<Object> equal = value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber()
+                        ? number(value.getAsDouble(), (actual, expected) -> actual == expected)
+                        : actual -> Objects.equals(actual == null ? null : actual.toString(), value.getAsString());
+                yield op.equals("==")
+                        ? subject -> equal.test(accessor.apply(subject))
+                        : subject -> !equal.test(accessor.apply(subject));
+            }
+            case ">" -> compare(accessor, number(value.getAsDouble(), (actual, expected) -> actual > expected));
+            case ">=" -> compare(accessor, number(value.getAsDouble(), (actual, expected) -> actual >= expected));
+            case "<" -> compare(accessor, number(value.getAsDouble(), (actual, expected) -> actual < expected));
+            case "<=" -> compare(accessor, number(value.getAsDouble(), (actual, expected) -> actual <= expected));
+            case "in" -> {
+                final Set<String> expected = new HashSet<>(strings(value));
+                yield compare(accessor, actual -> actual != null && expected.contains(actual.toString()));
+            }
+            case "contains", "containsAny" -> {
+                // One pass over the field for all the phrases
+                final Pattern phrases = Pattern.compile(
+                        strings(value).stream().map(Pattern::quote).collect(Collectors.joining("|")),
+                        Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE
+                );
+                yield compare(accessor, actual -> actual != null && phrases.matcher(actual.toString()).find());
+            }
+            case "matches" -> {
+                try {
+                    final Pattern pattern = Pattern.compile(value.getAsString());
+                    yield compare(accessor, actual -> actual != null && pattern.matcher(actual.toString()).find());
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Invalid regex for " + field + ": " + e.getMessage(), e);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown operator " + op);
+        };
+    }
+
+    private interface NumberComparison {
+        boolean test(double actual, double expected);
+    }
+
+    private static Predicate<Object> number(double expected, NumberComparison comparison) {
+        return actual -> actual instanceof Number number && comparison.test(number.doubleValue(), expected);
+    }
+
+    private static <T> Predicate<T> compare(Function<T, ?> accessor, Predicate<Object> test) {
+        return subject -> test.test(accessor.apply(subject));
+    }
+
+    private static List<String> strings(JsonElement value) {
+        if (!value.isJsonArray()) return List.of(value.getAsString());
+
+        final List<String> values = new ArrayList<>();
+        value.getAsJsonArray().forEach(element -> values.add(element.getAsString()));
+        return values;
+    }
+
+    private static String requireString(JsonObject definition, String key) {
+        final JsonElement value = definition.get(key);
+        if (value == null || !value.isJsonPrimitive()) throw new IllegalArgumentException("Missing " + key + " in " + definition);
+        return value.getAsString();
+    }
+
+    private static JsonArray requireArray(JsonObject definition, String key) {
+        final JsonElement value = definition.get(key);
+        if (value == null || !value.isJsonArray()) throw new IllegalArgumentException("Missing list " + key + " in " + definition);
+        return value.getAsJsonArray();
+    }
+}
@@ -0,0 +1,251 @@
+package com.minecraftai.airulermod.rules;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.minecraftai.airulermod.actions.AbstractAction;
+import com.minecraftai.airulermod.config.EnvConfig;
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.service.ActionsParser;
+import com.minecraftai.airulermod.service.ActionsProcessor;
+import com.minecraftai.airulermod.service.PlayerRegistry;
+import com.minecraftai.airulermod.service.StatsTracker;
+import com.minecraftai.airulermod.stats.ChunkHeatmap;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import net.minecraft.core.Vec3i;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Takes the decisions that need no model, such as muting a player who keeps posting a banned
+ * phrase or rewarding a fast builder, as soon as the event happens instead of with the next batch.
+ * <p>
+ * Rules are read once from the JSON file {@code RULES_FILE}, a {@code rules} list of definitions
+ * (see {@link RuleCompiler}), and compiled into predicates. Every tracked event is tested against
+ * the rules triggered by its kind, and every block mined or placed against the rules on the rate of
+ * the player, which only costs a few field reads and comparisons. When a rule fires, its actions
+ * are parsed as if the AI had sent them and scheduled on the {@link ActionsProcessor}. Actions may
+ * refer to the player with {@code ${pid}} and {@code ${name}}, to the rule with {@code ${rule}},
+ * and to the position of the event with {@code "${pos}"}.
+ * <p>
+ * Events matching a rule marked {@code handled} are marked with
+ * {@link AbstractGameEvent#markHandledByRule()}, and not sent to the AI.
+ */
+@Singleton
+public class RuleEngine {
+    private static final Logger LOGGER = Logger.getLogger(RuleEngine.class.getName());
+
+    private static final String DEFAULT_RULES_FILE = "airuler-rules.json";
+    private static final String POSITION_PLACEHOLDER = "${pos}";
+
+    private final ActionsParser actionsParser;
+    private final ActionsProcessor actionsProcessor;
+    private final StatsTracker statsTracker;
+    private final PlayerRegistry playerRegistry;
+
+    private final Map<String, List<Rule<AbstractGameEvent>>> eventRules = new HashMap<>();
+    private final List<Rule<RateSample>> miningRules = new ArrayList<>();
+    private final List<Rule<RateSample>> buildingRules = new ArrayList<>();
+
+    @Inject
+    public RuleEngine(
+            EnvConfig envConfig,
+            ActionsParser actionsParser,
+            ActionsProcessor actionsProcessor,
+            StatsTracker statsTracker,
+            PlayerRegistry playerRegistry
+    ) {
+        this.actionsParser = actionsParser;
+        this.actionsProcessor = actionsProcessor;
+        this.statsTracker = statsTracker;
+        this.playerRegistry = playerRegistry;
+
+        load(Path.of(envConfig.getOrDefault("RULES_FILE", DEFAULT_RULES_FILE)));
+    }
+
+    /**
+     * Evaluates the rules triggered by an event, taking the actions of those that fire.
+     * Must be called once per event, as it is tracked.
+     *
+     * @return Whether a rule fully handled the event, which is then marked as such
+     */
+    public boolean evaluate(AbstractGameEvent event) {
+        final List<Rule<AbstractGameEvent>> rules = eventRules.get(event.getEventName());
+        if (rules == null) return false;
+
+        boolean handled = false;
+        for (Rule<AbstractGameEvent> rule : rules) {
+            if (!rule.test(event)) continue;
+
+            handled |= rule.isHandled();
+            if (rule.recordMatch(event.getPlayerId(), event.getTimestamp())) {
+                fire(rule, event.getPlayerId(), event.getPos());
+            }
+        }
+
+        if (handled) event.markHandledByRule();
+        return handled;
+    }
+
+    /**
+     * Evaluates the rules on the mining or building rate of a player, once the block was tracked by
+     * the {@link StatsTracker}.
+     *
+     * @param activity    Whether the player mined or placed a block
+     * @param playerIndex The index of the player in the {@link PlayerRegistry}
+     * @param pos         The position of the block, null if unknown
+     * @param timestamp   The time of the activity
+     */
+    public void onActivity(ChunkHeatmap.Activity activity, int playerIndex, @Nullable Vec3i pos, long timestamp) {
+        final List<Rule<RateSample>> rules = activity == ChunkHeatmap.Activity.MINED ? miningRules : buildingRules;
+        if (rules.isEmpty()) return;
+
+        final String playerId = playerRegistry.getPlayerId(playerIndex);
+        for (Rule<RateSample> rule : rules) {
+            final int rate = activity == ChunkHeatmap.Activity.MINED
+                    ? statsTracker.getMiningRate(playerId, rule.getWindow())
+                    : statsTracker.getBuildingRate(playerId, rule.getWindow());
+
+            if (rule.recordState(playerId, rule.test(new RateSample(playerId, rate)), timestamp)) {
+                fire(rule, playerId, pos);
+            }
+        }
+    }
+
+    /**
+     * @return The number of rules loaded
+     */
+    public int size() {
+        return eventRules.values().stream().mapToInt(List::size).sum() + miningRules.size() + buildingRules.size();
+    }
+
+    private void load(Path file) {
+        if (!Files.isRegularFile(file)) {
+            LOGGER.info("No rules file at " + file.toAbsolutePath() + ", every decision is left to the AI");
+            return;
+        }
+
+        final JsonArray definitions;
+        try (Reader reader = Files.newBufferedReader(file)) {
+            definitions = JsonParser.parseReader(reader).getAsJsonObject().getAsJsonArray("rules");
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Failed to read the rules file " + file, e);
+            return;
+        }
+        if (definitions == null) {
+            LOGGER.warning("No rules list in " + file);
+            return;
+        }
+
+        for (JsonElement definition : definitions) {
+            try {
+                add(definition.getAsJsonObject());
+            } catch (RuntimeException e) {
+                LOGGER.warning("Skipping invalid rule " + definition + ": " + e.getMessage());
+            }
+        }
+
+        LOGGER.info("Loaded " + size() + " rules from " + file);
+    }
+
+    private void add(JsonObject definition) {
+        final String trigger = definition.has("on") ? definition.get("on").getAsString() : "";
+
+        if (RuleCompiler.isRateTrigger(trigger)) {
+            final Rule<RateSample> rule = RuleCompiler.compileRateRule(definition);
+            validate(rule);
+            (RuleCompiler.MINING_RATE.equals(trigger) ? miningRules : buildingRules).add(rule);
+        } else {
+            final Rule<AbstractGameEvent> rule = RuleCompiler.compileEventRule(definition);
+            validate(rule);
+            eventRules.computeIfAbsent(trigger, name -> new ArrayList<>()).add(rule);
+        }
+    }
+
+    /**
+     * Parses the actions of a rule once at load time, so that a rule whose actions cannot be taken
+     * is rejected instead of failing whenever it fires.
+     */
+    private void validate(Rule<?> rule) {
+        if (createActions(rule, "00000000-0000-0000-0000-000000000000", "player", new Vec3i(0, 0, 0)).size()
+                < rule.getActionTemplates().size()) {
+            throw new IllegalArgumentException("Rule " + rule.getName() + " has actions that cannot be parsed");
+        }
+    }
+
+    private void fire(Rule<?> rule, String playerId, @Nullable Vec3i pos) {
+        final int playerIndex = playerRegistry.indexOf(playerId);
+        final String name = playerIndex >= 0 && playerRegistry.getName(playerIndex) != null
+                ? playerRegistry.getName(playerIndex)
+                : playerId;
+
+        final List<AbstractAction> actions = createActions(rule, playerId, name, pos);
+        LOGGER.info("Rule " + rule.getName() + " fired for " + name + ", taking " + actions.size() + " actions");
+        actionsProcessor.scheduleActions(actions);
+    }
+
+    private List<AbstractAction> createActions(Rule<?> rule, String playerId, String name, @Nullable Vec3i pos) {
+        final Map<String, String> values = Map.of("${pid}", playerId, "${name}", name, "${rule}", rule.getName());
+        final List<AbstractAction> actions = new ArrayList<>(rule.getActionTemplates().size());
+
+        for (JsonObject template : rule.getActionTemplates()) {
+            try {
+                final AbstractAction action = actionsParser.parse(instantiate(template, values, pos).getAsJsonObject());
+                if (action != null) actions.add(action);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to create an action of rule " + rule.getName() + ": " + template, e);
+            }
+        }
+
+        return actions;
+    }
+
+    /**
+     * Copies an action template, replacing the placeholders in its strings.
+     */
+    private static JsonElement instantiate(JsonElement template, Map<String, String> values, @Nullable Vec3i pos) {
+        if (template.isJsonObject()) {
+            final JsonObject copy = new JsonObject();
+            template.getAsJsonObject().entrySet().forEach(entry -> copy.add(entry.getKey(), instantiate(entry.getValue(), values, pos)));
+            return copy;
+        }
+        if (template.isJsonArray()) {
+            final JsonArray copy = new JsonArray();
+            template.getAsJsonArray().forEach(element -> copy.add(instantiate(element, values, pos)));
+            return copy;
+        }
+        if (!template.isJsonPrimitive() || !template.getAsJsonPrimitive().isString()) return template;
+
+        final String text = template.getAsString();
+        if (text.equals(POSITION_PLACEHOLDER)) {
+            if (pos == null) return JsonNull.INSTANCE;
+
+            final JsonObject position = new JsonObject();
+            position.addProperty("x", pos.getX());
+            position.addProperty("y", pos.getY());
+            position.addProperty("z", pos.getZ());
+            return position;
+        }
+        if (text.indexOf('$') < 0) return template;
+
+        String replaced = text;
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            replaced = replaced.replace(value.getKey(), value.getValue());
+        }
+        return new JsonPrimitive(replaced);
+    }
+}
@@ -0,0 +1,105 @@
+package com.minecraftai.airulermod.serialization;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import net.minecraft.core.Position;
+import net.minecraft.core.Vec3i;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Writes block positions and exact positions, the most frequent objects of the AI payload,
+ * without reflection.
+ * <p>
+ * Both are written as {@code {"x":..,"y":..,"z":..}} objects like the reflective adapters do, so
+ * the batch filter and delta encoder see the same tree, but without looking up and boxing every
+ * field, and with whole exact coordinates written without the fraction digit. Reading is left to
+ * the reflective adapters.
+ */
+public final class PositionTypeAdapterFactory implements TypeAdapterFactory {
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> @Nullable TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        final Class<? super T> rawType = type.getRawType();
+
+        if (Vec3i.class.isAssignableFrom(rawType)) {
+            return (TypeAdapter<T>) new BlockPositionAdapter(gson.getDelegateAdapter(this, (TypeToken<Vec3i>) type));
+        }
+        if (Position.class.isAssignableFrom(rawType)) {
+            return (TypeAdapter<T>) new PositionAdapter(gson.getDelegateAdapter(this, (TypeToken<Position>) type));
+        }
+
+        return null;
+    }
+
+    private static final class BlockPositionAdapter extends TypeAdapter<Vec3i> {
+        private final TypeAdapter<Vec3i> reader;
+
+        BlockPositionAdapter(TypeAdapter<Vec3i> reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public void write(JsonWriter out, @Nullable Vec3i pos) throws IOException {
+            if (pos == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("x").value(pos.getX());
+            out.name("y").value(pos.getY());
+            out.name("z").value(pos.getZ());
+            out.endObject();
+        }
+
+        @Override
+        public Vec3i read(JsonReader in) throws IOException {
+            return reader.read(in);
+        }
+    }
+
+    private static final class PositionAdapter extends TypeAdapter<Position> {
+        private final TypeAdapter<Position> reader;
+
+        PositionAdapter(TypeAdapter<Position> reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public void write(JsonWriter out, @Nullable Position pos) throws IOException {
+            if (pos == null) {
+                out.nullValue();
+                return;
+            }
+
+            out.beginObject();
+            out.name("x");
+            writeCoordinate(out, pos.x());
+            out.name("y");
+            writeCoordinate(out, pos.y());
+            out.name("z");
+            writeCoordinate(out, pos.z());
+            out.endObject();
+        }
+
+        @Override
+        public Position read(JsonReader in) throws IOException {
+            return reader.read(in);
+        }
+
+        private static void writeCoordinate(JsonWriter out, double coordinate) throws IOException {
+            // Whole coordinates without the fraction digit
+            if (coordinate == (long) coordinate) {
+                out.value((long) coordinate);
+            } else {
+                out.value(coordinate);
+            }
+        }
+    }
+}
@@ -1,78 +1,224 @@
 package com.minecraftai.airulermod.service;
 
 import com.minecraftai.airulermod.actions.AbstractAction;
+import com.minecraftai.airulermod.config.EnvConfig;
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.events.EventPriority;
+import com.minecraftai.airulermod.integration.AIClientManager;
 import jakarta.inject.Singleton;
 import jakarta.inject.Inject;
 
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Schedules the communication with the AI.
+ * <p>
+ * Two lanes share a single scheduler thread, which only prepares the batches: AI calls are
+ * asynchronous, so a slow model never holds the thread up.
+ * - The bulk lane sends every tracked event together with player stats at a fixed rate.
+ * - The fast lane is triggered by {@link EventPriority#HIGH} events (chat, deaths). After a short
+ *   debounce it sends only the high-priority events, so moderation does not wait for the next
+ *   bulk batch.
+ * <p>
+ * A lane does not send a new batch while the AI has not answered its previous one. Events keep
+ * buffering in the meantime: a bulk round is skipped, and a fast flush is retried once the
+ * answer arrives. The AI client delivers the batches of both lanes in order.
+ * <p>
+ * Actions are scheduled as soon as each one is parsed from the response. The latency between an
+ * event and the scheduling of the first resulting action is measured per lane. When requests are
+ * routed over several AI backends, the latencies of each backend are logged every five minutes.
+ */
 @Singleton
 public class AICommunicationScheduler {
     private static final Logger LOGGER = Logger.getLogger(AICommunicationScheduler.class.getName());
     private static final long COMMUNICATION_INIT_DELAY = 5000;
     private static final long COMMUNICATION_RATE = 30000;
+    private static final int DEFAULT_FAST_LANE_DEBOUNCE_MS = 1000;
+    private static final long BACKEND_REPORT_RATE = 5 * 60 * 1000;
+
+    public enum Lane {
+        FAST,
+        BULK
+    }
 
     private final EventsActionProcessor eventsActionProcessor;
     private final EventTracker eventTracker;
     private final StatsTracker statsService;
     private final ActionsProcessor actionsProcessor;
+    private final AIClientManager aiClientManager;
+    private final long fastLaneDebounceMillis;
+
+    private final AtomicBoolean fastFlushPending = new AtomicBoolean(false);
+    private final Map<Lane, LatencyStats> laneLatencies = new EnumMap<>(Lane.class);
+
+    // The batch of each lane waiting for the AI, only accessed from the scheduler thread
+    private final Map<Lane, CompletableFuture<?>> inFlight = new EnumMap<>(Lane.class);
 
-    private Timer timer;
+    // Null while stopped, so that answers arriving after stop() do not schedule flushes
+    private volatile ScheduledExecutorService executor;
 
     @Inject
     public AICommunicationScheduler(
             EventTracker eventTracker,
             StatsTracker statsService,
             EventsActionProcessor eventsActionProcessor,
-            ActionsProcessor actionsProcessor
+            ActionsProcessor actionsProcessor,
+            AIClientManager aiClientManager,
+            EnvConfig envConfig
     ) {
         this.eventsActionProcessor = eventsActionProcessor;
         this.eventTracker = eventTracker;
         this.statsService = statsService;
         this.actionsProcessor = actionsProcessor;
+        this.aiClientManager = aiClientManager;
+        this.fastLaneDebounceMillis = envConfig.getInt("FAST_LANE_DEBOUNCE_MS", DEFAULT_FAST_LANE_DEBOUNCE_MS);
+
+        for (Lane lane : Lane.values()) {
+            laneLatencies.put(lane, new LatencyStats());
+        }
     }
 
     /**
-     * Initializes the communication scheduling mechanism by setting up a timer that periodically
-     * triggers the {@code communicate()} method after a defined initial delay and at regular intervals.
-     * The timer runs as a daemon thread, ensuring it does not prevent the application from shutting down.
+     * Initializes the communication scheduling mechanism by setting up a single scheduler thread that
+     * periodically triggers the bulk communication after a defined initial delay and at regular intervals,
+     * and that runs the fast lane whenever high-priority events are tracked.
+     * The thread is a daemon thread, ensuring it does not prevent the application from shutting down.
      *
      * This method is typically called during the lifecycle of the class to kick-start the periodic communication process.
      */
     public void start() {
         LOGGER.info("Initializing AI communication scheduler");
 
-        timer = new Timer("AICommunicationSchedulerTimer", true);
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                communicate();
-            }
-        }, COMMUNICATION_INIT_DELAY, COMMUNICATION_RATE);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AICommunicationSchedulerTimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(
+                () -> communicate(Lane.BULK),
+                COMMUNICATION_INIT_DELAY,
+                COMMUNICATION_RATE,
+                TimeUnit.MILLISECONDS
+        );
+        executor.scheduleAtFixedRate(this::reportBackendLatencies, BACKEND_REPORT_RATE, BACKEND_REPORT_RATE, TimeUnit.MILLISECONDS);
+
+        if (fastLaneDebounceMillis > 0) {
+            eventTracker.setHighPriorityListener(this::requestFastFlush);
+        }
     }
 
     /**
-     * Stops the communication scheduling mechanism by canceling the active timer.
+     * Stops the communication scheduling mechanism by shutting down the scheduler thread.
      */
     public void stop() {
         LOGGER.info("Stopping AI communication scheduler");
 
-        if (timer != null) timer.cancel();
+        eventTracker.setHighPriorityListener(null);
+        final ScheduledExecutorService currentExecutor = executor;
+        executor = null;
+        if (currentExecutor != null) currentExecutor.shutdownNow();
+        fastFlushPending.set(false);
     }
 
-    private void communicate() {
-        final List<AbstractAction> actionList = eventsActionProcessor.process(
-                eventTracker.releaseEvents(),
-                Map.of(
-                        "miningRates", statsService.getAllMiningRates(),
-                        "buildingRate", statsService.getAllBuildingRates()
-                )
-        );
+    /**
+     * Retrieves the event-to-action latency measured so far, per lane.
+     */
+    public Map<Lane, LatencyStats> getLaneLatencies() {
+        return laneLatencies;
+    }
+
+    /**
+     * Schedules a fast-lane flush unless one is already pending. Called on the server thread
+     * for every high-priority event, so later events within the debounce window join the same flush.
+     */
+    private void requestFastFlush() {
+        final ScheduledExecutorService currentExecutor = executor;
+        if (currentExecutor == null || currentExecutor.isShutdown() || !fastFlushPending.compareAndSet(false, true)) return;
+
+        try {
+            currentExecutor.schedule(() -> communicate(Lane.FAST), fastLaneDebounceMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Stopped in the meantime, the events stay buffered
+            fastFlushPending.set(false);
+        }
+    }
+
+    private void communicate(Lane lane) {
+        final CompletableFuture<?> previous = inFlight.get(lane);
+        if (previous != null && !previous.isDone()) {
+            if (lane == Lane.FAST) {
+                // The pending flush request stays set, so the flush runs again once the AI answered
+                previous.whenComplete((result, error) -> {
+                    fastFlushPending.set(false);
+                    requestFastFlush();
+                });
+            } else {
+                LOGGER.info("AI still processing the previous bulk batch, events keep buffering");
+            }
+            return;
+        }
+
+        try {
+            final List<AbstractGameEvent> events;
+            final Map<String, Map<String, ?>> stats;
+
+            if (lane == Lane.FAST) {
+                fastFlushPending.set(false);
+                events = eventTracker.releaseEvents(EventPriority.HIGH);
+                if (events.isEmpty()) return;
+
+                // Telemetry keeps riding the periodic batch
+                stats = Map.of();
+            } else {
+                events = eventTracker.releaseEvents();
+                stats = statsService.getBatchStats();
+            }
+
+            // Actions are scheduled one by one as the response arrives, the latency is taken at the first
+            final AtomicBoolean firstAction = new AtomicBoolean(true);
+            final CompletableFuture<List<AbstractAction>> batch = eventsActionProcessor.processAsync(events, stats, action -> {
+                actionsProcessor.scheduleActions(List.of(action));
+                if (firstAction.getAndSet(false)) recordLatency(lane, events);
+            });
+            inFlight.put(lane, batch);
+
+            batch.whenComplete((actionList, error) -> {
+                if (error != null) {
+                    LOGGER.log(Level.SEVERE, "Failed to process AI response (" + lane + " lane)", error);
+                }
+            });
+        } catch (Exception e) {
+            LOGGER.log(Level.SEVERE, "Failed to communicate with AI (" + lane + " lane)", e);
+        }
+    }
+
+    /**
+     * Logs the latencies of the AI backends, when the requests are routed over several.
+     */
+    private void reportBackendLatencies() {
+        aiClientManager.getBackendLatencies().forEach((backend, latencies) ->
+                LOGGER.info("AI backend " + backend + " latency: " + latencies));
+    }
+
+    private void recordLatency(Lane lane, List<AbstractGameEvent> events) {
+        if (events.isEmpty()) return;
+
+        final LatencyStats latency = laneLatencies.get(lane);
+        final long now = System.currentTimeMillis();
+        for (AbstractGameEvent event : events) {
+            latency.record(now - event.getTimestamp());
+        }
 
-        actionsProcessor.scheduleActions(actionList);
+        LOGGER.info("Event-to-action latency, " + lane + " lane: " + latency);
     }
 }
@@ -0,0 +1,111 @@
+package com.minecraftai.airulermod.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Incremental scanner extracting the elements of the {@code actions} array from an AI response
+ * received in chunks, e.g. streamed token by token.
+ * <p>
+ * The scanner only tracks the JSON structure (nesting depth, strings and escapes) and the last key
+ * of the top-level object. Once the {@code actions} array is open, the text of each element object
+ * is captured and handed over as soon as its closing brace arrives, without waiting for the rest
+ * of the response. Chunks may split the text anywhere, even inside strings or escapes.
+ * One parser handles a single response.
+ */
+public class ActionStreamParser {
+    private static final String ACTIONS_KEY = "actions";
+
+    private final Consumer<String> onAction;
+
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escaped = false;
+
+    // The string being read as a key of the top-level object, and the last one read
+    private StringBuilder key = null;
+    private String lastKey = null;
+
+    // Depth inside the actions array, -1 outside of it
+    private int actionsDepth = -1;
+    private boolean actionsSeen = false;
+
+    // Text of the action element being captured
+    private StringBuilder element = null;
+
+    /**
+     * @param onAction Receives the JSON text of every complete element of the actions array
+     */
+    public ActionStreamParser(Consumer<String> onAction) {
+        this.onAction = onAction;
+    }
+
+    /**
+     * Scans the next chunk of the response.
+     */
+    public void accept(CharSequence chunk) {
+        for (int i = 0; i < chunk.length(); i++) {
+            accept(chunk.charAt(i));
+        }
+    }
+
+    /**
+     * @return Whether the response contained an actions array
+     */
+    public boolean hasSeenActions() {
+        return actionsSeen;
+    }
+
+    private void accept(char c) {
+        if (element != null) {
+            element.append(c);
+        }
+
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '"') {
+                inString = false;
+                if (key != null) {
+                    lastKey = key.toString();
+                    key = null;
+                }
+            } else if (key != null) {
+                key.append(c);
+            }
+            return;
+        }
+
+        switch (c) {
+            case '"' -> {
+                inString = true;
+                if (depth == 1) key = new StringBuilder();
+            }
+            case ',' -> {
+                if (depth == 1) lastKey = null;
+            }
+            case '{', '[' -> {
+                if (c == '[' && depth == 1 && ACTIONS_KEY.equals(lastKey)) {
+                    actionsDepth = depth + 1;
+                    actionsSeen = true;
+                } else if (c == '{' && depth == actionsDepth) {
+                    element = new StringBuilder().append(c);
+                }
+                depth++;
+            }
+            case '}', ']' -> {
+                depth--;
+                if (element != null && depth == actionsDepth) {
+                    onAction.accept(element.toString());
+                    element = null;
+                } else if (depth == actionsDepth - 1) {
+                    actionsDepth = -1;
+                }
+            }
+            default -> {
+                // Values and whitespace only matter inside an element, captured above
+            }
+        }
+    }
+}
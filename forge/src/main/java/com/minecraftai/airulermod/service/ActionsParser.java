@@ -14,15 +14,22 @@ public class ActionsParser {
     private static final Logger LOGGER = Logger.getLogger(ActionsParser.class.getName());
     
     private final Gson serializer;
+    private final IdentifierDictionary identifierDictionary;
 
     @Inject
-    public ActionsParser(Gson serializer) {
+    public ActionsParser(Gson serializer, IdentifierDictionary identifierDictionary) {
         this.serializer = serializer;
+        this.identifierDictionary = identifierDictionary;
     }
 
     public AbstractAction parse(JsonObject actionJson) {
         String actionType = actionJson.get("type").getAsString();
 
+        // The model refers to players by their alias, actions need the actual UUID
+        if (actionJson.has("playerId") && actionJson.get("playerId").isJsonPrimitive()) {
+            actionJson.addProperty("playerId", identifierDictionary.resolve(actionJson.get("playerId").getAsString()));
+        }
+
         try {
             return switch (actionType) {
                 case SpawnCreature.ACTION_TYPE -> serializer.fromJson(actionJson, SpawnCreature.class);
@@ -36,6 +36,13 @@ public class ActionsProcessor {
     }
 
 
+    /**
+     * @return The number of actions waiting to be executed
+     */
+    public int getPendingCount() {
+        return pendingActions.size();
+    }
+
     /**
      * Processes a queue of pending actions and executes them in a controlled manner.
      *
@@ -46,12 +53,23 @@ public class ActionsProcessor {
      *
      * If there are actions remaining in the queue after processing all that are allowed,
      * those will be logged for reference.
+     *
+     * Without a server, e.g. during an offline replay, the actions are consumed at the same pace
+     * without being executed.
      */
     public void processActions() {
         // If no actions, nothing to do
         if (pendingActions.isEmpty()) {
             return;
         }
+
+        if (!serverHolder.isAvailable()) {
+            int actionsDiscarded = 0;
+            while (actionsDiscarded < MAX_ACTIONS_PER_TICK && pendingActions.poll() != null) {
+                actionsDiscarded++;
+            }
+            return;
+        }
         
         // Process a limited number of actions per tick
         int actionsProcessed = 0;
@@ -0,0 +1,246 @@
+package com.minecraftai.airulermod.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.minecraftai.airulermod.config.EnvConfig;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reduces the player positions and stats of a batch to what changed since they were last sent.
+ * <p>
+ * The conversation with the AI is stateful, so it already knows the values of the previous batches.
+ * For every section, the encoder keeps the values last sent and only sends again the players who
+ * joined or moved further than a distance, and the stats whose numbers changed by more than a
+ * relative threshold. Values that disappeared are sent as null. Small changes are not lost: they
+ * are compared to the values last sent, so they are sent once they add up.
+ * <p>
+ * A section is sent whole (a keyframe) the first time, after {@link #reset()} (e.g. when the
+ * conversation started over or a batch may not have reached the AI), and every few batches to
+ * bound the drift. Batches must be encoded in the order they are sent.
+ */
+@Singleton
+public class BatchDeltaEncoder {
+    public static final String POSITIONS_SECTION = "playerPositions";
+    public static final String STATS_SECTION = "stats";
+
+    private static final double DEFAULT_POSITION_DELTA = 2.0;
+    private static final double DEFAULT_STATS_DELTA = 0.1;
+    private static final int DEFAULT_KEYFRAME_INTERVAL = 10;
+
+    private static final Set<String> IGNORED_FIELDS = Set.of("ts");
+
+    /**
+     * The sections of a batch, once encoded.
+     *
+     * @param positions     The player positions to send
+     * @param stats         The stats to send
+     * @param deltaSections The names of the sections holding only changes, empty for a keyframe
+     * @param savedChars    The number of characters saved compared to sending the sections whole
+     */
+    public record Encoded(JsonObject positions, JsonObject stats, List<String> deltaSections, int savedChars) {
+    }
+
+    private final Gson serializer;
+    private final boolean enabled;
+    private final double positionDelta;
+    private final double statsDelta;
+    private final int keyframeInterval;
+
+    // Values last sent per section, null when the section is to be sent whole
+    private @Nullable JsonObject sentPositions;
+    private @Nullable JsonObject sentStats;
+
+    private int batchesSinceKeyframe;
+
+    @Inject
+    public BatchDeltaEncoder(Gson serializer, EnvConfig envConfig) {
+        this.serializer = serializer;
+        this.enabled = envConfig.getInt("BATCH_DELTA", 1) != 0;
+        this.positionDelta = envConfig.getDouble("BATCH_DELTA_POSITION_BLOCKS", DEFAULT_POSITION_DELTA);
+        this.statsDelta = envConfig.getDouble("BATCH_DELTA_STATS_RATIO", DEFAULT_STATS_DELTA);
+        this.keyframeInterval = Math.max(1, envConfig.getInt("BATCH_KEYFRAME_INTERVAL", DEFAULT_KEYFRAME_INTERVAL));
+    }
+
+    /**
+     * Encodes the positions and stats of the next batch sent. The sections must not be encoded
+     * with aliases yet, and are not modified.
+     *
+     * @param positions The player positions, by player UUID
+     * @param stats     The stats, by section name; empty when the batch carries no stats, which
+     *                  leaves the stats last sent unchanged
+     */
+    public synchronized Encoded encode(JsonObject positions, JsonObject stats) {
+        if (!enabled) {
+            return new Encoded(positions, stats, List.of(), 0);
+        }
+
+        if (++batchesSinceKeyframe >= keyframeInterval) {
+            reset();
+        }
+
+        final List<String> deltaSections = new ArrayList<>(2);
+        int savedChars = 0;
+
+        JsonObject encodedPositions = positions;
+        if (this.sentPositions == null) {
+            this.sentPositions = positions.deepCopy();
+        } else {
+            encodedPositions = diff(this.sentPositions, positions, this::positionChanged);
+            deltaSections.add(POSITIONS_SECTION);
+            savedChars += serializer.toJson(positions).length() - serializer.toJson(encodedPositions).length();
+        }
+
+        JsonObject encodedStats = stats;
+        if (!stats.isEmpty()) {
+            if (this.sentStats == null) {
+                this.sentStats = stats.deepCopy();
+            } else {
+                encodedStats = new JsonObject();
+                for (String section : union(this.sentStats, stats)) {
+                    final JsonElement previous = this.sentStats.get(section);
+                    final JsonElement current = stats.get(section);
+
+                    if (current == null || !current.isJsonObject() || previous == null || !previous.isJsonObject()) {
+                        if (current == null || previous == null || changed(previous, current)) {
+                            encodedStats.add(section, current == null ? JsonNull.INSTANCE : current);
+                            setOrRemove(this.sentStats, section, current);
+                        }
+                        continue;
+                    }
+
+                    final JsonObject sectionDelta = diff(previous.getAsJsonObject(), current.getAsJsonObject(), this::changed);
+                    if (!sectionDelta.isEmpty()) {
+                        encodedStats.add(section, sectionDelta);
+                    }
+                }
+                deltaSections.add(STATS_SECTION);
+                savedChars += serializer.toJson(stats).length() - serializer.toJson(encodedStats).length();
+            }
+        }
+
+        return new Encoded(encodedPositions, encodedStats, deltaSections, savedChars);
+    }
+
+    /**
+     * Sends every section whole with the next batch.
+     */
+    public synchronized void reset() {
+        sentPositions = null;
+        sentStats = null;
+        batchesSinceKeyframe = 0;
+    }
+
+    private interface ChangeTest {
+        boolean changed(JsonElement previous, JsonElement current);
+    }
+
+    /**
+     * Collects the entries of the current object added or changed since the previous one, and null
+     * for the entries removed, updating the previous object to what is sent.
+     */
+    private static JsonObject diff(JsonObject previous, JsonObject current, ChangeTest changeTest) {
+        final JsonObject delta = new JsonObject();
+
+        for (String key : union(previous, current)) {
+            final JsonElement previousValue = previous.get(key);
+            final JsonElement currentValue = current.get(key);
+
+            if (currentValue == null) {
+                delta.add(key, JsonNull.INSTANCE);
+                previous.remove(key);
+            } else if (previousValue == null || changeTest.changed(previousValue, currentValue)) {
+                delta.add(key, currentValue);
+                previous.add(key, currentValue.deepCopy());
+            }
+        }
+
+        return delta;
+    }
+
+    private boolean positionChanged(JsonElement previous, JsonElement current) {
+        if (!previous.isJsonObject() || !current.isJsonObject()) return changed(previous, current);
+
+        final JsonObject from = previous.getAsJsonObject();
+        final JsonObject to = current.getAsJsonObject();
+        double squaredDistance = 0;
+        for (String axis : List.of("x", "y", "z")) {
+            final double delta = coordinate(to, axis) - coordinate(from, axis);
+            squaredDistance += delta * delta;
+        }
+
+        return squaredDistance > positionDelta * positionDelta;
+    }
+
+    private static double coordinate(JsonObject position, String axis) {
+        final JsonElement value = position.get(axis);
+        return value != null && value.isJsonPrimitive() && value.getAsJsonPrimitive().isNumber() ? value.getAsDouble() : 0;
+    }
+
+    /**
+     * Compares two values structurally, numbers being equal within the relative threshold and
+     * timestamps being ignored.
+     */
+    private boolean changed(JsonElement previous, JsonElement current) {
+        if (previous.isJsonObject() && current.isJsonObject()) {
+            final JsonObject from = previous.getAsJsonObject();
+            final JsonObject to = current.getAsJsonObject();
+
+            for (String key : union(from, to)) {
+                if (IGNORED_FIELDS.contains(key)) continue;
+
+                final JsonElement fromValue = from.get(key);
+                final JsonElement toValue = to.get(key);
+                if (fromValue == null || toValue == null || changed(fromValue, toValue)) return true;
+            }
+            return false;
+        }
+
+        if (previous.isJsonArray() && current.isJsonArray()) {
+            final JsonArray from = previous.getAsJsonArray();
+            final JsonArray to = current.getAsJsonArray();
+            if (from.size() != to.size()) return true;
+
+            for (int i = 0; i < from.size(); i++) {
+                if (changed(from.get(i), to.get(i))) return true;
+            }
+            return false;
+        }
+
+        if (isNumber(previous) && isNumber(current)) {
+            final double from = previous.getAsDouble();
+            final double to = current.getAsDouble();
+            return Math.abs(to - from) > statsDelta * Math.max(Math.abs(from), 1);
+        }
+
+        return !previous.equals(current);
+    }
+
+    private static boolean isNumber(JsonElement element) {
+        return element instanceof JsonPrimitive primitive && primitive.isNumber();
+    }
+
+    private static void setOrRemove(JsonObject object, String key, @Nullable JsonElement value) {
+        if (value == null) {
+            object.remove(key);
+        } else {
+            object.add(key, value.deepCopy());
+        }
+    }
+
+    private static Set<String> union(JsonObject first, JsonObject second) {
+        final Set<String> keys = new LinkedHashSet<>(second.keySet());
+        keys.addAll(first.keySet());
+        return keys;
+    }
+}
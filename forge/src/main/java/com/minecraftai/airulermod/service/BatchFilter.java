@@ -0,0 +1,249 @@
+package com.minecraftai.airulermod.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.minecraftai.airulermod.config.EnvConfig;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import javax.annotation.Nullable;
+import java.time.Clock;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decides which batches are worth sending to the AI, before they are sent.
+ * <p>
+ * Every batch is reduced to fingerprints of its canonical form: object keys are unordered, event
+ * timestamps are dropped, positions are quantized to a grid and stats are rounded to two
+ * significant digits, so that batches differing only in noise fingerprint the same. A batch
+ * without events whose stats and positions match the last ones sent tells the AI nothing new and
+ * is skipped. Batches with events are looked up in a bounded cache of the actions answered to
+ * recent batches, so a repeated pattern (e.g. the same player writing the same message again)
+ * is answered without a request.
+ * <p>
+ * Fingerprints are 64-bit hashes; a collision would only reuse the actions of another batch
+ * or skip a batch, both within the time-to-live of the cache.
+ */
+@Singleton
+public class BatchFilter {
+    private static final int DEFAULT_POSITION_QUANTUM = 8;
+    private static final int DEFAULT_CACHE_SIZE = 256;
+    private static final long DEFAULT_CACHE_TTL_MILLIS = 300_000;
+
+    private static final String TIMESTAMP_FIELD = "ts";
+    private static final String POSITION_FIELD = "pos";
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * How the numbers of a payload section are canonicalized.
+     */
+    private enum Precision {
+        EXACT,
+        // Two significant digits
+        ROUNDED,
+        // Floored to the position grid
+        POSITION
+    }
+
+    /**
+     * Fingerprints of a batch.
+     *
+     * @param state The fingerprint of the stats and positions
+     * @param batch The fingerprint of the whole batch, events included
+     */
+    public record Fingerprint(long state, long batch) {
+    }
+
+    private record CachedActions(JsonArray actions, long expiresAt) {
+    }
+
+    private final Clock clock;
+    private final boolean skipUnchanged;
+    private final int positionQuantum;
+    private final long cacheTtlMillis;
+
+    // Access-ordered, the eldest entry is the least recently used
+    private final LinkedHashMap<Long, CachedActions> cache;
+
+    private @Nullable Long lastSentState;
+
+    private long batches;
+    private long skipped;
+    private long lookups;
+    private long hits;
+
+    @Inject
+    public BatchFilter(Clock clock, EnvConfig envConfig) {
+        this.clock = clock;
+        this.skipUnchanged = envConfig.getInt("BATCH_SKIP_UNCHANGED", 1) != 0;
+        this.positionQuantum = Math.max(1, envConfig.getInt("BATCH_POSITION_QUANTUM", DEFAULT_POSITION_QUANTUM));
+        this.cacheTtlMillis = envConfig.getInt("BATCH_CACHE_TTL_MS", (int) DEFAULT_CACHE_TTL_MILLIS);
+
+        final int cacheSize = envConfig.getInt("BATCH_CACHE_SIZE", DEFAULT_CACHE_SIZE);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedActions> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Computes the fingerprints of a batch. The payload sections must not be encoded yet, aliases
+     * depend on the conversation and would change the fingerprints.
+     *
+     * @param events    The serialized events
+     * @param stats     The serialized stats
+     * @param positions The serialized player positions
+     */
+    public Fingerprint fingerprint(JsonElement events, JsonElement stats, JsonElement positions) {
+        final long state = mix(hash(stats, Precision.ROUNDED), hash(positions, Precision.POSITION));
+        return new Fingerprint(state, mix(state, hash(events, Precision.EXACT)));
+    }
+
+    /**
+     * Counts a batch and tells whether it can be skipped.
+     *
+     * @param fingerprint The fingerprints of the batch
+     * @param hasEvents   Whether the batch holds events
+     * @return Whether the batch holds no events and the same stats and positions as the last one sent
+     */
+    public synchronized boolean shouldSkip(Fingerprint fingerprint, boolean hasEvents) {
+        batches++;
+
+        if (!skipUnchanged || hasEvents || lastSentState == null || lastSentState != fingerprint.state()) {
+            return false;
+        }
+
+        skipped++;
+        return true;
+    }
+
+    /**
+     * Records that the AI received a batch, so that the same state is not sent again.
+     */
+    public synchronized void markSent(Fingerprint fingerprint) {
+        lastSentState = fingerprint.state();
+    }
+
+    /**
+     * Forgets the last state sent, e.g. when a new conversation starts and the AI lost it.
+     */
+    public synchronized void forgetSent() {
+        lastSentState = null;
+    }
+
+    /**
+     * Looks up the actions answered to a batch with the same fingerprint.
+     *
+     * @return A copy of the cached actions, or null if none are cached or they expired
+     */
+    public synchronized @Nullable JsonArray lookup(Fingerprint fingerprint) {
+        if (cacheTtlMillis <= 0) return null;
+
+        lookups++;
+
+        final CachedActions cached = cache.get(fingerprint.batch());
+        if (cached == null) return null;
+
+        if (cached.expiresAt() <= clock.millis()) {
+            cache.remove(fingerprint.batch());
+            return null;
+        }
+
+        hits++;
+        return cached.actions().deepCopy();
+    }
+
+    /**
+     * Caches the actions answered to a batch.
+     *
+     * @param actions The parsed actions, copied
+     */
+    public synchronized void store(Fingerprint fingerprint, JsonArray actions) {
+        if (cacheTtlMillis <= 0) return;
+
+        cache.put(fingerprint.batch(), new CachedActions(actions.deepCopy(), clock.millis() + cacheTtlMillis));
+    }
+
+    /**
+     * @return The share of batches skipped as unchanged, between 0 and 1
+     */
+    public synchronized double getSkipRate() {
+        return batches == 0 ? 0 : (double) skipped / batches;
+    }
+
+    /**
+     * @return The share of cache lookups answered from the cache, between 0 and 1
+     */
+    public synchronized double getHitRate() {
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    private long hash(JsonElement element, Precision precision) {
+        if (element == null || element.isJsonNull()) {
+            return FNV_OFFSET;
+        }
+
+        if (element.isJsonArray()) {
+            long hash = FNV_OFFSET ^ 'a';
+            for (JsonElement item : element.getAsJsonArray()) {
+                hash = mix(hash, hash(item, precision));
+            }
+            return hash;
+        }
+
+        if (element.isJsonObject()) {
+            // Summed so that the order of the keys does not matter
+            long hash = FNV_OFFSET ^ 'o';
+            for (Map.Entry<String, JsonElement> entry : ((JsonObject) element).entrySet()) {
+                if (TIMESTAMP_FIELD.equals(entry.getKey())) continue;
+
+                final Precision valuePrecision = POSITION_FIELD.equals(entry.getKey()) ? Precision.POSITION : precision;
+                hash += mix(hash(entry.getKey()), hash(entry.getValue(), valuePrecision));
+            }
+            return hash;
+        }
+
+        final JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (primitive.isNumber()) {
+            return mix(FNV_OFFSET ^ 'n', Double.doubleToLongBits(canonical(primitive.getAsDouble(), precision)));
+        }
+
+        return hash(primitive.getAsString());
+    }
+
+    private double canonical(double value, Precision precision) {
+        return switch (precision) {
+            case EXACT -> value;
+            case POSITION -> Math.floor(value / positionQuantum);
+            case ROUNDED -> {
+                if (value == 0 || !Double.isFinite(value)) yield value;
+
+                final double scale = Math.pow(10, 1 - (int) Math.floor(Math.log10(Math.abs(value))));
+                yield Math.round(value * scale) / scale;
+            }
+        };
+    }
+
+    private static long hash(String value) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        // Finalizer of SplitMix64 over the combined values
+        long mixed = (hash ^ value) * FNV_PRIME + value;
+        mixed = (mixed ^ (mixed >>> 30)) * 0xbf58476d1ce4e5b9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94d049bb133111ebL;
+        return mixed ^ (mixed >>> 31);
+    }
+}
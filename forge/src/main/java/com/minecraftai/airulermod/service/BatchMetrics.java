@@ -0,0 +1,23 @@
+package com.minecraftai.airulermod.service;
+
+/**
+ * Measurements of one batch sent to the AI by the {@link EventsActionProcessor}.
+ *
+ * @param events             The number of events in the batch
+ * @param payloadChars       The length of the serialized payload
+ * @param deltaSavedChars    The length saved by sending only the positions and stats that changed
+ * @param serializationNanos The time spent building and serializing the payload
+ * @param aiNanos            The time spent waiting for the AI response
+ * @param actions            The number of actions parsed from the response
+ * @param firstActionNanos   The time from sending the payload until the first action was parsed, -1 without actions
+ */
+public record BatchMetrics(
+        int events,
+        int payloadChars,
+        int deltaSavedChars,
+        long serializationNanos,
+        long aiNanos,
+        int actions,
+        long firstActionNanos
+) {
+}
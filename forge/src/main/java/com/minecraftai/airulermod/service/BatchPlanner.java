@@ -0,0 +1,140 @@
+package com.minecraftai.airulermod.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.minecraftai.airulermod.config.EnvConfig;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits batches too large for a single request into chunks under a token budget.
+ * <p>
+ * Every event and stats section is costed with the tokens of its JSON. A batch within the budget
+ * is left whole. A larger one, e.g. after an outage or on a packed server, is packed into chunks:
+ * events in timestamp order, so that chunks follow each other in time, then the stats sections.
+ * Every chunk also carries the player positions. An item larger than the budget on its own gets
+ * a chunk of its own.
+ */
+@Singleton
+public class BatchPlanner {
+    private static final int DEFAULT_TOKEN_BUDGET = 16000;
+    private static final int DEFAULT_MAX_PARALLEL_CHUNKS = 4;
+
+    // Tokens of the object around the sections, and of the separator between two items
+    private static final int ENVELOPE_TOKENS = 16;
+    private static final int SEPARATOR_TOKENS = 1;
+
+    private static final String TIMESTAMP_FIELD = "ts";
+
+    /**
+     * Part of a batch sent as a request of its own.
+     *
+     * @param events The events of the chunk, in timestamp order
+     * @param stats  The stats sections of the chunk, possibly none
+     * @param tokens The estimated tokens of the chunk
+     */
+    public record Chunk(JsonArray events, JsonObject stats, long tokens) {
+    }
+
+    private record Item(@Nullable String section, JsonElement value, long tokens, long timestamp) {
+    }
+
+    private final Gson serializer;
+    private final TokenCounter tokenCounter;
+    private final long tokenBudget;
+    private final int maxParallelChunks;
+
+    @Inject
+    public BatchPlanner(Gson serializer, TokenCounter tokenCounter, EnvConfig envConfig) {
+        this.serializer = serializer;
+        this.tokenCounter = tokenCounter;
+        this.tokenBudget = envConfig.getInt("BATCH_TOKEN_BUDGET", DEFAULT_TOKEN_BUDGET);
+        this.maxParallelChunks = Math.max(1, envConfig.getInt("BATCH_MAX_PARALLEL_CHUNKS", DEFAULT_MAX_PARALLEL_CHUNKS));
+    }
+
+    /**
+     * Plans the requests of a batch. The sections must not be encoded with aliases.
+     *
+     * @param events    The serialized events
+     * @param stats     The serialized stats, by section name
+     * @param positions The serialized player positions, sent with every chunk
+     * @return The chunks to send, or null if the batch fits the budget or splitting is disabled
+     */
+    public @Nullable List<Chunk> plan(JsonArray events, JsonObject stats, JsonObject positions) {
+        if (tokenBudget <= 0) return null;
+
+        final long fixedTokens = ENVELOPE_TOKENS + count(positions);
+        final List<Item> items = new ArrayList<>(events.size() + stats.size());
+        long totalTokens = fixedTokens;
+
+        for (JsonElement event : events) {
+            final Item item = new Item(null, event, count(event) + SEPARATOR_TOKENS, timestampOf(event));
+            items.add(item);
+            totalTokens += item.tokens();
+        }
+        for (Map.Entry<String, JsonElement> section : stats.entrySet()) {
+            final Item item = new Item(section.getKey(), section.getValue(),
+                    tokenCounter.count(section.getKey()) + count(section.getValue()) + SEPARATOR_TOKENS, Long.MAX_VALUE);
+            items.add(item);
+            totalTokens += item.tokens();
+        }
+
+        if (totalTokens <= tokenBudget) return null;
+
+        // Stable, events coalesced out of order keep their relative position
+        items.sort(Comparator.comparingLong(Item::timestamp));
+
+        final List<Chunk> chunks = new ArrayList<>();
+        JsonArray chunkEvents = new JsonArray();
+        JsonObject chunkStats = new JsonObject();
+        long chunkTokens = fixedTokens;
+
+        for (Item item : items) {
+            final boolean chunkEmpty = chunkEvents.isEmpty() && chunkStats.isEmpty();
+            if (!chunkEmpty && chunkTokens + item.tokens() > tokenBudget) {
+                chunks.add(new Chunk(chunkEvents, chunkStats, chunkTokens));
+                chunkEvents = new JsonArray();
+                chunkStats = new JsonObject();
+                chunkTokens = fixedTokens;
+            }
+
+            if (item.section() == null) {
+                chunkEvents.add(item.value());
+            } else {
+                chunkStats.add(item.section(), item.value());
+            }
+            chunkTokens += item.tokens();
+        }
+        chunks.add(new Chunk(chunkEvents, chunkStats, chunkTokens));
+
+        return chunks;
+    }
+
+    /**
+     * @return The highest number of chunks of a batch sent at the same time
+     */
+    public int getMaxParallelChunks() {
+        return maxParallelChunks;
+    }
+
+    private long count(JsonElement element) {
+        return tokenCounter.count(serializer.toJson(element));
+    }
+
+    private static long timestampOf(JsonElement event) {
+        if (!event.isJsonObject()) return Long.MIN_VALUE;
+
+        final JsonElement timestamp = event.getAsJsonObject().get(TIMESTAMP_FIELD);
+        return timestamp != null && timestamp.isJsonPrimitive() && timestamp.getAsJsonPrimitive().isNumber()
+                ? timestamp.getAsLong()
+                : Long.MIN_VALUE;
+    }
+}
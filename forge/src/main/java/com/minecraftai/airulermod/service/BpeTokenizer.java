@@ -0,0 +1,579 @@
+package com.minecraftai.airulermod.service;
+
+import com.minecraftai.airulermod.config.EnvConfig;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Counts the tokens of a text as the model's byte-pair encoding (o200k_base) splits it.
+ * <p>
+ * The vocabulary is read from a tiktoken file, one base64-encoded token and its rank per line,
+ * either from the path set in {@code TOKENIZER_VOCABULARY} or from the {@code o200k_base.tiktoken}
+ * resource bundled with the mod, which the build downloads and verifies. Without a vocabulary the
+ * tokenizer is unavailable and callers fall back to an estimate.
+ * <p>
+ * The text is first split into pieces by a hand-written scanner equivalent to the pre-tokenization
+ * pattern of the encoding (words with an optional leading character and contraction, numbers of up
+ * to three digits, punctuation runs, whitespace runs), avoiding the cost of a regex engine. Each
+ * piece is looked up whole in an open-addressing table over the token bytes, straight from the text
+ * for ASCII pieces and once encoded to UTF-8 in a reused buffer otherwise, which covers most pieces.
+ * Only the remaining pieces go through the byte-pair merge, and their token counts are cached.
+ */
+@Singleton
+public class BpeTokenizer {
+    private static final Logger LOGGER = Logger.getLogger(BpeTokenizer.class.getName());
+
+    private static final String VOCABULARY_RESOURCE = "/o200k_base.tiktoken";
+    private static final int MAX_CACHED_PIECES = 16384;
+    private static final int NO_RANK = Integer.MAX_VALUE;
+
+    // Character classes of the pre-tokenization pattern
+    private static final int UPPER = 1;       // [\p{Lu}\p{Lt}\p{Lm}\p{Lo}\p{M}]
+    private static final int LOWER = 1 << 1;  // [\p{Ll}\p{Lm}\p{Lo}\p{M}]
+    private static final int LETTER = 1 << 2; // \p{L}
+    private static final int NUMBER = 1 << 3; // \p{N}
+    private static final int SPACE = 1 << 4;  // \s, Unicode White_Space
+    private static final int NEWLINE = 1 << 5; // [\r\n]
+
+    private static final int[] ASCII_CLASSES = new int[128];
+
+    static {
+        for (int c = 0; c < 128; c++) {
+            ASCII_CLASSES[c] = classify(c);
+        }
+    }
+
+    // Token bytes, concatenated, and the rank of each token
+    private byte[] tokenBytes;
+    private int[] tokenOffsets;
+    private int[] tokenRanks;
+
+    // Open-addressing table of token indices + 1, 0 for empty slots
+    private int[] table;
+
+    private final Map<String, Integer> pieceCounts = new HashMap<>();
+
+    // Text being counted, copied once so that scanning reads a plain array
+    private char[] chars = new char[1024];
+    private byte[] buffer = new byte[256];
+    private int[] partStarts = new int[64];
+    private int[] partRanks = new int[64];
+
+    private final boolean available;
+
+    @Inject
+    public BpeTokenizer(EnvConfig envConfig) {
+        this.available = load(envConfig.getOrDefault("TOKENIZER_VOCABULARY", ""));
+    }
+
+    /**
+     * @return Whether a vocabulary was loaded, {@link #countTokens(CharSequence)} is only meaningful if so
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Counts the tokens of a text.
+     *
+     * @param text The text to count
+     * @return The number of tokens the model splits the text into
+     */
+    public synchronized int countTokens(CharSequence text) {
+        final int length = text.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        if (text instanceof String string) {
+            string.getChars(0, length, chars, 0);
+        } else {
+            for (int i = 0; i < length; i++) {
+                chars[i] = text.charAt(i);
+            }
+        }
+
+        int count = 0;
+        int start = 0;
+        while (start < length) {
+            final int end = nextPiece(chars, start, length);
+            count += countPiece(start, end);
+            start = end;
+        }
+
+        return count;
+    }
+
+    private int countPiece(int start, int end) {
+        if (isAsciiToken(start, end)) return 1;
+
+        final int byteCount = encodeUtf8(chars, start, end);
+        if (rank(buffer, 0, byteCount) != NO_RANK) return 1;
+
+        final String piece = new String(chars, start, end - start);
+        final Integer cached = pieceCounts.get(piece);
+        if (cached != null) return cached;
+
+        final int count = mergeCount(byteCount);
+        if (pieceCounts.size() >= MAX_CACHED_PIECES) {
+            pieceCounts.clear();
+        }
+        pieceCounts.put(piece, count);
+
+        return count;
+    }
+
+    /**
+     * Merges the lowest ranked adjacent pair of the buffer until no pair is a token, as the encoding
+     * does, and counts the resulting tokens.
+     */
+    private int mergeCount(int byteCount) {
+        if (partStarts.length < byteCount + 1) {
+            partStarts = new int[byteCount + 1];
+            partRanks = new int[byteCount + 1];
+        }
+
+        // Part i spans from partStarts[i] to partStarts[i + 1], partRanks[i] is the rank of its pair with part i + 1
+        int parts = byteCount + 1;
+        for (int i = 0; i < parts; i++) {
+            partStarts[i] = i;
+            partRanks[i] = i + 2 <= byteCount ? rank(buffer, i, 2) : NO_RANK;
+        }
+
+        while (parts > 2) {
+            int best = -1;
+            int bestRank = NO_RANK;
+            for (int i = 0; i < parts - 1; i++) {
+                if (partRanks[i] < bestRank) {
+                    bestRank = partRanks[i];
+                    best = i;
+                }
+            }
+            if (best < 0) break;
+
+            System.arraycopy(partStarts, best + 2, partStarts, best + 1, parts - best - 2);
+            System.arraycopy(partRanks, best + 2, partRanks, best + 1, parts - best - 2);
+            parts--;
+
+            partRanks[best] = pairRank(best, parts);
+            if (best > 0) {
+                partRanks[best - 1] = pairRank(best - 1, parts);
+            }
+        }
+
+        return parts - 1;
+    }
+
+    private int pairRank(int part, int parts) {
+        if (part + 2 >= parts) return NO_RANK;
+
+        return rank(buffer, partStarts[part], partStarts[part + 2] - partStarts[part]);
+    }
+
+    /**
+     * Finds the end of the piece starting at the given index, following the alternatives of the
+     * pre-tokenization pattern in order:
+     * <pre>
+     * [^\r\n\p{L}\p{N}]?[\p{Lu}\p{Lt}\p{Lm}\p{Lo}\p{M}]*[\p{Ll}\p{Lm}\p{Lo}\p{M}]+(?i:'s|'t|'re|'ve|'m|'ll|'d)?
+     * [^\r\n\p{L}\p{N}]?[\p{Lu}\p{Lt}\p{Lm}\p{Lo}\p{M}]+[\p{Ll}\p{Lm}\p{Lo}\p{M}]*(?i:'s|'t|'re|'ve|'m|'ll|'d)?
+     * \p{N}{1,3}
+     *  ?[^\s\p{L}\p{N}]+[\r\n/]*
+     * \s*[\r\n]+
+     * \s+(?!\S)
+     * \s+
+     * </pre>
+     */
+    private static int nextPiece(char[] text, int start, int length) {
+        if (text[start] < 128) {
+            final int end = nextAsciiPiece(text, start, length);
+            if (end > 0) return end;
+        }
+
+        final int first = classAt(text, start, length);
+        final int afterFirst = start + charCount(text, start, length);
+        final boolean prefixable = (first & (NEWLINE | LETTER | NUMBER)) == 0;
+
+        // Words, the optional leading character being tried first
+        int end;
+        if (prefixable && afterFirst < length && (end = lowerWord(text, afterFirst, length)) > 0) return end;
+        if ((end = lowerWord(text, start, length)) > 0) return end;
+        if (prefixable && afterFirst < length && (end = upperWord(text, afterFirst, length)) > 0) return end;
+        if ((end = upperWord(text, start, length)) > 0) return end;
+
+        if ((first & NUMBER) != 0) {
+            end = afterFirst;
+            for (int digits = 1; digits < 3 && end < length && (classAt(text, end, length) & NUMBER) != 0; digits++) {
+                end += charCount(text, end, length);
+            }
+            return end;
+        }
+
+        // Punctuation, with an optional leading space
+        int punctuation = start;
+        if (text[start] == ' ' && afterFirst < length && isPunctuation(classAt(text, afterFirst, length))) {
+            punctuation = afterFirst;
+        }
+        if (isPunctuation(classAt(text, punctuation, length))) {
+            end = punctuation;
+            while (end < length && isPunctuation(classAt(text, end, length))) {
+                end += charCount(text, end, length);
+            }
+            while (end < length && (text[end] == '\r' || text[end] == '\n' || text[end] == '/')) {
+                end++;
+            }
+            return end;
+        }
+
+        // Whitespace
+        int spaceEnd = start;
+        int lastNewline = -1;
+        while (spaceEnd < length && (classAt(text, spaceEnd, length) & SPACE) != 0) {
+            if ((classAt(text, spaceEnd, length) & NEWLINE) != 0) lastNewline = spaceEnd;
+            spaceEnd++;
+        }
+        if (spaceEnd == start) return afterFirst;
+
+        if (lastNewline >= 0) return lastNewline + 1;
+        if (spaceEnd == length || spaceEnd - 1 == start) return spaceEnd;
+
+        // The last space is left to prefix the following word
+        return spaceEnd - 1;
+    }
+
+    /**
+     * Fast path of {@link #nextPiece(char[], int, int)} for the common pieces made of ASCII characters
+     * only: words, numbers and punctuation. Within ASCII, both word alternatives reduce to an upper
+     * case run followed by a lower case run.
+     *
+     * @return The end of the piece, -1 if a non-ASCII character may change the match
+     */
+    private static int nextAsciiPiece(char[] text, int start, int length) {
+        final int first = ASCII_CLASSES[text[start]];
+
+        int wordStart = start;
+        if ((first & (NEWLINE | LETTER | NUMBER)) == 0 && start + 1 < length) {
+            if (text[start + 1] >= 128) return -1;
+            if ((ASCII_CLASSES[text[start + 1]] & LETTER) != 0) wordStart = start + 1;
+        }
+
+        if ((ASCII_CLASSES[text[wordStart]] & LETTER) != 0) {
+            int end = wordStart;
+            while (end < length && text[end] < 128 && (ASCII_CLASSES[text[end]] & UPPER) != 0) end++;
+            while (end < length && text[end] < 128 && (ASCII_CLASSES[text[end]] & LOWER) != 0) end++;
+            if (end < length && text[end] >= 128) return -1;
+            return contraction(text, end, length);
+        }
+
+        if ((first & NUMBER) != 0) {
+            int end = start + 1;
+            while (end < length && end < start + 3 && text[end] < 128 && (ASCII_CLASSES[text[end]] & NUMBER) != 0) end++;
+            if (end < length && end < start + 3 && text[end] >= 128) return -1;
+            return end;
+        }
+
+        // Punctuation, with an optional leading space; whitespace is left to the general path
+        int end = text[start] == ' ' && start + 1 < length && isPunctuation(ASCII_CLASSES[text[start + 1]]) ? start + 1 : start;
+        if (!isPunctuation(ASCII_CLASSES[text[end]])) return -1;
+
+        while (end < length && text[end] < 128 && isPunctuation(ASCII_CLASSES[text[end]])) end++;
+        if (end < length && text[end] >= 128) return -1;
+        while (end < length && (text[end] == '\r' || text[end] == '\n' || text[end] == '/')) end++;
+        return end;
+    }
+
+    /**
+     * Matches {@code [UPPER]*[LOWER]+} and an optional contraction.
+     *
+     * @return The end of the match, -1 if none
+     */
+    private static int lowerWord(char[] text, int start, int length) {
+
+        int upperEnd = start;
+        int lastLower = -1;
+        while (upperEnd < length) {
+            final int charClass = classAt(text, upperEnd, length);
+            if ((charClass & UPPER) == 0) break;
+            if ((charClass & LOWER) != 0) lastLower = upperEnd;
+            upperEnd += charCount(text, upperEnd, length);
+        }
+
+        int end;
+        if (upperEnd < length && (classAt(text, upperEnd, length) & LOWER) != 0) {
+            end = upperEnd;
+            while (end < length && (classAt(text, end, length) & LOWER) != 0) {
+                end += charCount(text, end, length);
+            }
+        } else if (lastLower >= 0) {
+            // Backtracking: the upper case run gives back its last character that also counts as lower case
+            end = lastLower + charCount(text, lastLower, length);
+        } else {
+            return -1;
+        }
+
+        return contraction(text, end, length);
+    }
+
+    /**
+     * Matches {@code [UPPER]+[LOWER]*} and an optional contraction.
+     *
+     * @return The end of the match, -1 if none
+     */
+    private static int upperWord(char[] text, int start, int length) {
+
+        int end = start;
+        while (end < length && (classAt(text, end, length) & UPPER) != 0) {
+            end += charCount(text, end, length);
+        }
+        if (end == start) return -1;
+
+        while (end < length && (classAt(text, end, length) & LOWER) != 0) {
+            end += charCount(text, end, length);
+        }
+
+        return contraction(text, end, length);
+    }
+
+    private static int contraction(char[] text, int end, int length) {
+        if (end + 1 >= length || text[end] != '\'') return end;
+
+        final char second = Character.toLowerCase(text[end + 1]);
+        if (second == 's' || second == 't' || second == 'm' || second == 'd') return end + 2;
+
+        if (end + 2 < length) {
+            final char third = Character.toLowerCase(text[end + 2]);
+            if ((second == 'r' || second == 'v') && third == 'e' || second == 'l' && third == 'l') return end + 3;
+        }
+
+        return end;
+    }
+
+    private static boolean isPunctuation(int charClass) {
+        return (charClass & (SPACE | LETTER | NUMBER)) == 0;
+    }
+
+    private static int classAt(char[] text, int index, int length) {
+        final char c = text[index];
+        if (c < 128) return ASCII_CLASSES[c];
+
+        return classify(Character.isHighSurrogate(c) ? Character.codePointAt(text, index, length) : c);
+    }
+
+    private static int charCount(char[] text, int index, int length) {
+        return Character.isHighSurrogate(text[index]) && index + 1 < length
+                && Character.isLowSurrogate(text[index + 1]) ? 2 : 1;
+    }
+
+    private static int classify(int codePoint) {
+        final int type = Character.getType(codePoint);
+        return switch (type) {
+            case Character.UPPERCASE_LETTER, Character.TITLECASE_LETTER -> UPPER | LETTER;
+            case Character.LOWERCASE_LETTER -> LOWER | LETTER;
+            case Character.MODIFIER_LETTER, Character.OTHER_LETTER -> UPPER | LOWER | LETTER;
+            case Character.NON_SPACING_MARK, Character.ENCLOSING_MARK, Character.COMBINING_SPACING_MARK -> UPPER | LOWER;
+            case Character.DECIMAL_DIGIT_NUMBER, Character.LETTER_NUMBER, Character.OTHER_NUMBER -> NUMBER;
+            default -> {
+                if (codePoint == '\r' || codePoint == '\n') yield SPACE | NEWLINE;
+                if (Character.isSpaceChar(codePoint) || codePoint >= 0x09 && codePoint <= 0x0D || codePoint == 0x85) yield SPACE;
+                yield 0;
+            }
+        };
+    }
+
+    /**
+     * Encodes a range of the text to UTF-8 in the buffer, growing it if needed.
+     *
+     * @return The number of bytes
+     */
+    private int encodeUtf8(char[] text, int start, int end) {
+        if (buffer.length < (end - start) * 3) {
+            buffer = new byte[(end - start) * 3];
+        }
+
+        int position = 0;
+        for (int i = start; i < end; i++) {
+            int c = text[i];
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+                continue;
+            }
+
+            if (Character.isHighSurrogate((char) c) && i + 1 < end && Character.isLowSurrogate(text[i + 1])) {
+                c = Character.toCodePoint((char) c, text[++i]);
+            } else if (Character.isSurrogate((char) c)) {
+                // Lone surrogates are replaced like String.getBytes does
+                c = '?';
+            }
+
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | c >> 6);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else if (c < 0x10000) {
+                buffer[position++] = (byte) (0xE0 | c >> 12);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else {
+                buffer[position++] = (byte) (0xF0 | c >> 18);
+                buffer[position++] = (byte) (0x80 | c >> 12 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * Looks up the rank of a byte sequence.
+     *
+     * @return The rank, or {@link #NO_RANK} if the sequence is not a token
+     */
+    private int rank(byte[] bytes, int offset, int length) {
+        final int mask = table.length - 1;
+        int index = hash(bytes, offset, length) & mask;
+
+        int entry;
+        while ((entry = table[index]) != 0) {
+            final int token = entry - 1;
+            final int tokenOffset = tokenOffsets[token];
+            if (tokenOffsets[token + 1] - tokenOffset == length && matches(bytes, offset, tokenOffset, length)) {
+                return tokenRanks[token];
+            }
+            index = (index + 1) & mask;
+        }
+
+        return NO_RANK;
+    }
+
+    /**
+     * Looks up an ASCII piece straight from the text, its UTF-8 bytes being its characters.
+     *
+     * @return Whether the piece is ASCII and a token
+     */
+    private boolean isAsciiToken(int start, int end) {
+        int hash = 0x811C9DC5;
+        for (int i = start; i < end; i++) {
+            final char c = chars[i];
+            if (c >= 0x80) return false;
+            hash = (hash ^ c) * 0x01000193;
+        }
+
+        final int length = end - start;
+        final int mask = table.length - 1;
+        int index = (hash ^ hash >>> 16) & mask;
+
+        int entry;
+        while ((entry = table[index]) != 0) {
+            final int tokenOffset = tokenOffsets[entry - 1];
+            if (tokenOffsets[entry] - tokenOffset == length && matchesChars(start, tokenOffset, length)) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+
+        return false;
+    }
+
+    private boolean matchesChars(int start, int tokenOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (tokenBytes[tokenOffset + i] != chars[start + i]) return false;
+        }
+        return true;
+    }
+
+    private boolean matches(byte[] bytes, int offset, int tokenOffset, int length) {
+        // Tokens are a few bytes long, a plain loop beats the setup of a vectorized comparison
+        for (int i = 0; i < length; i++) {
+            if (tokenBytes[tokenOffset + i] != bytes[offset + i]) return false;
+        }
+        return true;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 0x811C9DC5;
+        for (int i = offset; i < offset + length; i++) {
+            hash = (hash ^ bytes[i]) * 0x01000193;
+        }
+        return hash ^ hash >>> 16;
+    }
+
+    private boolean load(String path) {
+        try (InputStream input = path.isEmpty()
+                ? BpeTokenizer.class.getResourceAsStream(VOCABULARY_RESOURCE)
+                : Files.newInputStream(Path.of(path))) {
+            if (input == null) {
+                LOGGER.warning("No tokenizer vocabulary found, token counts are estimated from the text length");
+                return false;
+            }
+
+            readVocabulary(input);
+            LOGGER.info("Tokenizer vocabulary loaded, " + (tokenOffsets.length - 1) + " tokens");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to load the tokenizer vocabulary, token counts are estimated from the text length", e);
+            return false;
+        }
+    }
+
+    private void readVocabulary(InputStream input) throws IOException {
+        final Base64.Decoder decoder = Base64.getDecoder();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.US_ASCII));
+
+        byte[] bytes = new byte[1 << 20];
+        int[] offsets = new int[1 << 16];
+        int[] ranks = new int[1 << 16];
+        int tokens = 0;
+        int size = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            final int separator = line.indexOf(' ');
+            if (separator <= 0) continue;
+
+            final byte[] token = decoder.decode(line.substring(0, separator));
+            if (tokens + 1 >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                ranks = Arrays.copyOf(ranks, ranks.length * 2);
+            }
+            if (size + token.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + token.length));
+            }
+
+            offsets[tokens] = size;
+            ranks[tokens] = Integer.parseInt(line, separator + 1, line.length(), 10);
+            System.arraycopy(token, 0, bytes, size, token.length);
+            size += token.length;
+            tokens++;
+        }
+
+        offsets[tokens] = size;
+        this.tokenBytes = Arrays.copyOf(bytes, size);
+        this.tokenOffsets = Arrays.copyOf(offsets, tokens + 1);
+        this.tokenRanks = Arrays.copyOf(ranks, tokens);
+
+        // At most half full
+        this.table = new int[Integer.highestOneBit(Math.max(tokens, 1)) * 4];
+        final int mask = table.length - 1;
+        for (int token = 0; token < tokens; token++) {
+            int index = hash(tokenBytes, tokenOffsets[token], tokenOffsets[token + 1] - tokenOffsets[token]) & mask;
+            while (table[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            table[index] = token + 1;
+        }
+    }
+}
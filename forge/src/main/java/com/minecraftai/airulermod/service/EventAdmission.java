@@ -0,0 +1,212 @@
+package com.minecraftai.airulermod.service;
+
+import com.minecraftai.airulermod.config.EnvConfig;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Capture-side admission control deciding whether an event is tracked at all, before anything
+ * is allocated for it. Spam bots and mob farms would otherwise flood the event buffer with
+ * thousands of near-identical events per minute.
+ * <p>
+ * Each event kind is configured independently from the environment:
+ * - {@code ADMISSION_<KIND>_MIN}: minimum event value to be admitted (e.g. damage amount)
+ * - {@code ADMISSION_<KIND>_RATE} and {@code ADMISSION_<KIND>_BURST}: a token bucket per player,
+ *   refilled at RATE events per second up to BURST events (at most {@value #MAX_BURST}); a rate of
+ *   0 disables the limit
+ * - {@code ADMISSION_<KIND>_SAMPLE}: probability that an event passing the other checks is kept
+ * <p>
+ * The check is O(1) and lock-free: the token bucket of every player and kind is packed into a
+ * single long updated with CAS, in a table preallocated for {@value #PLAYER_SLOTS} players.
+ * Players beyond that share slots. The refill time is kept in milliseconds since the admission
+ * was created, on the monotonic clock, over 40 bits: it neither wraps for decades nor goes back
+ * when the wall clock is adjusted.
+ * <p>
+ * Sampled events carry their sample rate, events dropped by the token buckets are only counted,
+ * see {@link #getLimitedCounts()}, so that they can be reported with the batch.
+ */
+@Singleton
+public class EventAdmission {
+    private static final int PLAYER_SLOTS = 1024;
+    private static final long MILLI_TOKENS_PER_TOKEN = 1000;
+
+    // Bucket state: remaining milli-tokens in the high 24 bits, last refill time in the low 40 bits
+    private static final int TIME_BITS = 40;
+    private static final long TIME_MASK = (1L << TIME_BITS) - 1;
+    private static final int MAX_BURST = (int) (((1L << (Long.SIZE - TIME_BITS)) - 1) / MILLI_TOKENS_PER_TOKEN);
+
+    /**
+     * Kinds of events subject to admission control.
+     */
+    public enum Kind {
+        CHAT(1, 5),
+        DAMAGE(5, 20),
+        DEATH(0, 0),
+        KILL(2, 10);
+
+        private final double defaultRate;
+        private final int defaultBurst;
+
+        Kind(double defaultRate, int defaultBurst) {
+            this.defaultRate = defaultRate;
+            this.defaultBurst = defaultBurst;
+        }
+    }
+
+    private final Map<Kind, Policy> policies = new EnumMap<>(Kind.class);
+    private final long baseNanos = System.nanoTime();
+
+    @Inject
+    public EventAdmission(EnvConfig envConfig) {
+        for (Kind kind : Kind.values()) {
+            final String prefix = "ADMISSION_" + kind.name() + "_";
+
+            policies.put(kind, new Policy(
+                    envConfig.getDouble(prefix + "MIN", 0),
+                    envConfig.getDouble(prefix + "RATE", kind.defaultRate),
+                    envConfig.getInt(prefix + "BURST", kind.defaultBurst),
+                    envConfig.getDouble(prefix + "SAMPLE", 1),
+                    nowMillis()
+            ));
+        }
+    }
+
+    /**
+     * Decides whether an event is admitted.
+     *
+     * @param kind        The kind of the event
+     * @param playerIndex The index of the player in the {@link PlayerRegistry}
+     * @param value       The value checked against the configured minimum (e.g. damage), 0 if none
+     * @return The sample rate the event was admitted with, to be recorded in the event so that
+     *         counts can be scaled, or 0 if the event is rejected
+     */
+    public float admit(Kind kind, int playerIndex, float value) {
+        return policies.get(kind).admit(playerIndex, value, nowMillis());
+    }
+
+    /**
+     * Refills the token buckets of a player whose index is released, so that the next player
+     * given the index does not inherit them. Players sharing the slot get a full bucket as well.
+     *
+     * @param playerIndex The index of the player in the {@link PlayerRegistry}
+     */
+    public void release(int playerIndex) {
+        final long now = nowMillis();
+        policies.values().forEach(policy -> policy.reset(playerIndex, now));
+    }
+
+    /**
+     * Retrieves the number of events rejected so far, per kind, for any reason.
+     */
+    public Map<Kind, Long> getRejectedCounts() {
+        final Map<Kind, Long> counts = new EnumMap<>(Kind.class);
+        policies.forEach((kind, policy) -> counts.put(kind, policy.rejected.sum()));
+
+        return counts;
+    }
+
+    /**
+     * Retrieves the number of events dropped so far because a player exceeded the rate limit, per
+     * kind. Unlike sampled events, they leave no trace in the events sent to the AI.
+     */
+    public Map<Kind, Long> getLimitedCounts() {
+        final Map<Kind, Long> counts = new EnumMap<>(Kind.class);
+        policies.forEach((kind, policy) -> counts.put(kind, policy.limited.sum()));
+
+        return counts;
+    }
+
+    /**
+     * @return The time in milliseconds since the admission was created, from the monotonic clock
+     */
+    private long nowMillis() {
+        return (System.nanoTime() - baseNanos) / 1_000_000;
+    }
+
+    /**
+     * Admission settings and token bucket state of one event kind.
+     */
+    private static final class Policy {
+        private final double minValue;
+        private final double milliTokensPerMilli;
+        private final long capacityMilliTokens;
+        private final float sampleRate;
+
+        // Per player slot, see TIME_BITS
+        private final AtomicLongArray buckets = new AtomicLongArray(PLAYER_SLOTS);
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder limited = new LongAdder();
+
+        Policy(double minValue, double ratePerSecond, int burst, double sampleRate, long now) {
+            this.minValue = minValue;
+            this.milliTokensPerMilli = ratePerSecond;
+            this.capacityMilliTokens = Math.max(1, Math.min(MAX_BURST, burst)) * MILLI_TOKENS_PER_TOKEN;
+            this.sampleRate = (float) Math.max(0, Math.min(1, sampleRate));
+
+            for (int slot = 0; slot < PLAYER_SLOTS; slot++) {
+                buckets.set(slot, full(now));
+            }
+        }
+
+        float admit(int playerIndex, float value, long now) {
+            if (value < minValue) {
+                rejected.increment();
+                return 0;
+            }
+
+            if (!takeToken(playerIndex, now)) {
+                rejected.increment();
+                limited.increment();
+                return 0;
+            }
+
+            if (sampleRate < 1 && ThreadLocalRandom.current().nextFloat() >= sampleRate) {
+                rejected.increment();
+                return 0;
+            }
+
+            return sampleRate;
+        }
+
+        void reset(int playerIndex, long now) {
+            buckets.set(Math.floorMod(playerIndex, PLAYER_SLOTS), full(now));
+        }
+
+        private long full(long now) {
+            return (capacityMilliTokens << TIME_BITS) | (now & TIME_MASK);
+        }
+
+        private boolean takeToken(int playerIndex, long now) {
+            if (milliTokensPerMilli <= 0) return true;
+
+            final int slot = Math.floorMod(playerIndex, PLAYER_SLOTS);
+
+            while (true) {
+                final long state = buckets.get(slot);
+                final long tokens = state >>> TIME_BITS;
+                final long lastRefill = state & TIME_MASK;
+
+                final long elapsed = Math.max(0, (now & TIME_MASK) - lastRefill);
+                final long available = Math.min(
+                        capacityMilliTokens,
+                        tokens + (long) Math.min(capacityMilliTokens, elapsed * milliTokensPerMilli)
+                );
+
+                if (available < MILLI_TOKENS_PER_TOKEN) {
+                    return false;
+                }
+
+                final long updated = ((available - MILLI_TOKENS_PER_TOKEN) << TIME_BITS) | (now & TIME_MASK);
+                if (buckets.compareAndSet(slot, state, updated)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
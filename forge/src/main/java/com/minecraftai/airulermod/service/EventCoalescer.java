@@ -0,0 +1,141 @@
+package com.minecraftai.airulermod.service;
+
+import com.minecraftai.airulermod.buffer.ColumnarEventStore;
+import com.minecraftai.airulermod.config.EnvConfig;
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.events.PlayerDamageSummary;
+import com.minecraftai.airulermod.events.PlayerDamaged;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Folds bursts of repeated events into aggregates before they are sent to the AI.
+ * <p>
+ * Damage events of the same player from the same source within one time bucket, admitted with
+ * the same sample rate, are replaced by a single {@link PlayerDamageSummary} holding the hit
+ * count, the total damage, the first and last timestamps and the position of the first hit. Every
+ * other event (deaths, kills, chat, ...) passes through untouched, and the relative order of the
+ * resulting events follows the first occurrence of each aggregate.
+ * <p>
+ * Coalescing runs on the events released by the {@link EventTracker}, not as they are captured:
+ * damage is buffered without allocation in the {@link ColumnarEventStore} until then, and bursts
+ * beyond the admission limits never reach the buffer.
+ */
+@Singleton
+public class EventCoalescer {
+    private static final long DEFAULT_WINDOW_MS = 5000;
+
+    private final long windowMillis;
+
+    @Inject
+    public EventCoalescer(EnvConfig envConfig) {
+        this.windowMillis = envConfig.getInt("EVENT_COALESCE_WINDOW_MS", (int) DEFAULT_WINDOW_MS);
+    }
+
+    /**
+     * Coalesces a timestamp-ordered list of events.
+     *
+     * @param events The released events, oldest first
+     * @return A new list with repeated damage events folded into summaries,
+     *         or the given list if coalescing is disabled or nothing could be folded
+     */
+    public List<AbstractGameEvent> coalesce(List<AbstractGameEvent> events) {
+        if (windowMillis <= 0 || events.size() < 2) {
+            return events;
+        }
+
+        final List<AbstractGameEvent> coalesced = new ArrayList<>(events.size());
+        final Map<DamageKey, DamageAccumulator> accumulators = new HashMap<>();
+
+        for (AbstractGameEvent event : events) {
+            if (!(event instanceof PlayerDamaged damaged)) {
+                coalesced.add(event);
+                continue;
+            }
+
+            final var key = new DamageKey(
+                    damaged.getPlayerId(),
+                    damaged.getDamageSource(),
+                    damaged.getSampleRate(),
+                    damaged.getTimestamp() / windowMillis
+            );
+
+            final DamageAccumulator accumulator = accumulators.get(key);
+            if (accumulator != null) {
+                accumulator.add(damaged);
+                continue;
+            }
+
+            // Reserve the place of the aggregate at its first occurrence
+            accumulators.put(key, new DamageAccumulator(damaged, coalesced.size()));
+            coalesced.add(damaged);
+        }
+
+        if (coalesced.size() == events.size()) {
+            return events;
+        }
+
+        accumulators.values().forEach(accumulator -> coalesced.set(accumulator.index, accumulator.toEvent()));
+
+        return coalesced;
+    }
+
+    // Hits sampled at different rates are scaled differently, they are not summed together
+    private record DamageKey(String playerId, String damageSource, @Nullable Float sampleRate, long bucket) {
+    }
+
+    /**
+     * Running aggregate of the damage events sharing one {@link DamageKey}.
+     */
+    private static final class DamageAccumulator {
+        private final PlayerDamaged first;
+        private final int index;
+
+        private int count = 1;
+        private float totalDamage;
+        private long lastTimestamp;
+
+        DamageAccumulator(PlayerDamaged first, int index) {
+            this.first = first;
+            this.index = index;
+            this.totalDamage = first.getDamageAmount();
+            this.lastTimestamp = first.getTimestamp();
+        }
+
+        void add(PlayerDamaged event) {
+            count++;
+            totalDamage += event.getDamageAmount();
+            lastTimestamp = event.getTimestamp();
+        }
+
+        AbstractGameEvent toEvent() {
+            if (count == 1) {
+                return first;
+            }
+
+            final var summary = new PlayerDamageSummary(
+                    first.getPlayerId(),
+                    first.getPos(),
+                    first.getDamageSource(),
+                    count,
+                    totalDamage,
+                    first.getTimestamp(),
+                    lastTimestamp
+            );
+
+            // The summarized hits were all sampled at the rate of the first one
+            if (first.getSampleRate() != null) {
+                summary.setSampleRate(first.getSampleRate());
+            }
+
+            return summary;
+        }
+    }
+}
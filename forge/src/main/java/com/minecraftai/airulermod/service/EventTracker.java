@@ -1,37 +1,365 @@
 package com.minecraftai.airulermod.service;
+import com.minecraftai.airulermod.buffer.ColumnarEventStore;
+import com.minecraftai.airulermod.buffer.EventRingBuffer;
+import com.minecraftai.airulermod.buffer.OverflowPolicy;
+import com.minecraftai.airulermod.buffer.StringTable;
+import com.minecraftai.airulermod.config.EnvConfig;
 import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.events.EventPriority;
+import com.minecraftai.airulermod.journal.EventJournal;
+import com.minecraftai.airulermod.rules.RuleEngine;
 import jakarta.inject.Inject;
 
 import jakarta.inject.Singleton;
-import java.util.LinkedList;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Map;
+import java.util.logging.Logger;
 
 @Singleton
 public class EventTracker {
+    private static final Logger LOGGER = Logger.getLogger(EventTracker.class.getName());
+
+    private static final int DEFAULT_BUFFER_CAPACITY = 4096;
+    private static final int MIN_BUFFER_CAPACITY = 2;
+
+    private final EventRingBuffer events;
+    private final ColumnarEventStore combatEvents;
+    private final EventCoalescer eventCoalescer;
+    private final PlayerRegistry playerRegistry;
+    private final EventJournal eventJournal;
+    private final RuleEngine ruleEngine;
+    private final int capacity;
+
+    // Events of batches the AI did not get, released before the buffered ones; guarded by itself
+    private final Deque<AbstractGameEvent> requeued = new ArrayDeque<>();
+
+    // Releases not settled yet, oldest first, committed to the journal in this order; guarded by itself
+    private final Deque<PendingRelease> pendingReleases = new ArrayDeque<>();
+
+    // Total of dropped events at the previous release, used to report new drops only
+    private long reportedDrops = 0;
+
+    // Notified on the tracking thread whenever a high-priority event is tracked
+    private volatile @Nullable Runnable highPriorityListener;
+
     @Inject
-    public EventTracker() {}
+    public EventTracker(
+            EnvConfig envConfig,
+            EventCoalescer eventCoalescer,
+            PlayerRegistry playerRegistry,
+            EventJournal eventJournal,
+            RuleEngine ruleEngine
+    ) {
+        final int configuredCapacity = envConfig.getInt("EVENT_BUFFER_CAPACITY", DEFAULT_BUFFER_CAPACITY);
+        final OverflowPolicy overflowPolicy = envConfig.getEnum("EVENT_OVERFLOW_POLICY", OverflowPolicy.DROP_LOWEST_PRIORITY);
 
-    public static Queue<AbstractGameEvent> events = new ConcurrentLinkedQueue<>();
+        // Each buffer needs a slot at least
+        final int capacity = Math.max(MIN_BUFFER_CAPACITY, configuredCapacity);
+        if (capacity != configuredCapacity) {
+            LOGGER.warning("EVENT_BUFFER_CAPACITY " + configuredCapacity + " is too small, using " + capacity);
+        }
+
+        // One budget split between the two buffers: the combat store, whose capacity is a power of
+        // two, gets at most half of it, and the event buffer the rest
+        final int combatCapacity = Integer.highestOneBit(capacity / 2);
+        this.events = new EventRingBuffer(capacity - combatCapacity, overflowPolicy);
+        this.combatEvents = new ColumnarEventStore(combatCapacity, overflowPolicy);
+        this.eventCoalescer = eventCoalescer;
+        this.playerRegistry = playerRegistry;
+        this.eventJournal = eventJournal;
+        this.ruleEngine = ruleEngine;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Opens the event journal and tracks again the events that were still buffered when the
+     * server last stopped or crashed.
+     */
+    public void openJournal() {
+        final List<AbstractGameEvent> recovered = eventJournal.open();
+        // Rules already saw these events before the restart
+        recovered.forEach(this::buffer);
 
+        if (!recovered.isEmpty()) {
+            LOGGER.info("Recovered " + recovered.size() + " unreleased events from the event journal");
+        }
+    }
+
+    /**
+     * Closes the event journal. Events still buffered stay in the journal, to be recovered on the next start.
+     */
+    public void closeJournal() {
+        eventJournal.close();
+    }
+
+    /**
+     * Records a game event. Never blocks: if the buffer is full, the configured overflow
+     * policy decides which event is dropped. Tracked events are appended to the journal.
+     * The event is first evaluated by the {@link RuleEngine}; events a rule fully handled are
+     * not buffered, so they are left out of the batches sent to the AI.
+     */
     public void track(AbstractGameEvent event) {
-        events.add(event);
+        if (ruleEngine.evaluate(event)) return;
+
+        buffer(event);
+    }
+
+    private void buffer(AbstractGameEvent event) {
+        final boolean tracked = events.offer(event);
+        if (tracked) {
+            eventJournal.appendEvent(event);
+        }
+
+        final Runnable listener = highPriorityListener;
+        if (tracked && listener != null && event.getPriority() == EventPriority.HIGH) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Sets the callback run whenever a high-priority event is tracked. The callback runs on the
+     * tracking thread, usually the server thread, so it must be cheap.
+     *
+     * @param listener The callback, or null to remove it
+     */
+    public void setHighPriorityListener(@Nullable Runnable listener) {
+        this.highPriorityListener = listener;
+    }
+
+    /**
+     * Records a player damage event without allocating. Must be called from the server thread.
+     * Combat events are only journaled when released, see {@link #releaseEvents(EventPriority)}.
+     *
+     * @param playerIndex The index of the player in the {@link PlayerRegistry}
+     * @param position    The packed block position of the player
+     * @param sampleRate  The sample rate the event was admitted with
+     * @param amount      The amount of damage taken
+     * @param sourceId    The id of the damage source in {@link #getStrings()}
+     */
+    public void trackDamage(int playerIndex, long position, float sampleRate, float amount, int sourceId) {
+        combatEvents.captureDamage(playerIndex, position, System.currentTimeMillis(), sampleRate, amount, sourceId);
+    }
+
+    /**
+     * Records a kill made by a player without allocating. Must be called from the server thread.
+     * Combat events are only journaled when released, see {@link #releaseEvents(EventPriority)}.
+     *
+     * @param playerIndex  The index of the killer in the {@link PlayerRegistry}
+     * @param position     The packed block position of the killer
+     * @param sampleRate   The sample rate the event was admitted with
+     * @param targetTypeId The id of the killed entity type in {@link #getStrings()}
+     * @param targetId     The UUID of the killed entity
+     * @param weaponId     The id of the weapon name in {@link #getStrings()}
+     */
+    public void trackKill(int playerIndex, long position, float sampleRate, int targetTypeId, String targetId, int weaponId) {
+        combatEvents.captureKill(
+                playerIndex,
+                position,
+                System.currentTimeMillis(),
+                sampleRate,
+                targetTypeId,
+                targetId,
+                weaponId
+        );
+    }
+
+    /**
+     * Returns the events of a batch the AI did not get, e.g. after its request failed, to the front
+     * of the queue, so that they are sent with the next batch. They only take the room left in the
+     * buffer, never evicting events tracked since: beyond it, the requeued events of the lowest
+     * priority, then the oldest, are dropped. Requeued events are journaled again.
+     *
+     * @param batch The released events, oldest first
+     */
+    public void requeue(List<AbstractGameEvent> batch) {
+        if (batch.isEmpty()) return;
+
+        final List<AbstractGameEvent> kept;
+        synchronized (requeued) {
+            final int room = Math.max(0, capacity - size());
+            if (batch.size() <= room) {
+                kept = batch;
+            } else {
+                final List<AbstractGameEvent> ranked = new ArrayList<>(batch);
+                ranked.sort(Comparator.comparing(AbstractGameEvent::getPriority)
+                        .thenComparingLong(AbstractGameEvent::getTimestamp)
+                        .reversed());
+                kept = new ArrayList<>(ranked.subList(0, room));
+                kept.sort(Comparator.comparingLong(AbstractGameEvent::getTimestamp));
+            }
+
+            // Journaled before being queued, so that a release whose journal mark covers them also drains them
+            kept.forEach(eventJournal::appendEvent);
+            for (int i = kept.size() - 1; i >= 0; i--) {
+                requeued.addFirst(kept.get(i));
+            }
+        }
+
+        if (kept.size() < batch.size()) {
+            LOGGER.warning("Event buffer full, " + (batch.size() - kept.size()) + " of the "
+                    + batch.size() + " events of a failed batch dropped instead of being requeued");
+        }
+    }
+
+    /**
+     * Records that the released events were dealt with: the AI got them, or those it did not get
+     * were {@link #requeue requeued} first. Only then is the release committed to the journal, so
+     * that events lost with a failed request are recovered after a crash. Releases are committed in
+     * the order they were made, a release waiting for the earlier ones to be settled.
+     *
+     * @param released A list returned by {@link #releaseEvents(EventPriority)}
+     */
+    public void settle(Collection<AbstractGameEvent> released) {
+        synchronized (pendingReleases) {
+            for (PendingRelease release : pendingReleases) {
+                if (release.events == released) {
+                    release.settled = true;
+                    break;
+                }
+            }
+
+            while (!pendingReleases.isEmpty() && pendingReleases.peekFirst().settled) {
+                final PendingRelease release = pendingReleases.removeFirst();
+                eventJournal.commit(release.journalMark, release.minPriority);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a buffered combat event still refers to a player by index, in which case the
+     * index must not be released yet. Events of the other buffers refer to players by UUID.
+     *
+     * @param playerIndex The index of the player in the {@link PlayerRegistry}
+     */
+    public boolean holdsPlayer(int playerIndex) {
+        return combatEvents.holdsPlayer(playerIndex);
+    }
+
+    /**
+     * Retrieves the table interning the strings referenced by combat events.
+     */
+    public StringTable getStrings() {
+        return combatEvents.getStrings();
     }
 
     /**
      * Releases all recorded game events from the event queue and returns them as a list.
      * Once retrieved, the events are removed from the queue, and subsequent calls to this method
      * will only return new events added after the previous release.
+     * Bursts of repeated events are folded into aggregates by the {@link EventCoalescer}.
      */
     public List<AbstractGameEvent> releaseEvents() {
-        List<AbstractGameEvent> eventList = new LinkedList<>();
+        return releaseEvents(EventPriority.LOW);
+    }
+
+    /**
+     * Releases the recorded game events of at least the given priority. Events of a lower
+     * priority stay queued for a later release. The released events stay in the journal until
+     * the release is {@link #settle settled}.
+     *
+     * @param minPriority The lowest priority of the released events
+     */
+    public List<AbstractGameEvent> releaseEvents(EventPriority minPriority) {
+        List<AbstractGameEvent> eventList = new ArrayList<>(size());
+
+        // Combat events hold damage, the lowest priority, so they are only released with everything else.
+        // They are materialized only now, on the releasing thread, and journaled before the mark is
+        // taken, so that the commit of this release covers them
+        int combatEventCount = 0;
+        if (minPriority == EventPriority.LOW) {
+            combatEventCount = combatEvents.drainTo(eventList, playerRegistry::getPlayerId);
+            eventList.forEach(eventJournal::appendEvent);
+        }
+
+        // Every event journaled up to the mark is already buffered, so it is part of this release
+        final long journalMark = eventJournal.mark();
+
+        final int requeuedEvents = drainRequeued(eventList, minPriority);
+        final int trackedEvents = events.drainTo(eventList, minPriority);
+
+        // Merge back into a single timeline, chunks of a split batch being requeued in any order
+        if (requeuedEvents > 0 || trackedEvents > 0 && combatEventCount > 0) {
+            eventList.sort(Comparator.comparingLong(AbstractGameEvent::getTimestamp));
+        }
 
-        while (!events.isEmpty()) {
-            eventList.add(events.poll());
+        reportDrops();
+
+        final List<AbstractGameEvent> released = eventCoalescer.coalesce(eventList);
+        if (!released.isEmpty()) {
+            synchronized (pendingReleases) {
+                pendingReleases.addLast(new PendingRelease(released, journalMark, minPriority));
+            }
+        }
+
+        return released;
+    }
+
+    /**
+     * @return The number of events currently buffered, requeued ones included
+     */
+    public int size() {
+        synchronized (requeued) {
+            return events.size() + combatEvents.size() + requeued.size();
+        }
+    }
+
+    /**
+     * Moves the requeued events of at least the given priority into the given list, in their order.
+     *
+     * @return The number of events moved
+     */
+    private int drainRequeued(List<AbstractGameEvent> target, EventPriority minPriority) {
+        synchronized (requeued) {
+            final int start = target.size();
+            requeued.removeIf(event -> {
+                if (event.getPriority().compareTo(minPriority) < 0) return false;
+                target.add(event);
+                return true;
+            });
+            return target.size() - start;
         }
+    }
+
+    /**
+     * Retrieves the number of events dropped on buffer overflow, per event class.
+     */
+    public Map<String, Long> getDroppedEventCounts() {
+        Map<String, Long> counts = new HashMap<>(events.getDroppedCounts());
+        combatEvents.getDroppedCounts().forEach((eventName, count) -> counts.merge(eventName, count, Long::sum));
+
+        return counts;
+    }
 
-        return eventList;
+    private void reportDrops() {
+        final long droppedTotal = events.getDroppedTotal() + combatEvents.getDroppedTotal();
+        if (droppedTotal == reportedDrops) return;
 
+        LOGGER.warning("Event buffer overflowed (capacity " + events.getCapacity() + ", policy "
+                + events.getOverflowPolicy() + "), " + (droppedTotal - reportedDrops)
+                + " events dropped since last release. Dropped per event: " + getDroppedEventCounts());
+        reportedDrops = droppedTotal;
+    }
+
+    /**
+     * A release waiting to be settled before its journal commit is written.
+     */
+    private static final class PendingRelease {
+        private final List<AbstractGameEvent> events;
+        private final long journalMark;
+        private final EventPriority minPriority;
+        private boolean settled;
+
+        PendingRelease(List<AbstractGameEvent> events, long journalMark, EventPriority minPriority) {
+            this.events = events;
+            this.journalMark = journalMark;
+            this.minPriority = minPriority;
+        }
     }
 }
@@ -1,21 +1,29 @@
 package com.minecraftai.airulermod.service;
 
 import com.google.gson.*;
+import com.google.gson.stream.JsonWriter;
 import com.minecraftai.airulermod.actions.AbstractAction;
 import com.minecraftai.airulermod.di.ServerHolder;
 import com.minecraftai.airulermod.events.AbstractGameEvent;
 import com.minecraftai.airulermod.integration.AIClient;
 import com.minecraftai.airulermod.integration.AIClientManager;
+import com.minecraftai.airulermod.journal.EventJournal;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import net.minecraft.core.Position;
 import net.minecraft.world.entity.Entity;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -31,6 +39,13 @@ import java.util.stream.Collectors;
  *   receiving responses.
  * - {@link Gson}: Used for JSON serialization of events, statistics, and other data.
  * - {@link ActionsParser}: Parses responses received from the AI system into actionable entities.
+ * - {@link IdentifierDictionary}: Replaces player UUIDs with short aliases in the payload.
+ * - {@link EventJournal}: Records every batch and the actions parsed from its response.
+ * - {@link BatchFilter}: Skips unchanged batches and answers repeated ones from recent responses.
+ * - {@link BatchDeltaEncoder}: Reduces positions and stats to what changed since they were last sent.
+ * - {@link BatchPlanner}: Splits batches too large for one request into chunks sent in parallel.
+ * - {@link EventTracker}: Takes back the events of batches whose request failed, and commits the
+ *   others to the journal once answered.
  * <p>
  * This processor supports three main workflows:
  * - Send game events to the AI without processing the actions immediately. Actions are instead
@@ -47,74 +62,568 @@ public class EventsActionProcessor {
     private final AIClient aiClient;
     private final Gson serializer;
     private final ActionsParser actionsParser;
+    private final IdentifierDictionary identifierDictionary;
+    private final PlayerRegistry playerRegistry;
+    private final EventJournal eventJournal;
+    private final BatchFilter batchFilter;
+    private final BatchDeltaEncoder deltaEncoder;
+    private final BatchPlanner batchPlanner;
+    private final EventTracker eventTracker;
+
+    // Conversation the identifier aliases were announced in
+    private long aliasEpoch;
+
+    private volatile @Nullable BatchMetrics lastBatchMetrics;
     
     @Inject
     public EventsActionProcessor(
             AIClientManager aiClientManager,
             ServerHolder serverHolder,
             Gson serializer,
-            ActionsParser actionsParser
+            ActionsParser actionsParser,
+            IdentifierDictionary identifierDictionary,
+            PlayerRegistry playerRegistry,
+            EventJournal eventJournal,
+            BatchFilter batchFilter,
+            BatchDeltaEncoder deltaEncoder,
+            BatchPlanner batchPlanner,
+            EventTracker eventTracker
     ) {
         this.aiClient = aiClientManager.getAiClient();
         this.serverHolder = serverHolder;
         this.serializer = serializer;
         this.actionsParser = actionsParser;
+        this.identifierDictionary = identifierDictionary;
+        this.playerRegistry = playerRegistry;
+        this.eventJournal = eventJournal;
+        this.batchFilter = batchFilter;
+        this.deltaEncoder = deltaEncoder;
+        this.batchPlanner = batchPlanner;
+        this.eventTracker = eventTracker;
+        this.aliasEpoch = aiClient.getConversationEpoch();
     }
 
+    /**
+     * Sends a batch to the AI and waits for the resulting actions.
+     *
+     * @return The parsed actions, or null if the AI gave no usable response
+     */
     public @Nullable List<AbstractAction> process(
             Collection<AbstractGameEvent> events,
             Map<String, Map<String, ?>> stats
     ) {
+        return processAsync(events, stats, action -> {}).join();
+    }
+
+    /**
+     * Serializes a batch on the calling thread and sends it to the AI without waiting.
+     * <p>
+     * The response text is scanned as it arrives, and every action is parsed and handed over as soon
+     * as its JSON object is complete, so the first actions are not held up by the rest of the
+     * response when the AI client streams it.
+     *
+     * <p>
+     * Batches without events and with the same stats and positions as the last one sent are not
+     * sent at all, and batches matching a recent one are answered with its cached actions; the
+     * future is then already complete, and no metrics are recorded for the batch.
+     *
+     * <p>
+     * Batches over the token budget of the {@link BatchPlanner} are split into chunks sent as
+     * standalone requests, see {@link #processChunks}.
+     *
+     * <p>
+     * When a request fails before any action of its response was handed over, its events are
+     * requeued with {@link EventTracker#requeue}, to be sent again with the next batch. Once the
+     * batch was answered, or its events requeued, the release is {@link EventTracker#settle settled}.
+     *
+     * @param events   Events released by the {@link EventTracker}
+     * @param onAction Receives every parsed action, on the thread receiving the AI response
+     * @return A future completed with all the parsed actions, or with null if the AI gave no usable
+     *         response, including when the request failed, timed out or was cancelled
+     */
+    public CompletableFuture<List<AbstractAction>> processAsync(
+            Collection<AbstractGameEvent> events,
+            Map<String, Map<String, ?>> stats,
+            Consumer<AbstractAction> onAction
+    ) {
+        final CompletableFuture<List<AbstractAction>> result;
+        try {
+            result = sendBatch(events, stats, onAction);
+        } catch (RuntimeException e) {
+            // The batch could not be sent, later releases must not wait for it
+            eventTracker.settle(events);
+            throw e;
+        }
+
+        return result.whenComplete((actionList, error) -> eventTracker.settle(events));
+    }
+
+    private CompletableFuture<List<AbstractAction>> sendBatch(
+            Collection<AbstractGameEvent> events,
+            Map<String, Map<String, ?>> stats,
+            Consumer<AbstractAction> onAction
+    ) {
+        // A new conversation does not know the aliases announced in the previous one
+        final long conversationEpoch = aiClient.getConversationEpoch();
+        if (conversationEpoch != aliasEpoch) {
+            identifierDictionary.reset();
+            batchFilter.forgetSent();
+            deltaEncoder.reset();
+            aliasEpoch = conversationEpoch;
+        }
+
+        final long serializationStart = System.nanoTime();
         final var playersPositions = collectPositions();
 
-        final var serverBatchMessage = serializer.toJson(Map.of(
-                "events", events,
-                "stats", stats,
-                "playerPositions", playersPositions
-        ));
+        final var eventsTree = serializer.toJsonTree(events);
+        final var statsTree = serializer.toJsonTree(stats);
+        final var positionsTree = serializer.toJsonTree(playersPositions);
+
+        // Fingerprinted before encoding, aliases change with the conversation
+        final var fingerprint = batchFilter.fingerprint(eventsTree, statsTree, positionsTree);
+        if (batchFilter.shouldSkip(fingerprint, !events.isEmpty())) {
+            lastBatchMetrics = null;
+            LOGGER.info(String.format("Skipped unchanged batch, skip rate %.1f%%", batchFilter.getSkipRate() * 100));
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        if (!events.isEmpty()) {
+            final var cachedActions = batchFilter.lookup(fingerprint);
+            if (cachedActions != null) {
+                lastBatchMetrics = null;
+                LOGGER.info(String.format("Reusing %d cached actions for a repeated batch, hit rate %.1f%%",
+                        cachedActions.size(), batchFilter.getHitRate() * 100));
+                return CompletableFuture.completedFuture(replayActions(cachedActions, onAction));
+            }
+        }
+
+        final var chunks = batchPlanner.plan(eventsTree.getAsJsonArray(), statsTree.getAsJsonObject(), positionsTree.getAsJsonObject());
+        if (chunks != null) {
+            return processChunks(chunks, positionsTree, events, eventsTree.getAsJsonArray(), onAction, serializationStart);
+        }
+
+        final var delta = deltaEncoder.encode(positionsTree.getAsJsonObject(), statsTree.getAsJsonObject());
+
+        final var eventsJson = identifierDictionary.encode(eventsTree);
+        final var statsJson = identifierDictionary.encode(delta.stats());
+        final var positionsJson = identifierDictionary.encode(delta.positions());
+
+        final var batch = new JsonObject();
+        final var announcements = identifierDictionary.releaseAnnouncements();
+        if (!announcements.isEmpty()) {
+            batch.add("ids", serializer.toJsonTree(announcements));
+        }
+        batch.add("events", eventsJson);
+        batch.add("stats", statsJson);
+        batch.add("playerPositions", positionsJson);
+        if (!delta.deltaSections().isEmpty()) {
+            batch.add("delta", serializer.toJsonTree(delta.deltaSections()));
+        }
+
+        final var serverBatchMessage = toJson(batch);
         LOGGER.fine("serverBatchMessage: " + serverBatchMessage);
+        if (delta.savedChars() > 0) {
+            LOGGER.fine(String.format("Delta encoding saved %d characters, %.1f%% of the payload", delta.savedChars(),
+                    100.0 * delta.savedChars() / (serverBatchMessage.length() + delta.savedChars())));
+        }
+        final long serializationNanos = System.nanoTime() - serializationStart;
+
+        final long aiStart = System.nanoTime();
+        final var responseActions = new ResponseActions(onAction, aiStart);
+        final var actionStreamParser = new ActionStreamParser(responseActions::accept);
+
+        // Aliases of the batch must resolve in its answer, even if a new conversation starts meanwhile
+        final int aliasGeneration = identifierDictionary.beginBatch();
+        final CompletableFuture<AIClient.ChatResponse> response;
+        try {
+            response = aiClient.chatAsync(serverBatchMessage, actionStreamParser::accept);
+        } catch (RuntimeException e) {
+            // Nothing of the batch was sent: the next one announces the aliases and sends everything again
+            identifierDictionary.restoreAnnouncements(announcements);
+            identifierDictionary.completeBatch(aliasGeneration);
+            deltaEncoder.reset();
+            eventTracker.requeue(new ArrayList<>(events));
+            throw e;
+        }
 
-        final var aiResponse = aiClient.chat(serverBatchMessage);
+        // Journaled once sent, before its answer is handled
+        final long batchSequence = eventJournal.appendBatch(serverBatchMessage);
+
+        return response.handle((aiResponse, error) -> {
+            if (error != null || aiResponse == null) {
+                // The AI may not have received the changes, the next batch sends everything again
+                deltaEncoder.reset();
+                identifierDictionary.restoreAnnouncements(announcements);
+            }
+
+            if (error != null) {
+                LOGGER.warning("AI request for events failed: " + error);
+                if (responseActions.actions.isEmpty()) eventTracker.requeue(new ArrayList<>(events));
+            } else if (aiResponse != null) {
+                // Fast-lane batches carry no stats, periodic batches are compared to the last one that did
+                if (!stats.isEmpty()) batchFilter.markSent(fingerprint);
+                if (actionStreamParser.hasSeenActions()) {
+                    batchFilter.store(fingerprint, responseActions.parsedActions);
+                }
+            }
+
+            return handleResponse(
+                    error == null ? aiResponse : null,
+                    actionStreamParser,
+                    responseActions,
+                    events.size(),
+                    serverBatchMessage.length(),
+                    delta.savedChars(),
+                    batchSequence,
+                    serializationNanos,
+                    System.nanoTime() - aiStart
+            );
+        }).whenComplete((actionList, error) -> identifierDictionary.completeBatch(aliasGeneration));
+    }
+
+    /**
+     * Sends the chunks of a batch too large for one request as standalone requests, a few at a
+     * time, and merges their actions.
+     * <p>
+     * Chunks follow each other in time, so their actions are handed over chunk after chunk: those of
+     * the earliest chunk not answered yet as they are parsed, those of later chunks once every
+     * earlier chunk was answered. The standalone requests do not belong to the conversation, so
+     * chunks hold full identifiers instead of aliases, whole positions and stats, and the state
+     * shared with the conversation is left unchanged. The events of the chunks whose request failed
+     * are requeued.
+     *
+     * @return A future completed with the actions of every chunk, in chunk order, or with null if
+     *         no chunk got a usable response
+     */
+    private CompletableFuture<List<AbstractAction>> processChunks(
+            List<BatchPlanner.Chunk> chunks,
+            JsonElement positions,
+            Collection<AbstractGameEvent> events,
+            JsonArray eventsTree,
+            Consumer<AbstractAction> onAction,
+            long serializationStart
+    ) {
+        final int eventCount = events.size();
+
+        // The chunks hold the serialized events themselves, leading back to the events to requeue
+        final Map<JsonElement, AbstractGameEvent> eventsByJson = new IdentityHashMap<>(eventCount);
+        int eventIndex = 0;
+        for (AbstractGameEvent event : events) {
+            eventsByJson.put(eventsTree.get(eventIndex++), event);
+        }
+
+        final List<String> chunkMessages = new ArrayList<>(chunks.size());
+        long tokens = 0;
+        int payloadChars = 0;
+        for (BatchPlanner.Chunk chunk : chunks) {
+            final var batch = new JsonObject();
+            batch.add("events", chunk.events());
+            batch.add("stats", chunk.stats());
+            batch.add("playerPositions", positions);
+
+            final var chunkMessage = toJson(batch);
+            chunkMessages.add(chunkMessage);
+            tokens += chunk.tokens();
+            payloadChars += chunkMessage.length();
+        }
+        LOGGER.info(String.format("Splitting a batch of %d events (about %d tokens) into %d chunks",
+                eventCount, tokens, chunks.size()));
+
+        final long serializationNanos = System.nanoTime() - serializationStart;
+
+        final long aiStart = System.nanoTime();
+        final var mergedActions = new MergedActions(chunks.size(), onAction, aiStart);
+        final int maxParallelChunks = batchPlanner.getMaxParallelChunks();
+        final List<CompletableFuture<Boolean>> answered = new ArrayList<>(chunks.size());
+
+        for (int i = 0; i < chunkMessages.size(); i++) {
+            final int chunkIndex = i;
+            final String chunkMessage = chunkMessages.get(i);
+            final JsonArray chunkEvents = chunks.get(i).events();
+
+            // A chunk takes the place of the one sent maxParallelChunks before it, once answered
+            final CompletableFuture<Boolean> turn = i < maxParallelChunks
+                    ? CompletableFuture.completedFuture(true)
+                    : answered.get(i - maxParallelChunks);
+
+            answered.add(turn.thenCompose(previous -> sendChunk(chunkIndex, chunkMessage, mergedActions,
+                    () -> requeue(chunkEvents, eventsByJson))));
+        }
+
+        final int chunkCount = chunks.size();
+        final int totalPayloadChars = payloadChars;
+        return CompletableFuture.allOf(answered.toArray(CompletableFuture[]::new)).thenApply(done -> {
+            final long usableChunks = answered.stream().filter(CompletableFuture::join).count();
+            final List<AbstractAction> actionList = mergedActions.getActions();
+
+            lastBatchMetrics = new BatchMetrics(
+                    eventCount,
+                    totalPayloadChars,
+                    0,
+                    serializationNanos,
+                    System.nanoTime() - aiStart,
+                    actionList.size(),
+                    mergedActions.getFirstActionNanos()
+            );
+            LOGGER.info("Processed " + actionList.size() + " actions from " + usableChunks + " of " + chunkCount + " chunks");
+
+            return usableChunks == 0 && actionList.isEmpty() ? null : actionList;
+        });
+    }
+
+    /**
+     * Sends one chunk of a split batch and journals it with its actions.
+     *
+     * @param onFailure Run if the request failed before any action was handed over
+     * @return A future completed with whether the AI gave a usable response, never exceptionally
+     */
+    private CompletableFuture<Boolean> sendChunk(
+            int chunkIndex,
+            String chunkMessage,
+            MergedActions mergedActions,
+            Runnable onFailure
+    ) {
+        final long batchSequence = eventJournal.appendBatch(chunkMessage);
+        final var responseActions = new ResponseActions(action -> mergedActions.accept(chunkIndex, action), System.nanoTime());
+        final var actionStreamParser = new ActionStreamParser(responseActions::accept);
+
+        // A client failing before returning a future fails the chunk like a failed request
+        CompletableFuture<AIClient.ChatResponse> request;
+        try {
+            request = aiClient.chatStandaloneAsync(chunkMessage, actionStreamParser::accept);
+        } catch (RuntimeException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+
+        return request.handle((aiResponse, error) -> {
+            mergedActions.complete(chunkIndex);
+
+            if (error != null) {
+                LOGGER.warning("AI request for chunk " + (chunkIndex + 1) + " failed: " + error);
+                if (responseActions.actions.isEmpty()) onFailure.run();
+            }
+            if (!responseActions.actions.isEmpty()) {
+                eventJournal.appendActions(batchSequence, serializer.toJson(responseActions.parsedActions));
+            }
+
+            return error == null && aiResponse != null && actionStreamParser.hasSeenActions();
+        });
+    }
+
+    /**
+     * Requeues the events of a chunk, in the order of the chunk.
+     */
+    private void requeue(JsonArray chunkEvents, Map<JsonElement, AbstractGameEvent> eventsByJson) {
+        final List<AbstractGameEvent> failedEvents = new ArrayList<>(chunkEvents.size());
+        for (JsonElement eventJson : chunkEvents) {
+            final AbstractGameEvent event = eventsByJson.get(eventJson);
+            if (event != null) failedEvents.add(event);
+        }
+
+        eventTracker.requeue(failedEvents);
+    }
+
+    private @Nullable List<AbstractAction> handleResponse(
+            @Nullable AIClient.ChatResponse aiResponse,
+            ActionStreamParser actionStreamParser,
+            ResponseActions responseActions,
+            int eventCount,
+            int payloadChars,
+            int deltaSavedChars,
+            long batchSequence,
+            long serializationNanos,
+            long aiNanos
+    ) {
         LOGGER.info("AI response to events received, length: " +
                 (aiResponse != null ? aiResponse.message().length() : 0) + " characters");
 
+        final List<AbstractAction> actionList = responseActions.actions;
+
+        // Actions streamed before a failure were handed over already, they are still journaled
+        if (!actionList.isEmpty()) {
+            eventJournal.appendActions(batchSequence, serializer.toJson(responseActions.parsedActions));
+        }
+
+        lastBatchMetrics = new BatchMetrics(
+                eventCount,
+                payloadChars,
+                deltaSavedChars,
+                serializationNanos,
+                aiNanos,
+                actionList.size(),
+                responseActions.firstActionNanos
+        );
+
         if (aiResponse == null) {
             LOGGER.warning("Empty response received from AI for events");
-            return null;
+            return actionList.isEmpty() ? null : actionList;
         }
 
-        // Process the response to get actions
-        JsonObject responseJson = JsonParser.parseString(aiResponse.message()).getAsJsonObject();
-
         // Check if actions field exists and is an array
-        if (!responseJson.has("actions") || !responseJson.get("actions").isJsonArray()) {
+        if (!actionStreamParser.hasSeenActions()) {
             LOGGER.warning("No actions field in AI response");
             return null;
         }
 
-        JsonArray actions = responseJson.get("actions").getAsJsonArray();
+        LOGGER.info("Processed " + actionList.size() + " actions from ping response");
 
-        List<AbstractAction> actionList = new LinkedList<>();
-        for (JsonElement action : actions) {
-            JsonObject actionJson = action.getAsJsonObject();
-            final var actionEntity = actionsParser.parse(actionJson);
+        return actionList;
+    }
 
-            if (actionEntity != null) {
-                actionList.add(actionEntity);
-            }
+    /**
+     * Retrieves the measurements of the last processed batch.
+     *
+     * @return The metrics, or null if no batch was processed yet
+     */
+    public @Nullable BatchMetrics getLastBatchMetrics() {
+        return lastBatchMetrics;
+    }
+
+    /**
+     * Serializes a batch, keeping the null values that mark what disappeared since the previous one.
+     */
+    private String toJson(JsonElement batch) {
+        final var out = new StringWriter();
+        final var writer = new JsonWriter(out);
+        writer.setSerializeNulls(true);
+
+        try {
+            serializer.getAdapter(JsonElement.class).write(writer, batch);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
 
-        LOGGER.info("Processed " + actionList.size() + " actions from ping response");
+        return out.toString();
+    }
+
+    /**
+     * Parses actions cached for a repeated batch, handing each over as if it had been streamed.
+     */
+    private List<AbstractAction> replayActions(JsonArray cachedActions, Consumer<AbstractAction> onAction) {
+        final List<AbstractAction> actionList = new ArrayList<>(cachedActions.size());
+
+        for (JsonElement actionJson : cachedActions) {
+            final var actionEntity = actionsParser.parse(actionJson.getAsJsonObject());
+            if (actionEntity == null) continue;
+
+            actionList.add(actionEntity);
+            onAction.accept(actionEntity);
+        }
 
         return actionList;
     }
 
     private Map<String, Position> collectPositions() {
-        return this.serverHolder
+        // No players to locate when running offline, e.g. in a replay
+        if (!serverHolder.isAvailable()) {
+            return Map.of();
+        }
+
+        final var players = this.serverHolder
                 .getServer()
                 .getPlayerList()
-                .getPlayers()
-                .stream()
+                .getPlayers();
+
+        // Registering online players lets their aliases be announced with their names
+        players.forEach(player -> playerRegistry.indexOf(player.getStringUUID(), player.getGameProfile().getName()));
+
+        return players.stream()
                 .collect(Collectors.toMap(Entity::getStringUUID, it -> it.getOnPos().getCenter()));
     }
-}
\ No newline at end of file
+
+    /**
+     * Actions of the chunks of a split batch, handed over in chunk order. The actions of the
+     * current chunk are handed over as they arrive, those of later chunks are held until every
+     * earlier chunk was answered.
+     */
+    private static final class MergedActions {
+        private final Consumer<AbstractAction> onAction;
+        private final long startNanos;
+
+        private final List<List<AbstractAction>> heldActions;
+        private final boolean[] answered;
+        private final List<AbstractAction> actions = new ArrayList<>();
+        private int currentChunk;
+        private long firstActionNanos = -1;
+
+        MergedActions(int chunkCount, Consumer<AbstractAction> onAction, long startNanos) {
+            this.onAction = onAction;
+            this.startNanos = startNanos;
+            this.heldActions = new ArrayList<>(chunkCount);
+            for (int i = 0; i < chunkCount; i++) {
+                heldActions.add(new ArrayList<>());
+            }
+            this.answered = new boolean[chunkCount];
+        }
+
+        synchronized void accept(int chunkIndex, AbstractAction action) {
+            if (chunkIndex == currentChunk) {
+                handOver(action);
+            } else {
+                heldActions.get(chunkIndex).add(action);
+            }
+        }
+
+        synchronized void complete(int chunkIndex) {
+            answered[chunkIndex] = true;
+
+            while (currentChunk < answered.length && answered[currentChunk]) {
+                currentChunk++;
+                if (currentChunk < answered.length) {
+                    heldActions.get(currentChunk).forEach(this::handOver);
+                    heldActions.get(currentChunk).clear();
+                }
+            }
+        }
+
+        synchronized List<AbstractAction> getActions() {
+            return new ArrayList<>(actions);
+        }
+
+        synchronized long getFirstActionNanos() {
+            return firstActionNanos;
+        }
+
+        private void handOver(AbstractAction action) {
+            if (actions.isEmpty()) {
+                firstActionNanos = System.nanoTime() - startNanos;
+            }
+            actions.add(action);
+            onAction.accept(action);
+        }
+    }
+
+    /**
+     * Actions parsed from one response, as the {@link ActionStreamParser} finds them.
+     */
+    private final class ResponseActions {
+        private final Consumer<AbstractAction> onAction;
+        private final long startNanos;
+
+        private final List<AbstractAction> actions = new ArrayList<>();
+        private final JsonArray parsedActions = new JsonArray();
+        private long firstActionNanos = -1;
+
+        ResponseActions(Consumer<AbstractAction> onAction, long startNanos) {
+            this.onAction = onAction;
+            this.startNanos = startNanos;
+        }
+
+        void accept(String actionText) {
+            try {
+                JsonObject actionJson = JsonParser.parseString(actionText).getAsJsonObject();
+                final var actionEntity = actionsParser.parse(actionJson);
+                if (actionEntity == null) return;
+
+                if (actions.isEmpty()) {
+                    firstActionNanos = System.nanoTime() - startNanos;
+                }
+                actions.add(actionEntity);
+                parsedActions.add(actionJson);
+                onAction.accept(actionEntity);
+            } catch (RuntimeException e) {
+                LOGGER.warning("Skipping malformed action in AI response: " + actionText);
+            }
+        }
+    }
+}
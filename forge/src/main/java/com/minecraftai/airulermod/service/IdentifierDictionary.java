@@ -0,0 +1,218 @@
+package com.minecraftai.airulermod.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-conversation dictionary replacing the 36-character UUIDs of players in the AI payload with
+ * short aliases.
+ * <p>
+ * Every player gets a stable alias the first time it is sent: {@code p1, p2, ...}. New aliases
+ * are announced once, together with the player's name, and the model keeps referring to the alias
+ * afterwards. Aliases coming back in AI actions are resolved to the original UUIDs. The dictionary
+ * must be reset whenever the model may have lost the announcements, i.e. when a new conversation
+ * starts.
+ * <p>
+ * Other entities are left as UUIDs: they rarely appear twice (a killed entity never does), so an
+ * alias and its announcement would cost more than the UUID, and the dictionary would grow with
+ * every entity killed during the conversation.
+ * <p>
+ * Batches sent before a reset may still be answered after it. The aliases of a conversation
+ * therefore keep resolving until every batch sent with them was {@link #completeBatch completed};
+ * alias numbering never restarts, so they cannot be mistaken for those of the new conversation.
+ */
+@Singleton
+public class IdentifierDictionary {
+    // Payload fields holding identifiers of players or entities
+    private static final Set<String> ID_FIELDS = Set.of("pid", "targetId", "playerId");
+
+    private final PlayerRegistry playerRegistry;
+
+    private final Map<String, String> aliasesById = new HashMap<>();
+    private final Map<String, String> idsByAlias = new HashMap<>();
+    private final Map<String, Map<String, String>> pendingAnnouncements = new LinkedHashMap<>();
+    private int playerAliasCount = 0;
+
+    // Incremented on every reset; batches waiting for an answer and aliases of past generations by generation
+    private int generation = 0;
+    private final Map<Integer, Integer> pendingBatches = new HashMap<>();
+    private final Map<Integer, Map<String, String>> retiredIdsByAlias = new HashMap<>();
+
+    @Inject
+    public IdentifierDictionary(PlayerRegistry playerRegistry) {
+        this.playerRegistry = playerRegistry;
+    }
+
+    /**
+     * Retrieves the alias of a player, assigning and scheduling the announcement of a new alias on
+     * first use.
+     *
+     * @param id The UUID of a player or entity
+     * @return The short alias standing for the player, or the given identifier if it is not one
+     *         of a known player
+     */
+    public synchronized String encode(String id) {
+        final String alias = aliasesById.get(id);
+        if (alias != null) return alias;
+
+        final int playerIndex = playerRegistry.indexOf(id);
+        if (playerIndex < 0) return id;
+
+        final String newAlias = "p" + (++playerAliasCount);
+
+        aliasesById.put(id, newAlias);
+        idsByAlias.put(newAlias, id);
+
+        final Map<String, String> announcement = new LinkedHashMap<>();
+        announcement.put("id", id);
+        announcement.put("name", playerRegistry.getName(playerIndex));
+        pendingAnnouncements.put(newAlias, announcement);
+
+        return newAlias;
+    }
+
+    /**
+     * Replaces, in place, every identifier of the given JSON payload with its alias: values of the
+     * identifier fields and object keys that are UUIDs (e.g. maps keyed by player).
+     *
+     * @param element The serialized payload section
+     * @return The same element, encoded
+     */
+    public synchronized JsonElement encode(JsonElement element) {
+        if (element.isJsonArray()) {
+            final JsonArray array = element.getAsJsonArray();
+            for (int i = 0; i < array.size(); i++) {
+                encode(array.get(i));
+            }
+        } else if (element.isJsonObject()) {
+            final JsonObject object = element.getAsJsonObject();
+
+            for (String key : Set.copyOf(object.keySet())) {
+                JsonElement value = object.get(key);
+
+                if (ID_FIELDS.contains(key) && value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()) {
+                    object.addProperty(key, encode(value.getAsString()));
+                    continue;
+                }
+
+                encode(value);
+
+                if (isUuid(key)) {
+                    object.remove(key);
+                    object.add(encode(key), value);
+                }
+            }
+        }
+
+        return element;
+    }
+
+    /**
+     * Resolves an alias back to the identifier it stands for.
+     *
+     * @param aliasOrId An alias, or an identifier that was never aliased
+     * @return The identifier behind the alias, or the given value if it is not a known alias
+     */
+    public synchronized @Nullable String resolve(@Nullable String aliasOrId) {
+        if (aliasOrId == null) return null;
+
+        final String id = idsByAlias.get(aliasOrId);
+        if (id != null) return id;
+
+        for (Map<String, String> retired : retiredIdsByAlias.values()) {
+            final String retiredId = retired.get(aliasOrId);
+            if (retiredId != null) return retiredId;
+        }
+
+        return aliasOrId;
+    }
+
+    /**
+     * Records that a batch encoded with the current aliases was sent, so that they keep resolving
+     * until its answer is complete, even if the dictionary is reset meanwhile.
+     *
+     * @return The generation of the aliases, to pass to {@link #completeBatch(int)}
+     */
+    public synchronized int beginBatch() {
+        pendingBatches.merge(generation, 1, Integer::sum);
+        return generation;
+    }
+
+    /**
+     * Records that the answer to a batch is complete, or will never come. The aliases of a past
+     * generation are forgotten along with its last batch.
+     *
+     * @param batchGeneration The value returned by {@link #beginBatch()} for the batch
+     */
+    public synchronized void completeBatch(int batchGeneration) {
+        pendingBatches.computeIfPresent(batchGeneration, (key, count) -> count > 1 ? count - 1 : null);
+        if (!pendingBatches.containsKey(batchGeneration)) {
+            retiredIdsByAlias.remove(batchGeneration);
+        }
+    }
+
+    /**
+     * Retrieves the aliases assigned since the previous call, to be announced to the model.
+     *
+     * @return A map of new aliases to their identifier and player name
+     */
+    public synchronized Map<String, Map<String, String>> releaseAnnouncements() {
+        final Map<String, Map<String, String>> announcements = new LinkedHashMap<>(pendingAnnouncements);
+        pendingAnnouncements.clear();
+
+        return announcements;
+    }
+
+    /**
+     * Schedules again the announcement of aliases the model may not have received, because the
+     * request carrying them failed. Aliases forgotten since, by a {@link #reset()}, are left out.
+     *
+     * @param announcements Aliases returned by {@link #releaseAnnouncements()}
+     */
+    public synchronized void restoreAnnouncements(Map<String, Map<String, String>> announcements) {
+        if (announcements.isEmpty()) return;
+
+        // Announced before the aliases assigned since
+        final Map<String, Map<String, String>> restored = new LinkedHashMap<>();
+        announcements.forEach((alias, announcement) -> {
+            if (alias.equals(aliasesById.get(announcement.get("id")))) restored.put(alias, announcement);
+        });
+        restored.putAll(pendingAnnouncements);
+
+        pendingAnnouncements.clear();
+        pendingAnnouncements.putAll(restored);
+    }
+
+    /**
+     * Forgets every alias. Called when a new conversation starts, so that identifiers are
+     * announced again. Alias numbering continues, so an alias is never reused for another identifier.
+     * Aliases sent in batches still waiting for an answer keep resolving until the batches complete.
+     */
+    public synchronized void reset() {
+        if (pendingBatches.containsKey(generation)) {
+            retiredIdsByAlias.put(generation, new HashMap<>(idsByAlias));
+        }
+        generation++;
+
+        aliasesById.clear();
+        idsByAlias.clear();
+        pendingAnnouncements.clear();
+    }
+
+    private static boolean isUuid(String value) {
+        return value.length() == 36
+                && value.charAt(8) == '-'
+                && value.charAt(13) == '-'
+                && value.charAt(18) == '-'
+                && value.charAt(23) == '-';
+    }
+}
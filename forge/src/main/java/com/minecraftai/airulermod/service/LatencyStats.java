@@ -0,0 +1,38 @@
+package com.minecraftai.airulermod.service;
+
+/**
+ * Thread-safe running statistics of a latency metric: sample count, mean and maximum.
+ */
+public class LatencyStats {
+    private long count = 0;
+    private long totalMillis = 0;
+    private long maxMillis = 0;
+
+    /**
+     * Records one latency sample.
+     *
+     * @param latencyMillis The measured latency in milliseconds
+     */
+    public synchronized void record(long latencyMillis) {
+        count++;
+        totalMillis += latencyMillis;
+        maxMillis = Math.max(maxMillis, latencyMillis);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMeanMillis() {
+        return count == 0 ? 0 : totalMillis / count;
+    }
+
+    public synchronized long getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "samples=" + count + ", mean=" + getMeanMillis() + "ms, max=" + maxMillis + "ms";
+    }
+}
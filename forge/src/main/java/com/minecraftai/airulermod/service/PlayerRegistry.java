@@ -0,0 +1,125 @@
+package com.minecraftai.airulermod.service;
+
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns every player seen on the server a dense integer index, so that hot-path data
+ * structures can refer to players with a plain {@code int} instead of a UUID string.
+ * <p>
+ * Looking up a known player never allocates; only the first sighting of a player does. The index
+ * of a player whose state was evicted is {@link #release released} and given to the next new
+ * player, so the indices, and the per-index tables sized by them, stay bounded by the number of
+ * players tracked at once rather than by every player ever seen.
+ */
+@Singleton
+public class PlayerRegistry {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Map<String, Integer> indices = new ConcurrentHashMap<>();
+    private volatile String[] playerIds = new String[INITIAL_CAPACITY];
+    private volatile String[] names = new String[INITIAL_CAPACITY];
+    private int size = 0;
+    // Released indices, reused last released first
+    private int[] freeIndices = new int[INITIAL_CAPACITY];
+    private int freeCount = 0;
+
+    @Inject
+    public PlayerRegistry() {}
+
+    /**
+     * Retrieves the index of a player, registering the player on first sight.
+     *
+     * @param playerId The player's UUID
+     * @param name     The player's name, stored on registration
+     * @return The dense index of the player
+     */
+    public int indexOf(String playerId, String name) {
+        final Integer index = indices.get(playerId);
+        return index != null ? index : register(playerId, name);
+    }
+
+    /**
+     * Retrieves the index of an already registered player.
+     *
+     * @param playerId The player's UUID
+     * @return The dense index of the player, or -1 if the player was never registered
+     */
+    public int indexOf(String playerId) {
+        final Integer index = indices.get(playerId);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * @param index The dense index of a registered player
+     * @return The player's UUID
+     */
+    public String getPlayerId(int index) {
+        return playerIds[index];
+    }
+
+    /**
+     * @param index The dense index of a registered player
+     * @return The player's name
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @return The upper bound of the indices handed out, released ones included
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Forgets a player, whose index is given to the next new player. Must only be called once no
+     * per-index state of the player is left, the player being registered again on next sight.
+     *
+     * @param index The dense index of a registered player
+     */
+    public synchronized void release(int index) {
+        final String playerId = playerIds[index];
+        if (playerId == null || !indices.remove(playerId, index)) return;
+
+        playerIds[index] = null;
+        names[index] = null;
+        if (freeCount == freeIndices.length) {
+            freeIndices = Arrays.copyOf(freeIndices, freeCount * 2);
+        }
+        freeIndices[freeCount++] = index;
+    }
+
+    private synchronized int register(String playerId, String name) {
+        final Integer existing = indices.get(playerId);
+        if (existing != null) return existing;
+
+        if (freeCount > 0) {
+            final int index = freeIndices[--freeCount];
+            playerIds[index] = playerId;
+            names[index] = name;
+            indices.put(playerId, index);
+            return index;
+        }
+
+        String[] currentIds = playerIds;
+        String[] currentNames = names;
+        if (size == currentIds.length) {
+            currentIds = Arrays.copyOf(currentIds, size * 2);
+            currentNames = Arrays.copyOf(currentNames, size * 2);
+        }
+
+        currentIds[size] = playerId;
+        currentNames[size] = name;
+        playerIds = currentIds;
+        names = currentNames;
+        indices.put(playerId, size);
+
+        return size++;
+    }
+}
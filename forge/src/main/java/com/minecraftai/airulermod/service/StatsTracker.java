@@ -1,214 +1,566 @@
 package com.minecraftai.airulermod.service;
 
+import com.minecraftai.airulermod.config.EnvConfig;
+import com.minecraftai.airulermod.stats.AnomalyDetector;
+import com.minecraftai.airulermod.stats.BlockTypeCounter;
+import com.minecraftai.airulermod.stats.ChunkHeatmap;
+import com.minecraftai.airulermod.stats.ChunkHotspot;
 import com.minecraftai.airulermod.stats.PlayerBuildingRate;
+import com.minecraftai.airulermod.stats.PlayerAnomaly;
 import com.minecraftai.airulermod.stats.PlayerMiningRate;
+import com.minecraftai.airulermod.stats.RateWindow;
+import com.minecraftai.airulermod.stats.SlidingWindowCounter;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
 
+import javax.annotation.Nullable;
+import java.time.Clock;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
-import java.util.concurrent.SynchronousQueue;
+import java.util.function.BiFunction;
+import java.util.function.IntPredicate;
 import java.util.logging.Logger;
 
 /**
- * Service responsible for tracking various player statistics 
- * and running timers to manage these statistics.
+ * Service responsible for tracking various player statistics.
+ * <p>
+ * Block mining and placing are counted per second in a {@link SlidingWindowCounter} per metric,
+ * indexed by the dense player index of the {@link PlayerRegistry}, so tracking a block never
+ * allocates and rates over any {@link RateWindow} are read in constant time. The rates sent to
+ * the AI use the window configured with {@code STATS_RATE_WINDOW}. Over the same window, the mined
+ * blocks are also counted per type in a {@link BlockTypeCounter}, keyed by the dense ids of the
+ * block registry, and the {@code STATS_TOP_BLOCK_TYPES} most mined types are reported along with
+ * each mining rate, so ore rushes stand out from ordinary digging.
+ * <p>
+ * Where the blocks are mined and placed is kept in a {@link ChunkHeatmap} decaying with a half-life
+ * of {@code HEATMAP_HALF_LIFE_MS}, and the {@code HEATMAP_TOP_K} most active chunks are sent to the
+ * AI as hotspots, so it can locate griefing or large builds without receiving per-block events.
+ * <p>
+ * Rather than the rates of every player, only unusual activity is sent to the AI by default (see
+ * {@code STATS_REPORT}), along with a server-wide summary. Every {@code STATS_SAMPLE_INTERVAL_MS},
+ * from the server tick, the rates of each player feed an {@link AnomalyDetector}, and a rate is
+ * flagged when its z-score reaches {@code ANOMALY_Z_THRESHOLD} and it is at least
+ * {@code ANOMALY_MIN_RATE} blocks per minute. Mining is also flagged when ores make up at least
+ * {@code ANOMALY_ORE_RATIO} of {@code ANOMALY_ORE_MIN_BLOCKS} or more mined blocks. Newly flagged
+ * players are logged right away, without waiting for the AI. Mining and ore anomalies carry the
+ * {@code STATS_TOP_BLOCK_TYPES} block types the player mined the most.
+ * <p>
+ * Stats state follows the player lifecycle: it is allocated on login, and released once the
+ * player has been offline for {@code STATS_EVICT_AFTER_MS}. Expiry is checked from the server
+ * tick, in constant time while no eviction is due, so no separate cleanup thread is needed.
+ * The memory held is bounded by {@link SlidingWindowCounter#BYTES_PER_SLOT} per metric and
+ * tracked player, plus a table sized by the number of block types the player mines within the
+ * window. Evicted players also release their {@link PlayerRegistry} index and their
+ * {@link EventAdmission} buckets, and the next new player reuses the index, so the per-index
+ * tables do not grow with every player ever seen. An eviction is postponed while buffered events
+ * still refer to the index. All lifecycle methods must be called from the server thread.
  */
 @Singleton
 public class StatsTracker {
     private static final Logger LOGGER = Logger.getLogger(StatsTracker.class.getName());
 
-    private static final int MAX_EVENTS_PER_PLAYER = 200;
-    private static final long MINUTE_IN_MS = 60 * 1000;
-    private static final long CLEANUP_INTERVAL = 30000;
+    private static final int DEFAULT_EVICT_AFTER_MS = 15 * 60 * 1000;
+    private static final int DEFAULT_HEATMAP_HALF_LIFE_MS = 10 * 60 * 1000;
+    private static final int DEFAULT_HEATMAP_TOP_K = 5;
+    private static final int DEFAULT_TOP_BLOCK_TYPES = 5;
+    private static final int DEFAULT_SAMPLE_INTERVAL_MS = 1000;
+    private static final double DEFAULT_ANOMALY_Z_THRESHOLD = 3;
+    private static final int DEFAULT_ANOMALY_MIN_RATE = 20;
+    private static final double DEFAULT_ANOMALY_ORE_RATIO = 0.25;
+    private static final int DEFAULT_ANOMALY_ORE_MIN_BLOCKS = 16;
+    private static final double DEFAULT_ANOMALY_SMOOTHING = 0.3;
+    private static final int DEFAULT_ANOMALY_MIN_SAMPLES = 30;
+    private static final int ANOMALY_KINDS = PlayerAnomaly.Kind.values().length;
 
-    private final Map<String, Deque<BlockEvent>> playerMiningEvents = new ConcurrentHashMap<>();
-    private final Map<String, Deque<BlockEvent>> playerBuildingEvents = new ConcurrentHashMap<>();
+    /**
+     * Stats sent to the AI along with each batch of events.
+     */
+    public enum Report {
+        // Unusual activity and a server-wide summary only
+        ANOMALIES,
+        // The rates of every active player as well
+        ALL
+    }
+
+    private final PlayerRegistry playerRegistry;
+    private final EventAdmission eventAdmission;
+    private final SlidingWindowCounter miningCounter;
+    private final SlidingWindowCounter buildingCounter;
+    private final SlidingWindowCounter oreCounter;
+    private final BlockTypeCounter minedTypeCounter;
+    private final int topBlockTypes;
+    private final ChunkHeatmap<ResourceKey<Level>> heatmap;
+    private final int hotspotCount;
+    private final RateWindow rateWindow;
+    private final Clock clock;
+    private final long evictAfterMillis;
+    private final Report report;
+
+    private final AnomalyDetector anomalyDetector;
+    private final long sampleIntervalMillis;
+    private final double anomalyZThreshold;
+    private final int anomalyMinRate;
+    private final double anomalyOreRatio;
+    private final int anomalyOreMinBlocks;
 
-    private Timer cleanupTimer;
+    // Dense block ids of the ores, resolved from the registry on first use
+    private @Nullable BitSet oreTypes;
+    private long lastSampleMillis = Long.MIN_VALUE;
+
+    // Flagged player activities at slot * ANOMALY_KINDS + kind, to log only newly flagged ones
+    private final BitSet flagged = new BitSet();
+    private volatile Map<String, List<PlayerAnomaly>> anomalies = Map.of();
+    private volatile Map<String, Number> activitySummary = Map.of();
+
+    // Logged out players by index, with the time of the logout, and the logouts in order of expiry
+    private final Map<Integer, Long> offlineSince = new HashMap<>();
+    private final Deque<Logout> pendingEvictions = new ArrayDeque<>();
 
     @Inject
-    public StatsTracker() {}
-    
+    public StatsTracker(Clock clock, PlayerRegistry playerRegistry, EventAdmission eventAdmission, EnvConfig envConfig) {
+        this.clock = clock;
+        this.playerRegistry = playerRegistry;
+        this.eventAdmission = eventAdmission;
+        this.miningCounter = new SlidingWindowCounter(clock);
+        this.buildingCounter = new SlidingWindowCounter(clock);
+        this.oreCounter = new SlidingWindowCounter(clock);
+        this.heatmap = new ChunkHeatmap<>(clock, envConfig.getInt("HEATMAP_HALF_LIFE_MS", DEFAULT_HEATMAP_HALF_LIFE_MS));
+        this.hotspotCount = envConfig.getInt("HEATMAP_TOP_K", DEFAULT_HEATMAP_TOP_K);
+        this.rateWindow = envConfig.getEnum("STATS_RATE_WINDOW", RateWindow.ONE_MINUTE);
+        this.minedTypeCounter = new BlockTypeCounter(clock, rateWindow);
+        this.topBlockTypes = envConfig.getInt("STATS_TOP_BLOCK_TYPES", DEFAULT_TOP_BLOCK_TYPES);
+        this.evictAfterMillis = envConfig.getInt("STATS_EVICT_AFTER_MS", DEFAULT_EVICT_AFTER_MS);
+        this.report = envConfig.getEnum("STATS_REPORT", Report.ANOMALIES);
+        this.anomalyDetector = new AnomalyDetector(
+                envConfig.getDouble("ANOMALY_SMOOTHING", DEFAULT_ANOMALY_SMOOTHING),
+                envConfig.getInt("ANOMALY_MIN_SAMPLES", DEFAULT_ANOMALY_MIN_SAMPLES)
+        );
+        this.sampleIntervalMillis = envConfig.getInt("STATS_SAMPLE_INTERVAL_MS", DEFAULT_SAMPLE_INTERVAL_MS);
+        this.anomalyZThreshold = envConfig.getDouble("ANOMALY_Z_THRESHOLD", DEFAULT_ANOMALY_Z_THRESHOLD);
+        this.anomalyMinRate = envConfig.getInt("ANOMALY_MIN_RATE", DEFAULT_ANOMALY_MIN_RATE);
+        this.anomalyOreRatio = envConfig.getDouble("ANOMALY_ORE_RATIO", DEFAULT_ANOMALY_ORE_RATIO);
+        this.anomalyOreMinBlocks = envConfig.getInt("ANOMALY_ORE_MIN_BLOCKS", DEFAULT_ANOMALY_ORE_MIN_BLOCKS);
+    }
+
     /**
-     * Initialize timers for stats management
-     */
-    public void initializeTimers() {
-        cleanupTimer = new Timer("StatsCleanupTimer", true);
-        cleanupTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    cleanupOldEvents();
-                } catch (Exception e) {
-                    LOGGER.severe("Error in stats cleanup task: " + e.getMessage());
-                }
+     * Allocates the stats of a player who logged in, so tracking never allocates afterwards.
+     * @param playerIndex The index of the player in the {@link PlayerRegistry}
+     */
+    public void onPlayerLogin(int playerIndex) {
+        offlineSince.remove(playerIndex);
+        miningCounter.allocate(playerIndex);
+        buildingCounter.allocate(playerIndex);
+        oreCounter.allocate(playerIndex);
+        minedTypeCounter.allocate(playerIndex);
+    }
+
+    /**
+     * Schedules the eviction of the stats of a player who logged out.
+     * @param playerIndex The index of the player in the {@link PlayerRegistry}
+     */
+    public void onPlayerLogout(int playerIndex) {
+        final long now = clock.millis();
+        offlineSince.put(playerIndex, now);
+        pendingEvictions.addLast(new Logout(playerIndex, now));
+    }
+
+    /**
+     * Releases the stats of the players who have been offline for longer than the idle period.
+     * Called on every server tick; costs a single check while no eviction is due.
+     *
+     * @param referenced Whether buffered events still refer to a player index, in which case the
+     *                   eviction of the player is postponed by another idle period
+     */
+    public void evictIdlePlayers(IntPredicate referenced) {
+        final Logout oldest = pendingEvictions.peekFirst();
+        if (oldest == null || clock.millis() - oldest.time() < evictAfterMillis) return;
+
+        final long now = clock.millis();
+        int evicted = 0;
+        final List<Logout> postponed = new ArrayList<>();
+        while (!pendingEvictions.isEmpty() && now - pendingEvictions.peekFirst().time() >= evictAfterMillis) {
+            final Logout logout = pendingEvictions.removeFirst();
+            final int playerIndex = logout.playerIndex();
+
+            // Skip players who logged in again, or logged out again later
+            if (!offlineSince.remove(playerIndex, logout.time())) continue;
+
+            if (referenced.test(playerIndex)) {
+                postponed.add(new Logout(playerIndex, now));
+                continue;
             }
-        }, CLEANUP_INTERVAL, CLEANUP_INTERVAL);
+
+            miningCounter.release(playerIndex);
+            buildingCounter.release(playerIndex);
+            oreCounter.release(playerIndex);
+            minedTypeCounter.release(playerIndex);
+            anomalyDetector.release(playerIndex);
+            flagged.clear(playerIndex * ANOMALY_KINDS, (playerIndex + 1) * ANOMALY_KINDS);
+            eventAdmission.release(playerIndex);
+            // Last, once nothing is left keyed by the index, which goes to the next new player
+            playerRegistry.release(playerIndex);
+            evicted++;
+        }
+
+        for (Logout logout : postponed) {
+            offlineSince.put(logout.playerIndex(), logout.time());
+            pendingEvictions.addLast(logout);
+        }
+
+        if (evicted > 0) {
+            LOGGER.info("Evicted stats of " + evicted + " offline players, " + getMemoryReport());
+        }
     }
 
     /**
-     * Track a block destroyed event for a player (mining)
-     * @param playerId The player's UUID
-     * @param timestamp The timestamp of the event
+     * Samples the rates of the tracked players and flags unusual activity.
+     * Called on every server tick; costs a single check until the next sample is due.
      */
-    public void trackMiningEvent(String playerId, long timestamp) {
-        // Get or create the player's event queue
-        Deque<BlockEvent> playerEvents = playerMiningEvents.computeIfAbsent(
-                playerId,
-                k -> new ConcurrentLinkedDeque<>()
-        );
+    public void detectAnomalies() {
+        final long now = clock.millis();
+        if (now - lastSampleMillis < sampleIntervalMillis) return;
+        lastSampleMillis = now;
+
+        final List<PlayerAnomaly> detected = new ArrayList<>();
+        int trackedPlayers = 0;
+        int activePlayers = 0;
+        long blocksMined = 0;
+        long blocksPlaced = 0;
 
-        // Add the new mining event
-        playerEvents.addLast(new BlockEvent(timestamp));
+        final int slots = miningCounter.getSlotCount();
+        for (int playerIndex = 0; playerIndex < slots; playerIndex++) {
+            if (!miningCounter.isAllocated(playerIndex)) continue;
 
-        // Remove oldest events if we exceed capacity
-        while (playerEvents.size() > MAX_EVENTS_PER_PLAYER) {
-            playerEvents.removeFirst();
+            final int mined = miningCounter.count(playerIndex, rateWindow);
+            final int placed = buildingCounter.count(playerIndex, rateWindow);
+            trackedPlayers++;
+            if (mined + placed > 0) activePlayers++;
+            blocksMined += mined;
+            blocksPlaced += placed;
+
+            checkRate(playerIndex, AnomalyDetector.Metric.MINING, PlayerAnomaly.Kind.MINING, mined, now, detected);
+            checkRate(playerIndex, AnomalyDetector.Metric.BUILDING, PlayerAnomaly.Kind.BUILDING, placed, now, detected);
+
+            final float oreRatio = mined > 0 ? (float) oreCounter.count(playerIndex, rateWindow) / mined : 0;
+            flag(
+                    playerIndex,
+                    PlayerAnomaly.Kind.ORE_RATIO,
+                    mined >= anomalyOreMinBlocks && oreRatio >= anomalyOreRatio,
+                    Math.round(oreRatio * 100) / 100f,
+                    null,
+                    now,
+                    detected
+            );
         }
+
+        final Map<String, List<PlayerAnomaly>> byPlayer = new HashMap<>();
+        detected.forEach(anomaly -> byPlayer.computeIfAbsent(anomaly.getPlayerId(), id -> new ArrayList<>()).add(anomaly));
+        anomalies = byPlayer;
+
+        final Map<String, Number> summary = new LinkedHashMap<>();
+        summary.put("players", trackedPlayers);
+        summary.put("active", activePlayers);
+        summary.put("minedPerMin", rateWindow.perMinute((int) blocksMined));
+        summary.put("placedPerMin", rateWindow.perMinute((int) blocksPlaced));
+        summary.put("avgMiningRate", Math.round(anomalyDetector.getBaseline(AnomalyDetector.Metric.MINING).mean()));
+        summary.put("avgBuildingRate", Math.round(anomalyDetector.getBaseline(AnomalyDetector.Metric.BUILDING).mean()));
+        activitySummary = summary;
+    }
+
+    /**
+     * Get the activity flagged as unusual at the last sample
+     * @return A map of player IDs to their anomalies
+     */
+    public Map<String, List<PlayerAnomaly>> getAnomalies() {
+        return anomalies;
+    }
+
+    /**
+     * Describes the memory held by the stats of the tracked players.
+     */
+    public String getMemoryReport() {
+        final long counterBytes = miningCounter.getAllocatedBytes() + buildingCounter.getAllocatedBytes()
+                + oreCounter.getAllocatedBytes();
+        final long typeBytes = minedTypeCounter.getAllocatedBytes();
+        final long anomalyBytes = anomalyDetector.getAllocatedBytes() + flagged.size() / 8;
+
+        return "stats memory: " + miningCounter.getAllocatedSlots() + " tracked players, "
+                + (counterBytes + typeBytes + anomalyBytes) / 1024 + " KB ("
+                + counterBytes / 1024 + " KB of rate counters at " + 3 * SlidingWindowCounter.BYTES_PER_SLOT
+                + " bytes per player, " + typeBytes / 1024 + " KB of block type tables, "
+                + anomalyBytes / 1024 + " KB of anomaly baselines)";
+    }
+
+    /**
+     * Track a block destroyed event for a player (mining)
+     * @param playerIndex The index of the player in the {@link PlayerRegistry}
+     * @param timestamp The timestamp of the event
+     */
+    public void trackMiningEvent(int playerIndex, long timestamp) {
+        miningCounter.increment(playerIndex, timestamp);
     }
     
     /**
      * Track a block placed event for a player (building)
-     * @param playerId The player's UUID
+     * @param playerIndex The index of the player in the {@link PlayerRegistry}
      * @param timestamp The timestamp of the event
      */
-    public void trackBuildingEvent(String playerId, long timestamp) {
-        // Get or create the player's event queue
-        Deque<BlockEvent> playerEvents = playerBuildingEvents.computeIfAbsent(
-                playerId, 
-                k -> new ConcurrentLinkedDeque<>()
-        );
-
-        // Add the new building event
-        playerEvents.addLast(new BlockEvent(timestamp));
+    public void trackBuildingEvent(int playerIndex, long timestamp) {
+        buildingCounter.increment(playerIndex, timestamp);
+    }
 
-        // Remove oldest events if we exceed capacity
-        while (playerEvents.size() > MAX_EVENTS_PER_PLAYER) {
-            playerEvents.removeFirst();
+    /**
+     * Track a block destroyed event for a player (mining), along with its location and type
+     * @param playerIndex The index of the player in the {@link PlayerRegistry}
+     * @param dimension The dimension of the block
+     * @param pos The position of the block
+     * @param blockTypeId The id of the block in {@link BuiltInRegistries#BLOCK}
+     * @param timestamp The timestamp of the event
+     */
+    public void trackMiningEvent(int playerIndex, ResourceKey<Level> dimension, BlockPos pos, int blockTypeId, long timestamp) {
+        trackMiningEvent(playerIndex, timestamp);
+        minedTypeCounter.increment(playerIndex, blockTypeId, timestamp);
+        if (isOre(blockTypeId)) {
+            oreCounter.increment(playerIndex, timestamp);
         }
+        heatmap.record(dimension, pos.getX(), pos.getZ(), ChunkHeatmap.Activity.MINED, timestamp);
+    }
+
+    /**
+     * Track a block placed event for a player (building), along with its location
+     * @param playerIndex The index of the player in the {@link PlayerRegistry}
+     * @param dimension The dimension of the block
+     * @param pos The position of the block
+     * @param timestamp The timestamp of the event
+     */
+    public void trackBuildingEvent(int playerIndex, ResourceKey<Level> dimension, BlockPos pos, long timestamp) {
+        trackBuildingEvent(playerIndex, timestamp);
+        heatmap.record(dimension, pos.getX(), pos.getZ(), ChunkHeatmap.Activity.PLACED, timestamp);
     }
 
     /**
      * Get the mining rate (blocks per minute) for a specific player
      * @param playerId The player's UUID
+     * @param window The window the rate is averaged over
      * @return The number of blocks mined per minute
      */
-    public int getMiningRate(String playerId) {
-        return getBlockRateForPlayer(playerMiningEvents, playerId);
+    public int getMiningRate(String playerId, RateWindow window) {
+        return window.perMinute(miningCounter.count(playerRegistry.indexOf(playerId), window));
     }
     
     /**
      * Get the building rate (blocks per minute) for a specific player
      * @param playerId The player's UUID
+     * @param window The window the rate is averaged over
      * @return The number of blocks placed per minute
      */
-    public int getBuildingRate(String playerId) {
-        return getBlockRateForPlayer(playerBuildingEvents, playerId);
+    public int getBuildingRate(String playerId, RateWindow window) {
+        return window.perMinute(buildingCounter.count(playerRegistry.indexOf(playerId), window));
     }
-    
+
     /**
-     * Helper method to calculate block rate for a player
-     * @param eventsMap The map of events to use
+     * Get the mining rates for all players over the configured window
+     * @return A map of player IDs to their mining rates
+     */
+    public Map<String, PlayerMiningRate> getAllMiningRates() {
+        final Map<String, PlayerMiningRate> rates = getAllMiningRates(rateWindow);
+        rates.values().forEach(rate -> rate.setBlockCounts(getTopMinedBlocks(rate.getPlayerId())));
+
+        return rates;
+    }
+
+    /**
+     * Get the block types a player mined the most over the configured window
      * @param playerId The player's UUID
-     * @return The number of blocks per minute
+     * @return A map of block names to the number mined, most mined first
      */
-    private int getBlockRateForPlayer(Map<String, Deque<BlockEvent>> eventsMap, String playerId) {
-        Deque<BlockEvent> playerEvents = eventsMap.get(playerId);
-        if (playerEvents == null || playerEvents.isEmpty()) {
-            return 0;
+    public Map<String, Integer> getTopMinedBlocks(String playerId) {
+        return getTopMinedBlocks(playerRegistry.indexOf(playerId));
+    }
+
+    private Map<String, Integer> getTopMinedBlocks(int playerIndex) {
+        final BlockTypeCounter.TypeCounts top = minedTypeCounter.top(playerIndex, topBlockTypes);
+
+        Map<String, Integer> blockCounts = new LinkedHashMap<>();
+        for (int i = 0; i < top.size(); i++) {
+            final var block = BuiltInRegistries.BLOCK.byId(top.typeIds()[i]);
+            blockCounts.put(BuiltInRegistries.BLOCK.getKey(block).getPath(), top.counts()[i]);
         }
 
-        long currentTime = System.currentTimeMillis();
-        // Count blocks in the last minute
-        return (int) playerEvents.stream()
-                .filter(event -> currentTime - event.timestamp <= MINUTE_IN_MS)
-                .count();
+        return blockCounts;
     }
 
     /**
      * Get the mining rates for all players
+     * @param window The window the rates are averaged over
      * @return A map of player IDs to their mining rates
      */
-    public Map<String, PlayerMiningRate> getAllMiningRates() {
-        Map<String, PlayerMiningRate> rates = new HashMap<>();
-        long currentTime = System.currentTimeMillis();
-
-        playerMiningEvents.forEach((playerId, events) -> {
-            // Count blocks mined in the last minute
-            int blocksPerMinute = (int) events.stream()
-                    .filter(event -> currentTime - event.timestamp <= MINUTE_IN_MS)
-                    .count();
-            
-            // Only include players with activity
-            if (blocksPerMinute > 0) {
-                rates.put(playerId, new PlayerMiningRate(playerId, blocksPerMinute));
-            }
-        });
-
-        return rates;
+    public Map<String, PlayerMiningRate> getAllMiningRates(RateWindow window) {
+        return collectRates(miningCounter, window, PlayerMiningRate::new);
     }
     
     /**
-     * Get the building rates for all players
+     * Get the building rates for all players over the configured window
      * @return A map of player IDs to their building rates
      */
     public Map<String, PlayerBuildingRate> getAllBuildingRates() {
-        Map<String, PlayerBuildingRate> rates = new HashMap<>();
-        long currentTime = System.currentTimeMillis();
-
-        playerBuildingEvents.forEach((playerId, events) -> {
-            // Count blocks placed in the last minute
-            int blocksPerMinute = (int) events.stream()
-                    .filter(event -> currentTime - event.timestamp <= MINUTE_IN_MS)
-                    .count();
-            
-            // Only include players with activity
-            if (blocksPerMinute > 0) {
-                rates.put(playerId, new PlayerBuildingRate(playerId, blocksPerMinute));
-            }
-        });
+        return getAllBuildingRates(rateWindow);
+    }
 
-        return rates;
+    /**
+     * Get the building rates for all players
+     * @param window The window the rates are averaged over
+     * @return A map of player IDs to their building rates
+     */
+    public Map<String, PlayerBuildingRate> getAllBuildingRates(RateWindow window) {
+        return collectRates(buildingCounter, window, PlayerBuildingRate::new);
     }
 
     /**
-     * Clear old events that are no longer needed for calculation
+     * Get the chunks with the most mining and building activity
+     * @return A map of dimension IDs to their hotspots, most active first
      */
-    public void cleanupOldEvents() {
-        long cutoffTime = System.currentTimeMillis() - MINUTE_IN_MS;
-        
-        // Clean up mining events
-        playerMiningEvents.forEach((playerId, events) -> {
-            // Remove events older than 1 minute
-            while (!events.isEmpty() && events.peekFirst().timestamp < cutoffTime) {
-                events.removeFirst();
-            }
-        });
-        
-        // Clean up building events
-        playerBuildingEvents.forEach((playerId, events) -> {
-            // Remove events older than 1 minute
-            while (!events.isEmpty() && events.peekFirst().timestamp < cutoffTime) {
-                events.removeFirst();
-            }
-        });
+    public Map<String, List<ChunkHotspot>> getHotspots() {
+        Map<String, List<ChunkHotspot>> hotspots = new LinkedHashMap<>();
+
+        for (ChunkHeatmap.Hotspot<ResourceKey<Level>> hotspot : heatmap.getHotspots(hotspotCount)) {
+            // Chunks whose activity has decayed away are not worth reporting
+            if (hotspot.score() < 1) continue;
+
+            hotspots.computeIfAbsent(hotspot.dimension().location().toString(), dimension -> new ArrayList<>())
+                    .add(new ChunkHotspot(hotspot.chunkX(), hotspot.chunkZ(), hotspot.mined(), hotspot.placed()));
+        }
+
+        return hotspots;
     }
-    
+
     /**
-     * Shutdown timers when service is no longer needed
+     * Collects the stats sent to the AI along with each batch of events.
+     *
+     * @return A map of stat names to the stats of all active players
      */
-    public void shutdown() {
-        if (cleanupTimer != null) {
-            cleanupTimer.cancel();
-            cleanupTimer = null;
+    public Map<String, Map<String, ?>> getBatchStats() {
+        if (report == Report.ALL) {
+            return Map.of(
+                    "miningRates", getAllMiningRates(),
+                    "buildingRate", getAllBuildingRates(),
+                    "anomalies", anomalies,
+                    "summary", activitySummary,
+                    "hotspots", getHotspots(),
+                    "rateLimited", getRateLimitedCounts()
+            );
         }
+
+        return Map.of(
+                "anomalies", anomalies,
+                "summary", activitySummary,
+                "hotspots", getHotspots(),
+                "rateLimited", getRateLimitedCounts()
+        );
     }
 
     /**
-     * Represents a single block event with a timestamp
+     * Retrieves the number of events dropped since the server started because players exceeded
+     * the rate limits of the {@link EventAdmission}. Totals rather than counts since the last
+     * batch, so that they are neither lost with a failed batch nor make unchanged stats differ.
+     *
+     * @return A map of event kinds, in lower case, to their count, without the kinds never limited
      */
-    private record BlockEvent(long timestamp) {
+    public Map<String, Long> getRateLimitedCounts() {
+        final Map<String, Long> counts = new LinkedHashMap<>();
+        eventAdmission.getLimitedCounts().forEach((kind, count) -> {
+            if (count > 0) counts.put(kind.name().toLowerCase(Locale.ROOT), count);
+        });
+
+        return counts;
+    }
+
+    private void checkRate(
+            int playerIndex,
+            AnomalyDetector.Metric metric,
+            PlayerAnomaly.Kind kind,
+            int count,
+            long now,
+            List<PlayerAnomaly> detected
+    ) {
+        final int blocksPerMinute = rateWindow.perMinute(count);
+        final double zScore = anomalyDetector.observe(playerIndex, metric, blocksPerMinute);
+        final boolean anomalous = zScore >= anomalyZThreshold
+                && anomalyDetector.getSmoothed(playerIndex, metric) >= anomalyMinRate;
+
+        flag(playerIndex, kind, anomalous, blocksPerMinute, Math.round(zScore * 10) / 10f, now, detected);
+    }
+
+    private void flag(
+            int playerIndex,
+            PlayerAnomaly.Kind kind,
+            boolean anomalous,
+            float value,
+            @Nullable Float zScore,
+            long now,
+            List<PlayerAnomaly> detected
+    ) {
+        final int bit = playerIndex * ANOMALY_KINDS + kind.ordinal();
+        if (!anomalous) {
+            flagged.clear(bit);
+            return;
+        }
+
+        final String playerId = playerRegistry.getPlayerId(playerIndex);
+        if (!flagged.get(bit)) {
+            flagged.set(bit);
+            LOGGER.info("Unusual " + kind + " activity of player " + playerId + ": " + value
+                    + (zScore != null ? " (z=" + zScore + ")" : ""));
+        }
+
+        final PlayerAnomaly anomaly = new PlayerAnomaly(playerId, kind, value, zScore, now);
+        if (kind != PlayerAnomaly.Kind.BUILDING) {
+            // What was mined tells ore hunting from digging out a base, without the rates of everyone
+            anomaly.setBlockCounts(getTopMinedBlocks(playerIndex));
+        }
+        detected.add(anomaly);
+    }
+
+    private boolean isOre(int blockTypeId) {
+        if (oreTypes == null) {
+            final BitSet ores = new BitSet();
+            for (Block block : BuiltInRegistries.BLOCK) {
+                final String name = BuiltInRegistries.BLOCK.getKey(block).getPath();
+                if (name.endsWith("_ore") || name.equals("ancient_debris")) {
+                    ores.set(BuiltInRegistries.BLOCK.getId(block));
+                }
+            }
+            oreTypes = ores;
+        }
+
+        return oreTypes.get(blockTypeId);
+    }
+
+    private <T> Map<String, T> collectRates(
+            SlidingWindowCounter counter,
+            RateWindow window,
+            BiFunction<String, Integer, T> rateFactory
+    ) {
+        Map<String, T> rates = new HashMap<>();
+
+        final int slots = counter.getSlotCount();
+        for (int playerIndex = 0; playerIndex < slots; playerIndex++) {
+            final int blocksPerMinute = window.perMinute(counter.count(playerIndex, window));
+
+            // Only include players with activity
+            if (blocksPerMinute > 0) {
+                final String playerId = playerRegistry.getPlayerId(playerIndex);
+                rates.put(playerId, rateFactory.apply(playerId, blocksPerMinute));
+            }
+        }
+
+        return rates;
+    }
+
+    private record Logout(int playerIndex, long time) {
     }
-}
\ No newline at end of file
+}
@@ -4,52 +4,31 @@ import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 
 /**
- * Tracks the approximate token count for conversations with the AI.
- * Used to determine when to refresh instructions to prevent context overflow.
+ * Counts the tokens of the messages exchanged with the AI, so that conversations can be
+ * renewed before they overflow the context of the model.
+ * Tokens are counted with the model's encoding when its vocabulary is available,
+ * and estimated from the character count otherwise.
  */
 @Singleton
 public class TokenCounter {
-    // Token threshold at which we should resend instructions
-    private static final long TOKEN_REFRESH_THRESHOLD = 80000L;
-    
-    // Average characters per token (a rough approximation)
+    // Average characters per token (a rough approximation), without a vocabulary
     private static final float CHARS_PER_TOKEN = 4.0f;
-    
-    // Total count of characters sent and received
-    private long characterCount = 0;
-    
+
+    private final BpeTokenizer tokenizer;
+
     @Inject
-    public TokenCounter() {}
-    
-    /**
-     * Adds characters to the count and returns whether the token threshold has been reached
-     * @param messageChars Number of characters in the message
-     * @return True if instructions should be resent, false otherwise
-     */
-    public synchronized boolean addMessage(int messageChars) {
-        characterCount += messageChars;
-        
-        // Check if we've reached the threshold and need to refresh
-        if (getEstimatedTokenCount() >= TOKEN_REFRESH_THRESHOLD) {
-            resetCounter();
-            return true;
-        }
-        
-        return false;
+    public TokenCounter(BpeTokenizer tokenizer) {
+        this.tokenizer = tokenizer;
     }
-    
-    /**
-     * Estimates the token count based on character count
-     * @return Estimated token count
-     */
-    public long getEstimatedTokenCount() {
-        return Math.round(characterCount / CHARS_PER_TOKEN);
-    }
-    
+
     /**
-     * Resets the counter after instructions have been refreshed
+     * Counts the tokens of a message
+     * @param message The message sent or received
+     * @return Token count, estimated without a vocabulary
      */
-    public synchronized void resetCounter() {
-        characterCount = 0;
+    public long count(CharSequence message) {
+        return tokenizer.isAvailable()
+                ? tokenizer.countTokens(message)
+                : Math.round(message.length() / CHARS_PER_TOKEN);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,168 @@
+package com.minecraftai.airulermod.stats;
+
+import java.util.Arrays;
+
+/**
+ * Streaming outlier detection over periodic samples of player activity.
+ * <p>
+ * For every player slot and metric, the samples are smoothed with an exponentially weighted moving
+ * average, and the player's own baseline is kept as a running mean and variance (Welford's
+ * algorithm). A server-wide baseline per metric is kept the same way over the samples of every
+ * player. The score of a sample is the larger of the z-scores of the smoothed value against both
+ * baselines, so a player is flagged both for departing from their own habits and for standing out
+ * from everyone else, e.g. mining far faster than anyone from the moment they log in.
+ * <p>
+ * Only non-zero samples feed the baselines, otherwise idle periods would drag them towards zero
+ * and flag any activity. Updates take constant time and do not allocate once the slot exists.
+ */
+public class AnomalyDetector {
+    private static final int INITIAL_SLOTS = 16;
+
+    /**
+     * Metrics scored by the detector.
+     */
+    public enum Metric {
+        MINING,
+        BUILDING
+    }
+
+    private static final int METRICS = Metric.values().length;
+
+    /**
+     * Running mean and variance of the samples of one metric across all players.
+     *
+     * @param samples The number of samples
+     * @param mean    The mean of the samples
+     * @param stdDev  The standard deviation of the samples
+     */
+    public record Baseline(long samples, double mean, double stdDev) {
+    }
+
+    private final double smoothing;
+    private final int minSamples;
+
+    // Per slot and metric, at slot * METRICS + metric
+    private double[] smoothed = new double[INITIAL_SLOTS * METRICS];
+    private long[] counts = new long[INITIAL_SLOTS * METRICS];
+    private double[] means = new double[INITIAL_SLOTS * METRICS];
+    private double[] squares = new double[INITIAL_SLOTS * METRICS];
+
+    // Per metric, over every player
+    private final long[] serverCounts = new long[METRICS];
+    private final double[] serverMeans = new double[METRICS];
+    private final double[] serverSquares = new double[METRICS];
+
+    /**
+     * Creates a detector.
+     *
+     * @param smoothing  The weight of a new sample in the moving average, between 0 and 1
+     * @param minSamples The number of samples a baseline needs before scores are computed against it
+     */
+    public AnomalyDetector(double smoothing, int minSamples) {
+        this.smoothing = smoothing;
+        this.minSamples = Math.max(2, minSamples);
+    }
+
+    /**
+     * Adds a sample and scores the smoothed value of the metric.
+     *
+     * @param slot   The dense index of the player
+     * @param metric The metric sampled
+     * @param value  The sampled value
+     * @return The z-score of the smoothed value, 0 while the baselines hold too few samples
+     */
+    public synchronized double observe(int slot, Metric metric, double value) {
+        ensureCapacity(slot);
+
+        final int index = slot * METRICS + metric.ordinal();
+        smoothed[index] += smoothing * (value - smoothed[index]);
+
+        final double score = Math.max(
+                zScore(smoothed[index], counts[index], means[index], squares[index]),
+                zScore(smoothed[index], serverCounts[metric.ordinal()], serverMeans[metric.ordinal()], serverSquares[metric.ordinal()])
+        );
+
+        if (value > 0) {
+            // Welford's update of the mean and of the sum of squared deviations
+            counts[index]++;
+            final double delta = value - means[index];
+            means[index] += delta / counts[index];
+            squares[index] += delta * (value - means[index]);
+
+            final int server = metric.ordinal();
+            serverCounts[server]++;
+            final double serverDelta = value - serverMeans[server];
+            serverMeans[server] += serverDelta / serverCounts[server];
+            serverSquares[server] += serverDelta * (value - serverMeans[server]);
+        }
+
+        return score;
+    }
+
+    /**
+     * Retrieves the smoothed value of a metric.
+     *
+     * @param slot   The dense index of the player
+     * @param metric The metric
+     * @return The moving average of the samples, 0 for a slot never sampled
+     */
+    public synchronized double getSmoothed(int slot, Metric metric) {
+        final int index = slot * METRICS + metric.ordinal();
+        return index < smoothed.length ? smoothed[index] : 0;
+    }
+
+    /**
+     * Retrieves the server-wide baseline of a metric.
+     */
+    public synchronized Baseline getBaseline(Metric metric) {
+        final int server = metric.ordinal();
+        return new Baseline(serverCounts[server], serverMeans[server], stdDev(serverCounts[server], serverSquares[server]));
+    }
+
+    /**
+     * @return The approximate memory held by the per-slot arrays, in bytes, which grow with the
+     * highest slot sampled and are never shrunk
+     */
+    public synchronized long getAllocatedBytes() {
+        return (long) smoothed.length * (3 * Double.BYTES + Long.BYTES);
+    }
+
+    /**
+     * Forgets the samples of a slot, the server-wide baselines keep them.
+     *
+     * @param slot The dense index of the player
+     */
+    public synchronized void release(int slot) {
+        final int start = slot * METRICS;
+        if (start >= smoothed.length) return;
+
+        Arrays.fill(smoothed, start, start + METRICS, 0);
+        Arrays.fill(counts, start, start + METRICS, 0);
+        Arrays.fill(means, start, start + METRICS, 0);
+        Arrays.fill(squares, start, start + METRICS, 0);
+    }
+
+    private double zScore(double value, long count, double mean, double squares) {
+        if (count < minSamples) return 0;
+
+        final double stdDev = stdDev(count, squares);
+
+        // A perfectly steady baseline makes any deviation infinitely unlikely, compare to 1 instead
+        return (value - mean) / Math.max(stdDev, 1);
+    }
+
+    private static double stdDev(long count, double squares) {
+        return count > 1 ? Math.sqrt(squares / (count - 1)) : 0;
+    }
+
+    private void ensureCapacity(int slot) {
+        final int required = (slot + 1) * METRICS;
+        if (required <= smoothed.length) return;
+
+        final int capacity = Math.max(required, smoothed.length * 2);
+        smoothed = Arrays.copyOf(smoothed, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        means = Arrays.copyOf(means, capacity);
+        squares = Arrays.copyOf(squares, capacity);
+    }
+}
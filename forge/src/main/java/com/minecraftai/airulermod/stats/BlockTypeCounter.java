@@ -0,0 +1,245 @@
+package com.minecraftai.airulermod.stats;
+
+import java.time.Clock;
+import java.util.Arrays;
+
+/**
+ * Counts occurrences per player and per block type over one sliding {@link RateWindow}.
+ * <p>
+ * The window is split into {@link #BUCKETS} buckets. Every player slot owns a small open-addressing
+ * table from dense block type ids to one counter per bucket, all in primitive arrays, plus the
+ * epoch of each bucket. Moving to a new bucket clears its column, so increments take constant
+ * time (amortized over the size of the table) and do not allocate unless the player mines more
+ * distinct types than the table holds. Counts are accurate to the length of a bucket.
+ * <p>
+ * Slots are the dense indices of the {@link com.minecraftai.airulermod.service.PlayerRegistry};
+ * a slot holds its table from {@link #allocate(int)} until {@link #release(int)}.
+ */
+public class BlockTypeCounter {
+    private static final int BUCKETS = 6;
+    private static final int INITIAL_TYPES = 32;
+    private static final int EMPTY = -1;
+
+    /**
+     * Counts of the block types of a slot, most counted first.
+     *
+     * @param typeIds The block type ids
+     * @param counts  The counts within the window, matching the type ids
+     */
+    public record TypeCounts(int[] typeIds, int[] counts) {
+        public int size() {
+            return typeIds.length;
+        }
+    }
+
+    private static final TypeCounts NONE = new TypeCounts(new int[0], new int[0]);
+
+    private final Clock clock;
+    private final long bucketMillis;
+
+    // Per slot: the type ids of the table, the counters (BUCKETS per type), the epoch of each bucket
+    private int[][] typeIds = new int[16][];
+    private int[][] counts = new int[16][];
+    private long[][] epochs = new long[16][];
+    private int[] sizes = new int[16];
+
+    public BlockTypeCounter(Clock clock, RateWindow window) {
+        this.clock = clock;
+        this.bucketMillis = window.getSeconds() * 1000L / BUCKETS;
+    }
+
+    /**
+     * Allocates the table of a slot, if not allocated yet.
+     *
+     * @param slot The dense index of the player
+     */
+    public synchronized void allocate(int slot) {
+        if (slot >= typeIds.length) {
+            final int capacity = Math.max(slot + 1, typeIds.length * 2);
+            typeIds = Arrays.copyOf(typeIds, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            epochs = Arrays.copyOf(epochs, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+        }
+
+        if (typeIds[slot] == null) {
+            typeIds[slot] = newTypeIds(INITIAL_TYPES);
+            counts[slot] = new int[INITIAL_TYPES * BUCKETS];
+            epochs[slot] = new long[BUCKETS];
+            sizes[slot] = 0;
+        }
+    }
+
+    /**
+     * Frees the table of a slot. Its counts are lost.
+     *
+     * @param slot The dense index of the player
+     */
+    public synchronized void release(int slot) {
+        if (!isAllocated(slot)) return;
+
+        typeIds[slot] = null;
+        counts[slot] = null;
+        epochs[slot] = null;
+        sizes[slot] = 0;
+    }
+
+    /**
+     * @return The approximate memory held by the tables of the allocated slots, in bytes
+     */
+    public synchronized long getAllocatedBytes() {
+        long bytes = 0;
+        for (int slot = 0; slot < typeIds.length; slot++) {
+            if (typeIds[slot] == null) continue;
+
+            // Type ids and counters as ints, epochs as longs, plus the headers of the three arrays
+            bytes += (long) (typeIds[slot].length + counts[slot].length) * Integer.BYTES
+                    + (long) BUCKETS * Long.BYTES + 3 * 16;
+        }
+        return bytes;
+    }
+
+    /**
+     * Counts one occurrence of a block type, allocating the slot if needed.
+     *
+     * @param slot            The dense index of the player
+     * @param typeId          The dense id of the block type, not negative
+     * @param timestampMillis The time of the occurrence in milliseconds
+     */
+    public synchronized void increment(int slot, int typeId, long timestampMillis) {
+        allocate(slot);
+
+        final long epoch = Math.floorDiv(timestampMillis, bucketMillis);
+        final int bucket = (int) Math.floorMod(epoch, BUCKETS);
+        final long[] slotEpochs = epochs[slot];
+
+        if (slotEpochs[bucket] != epoch) {
+            // Occurrences older than the window are dropped, the bucket is reused otherwise
+            if (slotEpochs[bucket] > epoch) return;
+
+            final int[] slotCounts = counts[slot];
+            for (int index = bucket; index < slotCounts.length; index += BUCKETS) {
+                slotCounts[index] = 0;
+            }
+            slotEpochs[bucket] = epoch;
+        }
+
+        int index = find(typeIds[slot], typeId);
+        if (typeIds[slot][index] == EMPTY) {
+            if ((sizes[slot] + 1) * 2 > typeIds[slot].length) {
+                rehash(slot, epoch);
+                index = find(typeIds[slot], typeId);
+            }
+
+            typeIds[slot][index] = typeId;
+            sizes[slot]++;
+        }
+
+        counts[slot][index * BUCKETS + bucket]++;
+    }
+
+    /**
+     * Retrieves the most counted block types within the window ending now.
+     *
+     * @param slot  The dense index of the player
+     * @param limit The maximum number of types
+     * @return The non-zero counts, most counted first
+     */
+    public synchronized TypeCounts top(int slot, int limit) {
+        if (!isAllocated(slot) || limit <= 0) return NONE;
+
+        final int[] totals = totals(slot, Math.floorDiv(clock.millis(), bucketMillis));
+        final int[] slotTypeIds = typeIds[slot];
+
+        // Partial selection sort, the tables are small and the limit smaller
+        final int[] topTypes = new int[limit];
+        final int[] topCounts = new int[limit];
+        int found = 0;
+        while (found < limit) {
+            int best = -1;
+            for (int index = 0; index < totals.length; index++) {
+                if (totals[index] > 0 && (best < 0 || totals[index] > totals[best])) {
+                    best = index;
+                }
+            }
+            if (best < 0) break;
+
+            topTypes[found] = slotTypeIds[best];
+            topCounts[found] = totals[best];
+            totals[best] = 0;
+            found++;
+        }
+
+        return found == 0 ? NONE : new TypeCounts(Arrays.copyOf(topTypes, found), Arrays.copyOf(topCounts, found));
+    }
+
+    private boolean isAllocated(int slot) {
+        return slot >= 0 && slot < typeIds.length && typeIds[slot] != null;
+    }
+
+    /**
+     * Sums the buckets of every type that are within the window ending at the given epoch.
+     */
+    private int[] totals(int slot, long currentEpoch) {
+        final int[] slotTypeIds = typeIds[slot];
+        final int[] slotCounts = counts[slot];
+        final long[] slotEpochs = epochs[slot];
+        final int[] totals = new int[slotTypeIds.length];
+
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            if (currentEpoch - slotEpochs[bucket] >= BUCKETS) continue;
+
+            for (int index = 0; index < slotTypeIds.length; index++) {
+                totals[index] += slotCounts[index * BUCKETS + bucket];
+            }
+        }
+
+        return totals;
+    }
+
+    /**
+     * Drops the types no longer counted in the window, and doubles the table if still half full.
+     */
+    private void rehash(int slot, long currentEpoch) {
+        final int[] oldTypeIds = typeIds[slot];
+        final int[] oldCounts = counts[slot];
+        final int[] totals = totals(slot, currentEpoch);
+
+        int live = 0;
+        for (int total : totals) {
+            if (total > 0) live++;
+        }
+
+        final int capacity = (live + 1) * 2 > oldTypeIds.length ? oldTypeIds.length * 2 : oldTypeIds.length;
+        final int[] newTypeIds = newTypeIds(capacity);
+        final int[] newCounts = new int[capacity * BUCKETS];
+
+        for (int index = 0; index < oldTypeIds.length; index++) {
+            if (totals[index] == 0) continue;
+
+            final int target = find(newTypeIds, oldTypeIds[index]);
+            newTypeIds[target] = oldTypeIds[index];
+            System.arraycopy(oldCounts, index * BUCKETS, newCounts, target * BUCKETS, BUCKETS);
+        }
+
+        typeIds[slot] = newTypeIds;
+        counts[slot] = newCounts;
+        sizes[slot] = live;
+    }
+
+    private static int find(int[] table, int typeId) {
+        final int mask = table.length - 1;
+        int index = (typeId * 0x9E3779B9) >>> 16 & mask;
+        while (table[index] != EMPTY && table[index] != typeId) {
+            index = (index + 1) & mask;
+        }
+
+        return index;
+    }
+
+    private static int[] newTypeIds(int capacity) {
+        final int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+}
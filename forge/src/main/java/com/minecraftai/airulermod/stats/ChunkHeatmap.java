@@ -0,0 +1,241 @@
+package com.minecraftai.airulermod.stats;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Incrementally maintained heatmap of the blocks mined and placed per chunk, with exponential
+ * time decay, so the hotspots of current griefing or building activity can be reported without
+ * keeping per-block events.
+ * <p>
+ * Every dimension has an open-addressing map from the packed chunk coordinates to two activity
+ * scores held in primitive arrays. Decay costs nothing per update: instead of shrinking every
+ * score over time, each new block is added with a weight growing exponentially with time, and
+ * the scores are divided by the current weight when read. The weights are renormalized when they
+ * grow too large, and chunks whose activity has decayed away are pruned when a map is full, so
+ * recording a block is O(1) amortized and does not allocate.
+ *
+ * @param <D> The type of the dimension keys
+ */
+public class ChunkHeatmap<D> {
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int MAX_CAPACITY = 1 << 16;
+    private static final double MAX_WEIGHT = 1e18;
+    private static final float PRUNE_BELOW = 0.5f;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    /**
+     * Kind of block activity recorded in the heatmap.
+     */
+    public enum Activity {
+        MINED,
+        PLACED
+    }
+
+    /**
+     * A chunk with notable activity.
+     *
+     * @param dimension The dimension of the chunk, as given when recording
+     * @param chunkX    The chunk x coordinate
+     * @param chunkZ    The chunk z coordinate
+     * @param mined     The decayed number of blocks mined
+     * @param placed    The decayed number of blocks placed
+     */
+    public record Hotspot<D>(D dimension, int chunkX, int chunkZ, float mined, float placed) {
+        public float score() {
+            return mined + placed;
+        }
+    }
+
+    private final Clock clock;
+    private final double decayPerMilli;
+    private final Map<D, DimensionHeat> dimensions = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a heatmap.
+     *
+     * @param clock          The clock the decay follows
+     * @param halfLifeMillis The time after which recorded activity counts half
+     */
+    public ChunkHeatmap(Clock clock, long halfLifeMillis) {
+        this.clock = clock;
+        this.decayPerMilli = Math.log(2) / Math.max(1, halfLifeMillis);
+    }
+
+    /**
+     * Records a block mined or placed.
+     *
+     * @param dimension The dimension key, compared by equality
+     * @param blockX    The block x coordinate
+     * @param blockZ    The block z coordinate
+     * @param activity  Whether the block was mined or placed
+     * @param timestamp The time of the activity in milliseconds
+     */
+    public void record(D dimension, int blockX, int blockZ, Activity activity, long timestamp) {
+        dimensions.computeIfAbsent(dimension, key -> new DimensionHeat())
+                .add(packChunk(blockX >> 4, blockZ >> 4), activity, timestamp);
+    }
+
+    /**
+     * Retrieves the chunks with the most activity across all dimensions.
+     *
+     * @param limit The maximum number of hotspots
+     * @return The hotspots, most active first
+     */
+    public List<Hotspot<D>> getHotspots(int limit) {
+        if (limit <= 0) return List.of();
+
+        final long now = clock.millis();
+        final PriorityQueue<Hotspot<D>> top = new PriorityQueue<>(Comparator.comparingDouble(Hotspot::score));
+        dimensions.forEach((dimension, heat) -> heat.collectTop(dimension, now, limit, top));
+
+        final List<Hotspot<D>> hotspots = new ArrayList<>(top);
+        hotspots.sort(Comparator.comparingDouble(Hotspot<D>::score).reversed());
+
+        return hotspots;
+    }
+
+    private static long packChunk(int chunkX, int chunkZ) {
+        return (chunkX & 0xFFFFFFFFL) | (chunkZ & 0xFFFFFFFFL) << 32;
+    }
+
+    private static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        return (int) (hash ^ hash >>> 16);
+    }
+
+    /**
+     * Activity scores of the chunks of one dimension, in a linear-probing hash table.
+     */
+    private final class DimensionHeat {
+        private long[] keys = newKeys(INITIAL_CAPACITY);
+        private float[] mined = new float[INITIAL_CAPACITY];
+        private float[] placed = new float[INITIAL_CAPACITY];
+        private int size = 0;
+
+        // Scores are stored multiplied by exp(decayPerMilli * (time - baseTime))
+        private long baseTime = Long.MIN_VALUE;
+
+        synchronized void add(long chunk, Activity activity, long timestamp) {
+            if (baseTime == Long.MIN_VALUE) baseTime = timestamp;
+
+            double weight = Math.exp(decayPerMilli * (timestamp - baseTime));
+            if (weight > MAX_WEIGHT) {
+                rescale(timestamp);
+                weight = 1;
+            }
+
+            int slot = find(chunk);
+            if (keys[slot] == EMPTY) {
+                if (!makeRoom(timestamp)) return;
+
+                slot = find(chunk);
+                keys[slot] = chunk;
+                size++;
+            }
+
+            if (activity == Activity.MINED) {
+                mined[slot] += (float) weight;
+            } else {
+                placed[slot] += (float) weight;
+            }
+        }
+
+        synchronized void collectTop(D dimension, long now, int limit, PriorityQueue<Hotspot<D>> top) {
+            if (size == 0) return;
+
+            final float decay = (float) Math.exp(-decayPerMilli * (now - baseTime));
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] == EMPTY) continue;
+
+                final float score = (mined[slot] + placed[slot]) * decay;
+                if (top.size() < limit || score > top.peek().score()) {
+                    top.add(new Hotspot<>(
+                            dimension,
+                            (int) keys[slot],
+                            (int) (keys[slot] >>> 32),
+                            mined[slot] * decay,
+                            placed[slot] * decay
+                    ));
+                    if (top.size() > limit) top.poll();
+                }
+            }
+        }
+
+        private int find(long chunk) {
+            final int mask = keys.length - 1;
+            int slot = mix(chunk) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != chunk) {
+                slot = (slot + 1) & mask;
+            }
+
+            return slot;
+        }
+
+        /**
+         * Ensures a new chunk fits under the load factor of one half, growing the table or pruning
+         * decayed chunks.
+         *
+         * @return Whether there is room for a new chunk
+         */
+        private boolean makeRoom(long timestamp) {
+            if ((size + 1) * 2 <= keys.length) return true;
+
+            if (keys.length < MAX_CAPACITY) {
+                rehash(keys.length * 2, 0);
+                return true;
+            }
+
+            rescale(timestamp);
+            rehash(keys.length, PRUNE_BELOW);
+
+            return (size + 1) * 2 <= keys.length;
+        }
+
+        /**
+         * Moves the base time to the given time, so that the stored scores are the current ones.
+         */
+        private void rescale(long timestamp) {
+            final float decay = (float) Math.exp(-decayPerMilli * (timestamp - baseTime));
+            for (int slot = 0; slot < keys.length; slot++) {
+                mined[slot] *= decay;
+                placed[slot] *= decay;
+            }
+            baseTime = timestamp;
+        }
+
+        private void rehash(int capacity, float minScore) {
+            final long[] oldKeys = keys;
+            final float[] oldMined = mined;
+            final float[] oldPlaced = placed;
+
+            keys = newKeys(capacity);
+            mined = new float[capacity];
+            placed = new float[capacity];
+            size = 0;
+
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] == EMPTY || oldMined[slot] + oldPlaced[slot] < minScore) continue;
+
+                final int target = find(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                mined[target] = oldMined[slot];
+                placed[target] = oldPlaced[slot];
+                size++;
+            }
+        }
+
+        private static long[] newKeys(int capacity) {
+            final long[] newKeys = new long[capacity];
+            Arrays.fill(newKeys, EMPTY);
+            return newKeys;
+        }
+    }
+}
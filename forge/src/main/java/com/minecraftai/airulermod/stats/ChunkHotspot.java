@@ -0,0 +1,45 @@
+package com.minecraftai.airulermod.stats;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Represents a chunk with intense recent mining or building activity.
+ * The block counts decay over time, so they reflect current rather than historical activity.
+ */
+public class ChunkHotspot {
+
+    @SerializedName("x")
+    private final int centerX;
+
+    @SerializedName("z")
+    private final int centerZ;
+
+    @SerializedName("mined")
+    private final int blocksMined;
+
+    @SerializedName("placed")
+    private final int blocksPlaced;
+
+    public ChunkHotspot(int chunkX, int chunkZ, float blocksMined, float blocksPlaced) {
+        this.centerX = (chunkX << 4) + 8;
+        this.centerZ = (chunkZ << 4) + 8;
+        this.blocksMined = Math.round(blocksMined);
+        this.blocksPlaced = Math.round(blocksPlaced);
+    }
+
+    public int getCenterX() {
+        return centerX;
+    }
+
+    public int getCenterZ() {
+        return centerZ;
+    }
+
+    public int getBlocksMined() {
+        return blocksMined;
+    }
+
+    public int getBlocksPlaced() {
+        return blocksPlaced;
+    }
+}
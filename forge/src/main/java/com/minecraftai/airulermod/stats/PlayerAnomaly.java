@@ -0,0 +1,81 @@
+package com.minecraftai.airulermod.stats;
+
+import com.google.gson.annotations.SerializedName;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * Represents a player activity flagged as unusual by the stats subsystem.
+ * Only flagged activity is sent to the AI, instead of the rates of every player.
+ */
+public class PlayerAnomaly {
+
+    public enum Kind {
+        @SerializedName("mining")
+        MINING,
+
+        @SerializedName("building")
+        BUILDING,
+
+        // Share of ores among the mined blocks
+        @SerializedName("ores")
+        ORE_RATIO
+    }
+
+    @SerializedName("pid")
+    private final String playerId;
+
+    @SerializedName("kind")
+    private final Kind kind;
+
+    // Blocks per minute, or the share of ores for ORE_RATIO
+    @SerializedName("value")
+    private final float value;
+
+    @SerializedName("z")
+    private final @Nullable Float zScore;
+
+    @SerializedName("ts")
+    private final long timestamp;
+
+    // Most mined block types with their counts within the window, for mining and ore anomalies
+    @SerializedName("blocks")
+    private @Nullable Map<String, Integer> blockCounts;
+
+    public PlayerAnomaly(String playerId, Kind kind, float value, @Nullable Float zScore, long timestamp) {
+        this.playerId = playerId;
+        this.kind = kind;
+        this.value = value;
+        this.zScore = zScore;
+        this.timestamp = timestamp;
+    }
+
+    public String getPlayerId() {
+        return playerId;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public float getValue() {
+        return value;
+    }
+
+    public @Nullable Float getZScore() {
+        return zScore;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public @Nullable Map<String, Integer> getBlockCounts() {
+        return blockCounts;
+    }
+
+    public void setBlockCounts(Map<String, Integer> blockCounts) {
+        this.blockCounts = blockCounts.isEmpty() ? null : blockCounts;
+    }
+}
@@ -2,6 +2,9 @@ package com.minecraftai.airulermod.stats;
 
 import com.google.gson.annotations.SerializedName;
 
+import javax.annotation.Nullable;
+import java.util.Map;
+
 /**
  * Represents a player's mining rate (blocks per minute).
  * This is a statistical metric rather than an event, used to track player activity.
@@ -16,6 +19,10 @@ public class PlayerMiningRate {
     
     @SerializedName("ts")
     private final long timestamp;
+
+    // Most mined block types with their counts within the window, omitted when unknown
+    @SerializedName("blocks")
+    private @Nullable Map<String, Integer> blockCounts;
     
     public PlayerMiningRate(String playerId, int blocksPerMinute) {
         this.playerId = playerId;
@@ -34,4 +41,12 @@ public class PlayerMiningRate {
     public long getTimestamp() {
         return timestamp;
     }
+
+    public @Nullable Map<String, Integer> getBlockCounts() {
+        return blockCounts;
+    }
+
+    public void setBlockCounts(Map<String, Integer> blockCounts) {
+        this.blockCounts = blockCounts.isEmpty() ? null : blockCounts;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.minecraftai.airulermod.stats;
+
+/**
+ * Time windows over which player activity rates are computed.
+ */
+public enum RateWindow {
+    ONE_MINUTE(60),
+    FIVE_MINUTES(5 * 60),
+    FIFTEEN_MINUTES(15 * 60);
+
+    private final int seconds;
+
+    RateWindow(int seconds) {
+        this.seconds = seconds;
+    }
+
+    public int getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * Converts a number of occurrences within this window to a rate per minute.
+     *
+     * @param count The number of occurrences within the window
+     * @return The rounded rate per minute
+     */
+    public int perMinute(int count) {
+        return Math.round(count * 60f / seconds);
+    }
+}
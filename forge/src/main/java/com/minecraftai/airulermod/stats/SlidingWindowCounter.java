@@ -0,0 +1,163 @@
+package com.minecraftai.airulermod.stats;
+
+import java.time.Clock;
+import java.util.Arrays;
+
+/**
+ * Counts occurrences per player over the sliding {@link RateWindow}s.
+ * <p>
+ * Every player slot owns a ring of per-second counters covering the longest window, plus a running
+ * sum per window. Moving to a new second subtracts the buckets leaving each window from its sum and
+ * clears the bucket being reused, so increments and queries take constant time (amortized over the
+ * elapsed seconds) and never allocate once the slot is allocated. Slots are the dense indices of the
+ * {@link com.minecraftai.airulermod.service.PlayerRegistry}; a slot holds {@link #BYTES_PER_SLOT}
+ * bytes of counters from {@link #allocate(int)} until {@link #release(int)}.
+ * <p>
+ * Occurrences older than the current second of the slot are still counted if they fall within the
+ * longest window, so slightly out-of-order timestamps are tolerated.
+ */
+public class SlidingWindowCounter {
+    private static final RateWindow[] WINDOWS = RateWindow.values();
+    private static final int HORIZON = RateWindow.FIFTEEN_MINUTES.getSeconds();
+    private static final int INITIAL_SLOTS = 16;
+
+    /**
+     * Approximate memory held by an allocated slot: the buckets, the window sums and the array headers.
+     */
+    public static final int BYTES_PER_SLOT = (HORIZON + WINDOWS.length) * Integer.BYTES + 2 * 16;
+
+    private final Clock clock;
+
+    // Per slot: per-second buckets, one running sum per window, and the newest second seen
+    private int[][] buckets = new int[INITIAL_SLOTS][];
+    private int[][] sums = new int[INITIAL_SLOTS][];
+    private long[] currentSeconds = new long[INITIAL_SLOTS];
+    private int allocatedSlots = 0;
+
+    public SlidingWindowCounter(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Allocates the counters of a slot, if not allocated yet.
+     *
+     * @param slot The dense index of the player
+     */
+    public synchronized void allocate(int slot) {
+        if (slot >= buckets.length) {
+            final int capacity = Math.max(slot + 1, buckets.length * 2);
+            buckets = Arrays.copyOf(buckets, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+            currentSeconds = Arrays.copyOf(currentSeconds, capacity);
+        }
+
+        if (buckets[slot] == null) {
+            buckets[slot] = new int[HORIZON];
+            sums[slot] = new int[WINDOWS.length];
+            currentSeconds[slot] = 0;
+            allocatedSlots++;
+        }
+    }
+
+    /**
+     * Frees the counters of a slot. Its counts are lost.
+     *
+     * @param slot The dense index of the player
+     */
+    public synchronized void release(int slot) {
+        if (!isAllocated(slot)) return;
+
+        buckets[slot] = null;
+        sums[slot] = null;
+        allocatedSlots--;
+    }
+
+    /**
+     * Counts one occurrence, allocating the slot if needed.
+     *
+     * @param slot            The dense index of the player
+     * @param timestampMillis The time of the occurrence in milliseconds
+     */
+    public synchronized void increment(int slot, long timestampMillis) {
+        allocate(slot);
+
+        final long second = Math.floorDiv(timestampMillis, 1000);
+        advance(slot, second);
+
+        final long age = currentSeconds[slot] - second;
+        if (age >= HORIZON) return;
+
+        buckets[slot][(int) Math.floorMod(second, HORIZON)]++;
+        for (int window = 0; window < WINDOWS.length; window++) {
+            if (age < WINDOWS[window].getSeconds()) {
+                sums[slot][window]++;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of occurrences within a window ending now.
+     *
+     * @param slot   The dense index of the player
+     * @param window The window to count in
+     * @return The number of occurrences, 0 for a slot that is not allocated
+     */
+    public synchronized int count(int slot, RateWindow window) {
+        if (!isAllocated(slot)) return 0;
+
+        advance(slot, Math.floorDiv(clock.millis(), 1000));
+        return sums[slot][window.ordinal()];
+    }
+
+    /**
+     * @return The upper bound of the allocated slots
+     */
+    public synchronized int getSlotCount() {
+        return buckets.length;
+    }
+
+    /**
+     * @return The number of allocated slots
+     */
+    public synchronized int getAllocatedSlots() {
+        return allocatedSlots;
+    }
+
+    /**
+     * @return The approximate memory held by the counters, in bytes
+     */
+    public synchronized long getAllocatedBytes() {
+        return (long) allocatedSlots * BYTES_PER_SLOT;
+    }
+
+    /**
+     * @param slot The dense index of the player
+     * @return Whether the counters of the slot are allocated
+     */
+    public synchronized boolean isAllocated(int slot) {
+        return slot >= 0 && slot < buckets.length && buckets[slot] != null;
+    }
+
+    private void advance(int slot, long second) {
+        final long current = currentSeconds[slot];
+        if (second <= current) return;
+
+        final int[] slotBuckets = buckets[slot];
+        final int[] slotSums = sums[slot];
+        if (second - current >= HORIZON) {
+            // Everything counted so far is out of every window
+            Arrays.fill(slotBuckets, 0);
+            Arrays.fill(slotSums, 0);
+        } else {
+            for (long next = current + 1; next <= second; next++) {
+                for (int window = 0; window < WINDOWS.length; window++) {
+                    final long leaving = next - WINDOWS[window].getSeconds();
+                    slotSums[window] -= slotBuckets[(int) Math.floorMod(leaving, HORIZON)];
+                }
+                slotBuckets[(int) Math.floorMod(next, HORIZON)] = 0;
+            }
+        }
+
+        currentSeconds[slot] = second;
+    }
+}
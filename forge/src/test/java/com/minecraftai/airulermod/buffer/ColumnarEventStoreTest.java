@@ -0,0 +1,30 @@
+package com.minecraftai.airulermod.buffer;
+
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.events.PlayerDamaged;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColumnarEventStoreTest {
+    private static final String STEVE = "00000000-0000-0000-0000-000000000001";
+
+    @Test
+    void holdsASingleEventAtCapacityOne() {
+        final ColumnarEventStore store = new ColumnarEventStore(1, OverflowPolicy.DROP_OLDEST);
+        final int source = store.getStrings().intern("minecraft:zombie");
+
+        store.captureDamage(0, 0, 1000, 1, 2, source);
+        store.captureDamage(0, 0, 2000, 1, 3, source);
+        assertEquals(1, store.size());
+        assertEquals(1, store.getDroppedTotal());
+
+        final List<AbstractGameEvent> drained = new ArrayList<>();
+        store.drainTo(drained, index -> STEVE);
+        assertEquals(1, drained.size());
+        assertEquals(3, ((PlayerDamaged) drained.get(0)).getDamageAmount());
+    }
+}
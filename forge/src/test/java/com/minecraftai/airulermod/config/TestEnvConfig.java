@@ -0,0 +1,54 @@
+package com.minecraftai.airulermod.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration of the tests: the given values, then the defaults, never the .env file nor the
+ * environment of the machine running the tests.
+ */
+public class TestEnvConfig extends EnvConfig {
+    private final Map<String, String> values = new HashMap<>();
+
+    /**
+     * @param keysAndValues Alternating keys and values
+     */
+    public TestEnvConfig(String... keysAndValues) {
+        for (int i = 0; i + 1 < keysAndValues.length; i += 2) {
+            values.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+    }
+
+    public TestEnvConfig with(String key, String value) {
+        values.put(key, value);
+        return this;
+    }
+
+    @Override
+    public String get(String key) {
+        return values.get(key);
+    }
+
+    @Override
+    public String getOrDefault(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    @Override
+    public int getInt(String key, int defaultValue) {
+        final String value = values.get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    @Override
+    public double getDouble(String key, double defaultValue) {
+        final String value = values.get(key);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    @Override
+    public <E extends Enum<E>> E getEnum(String key, E defaultValue) {
+        final String value = values.get(key);
+        return value == null ? defaultValue : Enum.valueOf(defaultValue.getDeclaringClass(), value);
+    }
+}
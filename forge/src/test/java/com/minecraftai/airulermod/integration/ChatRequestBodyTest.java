@@ -0,0 +1,33 @@
+package com.minecraftai.airulermod.integration;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChatRequestBodyTest {
+    @Test
+    void writesTheSameBodyAsTheJsonTree() throws IOException {
+        final String message = "{\"message\":\"café 😀\\n<b>\",\"line\":\"a b\"}";
+        final Buffer sink = new Buffer();
+        new ChatRequestBody("model", List.of(new AIClient.ChatMessage("user", message)), "resp_1", true).writeTo(sink);
+
+        final JsonObject content = new JsonObject();
+        content.addProperty("role", "user");
+        content.addProperty("content", message);
+        final JsonArray input = new JsonArray();
+        input.add(content);
+        final JsonObject expected = new JsonObject();
+        expected.addProperty("model", "model");
+        expected.add("input", input);
+        expected.addProperty("previous_response_id", "resp_1");
+        expected.addProperty("stream", true);
+
+        assertEquals(expected.toString(), sink.readUtf8());
+    }
+}
@@ -0,0 +1,111 @@
+package com.minecraftai.airulermod.integration;
+
+import com.minecraftai.airulermod.config.TestEnvConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ResilientAIClientTest {
+    private final FlakyBackend backend = new FlakyBackend();
+    private final ResilientAIClient client = new ResilientAIClient("flaky", backend, new TestEnvConfig(
+            "AI_RETRY_MAX_ATTEMPTS", "3",
+            "AI_RETRY_BASE_DELAY_MS", "1"
+    ));
+
+    @Test
+    void conversationMessageIsSentOnce() {
+        backend.failures.set(1);
+
+        assertThrows(CompletionException.class, () -> client.chatAsync("batch", text -> {}).join());
+        assertEquals(1, backend.calls.get());
+    }
+
+    @Test
+    void standaloneRequestIsRetried() {
+        backend.failures.set(2);
+
+        assertEquals("ok", client.chatStandaloneAsync("chunk", text -> {}).join().message());
+        assertEquals(3, backend.calls.get());
+    }
+
+    @Test
+    void retryThrowingFailsTheRequest() {
+        backend.failures.set(1);
+        backend.throwing.set(true);
+
+        final ExecutionException error = assertThrows(ExecutionException.class,
+                () -> client.chatStandaloneAsync("chunk", text -> {}).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertEquals(2, backend.calls.get());
+    }
+
+    @Test
+    void trialThrowingLetsTheNextTrialThrough() {
+        final ResilientAIClient breaking = new ResilientAIClient("flaky", backend, new TestEnvConfig(
+                "AI_RETRY_MAX_ATTEMPTS", "1",
+                "AI_BREAKER_FAILURES", "1",
+                "AI_BREAKER_OPEN_MS", "0"
+        ));
+        backend.failures.set(1);
+        assertThrows(CompletionException.class, () -> breaking.chatStandaloneAsync("chunk", text -> {}).join());
+
+        backend.throwing.set(true);
+        assertThrows(CompletionException.class, () -> breaking.chatStandaloneAsync("chunk", text -> {}).join());
+
+        assertEquals("ok", breaking.chatStandaloneAsync("chunk", text -> {}).join().message());
+    }
+
+    /**
+     * Backend failing with a network error a given number of times, then throwing once if asked
+     * to, then answering.
+     */
+    private static final class FlakyBackend implements AIClient {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicBoolean throwing = new AtomicBoolean();
+
+        @Override
+        public void setInstructions(String instructions) {
+        }
+
+        @Override
+        public ChatResponse chat(String userMessage) {
+            return chatAsync(userMessage).join();
+        }
+
+        @Override
+        public void sendInstructions() {
+        }
+
+        @Override
+        public CompletableFuture<ChatResponse> chatAsync(String userMessage) {
+            calls.incrementAndGet();
+            if (failures.getAndDecrement() > 0) {
+                return CompletableFuture.failedFuture(new IOException("connection reset"));
+            }
+            if (throwing.getAndSet(false)) {
+                throw new IllegalStateException("client closed");
+            }
+            return CompletableFuture.completedFuture(new ChatResponse("ok"));
+        }
+
+        @Override
+        public CompletableFuture<Void> sendInstructionsAsync() {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void cancelPending() {
+        }
+    }
+}
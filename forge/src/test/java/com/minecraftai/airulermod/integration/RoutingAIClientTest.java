@@ -0,0 +1,190 @@
+package com.minecraftai.airulermod.integration;
+
+import com.minecraftai.airulermod.config.TestEnvConfig;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoutingAIClientTest {
+    private final FakeBackend slow = new FakeBackend("slow", 40);
+    private final FakeBackend fast = new FakeBackend("fast", 2);
+    private final RoutingAIClient client = new RoutingAIClient(backends(slow, fast), new TestEnvConfig(
+            "AI_ROUTING_RETRY_MS", "60000",
+            "AI_HEDGE_MIN_DELAY_MS", "10"
+    ));
+
+    @Test
+    void conversationStaysOnPreferredBackendUntilAnotherIsMeasured() {
+        for (int i = 0; i < 25; i++) {
+            assertEquals("slow", client.chat("batch").message());
+        }
+        assertEquals(0, fast.calls.get());
+    }
+
+    @Test
+    void standaloneRequestsMeasureUnknownBackendsAndConversationMovesToFastest() {
+        final long epoch = client.getConversationEpoch();
+
+        // Backends still to be measured come first, in the configured order
+        for (int i = 0; i < 45; i++) {
+            client.chatStandaloneAsync("chunk", text -> {}).join();
+        }
+        assertTrue(slow.calls.get() >= 20, "slow backend got " + slow.calls.get() + " requests");
+        assertTrue(fast.calls.get() >= 20, "fast backend got " + fast.calls.get() + " requests");
+
+        // Elected after the message sent to the previous primary backend
+        assertEquals("slow", client.chat("batch").message());
+        assertEquals("fast", client.chat("batch").message());
+        assertNotEquals(epoch, client.getConversationEpoch());
+    }
+
+    @Test
+    void conversationFailsOverWhenPrimaryBackendFails() {
+        measureBoth();
+        assertEquals("fast", client.chat("batch").message());
+
+        fast.failing = true;
+        for (int i = 0; i < 5; i++) {
+            client.chat("batch");
+        }
+
+        assertEquals("slow", client.chat("batch").message());
+    }
+
+    @Test
+    void slowStandaloneRequestIsHedgedOnNextBackend() {
+        measureBoth();
+
+        // Ranked first from its history, the fast backend now stalls
+        fast.latencyMillis = 2000;
+        final StringBuilder text = new StringBuilder();
+        final long start = System.nanoTime();
+        final AIClient.ChatResponse response = client.chatStandaloneAsync("chunk", text::append).join();
+
+        assertEquals("slow", response.message());
+        assertEquals("slow", text.toString());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+    }
+
+    @Test
+    void hedgeDelayFollowsTimeToFirstText() {
+        final FakeBackend streaming = new FakeBackend("streaming", 400);
+        streaming.firstTextMillis = 1;
+        final FakeBackend steady = new FakeBackend("steady", 450);
+        final RoutingAIClient router = new RoutingAIClient(backends(streaming, steady), new TestEnvConfig(
+                "AI_ROUTING_RETRY_MS", "0",
+                "AI_HEDGE_MIN_DELAY_MS", "10"
+        ));
+
+        // Measured first, in the configured order
+        sendParallel(router, 25);
+        // Measured next, the request hedged on the first backend failing
+        streaming.failing = true;
+        sendParallel(router, 25);
+        streaming.failing = false;
+
+        // Ranked first by its response time, the streaming backend now stalls: the request is hedged
+        // once it did not start answering as fast as it usually does, not after a whole response time
+        streaming.firstTextMillis = 5000;
+        streaming.latencyMillis = 5000;
+        final long start = System.nanoTime();
+        final AIClient.ChatResponse response = router.chatStandaloneAsync("chunk", text -> {}).join();
+
+        assertEquals("steady", response.message());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 700);
+    }
+
+    private static void sendParallel(RoutingAIClient router, int requests) {
+        CompletableFuture.allOf(IntStream.range(0, requests)
+                .mapToObj(i -> router.chatStandaloneAsync("chunk", text -> {}).exceptionally(error -> null))
+                .toArray(CompletableFuture[]::new)).join();
+    }
+
+    private void measureBoth() {
+        for (int i = 0; i < 45; i++) {
+            client.chatStandaloneAsync("chunk", text -> {}).join();
+        }
+        client.chat("batch");
+    }
+
+    private static Map<String, AIClient> backends(FakeBackend... backends) {
+        final Map<String, AIClient> byName = new LinkedHashMap<>();
+        for (FakeBackend backend : backends) {
+            byName.put(backend.name, backend);
+        }
+        return byName;
+    }
+
+    /**
+     * Backend answering with its name after a fixed delay, or failing.
+     */
+    private static final class FakeBackend implements AIClient {
+        private final String name;
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile long latencyMillis;
+        // Delay before the text is handed over ahead of the response, -1 to hand it over with the response
+        private volatile long firstTextMillis = -1;
+        private volatile boolean failing;
+
+        FakeBackend(String name, long latencyMillis) {
+            this.name = name;
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public void setInstructions(String instructions) {
+        }
+
+        @Override
+        public ChatResponse chat(String userMessage) {
+            return chatAsync(userMessage).join();
+        }
+
+        @Override
+        public void sendInstructions() {
+        }
+
+        @Override
+        public CompletableFuture<ChatResponse> chatAsync(String userMessage) {
+            calls.incrementAndGet();
+            final boolean fail = failing;
+
+            return CompletableFuture.supplyAsync(() -> {
+                if (fail) throw new IllegalStateException(new IOException(name + " is down"));
+                return new ChatResponse(name);
+            }, CompletableFuture.delayedExecutor(latencyMillis, TimeUnit.MILLISECONDS));
+        }
+
+        @Override
+        public CompletableFuture<ChatResponse> chatAsync(String userMessage, Consumer<String> onText) {
+            final long firstText = firstTextMillis;
+            if (firstText < 0 || failing) return AIClient.super.chatAsync(userMessage, onText);
+
+            final CompletableFuture<ChatResponse> response = chatAsync(userMessage);
+            CompletableFuture.delayedExecutor(firstText, TimeUnit.MILLISECONDS).execute(() -> {
+                if (!response.isDone()) onText.accept(name);
+            });
+            return response;
+        }
+
+        @Override
+        public CompletableFuture<Void> sendInstructionsAsync() {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void cancelPending() {
+        }
+    }
+}
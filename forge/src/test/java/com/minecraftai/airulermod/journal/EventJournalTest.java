@@ -0,0 +1,79 @@
+package com.minecraftai.airulermod.journal;
+
+import com.minecraftai.airulermod.config.TestEnvConfig;
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.events.ChatMessagePosted;
+import com.minecraftai.airulermod.events.EventPriority;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EventJournalTest {
+    private static final String STEVE = "00000000-0000-0000-0000-000000000001";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversRequeuedEventsOnce() {
+        final EventJournal journal = journal(16);
+        journal.open();
+        final ChatMessagePosted first = new ChatMessagePosted(STEVE, "first", null, 1000);
+        final ChatMessagePosted second = new ChatMessagePosted(STEVE, "second", null, 2000);
+        journal.appendEvent(first);
+        journal.appendEvent(second);
+
+        // Released, then requeued by a failed batch before the release was committed
+        journal.appendEvent(first);
+        journal.appendEvent(second);
+        journal.close();
+
+        final EventJournal reopened = journal(16);
+        final List<AbstractGameEvent> recovered = reopened.open();
+        reopened.close();
+
+        assertEquals(List.of("first", "second"), recovered.stream().map(event -> ((ChatMessagePosted) event).getMessage()).toList());
+    }
+
+    @Test
+    void retainsSegmentsWithUnreleasedEvents() throws IOException {
+        final EventJournal journal = journal(1);
+        journal.open();
+        final String message = "x".repeat(30_000);
+
+        // Four segments of events and of batches, 34 records each, with a single one retained
+        for (int i = 0; i < 120; i++) {
+            journal.appendEvent(new ChatMessagePosted(STEVE, message, null, i));
+            journal.appendBatch(message);
+        }
+        journal.appendBatch(message);
+        journal.close();
+
+        assertEquals(4, JournalReader.listSegments(directory, EventJournal.SEGMENT_SUFFIX).size());
+        assertEquals(1, JournalReader.listSegments(directory, EventJournal.BATCH_SEGMENT_SUFFIX).size());
+
+        final EventJournal reopened = journal(1);
+        assertEquals(120, reopened.open().size());
+        reopened.commit(reopened.mark(), EventPriority.LOW);
+        for (int i = 0; i < 40; i++) {
+            reopened.appendEvent(new ChatMessagePosted(STEVE, message, null, 1000 + i));
+        }
+        reopened.close();
+
+        // The recovered events were journaled again, then released
+        assertEquals(2, JournalReader.listSegments(directory, EventJournal.SEGMENT_SUFFIX).size());
+    }
+
+    private EventJournal journal(int segmentMegabytes) {
+        return new EventJournal(new TestEnvConfig(
+                "JOURNAL_DIR", directory.toString(),
+                "JOURNAL_SEGMENT_MB", String.valueOf(segmentMegabytes),
+                "JOURNAL_MAX_SEGMENTS", "1"
+        ));
+    }
+}
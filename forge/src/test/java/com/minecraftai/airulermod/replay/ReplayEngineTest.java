@@ -0,0 +1,191 @@
+package com.minecraftai.airulermod.replay;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.minecraftai.airulermod.config.TestEnvConfig;
+import com.minecraftai.airulermod.di.ServerHolder;
+import com.minecraftai.airulermod.integration.AIClient;
+import com.minecraftai.airulermod.integration.AIClientManager;
+import com.minecraftai.airulermod.journal.EventJournal;
+import com.minecraftai.airulermod.rules.RuleEngine;
+import com.minecraftai.airulermod.serialization.PositionTypeAdapterFactory;
+import com.minecraftai.airulermod.service.ActionsParser;
+import com.minecraftai.airulermod.service.ActionsProcessor;
+import com.minecraftai.airulermod.service.BatchDeltaEncoder;
+import com.minecraftai.airulermod.service.BatchFilter;
+import com.minecraftai.airulermod.service.BatchPlanner;
+import com.minecraftai.airulermod.service.BpeTokenizer;
+import com.minecraftai.airulermod.service.EventAdmission;
+import com.minecraftai.airulermod.service.EventCoalescer;
+import com.minecraftai.airulermod.service.EventTracker;
+import com.minecraftai.airulermod.service.EventsActionProcessor;
+import com.minecraftai.airulermod.service.IdentifierDictionary;
+import com.minecraftai.airulermod.service.PlayerRegistry;
+import com.minecraftai.airulermod.service.StatsTracker;
+import com.minecraftai.airulermod.service.TokenCounter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplayEngineTest {
+    private static final int EVENTS = 2000;
+    private static final int TOKEN_BUDGET = 400;
+
+    private final Gson serializer = new GsonBuilder()
+            .registerTypeAdapterFactory(new PositionTypeAdapterFactory())
+            .create();
+    private final RecordingBackend backend = new RecordingBackend();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void batchesOverTheTokenBudgetAreSplitIntoChunksCoveringEveryEvent() throws IOException, InterruptedException {
+        final Set<String> chatMessages = new HashSet<>();
+        final ReplayReport report = replay(writeRecording(chatMessages));
+
+        assertEquals(EVENTS, report.getEventsReplayed());
+        assertTrue(backend.conversationMessages.isEmpty(), "split batches are sent outside the conversation");
+        assertTrue(backend.standaloneMessages.size() > report.getBatches(),
+                backend.standaloneMessages.size() + " chunks for " + report.getBatches() + " batches");
+
+        // Every chat event is sent once, in timestamp order within a chunk
+        final List<String> sentMessages = new ArrayList<>();
+        for (String chunk : backend.standaloneMessages) {
+            long previousTimestamp = Long.MIN_VALUE;
+            for (JsonElement event : JsonParser.parseString(chunk).getAsJsonObject().getAsJsonArray("events")) {
+                final long timestamp = event.getAsJsonObject().get("ts").getAsLong();
+                assertTrue(timestamp >= previousTimestamp, "events of a chunk are ordered");
+                previousTimestamp = timestamp;
+                sentMessages.add(event.getAsJsonObject().get("message").getAsString());
+            }
+        }
+        assertEquals(chatMessages.size(), sentMessages.size());
+        assertEquals(chatMessages, new HashSet<>(sentMessages));
+    }
+
+    private ReplayReport replay(Path recording) throws IOException, InterruptedException {
+        final TestEnvConfig envConfig = new TestEnvConfig(
+                "AI_CLIENT", "RECORDING",
+                "BATCH_TOKEN_BUDGET", String.valueOf(TOKEN_BUDGET),
+                "JOURNAL_SEGMENT_MB", "0",
+                "RULES_FILE", directory.resolve("no-rules.json").toString()
+        );
+
+        final VirtualClock clock = new VirtualClock();
+        final PlayerRegistry playerRegistry = new PlayerRegistry();
+        final StatsTracker statsTracker = new StatsTracker(clock, playerRegistry, new EventAdmission(envConfig), envConfig);
+        final ServerHolder serverHolder = new ServerHolder();
+        final IdentifierDictionary identifierDictionary = new IdentifierDictionary(playerRegistry);
+        final ActionsParser actionsParser = new ActionsParser(serializer, identifierDictionary);
+        final ActionsProcessor actionsProcessor = new ActionsProcessor(serverHolder);
+        final RuleEngine ruleEngine = new RuleEngine(envConfig, actionsParser, actionsProcessor, statsTracker, playerRegistry);
+        final EventTracker eventTracker = new EventTracker(
+                envConfig, new EventCoalescer(envConfig), playerRegistry, new EventJournal(envConfig), ruleEngine);
+        final TokenCounter tokenCounter = new TokenCounter(new BpeTokenizer(envConfig));
+        final AIClientManager aiClientManager = new AIClientManager(Map.of("RECORDING", backend), envConfig, tokenCounter);
+        final EventsActionProcessor eventsActionProcessor = new EventsActionProcessor(
+                aiClientManager,
+                serverHolder,
+                serializer,
+                actionsParser,
+                identifierDictionary,
+                playerRegistry,
+                new EventJournal(envConfig),
+                new BatchFilter(clock, envConfig),
+                new BatchDeltaEncoder(serializer, envConfig),
+                new BatchPlanner(serializer, tokenCounter, envConfig),
+                eventTracker
+        );
+
+        final ReplayEngine replayEngine = new ReplayEngine(clock, eventTracker, statsTracker, eventsActionProcessor,
+                actionsProcessor, playerRegistry, ruleEngine, aiClientManager, envConfig);
+        return replayEngine.replay(RecordingReader.read(recording, serializer), 0);
+    }
+
+    /**
+     * Writes a recording of chat messages and mined blocks of one player, 100 ms apart.
+     */
+    private Path writeRecording(Set<String> chatMessages) throws IOException {
+        final String playerId = UUID.randomUUID().toString();
+        final StringBuilder lines = new StringBuilder();
+
+        for (int i = 0; i < EVENTS; i++) {
+            final long timestamp = 1_000_000 + i * 100L;
+            if (i % 3 == 0) {
+                lines.append("{\"event\":\"BlockDestroyed\",\"pid\":\"").append(playerId)
+                        .append("\",\"ts\":").append(timestamp).append("}\n");
+            } else {
+                final String message = "hello " + i;
+                chatMessages.add(message);
+                lines.append("{\"event\":\"ChatMessagePosted\",\"pid\":\"").append(playerId)
+                        .append("\",\"ts\":").append(timestamp)
+                        .append(",\"message\":\"").append(message).append("\"}\n");
+            }
+        }
+
+        final Path recording = directory.resolve("recording.jsonl");
+        Files.writeString(recording, lines);
+        return recording;
+    }
+
+    /**
+     * Backend recording the messages it gets, answering each with no action.
+     */
+    private static final class RecordingBackend implements AIClient {
+        private final ConcurrentLinkedQueue<String> conversationMessages = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<String> standaloneMessages = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void setInstructions(String instructions) {
+        }
+
+        @Override
+        public ChatResponse chat(String userMessage) {
+            return chatAsync(userMessage).join();
+        }
+
+        @Override
+        public void sendInstructions() {
+        }
+
+        @Override
+        public CompletableFuture<ChatResponse> chatAsync(String userMessage) {
+            conversationMessages.add(userMessage);
+            return CompletableFuture.completedFuture(new ChatResponse("{\"actions\":[]}"));
+        }
+
+        @Override
+        public CompletableFuture<ChatResponse> chatStandaloneAsync(String userMessage, Consumer<String> onText) {
+            standaloneMessages.add(userMessage);
+            onText.accept("{\"actions\":[]}");
+            return CompletableFuture.completedFuture(new ChatResponse("{\"actions\":[]}"));
+        }
+
+        @Override
+        public CompletableFuture<Void> sendInstructionsAsync() {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void cancelPending() {
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.minecraftai.airulermod.rules;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleCompilerTest {
+
+    @Test
+    void compilesRulesOnChatMessages() {
+        final Rule<?> rule = RuleCompiler.compileEventRule(definition("ChatMessagePosted", "message"));
+
+        assertEquals("ChatMessagePosted", rule.getTrigger());
+    }
+
+    @Test
+    void rejectsRulesOnCombatEvents() {
+        for (String trigger : new String[]{"PlayerKilledEntity", "PlayerDamaged"}) {
+            final IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> RuleCompiler.compileEventRule(definition(trigger, "pid")));
+
+            assertTrue(e.getMessage().contains(trigger), e.getMessage());
+        }
+    }
+
+    private static JsonObject definition(String trigger, String field) {
+        return JsonParser.parseString("""
+                {"name": "test", "on": "%s",
+                 "when": [{"field": "%s", "op": "contains", "value": "x"}],
+                 "actions": [{"type": "BROADCAST", "message": "hi"}]}
+                """.formatted(trigger, field)).getAsJsonObject();
+    }
+}
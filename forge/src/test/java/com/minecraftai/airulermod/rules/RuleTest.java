@@ -0,0 +1,42 @@
+package com.minecraftai.airulermod.rules;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleTest {
+    private static final String STEVE = "00000000-0000-0000-0000-000000000001";
+
+    private final Rule<Object> rule = new Rule<>("test", "ChatMessagePosted", subject -> true,
+            2, 1000, 5000, false, null, List.of());
+
+    @Test
+    void forgetsPlayersWhoseStateExpired() {
+        for (int i = 0; i < 100; i++) {
+            rule.recordMatch(String.format("00000000-0000-0000-0000-%012d", i + 100), i);
+        }
+        assertEquals(100, rule.trackedPlayers());
+
+        rule.recordMatch(STEVE, 10_000);
+        assertEquals(1, rule.trackedPlayers());
+    }
+
+    @Test
+    void keepsCooldownsRunning() {
+        rule.recordMatch(STEVE, 0);
+        assertTrue(rule.recordMatch(STEVE, 500));
+
+        // Sweeps at 5000, while the cooldown still runs
+        rule.recordMatch("00000000-0000-0000-0000-000000000002", 5000);
+        assertFalse(rule.recordMatch(STEVE, 5200));
+        assertFalse(rule.recordMatch(STEVE, 5300));
+
+        // Matches again from the end of the cooldown
+        assertFalse(rule.recordMatch(STEVE, 6000));
+        assertTrue(rule.recordMatch(STEVE, 6100));
+    }
+}
@@ -0,0 +1,30 @@
+package com.minecraftai.airulermod.serialization;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.phys.Vec3;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PositionTypeAdapterFactoryTest {
+    private final Gson serializer = new GsonBuilder()
+            .registerTypeAdapterFactory(new PositionTypeAdapterFactory())
+            .create();
+
+    @Test
+    void writesPositionsAsCoordinateObjects() {
+        assertEquals("{\"x\":1,\"y\":-64,\"z\":2}", serializer.toJson(new BlockPos(1, -64, 2)));
+        assertEquals("{\"x\":10.5,\"y\":64,\"z\":-3.25}", serializer.toJson(new Vec3(10.5, 64, -3.25)));
+    }
+
+    @Test
+    void writesPositionsNestedInTheTree() {
+        final Map<String, Object> positions = Map.of("pos", new Vec3(1, 2, 3));
+
+        assertEquals("{\"pos\":{\"x\":1,\"y\":2,\"z\":3}}", serializer.toJson(serializer.toJsonTree(positions)));
+    }
+}
@@ -0,0 +1,156 @@
+package com.minecraftai.airulermod.service;
+
+import com.minecraftai.airulermod.config.TestEnvConfig;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BpeTokenizerTest {
+    // The pre-tokenization pattern of o200k_base, as published with tiktoken
+    private static final Pattern PIECES = Pattern.compile(String.join("|",
+            "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]*[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]+(?i:'s|'t|'re|'ve|'m|'ll|'d)?",
+            "[^\\r\\n\\p{L}\\p{N}]?[\\p{Lu}\\p{Lt}\\p{Lm}\\p{Lo}\\p{M}]+[\\p{Ll}\\p{Lm}\\p{Lo}\\p{M}]*(?i:'s|'t|'re|'ve|'m|'ll|'d)?",
+            "\\p{N}{1,3}",
+            " ?[^\\s\\p{L}\\p{N}]+[\\r\\n/]*",
+            "\\s*[\\r\\n]+",
+            "\\s+(?!\\S)",
+            "\\s+"
+    ), Pattern.UNICODE_CHARACTER_CLASS);
+
+    private static final String[] WORDS = {
+            "the", "The", "player", "Steve", "mined", "DIAMOND_ORE", "don't", "WE'LL", "I'm", "they've",
+            "café", "naïve", "Größe", "über", "Ελλάδα", "привет", "日本語", "中文字", "한국어", "مرحبا",
+            "emoji😀", "👍🏽", "x̧", "ǅemal", "ᵃbc", "١٢٣", "Ⅻ", "½", "12345", "3.14", "-42",
+            "{\"event\":\"ChatMessagePosted\"}", "\"pid\":\"p3\"", "[1,2,3]", "//", "?!...", "::", "'s",
+            " ", "　", "\t", "\r\n", "\n\n", "  ", "   \n  ", " ", "\u0085"
+    };
+
+    private static Map<ByteBuffer, Integer> ranks;
+
+    private final BpeTokenizer tokenizer = new BpeTokenizer(new TestEnvConfig());
+
+    @BeforeAll
+    static void loadVocabulary() throws IOException {
+        ranks = new HashMap<>();
+        try (InputStream input = BpeTokenizerTest.class.getResourceAsStream("/o200k_base.tiktoken")) {
+            assertNotNull(input, "the build downloads o200k_base.tiktoken into the resources");
+
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.US_ASCII));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split(" ");
+                ranks.put(ByteBuffer.wrap(Base64.getDecoder().decode(fields[0])), Integer.parseInt(fields[1]));
+            }
+        }
+    }
+
+    @Test
+    void countsKnownTexts() {
+        assertTrue(tokenizer.isAvailable());
+        assertEquals(0, tokenizer.countTokens(""));
+        assertEquals(2, tokenizer.countTokens("hello world"));
+        assertEquals(referenceCount("{\"events\":[{\"event\":\"ChatMessagePosted\",\"pid\":\"p3\",\"message\":\"grief at spawn\"}]}"),
+                tokenizer.countTokens("{\"events\":[{\"event\":\"ChatMessagePosted\",\"pid\":\"p3\",\"message\":\"grief at spawn\"}]}"));
+    }
+
+    @Test
+    void matchesRegexSplitAndReferenceMergeOnRandomTexts() {
+        final Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            final StringBuilder text = new StringBuilder();
+            final int parts = 1 + random.nextInt(12);
+            for (int part = 0; part < parts; part++) {
+                if (random.nextInt(4) == 0) {
+                    text.append(' ');
+                }
+                if (random.nextInt(8) == 0) {
+                    // Any code point, lone surrogates included
+                    text.append((char) random.nextInt(0x10000));
+                } else {
+                    text.append(WORDS[random.nextInt(WORDS.length)]);
+                }
+            }
+
+            final String sample = text.toString();
+            assertEquals(referenceCount(sample), tokenizer.countTokens(sample), () -> "text: " + escape(sample));
+        }
+    }
+
+    @Test
+    void countsPiecesMissingFromTheVocabularyAgainOnceCached() {
+        final String text = "zxqvbnmzxqvbnm ωψξζωψξζ";
+        final int count = tokenizer.countTokens(text);
+
+        assertEquals(referenceCount(text), count);
+        assertEquals(count, tokenizer.countTokens(text));
+    }
+
+    /**
+     * Splits the text with the regex, then merges the bytes of each piece by lowest rank first.
+     */
+    private static int referenceCount(String text) {
+        int count = 0;
+        final Matcher matcher = PIECES.matcher(text);
+        while (matcher.find()) {
+            count += referenceMerge(matcher.group().getBytes(StandardCharsets.UTF_8));
+        }
+        return count;
+    }
+
+    private static int referenceMerge(byte[] piece) {
+        if (ranks.containsKey(ByteBuffer.wrap(piece))) return 1;
+
+        final List<byte[]> parts = new ArrayList<>();
+        for (byte b : piece) {
+            parts.add(new byte[]{b});
+        }
+
+        while (parts.size() > 1) {
+            int best = -1;
+            int bestRank = Integer.MAX_VALUE;
+            for (int i = 0; i < parts.size() - 1; i++) {
+                final Integer rank = ranks.get(ByteBuffer.wrap(concat(parts.get(i), parts.get(i + 1))));
+                if (rank != null && rank < bestRank) {
+                    bestRank = rank;
+                    best = i;
+                }
+            }
+            if (best < 0) break;
+
+            parts.set(best, concat(parts.get(best), parts.remove(best + 1)));
+        }
+
+        return parts.size();
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        final byte[] bytes = new byte[first.length + second.length];
+        System.arraycopy(first, 0, bytes, 0, first.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+
+    private static String escape(String text) {
+        final StringBuilder escaped = new StringBuilder();
+        text.chars().forEach(c -> escaped.append(c < 128 && c >= 32 ? String.valueOf((char) c) : String.format("\\u%04x", c)));
+        return escaped.toString();
+    }
+}
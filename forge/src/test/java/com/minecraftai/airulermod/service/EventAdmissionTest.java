@@ -0,0 +1,32 @@
+package com.minecraftai.airulermod.service;
+
+import com.minecraftai.airulermod.config.TestEnvConfig;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EventAdmissionTest {
+    @Test
+    void countsEventsDroppedByTheRateLimitApartFromSampledOnes() {
+        final EventAdmission admission = new EventAdmission(new TestEnvConfig(
+                "ADMISSION_CHAT_RATE", "1",
+                "ADMISSION_CHAT_BURST", "5",
+                "ADMISSION_DAMAGE_SAMPLE", "0"
+        ));
+
+        int admitted = 0;
+        for (int i = 0; i < 8; i++) {
+            if (admission.admit(EventAdmission.Kind.CHAT, 0, 0) > 0) admitted++;
+        }
+        admission.admit(EventAdmission.Kind.DAMAGE, 0, 1);
+
+        // A new player starts with a full bucket
+        assertEquals(5, admitted);
+        assertEquals(3, admission.getLimitedCounts().get(EventAdmission.Kind.CHAT));
+        assertEquals(0, admission.getLimitedCounts().get(EventAdmission.Kind.DAMAGE));
+        assertEquals(1, admission.getRejectedCounts().get(EventAdmission.Kind.DAMAGE));
+
+        admission.release(0);
+        assertEquals(1f, admission.admit(EventAdmission.Kind.CHAT, 0, 0));
+    }
+}
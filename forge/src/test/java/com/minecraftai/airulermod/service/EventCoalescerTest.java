@@ -0,0 +1,40 @@
+package com.minecraftai.airulermod.service;
+
+import com.minecraftai.airulermod.config.TestEnvConfig;
+import com.minecraftai.airulermod.events.AbstractGameEvent;
+import com.minecraftai.airulermod.events.PlayerDamageSummary;
+import com.minecraftai.airulermod.events.PlayerDamaged;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EventCoalescerTest {
+    private static final String STEVE = "00000000-0000-0000-0000-000000000001";
+
+    private final EventCoalescer coalescer = new EventCoalescer(new TestEnvConfig("EVENT_COALESCE_WINDOW_MS", "5000"));
+
+    @Test
+    void foldsHitsSampledAtTheSameRate() {
+        final List<AbstractGameEvent> coalesced = coalescer.coalesce(List.of(
+                hit(1000, 1f), hit(2000, 0.5f), hit(3000, 1f), hit(4000, 0.5f)
+        ));
+
+        assertEquals(2, coalesced.size());
+        final PlayerDamageSummary full = assertInstanceOf(PlayerDamageSummary.class, coalesced.get(0));
+        assertEquals(2, full.getHitCount());
+        assertNull(full.getSampleRate());
+        final PlayerDamageSummary sampled = assertInstanceOf(PlayerDamageSummary.class, coalesced.get(1));
+        assertEquals(2, sampled.getHitCount());
+        assertEquals(0.5f, sampled.getSampleRate());
+    }
+
+    private static PlayerDamaged hit(long timestamp, float sampleRate) {
+        final PlayerDamaged hit = new PlayerDamaged(STEVE, null, 2, "minecraft:zombie", timestamp);
+        hit.setSampleRate(sampleRate);
+        return hit;
+    }
+}
@@ -0,0 +1,54 @@
+package com.minecraftai.airulermod.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdentifierDictionaryTest {
+    private static final String STEVE = "00000000-0000-0000-0000-000000000001";
+    private static final String ALEX = "00000000-0000-0000-0000-000000000002";
+    private static final String ZOMBIE = "00000000-0000-0000-0000-000000000003";
+
+    private final PlayerRegistry playerRegistry = new PlayerRegistry();
+    private final IdentifierDictionary dictionary = new IdentifierDictionary(playerRegistry);
+
+    @Test
+    void aliasesOfPreviousConversationResolveUntilItsBatchesComplete() {
+        playerRegistry.indexOf(STEVE, "Steve");
+        final String oldAlias = dictionary.encode(STEVE);
+        final int first = dictionary.beginBatch();
+        final int second = dictionary.beginBatch();
+
+        dictionary.reset();
+        final String newAlias = dictionary.encode(STEVE);
+        assertNotEquals(oldAlias, newAlias);
+        assertEquals(STEVE, dictionary.resolve(oldAlias));
+        assertEquals(STEVE, dictionary.resolve(newAlias));
+
+        dictionary.completeBatch(first);
+        assertEquals(STEVE, dictionary.resolve(oldAlias));
+
+        dictionary.completeBatch(second);
+        assertEquals(oldAlias, dictionary.resolve(oldAlias));
+        assertEquals(STEVE, dictionary.resolve(newAlias));
+    }
+
+    @Test
+    void aliasesWithoutPendingBatchesAreForgottenOnReset() {
+        playerRegistry.indexOf(ALEX, "Alex");
+        final String alias = dictionary.encode(ALEX);
+        dictionary.completeBatch(dictionary.beginBatch());
+
+        dictionary.reset();
+        assertEquals(alias, dictionary.resolve(alias));
+    }
+
+    @Test
+    void entitiesAreNotAliased() {
+        assertEquals(ZOMBIE, dictionary.encode(ZOMBIE));
+        assertEquals(ZOMBIE, dictionary.resolve(ZOMBIE));
+        assertTrue(dictionary.releaseAnnouncements().isEmpty());
+    }
+}
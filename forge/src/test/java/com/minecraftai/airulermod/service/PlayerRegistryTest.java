@@ -0,0 +1,36 @@
+package com.minecraftai.airulermod.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PlayerRegistryTest {
+    private final PlayerRegistry registry = new PlayerRegistry();
+
+    @Test
+    void releasedIndexGoesToNextNewPlayer() {
+        final int first = registry.indexOf("a", "Alice");
+        final int second = registry.indexOf("b", "Bob");
+
+        registry.release(first);
+        assertEquals(-1, registry.indexOf("a"));
+        assertNull(registry.getPlayerId(first));
+
+        assertEquals(first, registry.indexOf("c", "Carol"));
+        assertEquals("Carol", registry.getName(first));
+        assertEquals(second, registry.indexOf("b"));
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    void releasedPlayerIsRegisteredAgainOnNextSight() {
+        final int index = registry.indexOf("a", "Alice");
+        registry.indexOf("b", "Bob");
+        registry.release(index);
+        registry.release(index);
+
+        assertEquals(index, registry.indexOf("a", "Alice"));
+        assertEquals(2, registry.indexOf("c", "Carol"));
+    }
+}
@@ -0,0 +1,96 @@
+package com.minecraftai.airulermod.stats;
+
+import com.minecraftai.airulermod.replay.VirtualClock;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlidingWindowCounterTest {
+    private static final int SLOTS = 4;
+
+    private final VirtualClock clock = new VirtualClock();
+    private final SlidingWindowCounter counter = new SlidingWindowCounter(clock);
+
+    @Test
+    void matchesBruteForceCountOnRandomTimestamps() {
+        final Random random = new Random(42);
+        final List<List<Long>> occurrences = new ArrayList<>();
+        final long[] newestSeconds = new long[SLOTS];
+        for (int slot = 0; slot < SLOTS; slot++) {
+            occurrences.add(new ArrayList<>());
+        }
+
+        long now = 1_700_000_000_000L;
+        for (int step = 0; step < 20_000; step++) {
+            // Mostly small steps, sometimes a long pause, beyond the longest window
+            now += random.nextInt(100) < 2 ? random.nextInt(1_200_000) : random.nextInt(3_000);
+            clock.setMillis(now);
+
+            final int slot = random.nextInt(SLOTS);
+            if (random.nextBoolean()) {
+                // Slightly out of order, as events of a tick may be tracked late
+                final long timestamp = now - random.nextInt(5_000);
+                counter.increment(slot, timestamp);
+                occurrences.get(slot).add(timestamp);
+                newestSeconds[slot] = Math.max(newestSeconds[slot], Math.floorDiv(timestamp, 1000));
+            } else {
+                final RateWindow window = RateWindow.values()[random.nextInt(RateWindow.values().length)];
+                newestSeconds[slot] = Math.max(newestSeconds[slot], Math.floorDiv(now, 1000));
+                assertEquals(bruteForceCount(occurrences.get(slot), newestSeconds[slot], window),
+                        counter.count(slot, window), "slot " + slot + ", " + window + " at step " + step);
+            }
+        }
+    }
+
+    @Test
+    void countsWithinEachWindow() {
+        clock.setMillis(0);
+        counter.increment(0, 0);
+        counter.increment(0, 30_000);
+        counter.increment(0, 200_000);
+
+        clock.setMillis(250_000);
+        assertEquals(1, counter.count(0, RateWindow.ONE_MINUTE));
+        assertEquals(3, counter.count(0, RateWindow.FIVE_MINUTES));
+        assertEquals(3, counter.count(0, RateWindow.FIFTEEN_MINUTES));
+
+        clock.setMillis(950_000);
+        assertEquals(0, counter.count(0, RateWindow.FIVE_MINUTES));
+        assertEquals(1, counter.count(0, RateWindow.FIFTEEN_MINUTES));
+    }
+
+    @Test
+    void releasedSlotsCountNothing() {
+        clock.setMillis(1_000);
+        counter.increment(3, 1_000);
+        assertTrue(counter.isAllocated(3));
+        assertEquals(1, counter.getAllocatedSlots());
+
+        counter.release(3);
+        assertFalse(counter.isAllocated(3));
+        assertEquals(0, counter.count(3, RateWindow.ONE_MINUTE));
+        assertEquals(0, counter.getAllocatedBytes());
+
+        // A new player taking the slot starts from zero
+        counter.increment(3, 1_000);
+        assertEquals(1, counter.count(3, RateWindow.ONE_MINUTE));
+    }
+
+    /**
+     * Counts the occurrences within the window ending at the newest second seen by the slot.
+     */
+    private static int bruteForceCount(List<Long> timestamps, long newestSecond, RateWindow window) {
+        int count = 0;
+        for (long timestamp : timestamps) {
+            final long age = newestSecond - Math.floorDiv(timestamp, 1000);
+            if (age >= 0 && age < window.getSeconds()) count++;
+        }
+        return count;
+    }
+}